@@ -13,10 +13,13 @@ package org.microshed.boost.common.boosters;
 import static org.microshed.boost.common.config.ConfigConstants.*;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
 
 import org.microshed.boost.common.BoostException;
 import org.microshed.boost.common.BoostLoggerI;
@@ -52,6 +55,26 @@ public class JDBCBoosterConfig extends AbstractBoosterConfig {
     public static String DRIVER_NAME = "driverName";
     public static String DRIVER_JAR = "driverJar";
 
+    public static String DEFAULT_STATEMENT_CACHE_SIZE = "50";
+    public static String DEFAULT_PREWARM_TIMEOUT = "30s";
+
+    // Properties of the data source rather than of the vendor data source
+    private static final List<String> STATEMENT_PROPERTIES = Arrays.asList(
+            BoostProperties.DATASOURCE_STATEMENT_CACHE_SIZE, BoostProperties.DATASOURCE_ISOLATION_LEVEL,
+            BoostProperties.DATASOURCE_QUERY_TIMEOUT, BoostProperties.DATASOURCE_VALIDATION_TIMEOUT);
+
+    // Properties of all datasources, unless a named datasource sets its own
+    private static final List<String> SHARED_PROPERTIES = Arrays.asList(
+            BoostProperties.DATASOURCE_PERFORMANCE_PROFILE, BoostProperties.DATASOURCE_PREWARM,
+            BoostProperties.DATASOURCE_PREWARM_TIMEOUT, BoostProperties.DATASOURCE_POOL_PROCESSORS);
+
+    public static String PERFORMANCE_PROFILE_THROUGHPUT = "throughput";
+    public static String PERFORMANCE_PROFILE_LATENCY = "latency";
+    public static String PERFORMANCE_PROFILE_NONE = "none";
+
+    public static String ROLE_PRIMARY = "primary";
+    public static String ROLE_REPLICA = "replica";
+
     BoostLoggerI logger;
     protected Properties boostConfigProperties;
     private String dependency;
@@ -106,16 +129,167 @@ public class JDBCBoosterConfig extends AbstractBoosterConfig {
             driverInfo.put(DRIVER_CLASS_NAME, DERBY_DRIVER_CLASS_NAME);
             driverInfo.put(DRIVER_JAR, DERBY_ARTIFACT_ID + "-" + DERBY_DEFAULT_VERSION + ".jar");
         }
+
+        checkPerformanceProfile(BoostProperties.DATASOURCE_PERFORMANCE_PROFILE);
+        for (String name : getDataSourceNames()) {
+            checkPerformanceProfile(
+                    BoostProperties.getDataSourceProperty(name, BoostProperties.DATASOURCE_PERFORMANCE_PROFILE));
+
+            String role = getRole(name);
+            if (!role.equals(ROLE_PRIMARY) && !role.equals(ROLE_REPLICA)) {
+                String property = BoostProperties.getDataSourceProperty(name, BoostProperties.DATASOURCE_ROLE);
+                throw new BoostException("The " + property + " property must be " + ROLE_PRIMARY + " or "
+                        + ROLE_REPLICA + ", not " + role);
+            }
+        }
+    }
+
+    private void checkPerformanceProfile(String property) throws BoostException {
+        String profile = boostConfigProperties.getProperty(property, PERFORMANCE_PROFILE_NONE);
+        if (!profile.equals(PERFORMANCE_PROFILE_THROUGHPUT) && !profile.equals(PERFORMANCE_PROFILE_LATENCY)
+                && !profile.equals(PERFORMANCE_PROFILE_NONE)) {
+            throw new BoostException("The " + property + " property must be " + PERFORMANCE_PROFILE_THROUGHPUT + ", "
+                    + PERFORMANCE_PROFILE_LATENCY + " or " + PERFORMANCE_PROFILE_NONE + ", not " + profile);
+        }
+    }
+
+    /**
+     * The names of the datasources configured with "boost_db.&lt;name&gt;."
+     * properties, in order.
+     */
+    public Set<String> getDataSourceNames() {
+        Set<String> names = new TreeSet<String>();
+        for (String key : boostConfigProperties.stringPropertyNames()) {
+            if (key.startsWith(BoostProperties.DATASOURCE_NAMED_PREFIX)) {
+                int nameEnd = key.indexOf('.', BoostProperties.DATASOURCE_NAMED_PREFIX.length());
+                if (nameEnd > BoostProperties.DATASOURCE_NAMED_PREFIX.length()) {
+                    names.add(key.substring(BoostProperties.DATASOURCE_NAMED_PREFIX.length(), nameEnd));
+                }
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Whether the default datasource is generated. It is always generated
+     * unless there are named datasources and no "boost_db_" property but the
+     * ones that apply to all datasources, such as the performance profile.
+     */
+    public boolean hasDefaultDataSource() {
+        if (getDataSourceNames().isEmpty()) {
+            return true;
+        }
+        for (String key : boostConfigProperties.stringPropertyNames()) {
+            if (key.startsWith(BoostProperties.DATASOURCE_PREFIX) && !SHARED_PROPERTIES.contains(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The role of a named datasource, primary unless configured otherwise.
+     */
+    public String getRole(String name) {
+        String property = BoostProperties.getDataSourceProperty(name, BoostProperties.DATASOURCE_ROLE);
+        return boostConfigProperties.getProperty(property, ROLE_PRIMARY);
+    }
+
+    /**
+     * The JNDI name of a named datasource: jdbc/&lt;name&gt; for a primary and
+     * jdbc/replicas/&lt;name&gt; for a replica, so that the replicas can be
+     * listed together.
+     */
+    public String getJndiName(String name) {
+        return ROLE_REPLICA.equals(getRole(name)) ? "jdbc/replicas/" + name : "jdbc/" + name;
     }
 
     public Properties getDatasourceProperties() {
+        return getDatasourceProperties(null);
+    }
 
-        Properties datasourceProperties = new Properties();
+    /**
+     * The vendor properties of a datasource, with the prefix of the datasource.
+     *
+     * @param name
+     *            the name of the datasource, or null for the default datasource
+     */
+    public Properties getDatasourceProperties(String name) {
+        return toDataSourceProperties(name, getDatasourceProperties(name, getConfiguredProperties(name)));
+    }
 
-        // Find and add all "boost_db_" properties.
+    /**
+     * The configured properties of a datasource, as "boost_db_" properties. A
+     * named datasource without a performance profile or prewarm properties
+     * uses the ones of the default datasource.
+     */
+    private Properties getConfiguredProperties(String name) {
+        if (name == null) {
+            return boostConfigProperties;
+        }
+        Properties configured = new Properties();
+        String prefix = BoostProperties.getDataSourcePrefix(name);
+        for (String key : SHARED_PROPERTIES) {
+            String value = boostConfigProperties.getProperty(key);
+            if (value != null) {
+                configured.put(key, value);
+            }
+        }
         for (String key : boostConfigProperties.stringPropertyNames()) {
-            if (key.startsWith(BoostProperties.DATASOURCE_PREFIX)) {
-                String value = (String) boostConfigProperties.get(key);
+            if (key.startsWith(prefix)) {
+                configured.put(BoostProperties.DATASOURCE_PREFIX + key.substring(prefix.length()),
+                        boostConfigProperties.getProperty(key));
+            }
+        }
+        return configured;
+    }
+
+    /**
+     * Rename "boost_db_" properties with the prefix of a datasource.
+     */
+    private static Properties toDataSourceProperties(String name, Properties properties) {
+        if (name == null) {
+            return properties;
+        }
+        Properties dataSourceProperties = new Properties();
+        for (String key : properties.stringPropertyNames()) {
+            dataSourceProperties.put(BoostProperties.getDataSourceProperty(name, key), properties.getProperty(key));
+        }
+        return dataSourceProperties;
+    }
+
+    private Properties getDatasourceProperties(String name, Properties configured) {
+
+        Properties datasourceProperties = new Properties();
+        String performanceProfile = configured.getProperty(BoostProperties.DATASOURCE_PERFORMANCE_PROFILE,
+                PERFORMANCE_PROFILE_NONE);
+
+        // Start from the driver preset of the performance profile, so that
+        // configured properties replace the preset values
+        Properties presetProperties = getPerformanceProfileProperties(driverInfo.get(DRIVER_NAME),
+                performanceProfile);
+        for (String key : presetProperties.stringPropertyNames()) {
+            datasourceProperties.put(BoostProperties.DATASOURCE_PREFIX + key, presetProperties.getProperty(key));
+        }
+
+        // The fetch size is a vendor property with a name of each driver
+        String fetchSize = configured.getProperty(BoostProperties.DATASOURCE_FETCH_SIZE);
+        if (fetchSize != null) {
+            addFetchSize(datasourceProperties, fetchSize, name);
+        }
+
+        // Find and add all "boost_db_" properties. The connection pool and
+        // statement properties configure the pool and the data source rather
+        // than the vendor data source.
+        for (String key : configured.stringPropertyNames()) {
+            if (key.startsWith(BoostProperties.DATASOURCE_PREFIX)
+                    && !key.startsWith(BoostProperties.DATASOURCE_POOL_PREFIX)
+                    && !STATEMENT_PROPERTIES.contains(key) && !key.equals(BoostProperties.DATASOURCE_FETCH_SIZE)
+                    && !key.equals(BoostProperties.DATASOURCE_PERFORMANCE_PROFILE)
+                    && !key.equals(BoostProperties.DATASOURCE_ROLE)
+                    && !key.equals(BoostProperties.DATASOURCE_PREWARM)
+                    && !key.equals(BoostProperties.DATASOURCE_PREWARM_TIMEOUT)) {
+                String value = (String) configured.get(key);
                 datasourceProperties.put(key, value);
             }
         }
@@ -142,7 +316,8 @@ public class JDBCBoosterConfig extends AbstractBoosterConfig {
                         && !datasourceProperties.containsKey(BoostProperties.DATASOURCE_PORT_NUMBER)) {
 
                     logger.warn("No DB connection properties were provided for the " + driverInfo.get(DRIVER_NAME)
-                            + "database. " + " The " + BoostProperties.DATASOURCE_URL
+                            + "database. " + " The "
+                            + BoostProperties.getDataSourceProperty(name, BoostProperties.DATASOURCE_URL)
                             + " property will need to be set at runtime.");
 
                     datasourceProperties.put(BoostProperties.DATASOURCE_URL, "");
@@ -154,8 +329,10 @@ public class JDBCBoosterConfig extends AbstractBoosterConfig {
                     && !datasourceProperties.containsKey(BoostProperties.DATASOURCE_PASSWORD)) {
 
                 logger.warn("No authentication properties were provided for the " + driverInfo.get(DRIVER_NAME)
-                        + "database. " + " The " + BoostProperties.DATASOURCE_USER + " and "
-                        + BoostProperties.DATASOURCE_PASSWORD + " properties will need to be set at runtime.");
+                        + "database. " + " The "
+                        + BoostProperties.getDataSourceProperty(name, BoostProperties.DATASOURCE_USER) + " and "
+                        + BoostProperties.getDataSourceProperty(name, BoostProperties.DATASOURCE_PASSWORD)
+                        + " properties will need to be set at runtime.");
 
                 datasourceProperties.put(BoostProperties.DATASOURCE_USER, "");
                 datasourceProperties.put(BoostProperties.DATASOURCE_PASSWORD, "");
@@ -164,6 +341,231 @@ public class JDBCBoosterConfig extends AbstractBoosterConfig {
         return datasourceProperties;
     }
 
+    /**
+     * Add the vendor property for the default fetch size of the driver. MySQL
+     * only fetches rows in blocks with a server cursor, so the cursor is
+     * enabled with the fetch size.
+     */
+    private void addFetchSize(Properties datasourceProperties, String fetchSize, String name) {
+        String driverName = driverInfo.get(DRIVER_NAME);
+        if (driverName.equals(MYSQL_DRIVER_NAME)) {
+            datasourceProperties.put(BoostProperties.DATASOURCE_PREFIX + "defaultFetchSize", fetchSize);
+            datasourceProperties.put(BoostProperties.DATASOURCE_PREFIX + "useCursorFetch", "true");
+        } else if (driverName.equals(POSTGRESQL_DRIVER_NAME)) {
+            datasourceProperties.put(BoostProperties.DATASOURCE_PREFIX + "defaultRowFetchSize", fetchSize);
+        } else {
+            logger.warn("The " + driverName + " driver has no default fetch size. The "
+                    + BoostProperties.getDataSourceProperty(name, BoostProperties.DATASOURCE_FETCH_SIZE)
+                    + " property is ignored.");
+        }
+    }
+
+    /**
+     * Whether the pool of a datasource opens its minimum number of connections
+     * when the server starts. Only the server configuration is generated for
+     * it, on the runtimes that support it.
+     *
+     * @param name
+     *            the name of the datasource, or null for the default datasource
+     */
+    public boolean isPrewarm(String name) {
+        return Boolean.parseBoolean(getConfiguredProperties(name).getProperty(BoostProperties.DATASOURCE_PREWARM));
+    }
+
+    /**
+     * The time to open the connections of a prewarmed pool at startup, as a
+     * Liberty duration.
+     *
+     * @param name
+     *            the name of the datasource, or null for the default datasource
+     */
+    public String getPrewarmTimeout(String name) {
+        return getConfiguredProperties(name).getProperty(BoostProperties.DATASOURCE_PREWARM_TIMEOUT,
+                DEFAULT_PREWARM_TIMEOUT);
+    }
+
+    /**
+     * The minimum pool size configured for a datasource, or null when it is
+     * left to the defaults.
+     *
+     * @param name
+     *            the name of the datasource, or null for the default datasource
+     */
+    public String getConfiguredMinPoolSize(String name) {
+        return getConfiguredProperties(name).getProperty(BoostProperties.DATASOURCE_POOL_MIN_POOL_SIZE);
+    }
+
+    /**
+     * The statement properties of the data source: the statement cache size,
+     * isolation level, query timeout and validation timeout. The statement
+     * cache holds more statements than the Liberty default of 10, so that the
+     * statements of an application are not prepared again on each use.
+     */
+    public Properties getStatementProperties() {
+        return getStatementProperties(null);
+    }
+
+    /**
+     * The statement properties of a datasource, with the prefix of the
+     * datasource.
+     *
+     * @param name
+     *            the name of the datasource, or null for the default datasource
+     */
+    public Properties getStatementProperties(String name) {
+        Properties configured = getConfiguredProperties(name);
+        Properties statementProperties = new Properties();
+        statementProperties.put(BoostProperties.DATASOURCE_STATEMENT_CACHE_SIZE, DEFAULT_STATEMENT_CACHE_SIZE);
+
+        for (String key : STATEMENT_PROPERTIES) {
+            String value = configured.getProperty(key);
+            if (value != null) {
+                statementProperties.put(key, value);
+            }
+        }
+        return toDataSourceProperties(name, statementProperties);
+    }
+
+    /**
+     * The connection pool properties, from the configured "boost_db_pool_"
+     * properties over defaults. The pool sizes only have defaults when the
+     * processors of the server are configured with "boost_db_pool_processors",
+     * so that the generated configuration does not depend on the machine that
+     * builds it. Otherwise the runtime sizes the pool.
+     */
+    public Properties getConnectionPoolProperties() {
+        return getConnectionPoolProperties(null);
+    }
+
+    /**
+     * The connection pool properties of a datasource, with the prefix of the
+     * datasource. Each datasource has a pool of its own.
+     *
+     * @param name
+     *            the name of the datasource, or null for the default datasource
+     */
+    public Properties getConnectionPoolProperties(String name) {
+        Properties configured = getConfiguredProperties(name);
+        Properties poolProperties = getDefaultConnectionPoolProperties();
+        String processors = configured.getProperty(BoostProperties.DATASOURCE_POOL_PROCESSORS);
+        if (processors != null) {
+            try {
+                poolProperties = getDefaultConnectionPoolProperties(Integer.parseInt(processors.trim()));
+            } catch (NumberFormatException e) {
+                logger.warn("The "
+                        + BoostProperties.getDataSourceProperty(name, BoostProperties.DATASOURCE_POOL_PROCESSORS)
+                        + " property is not a number: " + processors);
+            }
+        }
+
+        for (String key : configured.stringPropertyNames()) {
+            if (key.startsWith(BoostProperties.DATASOURCE_POOL_PREFIX)
+                    && !key.equals(BoostProperties.DATASOURCE_POOL_PROCESSORS)) {
+                poolProperties.put(key, configured.getProperty(key));
+            }
+        }
+
+        // A configured maximum below the default minimum lowers the minimum
+        if (poolProperties.containsKey(BoostProperties.DATASOURCE_POOL_MIN_POOL_SIZE)
+                && !configured.containsKey(BoostProperties.DATASOURCE_POOL_MIN_POOL_SIZE)) {
+            try {
+                int maxPoolSize = Integer
+                        .parseInt(poolProperties.getProperty(BoostProperties.DATASOURCE_POOL_MAX_POOL_SIZE));
+                int minPoolSize = Integer
+                        .parseInt(poolProperties.getProperty(BoostProperties.DATASOURCE_POOL_MIN_POOL_SIZE));
+                if (maxPoolSize < minPoolSize) {
+                    poolProperties.put(BoostProperties.DATASOURCE_POOL_MIN_POOL_SIZE, String.valueOf(maxPoolSize));
+                }
+            } catch (NumberFormatException e) {
+                logger.warn("The "
+                        + BoostProperties.getDataSourceProperty(name, BoostProperties.DATASOURCE_POOL_MAX_POOL_SIZE)
+                        + " property is not a number: "
+                        + poolProperties.getProperty(BoostProperties.DATASOURCE_POOL_MAX_POOL_SIZE));
+            }
+        }
+        return toDataSourceProperties(name, poolProperties);
+    }
+
+    /**
+     * Default connection pool properties for a server with a number of
+     * processors. The pool is sized for a database that serves about two
+     * connections per processor, with one connection held per processor so
+     * that requests do not wait for new connections.
+     *
+     * @param processors
+     *            the processors of the server
+     */
+    public static Properties getDefaultConnectionPoolProperties(int processors) {
+        Properties poolProperties = getDefaultConnectionPoolProperties();
+        poolProperties.put(BoostProperties.DATASOURCE_POOL_MAX_POOL_SIZE, String.valueOf(processors * 2 + 1));
+        poolProperties.put(BoostProperties.DATASOURCE_POOL_MIN_POOL_SIZE, String.valueOf(processors));
+        return poolProperties;
+    }
+
+    /**
+     * Default connection pool properties without pool sizes. The timeouts are
+     * the Liberty defaults.
+     */
+    public static Properties getDefaultConnectionPoolProperties() {
+        Properties poolProperties = new Properties();
+        poolProperties.put(BoostProperties.DATASOURCE_POOL_CONNECTION_TIMEOUT, "30s");
+        poolProperties.put(BoostProperties.DATASOURCE_POOL_AGED_TIMEOUT, "-1");
+        poolProperties.put(BoostProperties.DATASOURCE_POOL_MAX_IDLE_TIME, "30m");
+        poolProperties.put(BoostProperties.DATASOURCE_POOL_PURGE_POLICY, "EntirePool");
+        poolProperties.put(BoostProperties.DATASOURCE_POOL_NUM_CONNECTIONS_PER_THREAD_LOCAL, "0");
+        return poolProperties;
+    }
+
+    /**
+     * Driver properties that favor throughput or latency, by their vendor
+     * names.
+     *
+     * Throughput caches prepared statements on the client and the server and
+     * sends batches in as few round trips as possible. Latency keeps the
+     * statement caches but leaves batches and fetches at the driver defaults,
+     * so that the first rows of a result arrive without waiting for a large
+     * block. The embedded Derby driver has no such properties.
+     *
+     * @param driverName
+     * @param profile
+     *            throughput, latency or none
+     */
+    public static Properties getPerformanceProfileProperties(String driverName, String profile) {
+        Properties properties = new Properties();
+        boolean throughput = PERFORMANCE_PROFILE_THROUGHPUT.equals(profile);
+        if (!throughput && !PERFORMANCE_PROFILE_LATENCY.equals(profile)) {
+            return properties;
+        }
+
+        if (MYSQL_DRIVER_NAME.equals(driverName)) {
+            properties.put("cachePrepStmts", "true");
+            properties.put("useServerPrepStmts", "true");
+            properties.put("prepStmtCacheSize", "250");
+            properties.put("prepStmtCacheSqlLimit", "2048");
+            properties.put("useLocalSessionState", "true");
+            if (throughput) {
+                properties.put("rewriteBatchedStatements", "true");
+                properties.put("cacheResultSetMetadata", "true");
+            }
+        } else if (POSTGRESQL_DRIVER_NAME.equals(driverName)) {
+            if (throughput) {
+                properties.put("reWriteBatchedInserts", "true");
+                properties.put("prepareThreshold", "3");
+                properties.put("defaultRowFetchSize", "100");
+            } else {
+                // Use a server prepared statement from the first execution
+                properties.put("prepareThreshold", "1");
+            }
+        } else if (DB2_DRIVER_NAME.equals(driverName)) {
+            // Stream LOBs instead of materializing them with the rows
+            properties.put("progressiveStreaming", "1");
+            if (throughput) {
+                properties.put("queryDataSize", "65535");
+            }
+        }
+        return properties;
+    }
+
     @Override
     public List<String> getDependencies() {
         List<String> deps = new ArrayList<String>();
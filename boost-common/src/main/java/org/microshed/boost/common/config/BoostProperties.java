@@ -37,10 +37,85 @@ public final class BoostProperties {
     public static final String DATASOURCE_CREATE_DATABASE = "boost_db_createDatabase";
     public static final String DATASOURCE_URL = "boost_db_url";
 
+    // Datasource statement properties
+    public static final String DATASOURCE_STATEMENT_CACHE_SIZE = "boost_db_statementCacheSize";
+    public static final String DATASOURCE_ISOLATION_LEVEL = "boost_db_isolationLevel";
+    public static final String DATASOURCE_QUERY_TIMEOUT = "boost_db_queryTimeout";
+    public static final String DATASOURCE_VALIDATION_TIMEOUT = "boost_db_validationTimeout";
+    public static final String DATASOURCE_FETCH_SIZE = "boost_db_fetchSize";
+
+    // Datasource startup properties: open the configured minimum pool size at
+    // startup, within the timeout. Boost only generates the configuration, the
+    // startup itself is not measured. Open Liberty has no such setting and
+    // ignores them with a warning.
+    public static final String DATASOURCE_PREWARM = "boost_db_prewarm";
+    public static final String DATASOURCE_PREWARM_TIMEOUT = "boost_db_prewarmTimeout";
+
+    // Driver property preset: throughput, latency or none
+    public static final String DATASOURCE_PERFORMANCE_PROFILE = "boost_db_performanceProfile";
+
+    // Named datasources, configured with "boost_db.<name>.<property>" in
+    // place of "boost_db_<property>"
+    public static final String DATASOURCE_NAMED_PREFIX = "boost_db.";
+    // Role of a named datasource: primary or replica
+    public static final String DATASOURCE_ROLE = "boost_db_role";
+
+    // Datasource connection pool properties
+    public static final String DATASOURCE_POOL_PREFIX = "boost_db_pool_";
+    public static final String DATASOURCE_POOL_MAX_POOL_SIZE = "boost_db_pool_maxPoolSize";
+    public static final String DATASOURCE_POOL_MIN_POOL_SIZE = "boost_db_pool_minPoolSize";
+    public static final String DATASOURCE_POOL_CONNECTION_TIMEOUT = "boost_db_pool_connectionTimeout";
+    public static final String DATASOURCE_POOL_AGED_TIMEOUT = "boost_db_pool_agedTimeout";
+    public static final String DATASOURCE_POOL_MAX_IDLE_TIME = "boost_db_pool_maxIdleTime";
+    public static final String DATASOURCE_POOL_PURGE_POLICY = "boost_db_pool_purgePolicy";
+    public static final String DATASOURCE_POOL_NUM_CONNECTIONS_PER_THREAD_LOCAL = "boost_db_pool_numConnectionsPerThreadLocal";
+    // Processors of the server the pool sizes default to, rather than the
+    // processors of the build machine
+    public static final String DATASOURCE_POOL_PROCESSORS = "boost_db_pool_processors";
+
     public static final String AES_ENCRYPTION_KEY = "boost_aes_key";
 
-    public static final String INTERNAL_COMPILER_TARGET = "boost.internal.compiler.target";
     public static final String LIBERTY_VERSION = "libertyRuntimeVersion";
+    public static final String TOMEE_VERSION = "tomeeRuntimeVersion";
+
+    /**
+     * The prefix of the properties of a datasource
+     * 
+     * @param name
+     *            the name of the datasource, or null for the default datasource
+     * @return "boost_db_" or "boost_db.&lt;name&gt;."
+     */
+    public static String getDataSourcePrefix(String name) {
+        return name == null ? DATASOURCE_PREFIX : DATASOURCE_NAMED_PREFIX + name + ".";
+    }
+
+    /**
+     * The name of a datasource property for a datasource
+     * 
+     * @param name
+     *            the name of the datasource, or null for the default datasource
+     * @param property
+     *            a "boost_db_" property, such as {@link #DATASOURCE_URL}
+     * @return the property with the prefix of the datasource
+     */
+    public static String getDataSourceProperty(String name, String property) {
+        return getDataSourcePrefix(name) + property.substring(DATASOURCE_PREFIX.length());
+    }
+
+    /**
+     * The default datasource property of a named datasource property, such as
+     * boost_db_password for boost_db.&lt;name&gt;.password. Other properties are
+     * returned unchanged.
+     */
+    public static String getDefaultDataSourceProperty(String property) {
+        if (property.startsWith(DATASOURCE_NAMED_PREFIX)) {
+            int nameEnd = property.indexOf('.', DATASOURCE_NAMED_PREFIX.length());
+            if (nameEnd > DATASOURCE_NAMED_PREFIX.length()) {
+                return DATASOURCE_PREFIX + property.substring(nameEnd + 1);
+            }
+        }
+        return property;
+    }
 
     /**
      * Return a list of all properties that need to be encrypted
@@ -66,7 +141,8 @@ public final class BoostProperties {
         for (Map.Entry<Object, Object> entry : projectProperties.entrySet()) {
 
             if (entry.getKey().toString().startsWith(BOOST_PROP_PREFIX)
-                    || entry.getKey().toString().equals(LIBERTY_VERSION)) {
+                    || entry.getKey().toString().equals(LIBERTY_VERSION)
+                    || entry.getKey().toString().equals(TOMEE_VERSION)) {
 
                 logger.debug("Found boost property: " + entry.getKey() + ":" + entry.getValue());
                 boostProperties.put(entry.getKey(), entry.getValue());
@@ -76,7 +152,8 @@ public final class BoostProperties {
         for (Map.Entry<Object, Object> entry : systemProperties.entrySet()) {
 
             if (entry.getKey().toString().startsWith(BOOST_PROP_PREFIX)
-                    || entry.getKey().toString().equals(LIBERTY_VERSION)) {
+                    || entry.getKey().toString().equals(LIBERTY_VERSION)
+                    || entry.getKey().toString().equals(TOMEE_VERSION)) {
 
                 logger.debug("Found boost property: " + entry.getKey() + ":" + entry.getValue());
                 boostProperties.put(entry.getKey(), entry.getValue());
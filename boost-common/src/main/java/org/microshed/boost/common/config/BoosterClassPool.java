@@ -0,0 +1,66 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.microshed.boost.common.config;
+
+import java.io.Closeable;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import javassist.ClassPath;
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.LoaderClassPath;
+import javassist.NotFoundException;
+
+/**
+ * A Javassist class pool that only lives for the duration of one booster
+ * discovery.
+ *
+ * Unlike {@link ClassPool#getDefault()}, nothing is shared with other builds
+ * running in the same JVM. Closing the pool detaches every class it handed out
+ * and drops its reference to the project class loader, so neither is retained
+ * by long-lived Maven processes.
+ */
+final class BoosterClassPool implements Closeable {
+
+    private final ClassPool classPool;
+    private final ClassPath classPath;
+    private final Set<CtClass> ctClasses = new LinkedHashSet<CtClass>();
+
+    BoosterClassPool(ClassLoader classLoader) {
+        this.classPool = new ClassPool(true);
+        this.classPath = classPool.insertClassPath(new LoaderClassPath(classLoader));
+    }
+
+    CtClass get(String className) throws NotFoundException {
+        return track(classPool.get(className));
+    }
+
+    CtClass getSuperclass(CtClass ctClass) throws NotFoundException {
+        return track(ctClass.getSuperclass());
+    }
+
+    private CtClass track(CtClass ctClass) {
+        if (ctClass != null) {
+            ctClasses.add(ctClass);
+        }
+        return ctClass;
+    }
+
+    @Override
+    public void close() {
+        for (CtClass ctClass : ctClasses) {
+            ctClass.detach();
+        }
+        ctClasses.clear();
+        classPool.removeClassPath(classPath);
+    }
+}
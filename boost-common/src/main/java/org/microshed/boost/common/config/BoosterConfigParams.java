@@ -17,10 +17,17 @@ public class BoosterConfigParams {
 
     Map<String, String> projectDependencies; 
     Properties boostProperties;
+    String javaCompilerTargetVersion;
 
     public BoosterConfigParams(Map<String, String> projectDependencies, Properties boostProperties) {
+        this(projectDependencies, boostProperties, null);
+    }
+
+    public BoosterConfigParams(Map<String, String> projectDependencies, Properties boostProperties,
+            String javaCompilerTargetVersion) {
     	this.projectDependencies = projectDependencies;
     	this.boostProperties = boostProperties;
+    	this.javaCompilerTargetVersion = javaCompilerTargetVersion;
     }
     
     public Map<String, String> getProjectDependencies() {
@@ -30,4 +37,12 @@ public class BoosterConfigParams {
     public Properties getBoostProperties() {
         return this.boostProperties;
     }
+
+    /**
+     * @return the Java compiler target of the project, such as 1.8 or 11, or
+     *         null if it is not known
+     */
+    public String getJavaCompilerTargetVersion() {
+        return this.javaCompilerTargetVersion;
+    }
 }
@@ -12,15 +12,23 @@ package org.microshed.boost.common.config;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.zip.ZipEntry;
@@ -30,12 +38,13 @@ import org.microshed.boost.common.BoostLoggerI;
 import org.microshed.boost.common.boosters.AbstractBoosterConfig;
 import org.reflections.Reflections;
 
-import javassist.ClassPool;
 import javassist.CtClass;
-import javassist.LoaderClassPath;
+import javassist.NotFoundException;
 
 public class BoosterConfigurator {
 
+    private static final String CLASS_SUFFIX = ".class";
+
     /**
      * take a list of pom boost dependency strings and map to liberty features for
      * config. return a list of feature configuration objects for each found
@@ -56,51 +65,332 @@ public class BoosterConfigurator {
      */
     public static List<AbstractBoosterConfig> getBoosterConfigs(List<File> jars, ClassLoader classLoader,
             Map<String, String> dependencies, Properties boostProperties, BoostLoggerI logger) throws Exception {
+        return getBoosterConfigs(jars, classLoader, dependencies, boostProperties, null, logger);
+    }
+
+    /**
+     * Same as {@link #getBoosterConfigs(List, ClassLoader, Map, Properties, BoostLoggerI)},
+     * but the runtime boosters found in each jar are looked up in and recorded to
+     * the given discovery cache.
+     * 
+     * @param jars
+     * @param classLoader
+     * @param dependencies
+     * @param boostProperties
+     * @param cache
+     *            the discovery cache, or null to always inspect the jars
+     * @param logger
+     * @return
+     * @throws Exception
+     */
+    public static List<AbstractBoosterConfig> getBoosterConfigs(List<File> jars, ClassLoader classLoader,
+            Map<String, String> dependencies, Properties boostProperties, BoosterDiscoveryCache cache,
+            BoostLoggerI logger) throws Exception {
+        return getBoosterConfigs(jars, classLoader, new BoosterConfigParams(dependencies, boostProperties), cache,
+                logger);
+    }
+
+    /**
+     * Same as
+     * {@link #getBoosterConfigs(List, ClassLoader, Map, Properties, BoosterDiscoveryCache, BoostLoggerI)},
+     * with everything the boosters are configured from passed in the given
+     * params. Nothing is read from or written to JVM-wide state, so projects can
+     * be configured concurrently.
+     * 
+     * @param jars
+     * @param classLoader
+     * @param params
+     *            the project dependencies, boost properties and compiler target
+     *            passed to every booster
+     * @param cache
+     *            the discovery cache, or null to always inspect the jars
+     * @param logger
+     * @return
+     * @throws Exception
+     */
+    public static List<AbstractBoosterConfig> getBoosterConfigs(List<File> jars, ClassLoader classLoader,
+            BoosterConfigParams params, BoosterDiscoveryCache cache, BoostLoggerI logger) throws Exception {
+        return createBoosterConfigs(getBoosterClassNames(jars, classLoader, params, cache, logger), classLoader,
+                params, logger);
+    }
 
-        ClassPool classPool = ClassPool.getDefault();
-        classPool.appendClassPath(new LoaderClassPath(classLoader));
+    /**
+     * Find the booster classes a project uses: the runtime specific booster of
+     * each generic booster the project depends on, or the generic booster when
+     * no runtime jar provides one. The names do not hold on to the class loader,
+     * so they can be kept after it is closed and passed to
+     * {@link #createBoosterConfigs(List, ClassLoader, BoosterConfigParams, BoostLoggerI)}
+     * with a new one.
+     * 
+     * @param jars
+     * @param classLoader
+     * @param params
+     * @param cache
+     *            the discovery cache, or null to always inspect the jars
+     * @param logger
+     * @return the booster class names
+     * @throws Exception
+     */
+    public static List<String> getBoosterClassNames(List<File> jars, ClassLoader classLoader,
+            BoosterConfigParams params, BoosterDiscoveryCache cache, BoostLoggerI logger) throws Exception {
+        Map<String, String> dependencies = params.getProjectDependencies();
 
-        List<CtClass> runtimeBoosterCtClasses = new ArrayList<CtClass>();
-        for (File jar : jars) {
-            List<CtClass> jarCtClasses = findBoosterCtClassesInJar(jar, classPool);
-            runtimeBoosterCtClasses.addAll(jarCtClasses);
+        // generic booster class name -> booster coordinates
+        Map<String, String> genericBoosters = getGenericBoosters(logger);
+
+        // generic booster class name -> runtime booster class name
+        Map<String, String> runtimeBoosterClassNames = findRuntimeBoosters(jars, classLoader,
+                genericBoosters.keySet(), cache, logger);
+
+        List<String> boosterClassNames = new ArrayList<String>();
+        for (Map.Entry<String, String> genericBooster : genericBoosters.entrySet()) {
+            // Only load the boosters this project actually uses
+            if (dependencies.containsKey(genericBooster.getValue())) {
+                String runtimeBoosterClassName = runtimeBoosterClassNames.get(genericBooster.getKey());
+                if (runtimeBoosterClassName != null) {
+                    // A runtime specific booster exists
+                    boosterClassNames.add(runtimeBoosterClassName);
+                } else {
+                    // We did not find a runtime specific booster class, use the
+                    // generic one
+                    boosterClassNames.add(genericBooster.getKey());
+                }
+            }
         }
 
+        return boosterClassNames;
+    }
+
+    /**
+     * Instantiate boosters found by
+     * {@link #getBoosterClassNames(List, ClassLoader, BoosterConfigParams, BoosterDiscoveryCache, BoostLoggerI)}.
+     * 
+     * @param boosterClassNames
+     * @param classLoader
+     *            a class loader over the project classpath, whose parent loads
+     *            boost-common
+     * @param params
+     * @param logger
+     * @return
+     * @throws Exception
+     */
+    public static List<AbstractBoosterConfig> createBoosterConfigs(List<String> boosterClassNames,
+            ClassLoader classLoader, BoosterConfigParams params, BoostLoggerI logger) throws Exception {
         List<AbstractBoosterConfig> boosterConfigList = new ArrayList<AbstractBoosterConfig>();
 
+        for (String boosterClassName : boosterClassNames) {
+            Class<?> boosterClass = Class.forName(boosterClassName, true, classLoader);
+            Constructor<?> cons = boosterClass.getConstructor(BoosterConfigParams.class, BoostLoggerI.class);
+
+            Object o = cons.newInstance(params, logger);
+            if (o instanceof AbstractBoosterConfig) {
+                boosterConfigList.add((AbstractBoosterConfig) o);
+            } else {
+                throw new BoostException(
+                        "Found a booster class that did not extend AbstractBoosterConfig. This should never happen.");
+            }
+        }
+
+        return boosterConfigList;
+    }
+
+    /**
+     * Find all generic booster classes and their coordinates. The booster index
+     * packaged with boost-common is used when present, otherwise the boosters
+     * package is scanned.
+     * 
+     * @param logger
+     * @return generic booster class name to booster coordinates
+     * @throws IOException
+     * @throws BoostException
+     */
+    private static Map<String, String> getGenericBoosters(BoostLoggerI logger) throws IOException, BoostException {
+
+        BoosterIndex index = BoosterIndex.read(AbstractBoosterConfig.class.getClassLoader());
+        if (!index.isEmpty()) {
+            return index.getGenericBoosters();
+        }
+
+        logger.debug("No booster index found, scanning for booster classes.");
+        Map<String, String> genericBoosters = new LinkedHashMap<String, String>();
         Reflections reflections = new Reflections("org.microshed.boost.common.boosters");
+        for (Class<? extends AbstractBoosterConfig> boosterClass : reflections
+                .getSubTypesOf(AbstractBoosterConfig.class)) {
+            genericBoosters.put(boosterClass.getName(), AbstractBoosterConfig.getCoordinates(boosterClass));
+        }
+        return genericBoosters;
+    }
 
-        Set<Class<? extends AbstractBoosterConfig>> allClasses = reflections.getSubTypesOf(AbstractBoosterConfig.class);
-        for (Class<? extends AbstractBoosterConfig> boosterClass : allClasses) {
-            if (dependencies.containsKey(AbstractBoosterConfig.getCoordinates(boosterClass))) {
+    /**
+     * Find the runtime specific boosters in a list of jars. The jars are
+     * inspected in parallel, and the results are merged in classpath order.
+     * 
+     * @return generic booster class name to runtime booster class name
+     * @throws BoostException
+     */
+    private static Map<String, String> findRuntimeBoosters(List<File> jars, ClassLoader classLoader,
+            final Set<String> genericBoosterClassNames, final BoosterDiscoveryCache cache, final BoostLoggerI logger)
+            throws BoostException {
 
-                Constructor<?> cons = null;
-                for (CtClass ctClass : runtimeBoosterCtClasses) {
-                    if (ctClass.getSuperclass().getName().equals(boosterClass.getName())) {
-                        // A runtime specific booster exists
-                        Class<?> runtimeBoosterClass = classLoader.loadClass(ctClass.getName());
-                        cons = runtimeBoosterClass.getConstructor(BoosterConfigParams.class, BoostLoggerI.class);
+        int parallelism = Math.max(1, Math.min(jars.size(), Runtime.getRuntime().availableProcessors()));
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+
+        List<JarBoosters> jarBoostersList = new ArrayList<JarBoosters>();
+        try {
+            List<ForkJoinTask<JarBoosters>> tasks = new ArrayList<ForkJoinTask<JarBoosters>>();
+            for (final File jar : jars) {
+                tasks.add(pool.submit(new Callable<JarBoosters>() {
+                    @Override
+                    public JarBoosters call() throws IOException {
+                        return findRuntimeBoostersInJar(jar, genericBoosterClassNames, cache, logger);
                     }
+                }));
+            }
+
+            for (int i = 0; i < tasks.size(); i++) {
+                try {
+                    jarBoostersList.add(tasks.get(i).get());
+                } catch (ExecutionException e) {
+                    throw new BoostException("Unable to look for boosters in " + jars.get(i), e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new BoostException("Interrupted while looking for boosters", e);
                 }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        Map<String, String> runtimeBoosterClassNames = new HashMap<String, String>();
+        BoosterClassPool classPool = null;
+        try {
+            for (JarBoosters jarBoosters : jarBoostersList) {
+                if (jarBoosters.scanned) {
+                    // Only the candidates found by the scan are handed to Javassist
+                    if (classPool == null) {
+                        classPool = new BoosterClassPool(classLoader);
+                    }
+                    Iterator<String> candidates = jarBoosters.runtimeBoosters.values().iterator();
+                    while (candidates.hasNext()) {
+                        if (!isRuntimeBooster(candidates.next(), classPool, logger)) {
+                            candidates.remove();
+                        }
+                    }
 
-                if (cons == null) {
-                    // We did not find a runtime specific booster class, just instantiate a generic
-                    // one
-                    cons = boosterClass.getConstructor(BoosterConfigParams.class, BoostLoggerI.class);
+                    if (cache != null) {
+                        cache.put(jarBoosters.jar, jarBoosters.runtimeBoosters);
+                    }
                 }
 
-                BoosterConfigParams boosterConfigParams = new BoosterConfigParams(dependencies, boostProperties);
-                Object o = cons.newInstance(boosterConfigParams, logger);
-                if (o instanceof AbstractBoosterConfig) {
-                    boosterConfigList.add((AbstractBoosterConfig) o);
-                } else {
-                    throw new BoostException(
-                            "Found a booster class that did not extend AbstractBoosterConfig. This should never happen.");
+                runtimeBoosterClassNames.putAll(jarBoosters.runtimeBoosters);
+            }
+        } finally {
+            if (classPool != null) {
+                classPool.close();
+            }
+            if (cache != null) {
+                cache.evict();
+            }
+        }
+
+        return runtimeBoosterClassNames;
+    }
+
+    private static JarBoosters findRuntimeBoostersInJar(File jar, Set<String> genericBoosterClassNames,
+            BoosterDiscoveryCache cache, BoostLoggerI logger) throws IOException {
+
+        if (cache != null) {
+            Map<String, String> cached = cache.get(jar);
+            if (cached != null) {
+                return new JarBoosters(jar, cached, false);
+            }
+        }
+
+        BoosterIndex index = BoosterIndex.read(jar);
+        if (index != null) {
+            if (cache != null) {
+                cache.put(jar, index.getRuntimeBoosters());
+            }
+            return new JarBoosters(jar, index.getRuntimeBoosters(), false);
+        }
+
+        // No index in this jar, fall back to scanning its classes
+        return new JarBoosters(jar, findBoosterCandidatesInJar(jar, genericBoosterClassNames, logger), true);
+    }
+
+    /**
+     * Find the classes in a jar that directly extend a generic booster. Only the
+     * class file header of each class is read, and classes that cannot be
+     * parsed are skipped.
+     * 
+     * @return generic booster class name to candidate class name
+     * @throws IOException
+     */
+    private static Map<String, String> findBoosterCandidatesInJar(File jarFile, Set<String> genericBoosterClassNames,
+            BoostLoggerI logger) throws IOException {
+        Map<String, String> candidates = new LinkedHashMap<String, String>();
+
+        try (JarFile jar = new JarFile(jarFile)) {
+            Enumeration<? extends JarEntry> enumeration = jar.entries();
+
+            while (enumeration.hasMoreElements()) {
+                ZipEntry zipEntry = enumeration.nextElement();
+                String entryName = zipEntry.getName();
+
+                // Is this a class? Skip module and multi-release descriptors
+                if (!entryName.endsWith(CLASS_SUFFIX) || entryName.endsWith("module-info.class")
+                        || entryName.startsWith("META-INF/")) {
+                    continue;
+                }
+
+                String superclassName;
+                try (InputStream in = jar.getInputStream(zipEntry)) {
+                    superclassName = SuperclassReader.readSuperclassName(in);
+                } catch (IOException e) {
+                    // Not something a booster could be, such as a class file
+                    // from a newer JDK or a shaded resource named .class
+                    logger.debug("Skipping unreadable class file " + entryName + " in " + jarFile, e);
+                    continue;
+                }
+
+                // For now, assume that a runtime booster is going to directly extend a common
+                // booster, which will extend AbstractBoosterConfig
+                if (superclassName != null && genericBoosterClassNames.contains(superclassName)) {
+                    String className = entryName.substring(0, entryName.length() - CLASS_SUFFIX.length())
+                            .replace('/', '.');
+                    candidates.put(superclassName, className);
                 }
             }
         }
 
-        return boosterConfigList;
+        return candidates;
+    }
+
+    private static boolean isRuntimeBooster(String className, BoosterClassPool classPool, BoostLoggerI logger) {
+        try {
+            CtClass genericBooster = classPool.getSuperclass(classPool.get(className));
+            return classPool.getSuperclass(genericBooster).getName().equals(AbstractBoosterConfig.class.getName());
+        } catch (NotFoundException e) {
+            logger.debug("Unable to load booster class " + className, e);
+            return false;
+        }
+    }
+
+    /**
+     * The runtime boosters found in a single jar.
+     */
+    private static class JarBoosters {
+        final File jar;
+        final Map<String, String> runtimeBoosters;
+        // Whether the jar had to be scanned, rather than read from an index or
+        // the cache
+        final boolean scanned;
+
+        JarBoosters(File jar, Map<String, String> runtimeBoosters, boolean scanned) {
+            this.jar = jar;
+            this.runtimeBoosters = runtimeBoosters;
+            this.scanned = scanned;
+        }
     }
 
     public static List<String> getDependenciesToCopy(List<AbstractBoosterConfig> boosterConfigurators,
@@ -125,42 +415,4 @@ public class BoosterConfigurator {
         return dependencyJarsToCopy;
     }
 
-    private static List<CtClass> findBoosterCtClassesInJar(File jarFile, ClassPool classPool)
-            throws ClassNotFoundException, IOException {
-        List<CtClass> ctClasses = new ArrayList<CtClass>();
-        JarFile jar = new JarFile(jarFile);
-        // Getting the files into the jar
-        Enumeration<? extends JarEntry> enumeration = jar.entries();
-
-        // Iterates into the files in the jar file
-        while (enumeration.hasMoreElements()) {
-            ZipEntry zipEntry = enumeration.nextElement();
-
-            // Is this a class?
-            if (zipEntry.getName().endsWith(".class")) {
-
-                // Relative path of file into the jar.
-                String className = zipEntry.getName();
-
-                // Complete class name
-                className = className.replace(".class", "").replace("/", ".");
-
-                try {
-                    CtClass ctClass = classPool.get(className);
-                    // For now, assume that a runtime booster is going to directly extend a common
-                    // booster, which will extend AbstractBoosterConfig
-                    if (ctClass.getSuperclass().getSuperclass().getName()
-                            .contains(AbstractBoosterConfig.class.getName())) {
-                        ctClasses.add(ctClass);
-                    }
-                } catch (Exception e) {
-                }
-
-            }
-        }
-        jar.close();
-
-        return ctClasses;
-    }
-
 }
@@ -0,0 +1,231 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.microshed.boost.common.config;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.microshed.boost.common.BoostLoggerI;
+import org.microshed.boost.common.boosters.AbstractBoosterConfig;
+import org.microshed.boost.common.utils.BoostUtil;
+
+/**
+ * On-disk cache of the runtime booster classes found in each classpath jar.
+ *
+ * Results are stored by the SHA-256 of the jar contents. A second set of
+ * entries maps a jar path to the size, modification time and SHA-256 it had
+ * when it was last seen, so that unchanged jars do not need to be hashed again.
+ *
+ * Entries are written to a temporary file and atomically moved into place, so
+ * several builds may share the same cache directory. Each entry starts with a
+ * header naming the Boost version and booster index it was found with, so that
+ * entries written by another version of boost-common are ignored. The number
+ * of entries is bounded, the least recently used entries are evicted by
+ * {@link #evict()}.
+ */
+public class BoosterDiscoveryCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 5000;
+
+    private static final String JARS_DIR = "jars";
+    private static final String PATHS_DIR = "paths";
+    private static final String SEPARATOR = " ";
+    private static final String HEADER = "# ";
+    private static final String TMP_SUFFIX = BoostUtil.TMP_SUFFIX;
+
+    private final Path jarsDir;
+    private final Path pathsDir;
+    private final int maxEntries;
+    private final String header;
+    private final BoostLoggerI logger;
+
+    public BoosterDiscoveryCache(File cacheDir, BoostLoggerI logger) throws IOException {
+        this(cacheDir, DEFAULT_MAX_ENTRIES, logger);
+    }
+
+    public BoosterDiscoveryCache(File cacheDir, int maxEntries, BoostLoggerI logger) throws IOException {
+        this.jarsDir = Files.createDirectories(cacheDir.toPath().resolve(JARS_DIR));
+        this.pathsDir = Files.createDirectories(cacheDir.toPath().resolve(PATHS_DIR));
+        this.maxEntries = maxEntries;
+        this.header = HEADER + getBoostersHash();
+        this.logger = logger;
+    }
+
+    /**
+     * Return a hash of the Boost version and of the booster index packaged with
+     * boost-common. Runtime boosters are only looked for among the generic
+     * boosters it lists, so entries found with another index may be wrong.
+     */
+    private static String getBoostersHash() throws IOException {
+        StringWriter boosters = new StringWriter();
+        boosters.write(AbstractBoosterConfig.boostVersion + "\n");
+        BoosterIndex.read(BoosterDiscoveryCache.class.getClassLoader()).store(boosters);
+        return BoostUtil.sha256(boosters.toString());
+    }
+
+    /**
+     * Get the runtime boosters previously found in a jar.
+     *
+     * @param jar
+     * @return generic booster class name to runtime booster class name, or null
+     *         if the jar is not in the cache
+     */
+    public Map<String, String> get(File jar) {
+        try {
+            String contentHash = getContentHash(jar);
+            Path entry = jarsDir.resolve(contentHash);
+
+            List<String> lines = Files.readAllLines(entry, StandardCharsets.UTF_8);
+            if (lines.isEmpty() || !lines.get(0).equals(header)) {
+                // Written by another version of boost-common
+                return null;
+            }
+
+            Map<String, String> runtimeBoosters = new LinkedHashMap<String, String>();
+            for (String line : lines.subList(1, lines.size())) {
+                String[] fields = line.split(SEPARATOR);
+                if (fields.length == 2) {
+                    runtimeBoosters.put(fields[0], fields[1]);
+                }
+            }
+
+            touch(entry);
+            return runtimeBoosters;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            logger.debug("Unable to read booster discovery cache entry for " + jar, e);
+            return null;
+        }
+    }
+
+    /**
+     * Record the runtime boosters found in a jar.
+     *
+     * @param jar
+     * @param runtimeBoosters
+     *            generic booster class name to runtime booster class name
+     */
+    public void put(File jar, Map<String, String> runtimeBoosters) {
+        try {
+            StringBuilder content = new StringBuilder(header).append('\n');
+            for (Map.Entry<String, String> runtimeBooster : runtimeBoosters.entrySet()) {
+                content.append(runtimeBooster.getKey()).append(SEPARATOR).append(runtimeBooster.getValue())
+                        .append('\n');
+            }
+            BoostUtil.writeAtomically(jarsDir.resolve(getContentHash(jar)), content.toString());
+        } catch (IOException e) {
+            logger.debug("Unable to write booster discovery cache entry for " + jar, e);
+        }
+    }
+
+    /**
+     * Return the SHA-256 of the jar contents. The hash recorded for this path is
+     * reused as long as the size and modification time of the jar are unchanged.
+     */
+    private String getContentHash(File jar) throws IOException {
+        Path jarPath = jar.toPath().toAbsolutePath().normalize();
+        long size = Files.size(jarPath);
+        long lastModified = Files.getLastModifiedTime(jarPath).toMillis();
+
+        Path pathEntry = pathsDir.resolve(BoostUtil.sha256(jarPath.toString()));
+        try {
+            String[] fields = new String(Files.readAllBytes(pathEntry), StandardCharsets.UTF_8).trim()
+                    .split(SEPARATOR);
+            if (fields.length == 3 && fields[0].equals(String.valueOf(size))
+                    && fields[1].equals(String.valueOf(lastModified))) {
+                touch(pathEntry);
+                return fields[2];
+            }
+        } catch (NoSuchFileException e) {
+            // First time this path is seen
+        }
+
+        String contentHash = BoostUtil.sha256(jarPath.toFile());
+        BoostUtil.writeAtomically(pathEntry, size + SEPARATOR + lastModified + SEPARATOR + contentHash);
+        return contentHash;
+    }
+
+    private void touch(Path entry) {
+        try {
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            // Evicted by another build, nothing to do
+        }
+    }
+
+    /**
+     * Evict the least recently used entries once the cache holds more than the
+     * maximum number of entries. This lists the cache directories, so it is
+     * called once per discovery rather than on every put.
+     */
+    public void evict() {
+        try {
+            evict(jarsDir);
+            evict(pathsDir);
+        } catch (IOException e) {
+            logger.debug("Unable to evict booster discovery cache entries", e);
+        }
+    }
+
+    private void evict(Path dir) throws IOException {
+        final List<Path> entries = new ArrayList<Path>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path entry : stream) {
+                // Skip entries that are still being written
+                if (!entry.getFileName().toString().endsWith(TMP_SUFFIX)) {
+                    entries.add(entry);
+                }
+            }
+        }
+        if (entries.size() <= maxEntries) {
+            return;
+        }
+
+        final Map<Path, Long> lastUsed = new LinkedHashMap<Path, Long>();
+        for (Path entry : entries) {
+            try {
+                lastUsed.put(entry, Files.getLastModifiedTime(entry).toMillis());
+            } catch (IOException e) {
+                lastUsed.put(entry, 0L);
+            }
+        }
+        Collections.sort(entries, new Comparator<Path>() {
+            @Override
+            public int compare(Path p1, Path p2) {
+                return Long.compare(lastUsed.get(p1), lastUsed.get(p2));
+            }
+        });
+
+        // Evict down to 90% so that the next discovery has room to add entries
+        int toEvict = entries.size() - (maxEntries * 9 / 10);
+        for (int i = 0; i < toEvict; i++) {
+            try {
+                Files.deleteIfExists(entries.get(i));
+            } catch (IOException e) {
+                logger.debug("Unable to evict booster discovery cache entry " + entries.get(i), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.microshed.boost.common.config;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.jar.JarFile;
+import java.util.zip.ZipEntry;
+
+/**
+ * In-memory form of the booster index that {@link BoosterIndexProcessor}
+ * writes to {@value #LOCATION} when boost-common and the Boost runtimes are
+ * compiled.
+ *
+ * Each line of the index is either a generic booster entry:
+ *
+ * <pre>
+ * &lt;coordinates&gt; &lt;generic booster class&gt;
+ * </pre>
+ *
+ * or a runtime specific booster entry:
+ *
+ * <pre>
+ * &lt;coordinates&gt; &lt;generic booster class&gt; &lt;runtime booster class&gt;
+ * </pre>
+ */
+public class BoosterIndex {
+
+    public static final String LOCATION = "META-INF/boost/boosters.idx";
+
+    private static final String COMMENT = "#";
+    private static final String SEPARATOR = " ";
+
+    // generic booster class name -> booster coordinates
+    private final Map<String, String> genericBoosters = new LinkedHashMap<String, String>();
+
+    // generic booster class name -> runtime booster class name
+    private final Map<String, String> runtimeBoosters = new LinkedHashMap<String, String>();
+
+    public Map<String, String> getGenericBoosters() {
+        return genericBoosters;
+    }
+
+    public Map<String, String> getRuntimeBoosters() {
+        return runtimeBoosters;
+    }
+
+    public void addGenericBooster(String coordinates, String genericClassName) {
+        genericBoosters.put(genericClassName, coordinates);
+    }
+
+    public void addRuntimeBooster(String coordinates, String genericClassName, String runtimeClassName) {
+        genericBoosters.put(genericClassName, coordinates);
+        runtimeBoosters.put(genericClassName, runtimeClassName);
+    }
+
+    public boolean isEmpty() {
+        return genericBoosters.isEmpty();
+    }
+
+    /**
+     * Read the booster index packaged in a jar.
+     *
+     * @param jarFile
+     * @return the index, or null if the jar does not contain one
+     * @throws IOException
+     */
+    public static BoosterIndex read(File jarFile) throws IOException {
+        try (JarFile jar = new JarFile(jarFile)) {
+            ZipEntry entry = jar.getEntry(LOCATION);
+            if (entry == null) {
+                return null;
+            }
+            BoosterIndex index = new BoosterIndex();
+            try (InputStream in = jar.getInputStream(entry)) {
+                index.load(new InputStreamReader(in, StandardCharsets.UTF_8));
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Merge every booster index visible to a class loader.
+     *
+     * @param classLoader
+     * @return the merged index, empty if no index was found
+     * @throws IOException
+     */
+    public static BoosterIndex read(ClassLoader classLoader) throws IOException {
+        BoosterIndex index = new BoosterIndex();
+        Enumeration<URL> resources = classLoader.getResources(LOCATION);
+        while (resources.hasMoreElements()) {
+            try (InputStream in = resources.nextElement().openStream()) {
+                index.load(new InputStreamReader(in, StandardCharsets.UTF_8));
+            }
+        }
+        return index;
+    }
+
+    void load(Reader reader) throws IOException {
+        BufferedReader in = new BufferedReader(reader);
+        String line;
+        while ((line = in.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith(COMMENT)) {
+                continue;
+            }
+
+            String[] fields = line.split(SEPARATOR);
+            if (fields.length == 2) {
+                addGenericBooster(fields[0], fields[1]);
+            } else if (fields.length == 3) {
+                addRuntimeBooster(fields[0], fields[1], fields[2]);
+            } else {
+                throw new IOException("Malformed entry in " + LOCATION + ": " + line);
+            }
+        }
+    }
+
+    public void store(Writer writer) throws IOException {
+        writer.write(COMMENT + " Generated by " + BoosterIndexProcessor.class.getName() + "\n");
+        for (Map.Entry<String, String> generic : genericBoosters.entrySet()) {
+            String runtimeClassName = runtimeBoosters.get(generic.getKey());
+            writer.write(generic.getValue() + SEPARATOR + generic.getKey());
+            if (runtimeClassName != null) {
+                writer.write(SEPARATOR + runtimeClassName);
+            }
+            writer.write("\n");
+        }
+    }
+}
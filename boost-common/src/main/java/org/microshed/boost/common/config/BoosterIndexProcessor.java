@@ -0,0 +1,158 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.microshed.boost.common.config;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+import org.microshed.boost.common.boosters.AbstractBoosterConfig;
+import org.microshed.boost.common.boosters.AbstractBoosterConfig.BoosterCoordinates;
+
+/**
+ * Annotation processor that records the boosters compiled into a jar in
+ * {@value BoosterIndex#LOCATION}, so that {@link BoosterConfigurator} does not
+ * need to scan the classpath for them.
+ *
+ * A generic booster directly extends {@link AbstractBoosterConfig} and declares
+ * its {@link BoosterCoordinates}. A runtime specific booster directly extends a
+ * generic booster.
+ */
+@SupportedAnnotationTypes("*")
+public class BoosterIndexProcessor extends AbstractProcessor {
+
+    private final BoosterIndex index = new BoosterIndex();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            if (!index.isEmpty()) {
+                writeIndex();
+            }
+        } else {
+            for (Element element : roundEnv.getRootElements()) {
+                processElement(element);
+            }
+        }
+
+        // Never claim annotations, other processors may need them
+        return false;
+    }
+
+    private void processElement(Element element) {
+        if (element.getKind() == ElementKind.CLASS) {
+            processClass((TypeElement) element);
+        }
+
+        // Nested classes are not root elements
+        for (Element enclosed : element.getEnclosedElements()) {
+            if (enclosed.getKind().isClass()) {
+                processElement(enclosed);
+            }
+        }
+    }
+
+    private void processClass(TypeElement type) {
+        if (type.getModifiers().contains(Modifier.ABSTRACT)) {
+            return;
+        }
+
+        TypeElement superclass = getSuperclass(type);
+        if (superclass == null) {
+            return;
+        }
+
+        if (isAbstractBoosterConfig(superclass)) {
+            String coordinates = getCoordinates(type);
+            if (coordinates != null) {
+                index.addGenericBooster(coordinates, getBinaryName(type));
+            }
+        } else if (isAbstractBoosterConfig(getSuperclass(superclass))) {
+            String coordinates = getCoordinates(superclass);
+            if (coordinates != null) {
+                index.addRuntimeBooster(coordinates, getBinaryName(superclass), getBinaryName(type));
+            }
+        }
+    }
+
+    private TypeElement getSuperclass(TypeElement type) {
+        TypeMirror superclass = type.getSuperclass();
+        if (superclass.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        return (TypeElement) ((DeclaredType) superclass).asElement();
+    }
+
+    private boolean isAbstractBoosterConfig(TypeElement type) {
+        return type != null && type.getQualifiedName().contentEquals(AbstractBoosterConfig.class.getCanonicalName());
+    }
+
+    private String getBinaryName(TypeElement type) {
+        return processingEnv.getElementUtils().getBinaryName(type).toString();
+    }
+
+    private String getCoordinates(TypeElement type) {
+        for (AnnotationMirror annotation : type.getAnnotationMirrors()) {
+            TypeElement annotationType = (TypeElement) annotation.getAnnotationType().asElement();
+            if (annotationType.getQualifiedName().contentEquals(BoosterCoordinates.class.getCanonicalName())) {
+                for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> value : annotation
+                        .getElementValues().entrySet()) {
+                    if (value.getKey().getSimpleName().contentEquals("value")) {
+                        return value.getValue().getValue().toString();
+                    }
+                }
+            }
+        }
+
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                "Booster class is missing a BoosterCoordinates annotation and will not be indexed", type);
+        return null;
+    }
+
+    private void writeIndex() {
+        try {
+            FileObject resource = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "",
+                    BoosterIndex.LOCATION);
+            try (Writer writer = new OutputStreamWriter(resource.openOutputStream(), StandardCharsets.UTF_8)) {
+                index.store(writer);
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Unable to write " + BoosterIndex.LOCATION + ": " + e.getMessage());
+        }
+    }
+}
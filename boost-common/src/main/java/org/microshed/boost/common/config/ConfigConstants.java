@@ -57,6 +57,7 @@ public final class ConfigConstants {
     public static final String PROPERTIES = "properties";
     public static final String CONTAINER_AUTH_DATA_REF = "containerAuthDataRef";
     public static final String URL = "url";
+    public static final String CONNECTION_MANAGER = "connectionManager";
 
     // Datasource configuration values
     public static final String DEFAULT_DATASOURCE = "DefaultDataSource";
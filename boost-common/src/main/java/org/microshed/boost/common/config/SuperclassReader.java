@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.microshed.boost.common.config;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads the superclass name of a class file. Only the constant pool and the
+ * class header are read, the fields, methods and attributes are never parsed.
+ */
+final class SuperclassReader {
+
+    private static final int MAGIC = 0xCAFEBABE;
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_FLOAT = 4;
+    private static final int CONSTANT_LONG = 5;
+    private static final int CONSTANT_DOUBLE = 6;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_STRING = 8;
+    private static final int CONSTANT_FIELDREF = 9;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_INTERFACE_METHODREF = 11;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+    private static final int CONSTANT_METHOD_HANDLE = 15;
+    private static final int CONSTANT_METHOD_TYPE = 16;
+    private static final int CONSTANT_DYNAMIC = 17;
+    private static final int CONSTANT_INVOKE_DYNAMIC = 18;
+    private static final int CONSTANT_MODULE = 19;
+    private static final int CONSTANT_PACKAGE = 20;
+
+    private SuperclassReader() {
+    }
+
+    /**
+     * Return the binary name of the superclass of the class file read from the
+     * stream, or null if the class has no superclass (java.lang.Object and
+     * module-info).
+     *
+     * @param in
+     *            class file contents, not closed by this method
+     * @return the superclass name, in dotted form
+     * @throws IOException
+     *             if the stream does not contain a valid class file
+     */
+    static String readSuperclassName(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a class file");
+        }
+        data.readUnsignedShort(); // minor_version
+        data.readUnsignedShort(); // major_version
+
+        int constantPoolCount = data.readUnsignedShort();
+        String[] utf8 = new String[constantPoolCount];
+        int[] classNameIndex = new int[constantPoolCount];
+
+        for (int i = 1; i < constantPoolCount; i++) {
+            int tag = data.readUnsignedByte();
+            switch (tag) {
+            case CONSTANT_UTF8:
+                utf8[i] = data.readUTF();
+                break;
+            case CONSTANT_CLASS:
+                classNameIndex[i] = data.readUnsignedShort();
+                break;
+            case CONSTANT_STRING:
+            case CONSTANT_METHOD_TYPE:
+            case CONSTANT_MODULE:
+            case CONSTANT_PACKAGE:
+                skip(data, 2);
+                break;
+            case CONSTANT_METHOD_HANDLE:
+                skip(data, 3);
+                break;
+            case CONSTANT_INTEGER:
+            case CONSTANT_FLOAT:
+            case CONSTANT_FIELDREF:
+            case CONSTANT_METHODREF:
+            case CONSTANT_INTERFACE_METHODREF:
+            case CONSTANT_NAME_AND_TYPE:
+            case CONSTANT_DYNAMIC:
+            case CONSTANT_INVOKE_DYNAMIC:
+                skip(data, 4);
+                break;
+            case CONSTANT_LONG:
+            case CONSTANT_DOUBLE:
+                skip(data, 8);
+                // 8 byte constants take up two entries
+                i++;
+                break;
+            default:
+                throw new IOException("Unknown constant pool tag " + tag);
+            }
+        }
+
+        data.readUnsignedShort(); // access_flags
+        data.readUnsignedShort(); // this_class
+        int superClass = data.readUnsignedShort();
+        if (superClass == 0) {
+            return null;
+        }
+
+        if (superClass >= constantPoolCount || utf8[classNameIndex[superClass]] == null) {
+            throw new IOException("Invalid super_class constant pool index " + superClass);
+        }
+        return utf8[classNameIndex[superClass]].replace('/', '.');
+    }
+
+    private static void skip(DataInputStream data, int bytes) throws IOException {
+        int remaining = bytes;
+        while (remaining > 0) {
+            int skipped = data.skipBytes(remaining);
+            if (skipped <= 0) {
+                if (data.read() < 0) {
+                    throw new EOFException();
+                }
+                skipped = 1;
+            }
+            remaining -= skipped;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.microshed.boost.common.config;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.microshed.boost.common.BoostLoggerI;
+import org.microshed.boost.common.utils.BoostUtil;
+
+/**
+ * On-disk cache of the booster dependencies declared by each war dependency,
+ * so that the artifact descriptor of a war does not have to be read from the
+ * repositories on every build.
+ *
+ * Entries are stored by the SHA-256 of the war coordinates. A released version
+ * never changes, so only snapshot wars are read again.
+ */
+public class WarBoosterCache {
+
+    private static final String WARS_DIR = "wars";
+    private static final String SEPARATOR = " ";
+
+    private final Path warsDir;
+    private final BoostLoggerI logger;
+
+    public WarBoosterCache(File cacheDir, BoostLoggerI logger) throws IOException {
+        this.warsDir = Files.createDirectories(cacheDir.toPath().resolve(WARS_DIR));
+        this.logger = logger;
+    }
+
+    /**
+     * Whether the boosters of a war version can be cached.
+     */
+    public static boolean isCacheable(String version) {
+        return !version.endsWith("-SNAPSHOT");
+    }
+
+    /**
+     * Get the boosters previously found for a war.
+     *
+     * @param war
+     *            groupId:artifactId:version of the war
+     * @return groupId:artifactId to version of each booster, or null if the war
+     *         is not in the cache
+     */
+    public Map<String, String> get(String war) {
+        try {
+            List<String> lines = Files.readAllLines(getEntry(war), StandardCharsets.UTF_8);
+            // The first line holds the coordinates, in case of a hash collision
+            if (lines.isEmpty() || !lines.get(0).equals(war)) {
+                return null;
+            }
+
+            Map<String, String> boosters = new LinkedHashMap<String, String>();
+            for (String line : lines.subList(1, lines.size())) {
+                String[] fields = line.split(SEPARATOR);
+                if (fields.length == 2) {
+                    boosters.put(fields[0], fields[1]);
+                }
+            }
+            return boosters;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            logger.debug("Unable to read the war booster cache entry for " + war, e);
+            return null;
+        }
+    }
+
+    /**
+     * Record the boosters found for a war.
+     *
+     * @param war
+     *            groupId:artifactId:version of the war
+     * @param boosters
+     *            groupId:artifactId to version of each booster
+     */
+    public void put(String war, Map<String, String> boosters) {
+        StringBuilder content = new StringBuilder(war).append('\n');
+        for (Map.Entry<String, String> booster : boosters.entrySet()) {
+            content.append(booster.getKey()).append(SEPARATOR).append(booster.getValue()).append('\n');
+        }
+        try {
+            BoostUtil.writeAtomically(getEntry(war), content.toString());
+        } catch (IOException e) {
+            logger.debug("Unable to write the war booster cache entry for " + war, e);
+        }
+    }
+
+    private Path getEntry(String war) {
+        return warsDir.resolve(BoostUtil.sha256(war));
+    }
+}
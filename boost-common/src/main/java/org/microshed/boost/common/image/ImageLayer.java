@@ -0,0 +1,227 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.microshed.boost.common.image;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.commons.io.FileUtils;
+import org.microshed.boost.common.utils.BoostUtil;
+
+/**
+ * The files of one layer of a container image, by their absolute path in the
+ * image.
+ *
+ * Entries are kept sorted by path, so that a layer built from the same files is
+ * always written the same way.
+ */
+public class ImageLayer {
+
+    private final String name;
+    private final TreeMap<String, File> entries = new TreeMap<String, File>();
+
+    /**
+     * @param name
+     *            describes the content of the layer, such as liberty-kernel
+     */
+    public ImageLayer(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * Add a file, a symbolic link or an empty directory to the layer, along with
+     * its parent directories.
+     *
+     * @param imagePath
+     *            absolute path in the image
+     * @param source
+     */
+    public void add(String imagePath, File source) {
+        String path = normalize(imagePath);
+        entries.put(path, source);
+
+        String parent = path;
+        while (parent.lastIndexOf('/') > 0) {
+            parent = parent.substring(0, parent.lastIndexOf('/'));
+            if (!entries.containsKey(parent)) {
+                entries.put(parent, null);
+            }
+        }
+    }
+
+    /**
+     * Add a directory and everything below it to the layer.
+     *
+     * @param imagePath
+     *            absolute path of the directory in the image
+     * @param directory
+     * @param filter
+     *            accepts the files and directories to add, or null to add all
+     *            of them
+     */
+    public void addDirectory(String imagePath, File directory, FileFilter filter) {
+        add(imagePath, directory);
+        File[] children = directory.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File child : children) {
+            if (filter != null && !filter.accept(child)) {
+                continue;
+            }
+            String childPath = normalize(imagePath) + "/" + child.getName();
+            if (child.isDirectory() && !Files.isSymbolicLink(child.toPath())) {
+                addDirectory(childPath, child, filter);
+            } else {
+                add(childPath, child);
+            }
+        }
+    }
+
+    /**
+     * @return the source of each entry by its path in the image, without the
+     *         leading slash. Parent directories that were not added themselves
+     *         have no source.
+     */
+    public Map<String, File> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Fingerprint of the layer, from the path, size and modification time of
+     * its entries, used to reuse a layer written by an earlier build.
+     */
+    public String getFingerprint() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (Map.Entry<String, File> entry : entries.entrySet()) {
+            content.append(entry.getKey());
+            File source = entry.getValue();
+            if (source != null) {
+                Path sourcePath = source.toPath();
+                if (Files.isSymbolicLink(sourcePath)) {
+                    content.append(" -> ").append(Files.readSymbolicLink(sourcePath));
+                } else if (source.isFile()) {
+                    content.append(' ').append(source.length()).append(' ').append(source.lastModified())
+                            .append(' ').append(source.canExecute());
+                }
+            }
+            content.append('\n');
+        }
+        return BoostUtil.sha256(content.toString());
+    }
+
+    /**
+     * Add an application to the layers of an image. A war is added expanded,
+     * with its WEB-INF/lib jars in the libraries layer and everything else in
+     * the application layer, so that a change to the application classes
+     * leaves the libraries layer unchanged.
+     *
+     * @param imagePath
+     *            absolute path of the application in the image
+     * @param app
+     *            a war, an expanded war or another application archive
+     * @param workDir
+     *            where wars are expanded
+     * @param libraries
+     * @param application
+     */
+    public static void addApplication(String imagePath, File app, File workDir, ImageLayer libraries,
+            ImageLayer application) throws IOException {
+        if (app.getName().endsWith(".xml")) {
+            throw new IOException("The loose application " + app
+                    + " refers to files outside of the server and can not be put in an image");
+        }
+
+        File expanded = app;
+        if (app.isFile() && app.getName().endsWith(".war")) {
+            expanded = expand(app, workDir);
+        }
+        if (!expanded.isDirectory()) {
+            application.add(imagePath, app);
+            return;
+        }
+
+        final File libDir = new File(expanded, "WEB-INF/lib");
+        if (libDir.isDirectory()) {
+            libraries.addDirectory(imagePath + "/WEB-INF/lib", libDir, null);
+        }
+        application.addDirectory(imagePath, expanded, new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return !file.equals(libDir);
+            }
+        });
+    }
+
+    /**
+     * Expand a war into the work directory, unless it was already expanded from
+     * the same war.
+     */
+    private static File expand(File war, File workDir) throws IOException {
+        File expanded = new File(workDir, war.getName());
+        File hashFile = new File(workDir, war.getName() + ".sha256");
+        String hash = BoostUtil.sha256(war);
+        if (expanded.isDirectory() && hashFile.isFile()
+                && new String(Files.readAllBytes(hashFile.toPath()), StandardCharsets.UTF_8).equals(hash)) {
+            return expanded;
+        }
+
+        Files.deleteIfExists(hashFile.toPath());
+        FileUtils.deleteDirectory(expanded);
+        BoostUtil.extract(war, workDir, war.getName());
+        Files.write(hashFile.toPath(), hash.getBytes(StandardCharsets.UTF_8));
+        return expanded;
+    }
+
+    /**
+     * Write the entries of the layer.
+     */
+    void write(TarWriter tar) throws IOException {
+        for (Map.Entry<String, File> entry : entries.entrySet()) {
+            String path = entry.getKey();
+            File source = entry.getValue();
+            if (source == null) {
+                tar.addDirectory(path);
+            } else if (Files.isSymbolicLink(source.toPath())) {
+                tar.addSymbolicLink(path, Files.readSymbolicLink(source.toPath()).toString());
+            } else if (source.isDirectory()) {
+                tar.addDirectory(path);
+            } else {
+                tar.addFile(path, source, source.canExecute());
+            }
+        }
+    }
+
+    private static String normalize(String imagePath) {
+        String path = imagePath.replace('\\', '/');
+        while (path.startsWith("/")) {
+            path = path.substring(1);
+        }
+        while (path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        return path;
+    }
+}
@@ -0,0 +1,169 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.microshed.boost.common.image;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Splits a packaged Liberty server into image layers, from the least to the
+ * most frequently changing:
+ * <ul>
+ * <li>liberty-kernel: the files of the runtime zip</li>
+ * <li>liberty-features: the files added by installing features</li>
+ * <li>booster-resources: the booster dependencies in the server resources,
+ * such as JDBC drivers</li>
+ * <li>libraries: the WEB-INF/lib jars of the applications</li>
+ * <li>application: the rest of the applications and the server
+ * configuration</li>
+ * </ul>
+ *
+ * War applications are added expanded, so that a change to the application
+ * classes leaves the libraries layer unchanged.
+ */
+public class LibertyImageLayers {
+
+    public static final String INSTALL_PATH = "/opt/ol/wlp";
+
+    /**
+     * Server directories written by a running server, that do not belong in an
+     * image.
+     */
+    private static final Set<String> SERVER_OUTPUT = new HashSet<String>(Arrays.asList("logs", "workarea"));
+
+    private LibertyImageLayers() {
+    }
+
+    /**
+     * Add the layers of a server to an image, and run the server when a
+     * container starts.
+     *
+     * @param image
+     * @param installDir
+     *            the wlp directory holding the server
+     * @param serverName
+     * @param runtimeZip
+     *            the runtime the installation was extracted from, or null to put
+     *            installed features in the kernel layer
+     * @param workDir
+     *            where war applications are expanded
+     */
+    public static void addLayers(OciImageWriter image, File installDir, String serverName, File runtimeZip,
+            File workDir) throws IOException {
+        final Set<String> runtimeFiles = runtimeZip == null ? null : getRuntimeFiles(runtimeZip);
+        final String installPath = installDir.getAbsolutePath();
+
+        ImageLayer kernel = new ImageLayer("liberty-kernel");
+        ImageLayer features = new ImageLayer("liberty-features");
+        for (File child : listFiles(installDir)) {
+            // usr holds the servers, the markers are written by Boost
+            if (child.getName().equals("usr") || child.getName().startsWith(".boost-")) {
+                continue;
+            }
+            kernel.addDirectory(INSTALL_PATH + "/" + child.getName(), child, new FileFilter() {
+                @Override
+                public boolean accept(File file) {
+                    return file.isDirectory() || runtimeFiles == null
+                            || runtimeFiles.contains(getRelativePath(installPath, file));
+                }
+            });
+            if (runtimeFiles != null) {
+                features.addDirectory(INSTALL_PATH + "/" + child.getName(), child, new FileFilter() {
+                    @Override
+                    public boolean accept(File file) {
+                        return file.isDirectory() || !runtimeFiles.contains(getRelativePath(installPath, file));
+                    }
+                });
+            }
+        }
+        image.addLayer(kernel);
+        if (containsFiles(features)) {
+            image.addLayer(features);
+        }
+
+        File serverDir = new File(installDir, "usr/servers/" + serverName);
+        String serverPath = INSTALL_PATH + "/usr/servers/" + serverName;
+        ImageLayer resources = new ImageLayer("booster-resources");
+        File resourcesDir = new File(serverDir, "resources");
+        if (resourcesDir.isDirectory()) {
+            resources.addDirectory(serverPath + "/resources", resourcesDir, null);
+        }
+        image.addLayer(resources);
+
+        ImageLayer libraries = new ImageLayer("libraries");
+        ImageLayer application = new ImageLayer("application");
+        for (File child : listFiles(serverDir)) {
+            String childPath = serverPath + "/" + child.getName();
+            if (child.getName().equals("resources") || SERVER_OUTPUT.contains(child.getName())) {
+                continue;
+            } else if (child.getName().equals("apps") || child.getName().equals("dropins")) {
+                application.add(childPath, child);
+                for (File app : listFiles(child)) {
+                    ImageLayer.addApplication(childPath + "/" + app.getName(), app, workDir, libraries, application);
+                }
+            } else if (child.isDirectory()) {
+                application.addDirectory(childPath, child, null);
+            } else {
+                application.add(childPath, child);
+            }
+        }
+        File sharedDir = new File(installDir, "usr/shared");
+        if (sharedDir.isDirectory()) {
+            application.addDirectory(INSTALL_PATH + "/usr/shared", sharedDir, null);
+        }
+        image.addLayer(libraries);
+        image.addLayer(application);
+
+        image.setEntrypoint(Arrays.asList(INSTALL_PATH + "/bin/server", "run", serverName));
+    }
+
+    /**
+     * The files of the runtime zip, relative to the wlp directory.
+     */
+    private static Set<String> getRuntimeFiles(File runtimeZip) throws IOException {
+        Set<String> runtimeFiles = new HashSet<String>();
+        try (ZipFile zip = new ZipFile(runtimeZip)) {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                String name = entries.nextElement().getName();
+                if (name.startsWith("wlp/")) {
+                    runtimeFiles.add(name.substring("wlp/".length()));
+                }
+            }
+        }
+        return runtimeFiles;
+    }
+
+    private static String getRelativePath(String basePath, File file) {
+        return file.getAbsolutePath().substring(basePath.length() + 1).replace(File.separatorChar, '/');
+    }
+
+    private static boolean containsFiles(ImageLayer layer) {
+        for (File source : layer.getEntries().values()) {
+            if (source != null && !source.isDirectory()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static File[] listFiles(File dir) {
+        File[] files = dir.listFiles();
+        return files == null ? new File[0] : files;
+    }
+}
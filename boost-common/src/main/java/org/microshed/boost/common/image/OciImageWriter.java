@@ -0,0 +1,467 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.microshed.boost.common.image;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import org.microshed.boost.common.BoostLoggerI;
+import org.microshed.boost.common.utils.BoostUtil;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+/**
+ * Writes a container image as an OCI image layout archive, without a container
+ * daemon. The archive can be pushed with tools such as skopeo or crane, or
+ * loaded with docker load.
+ *
+ * Layers are written in the order they are added, so they should go from the
+ * least to the most frequently changing. Every layer is reproducible: the same
+ * files always give the same layer digest, so a registry only receives the
+ * layers whose files changed. Compressed layers are kept in a cache directory
+ * and reused while their files are unchanged.
+ *
+ * The image can be built on a base image given as an OCI image layout
+ * directory, as written by skopeo copy docker://image oci:directory.
+ */
+public class OciImageWriter {
+
+    public static final String LAYER_MEDIA_TYPE = "application/vnd.oci.image.layer.v1.tar+gzip";
+    public static final String CONFIG_MEDIA_TYPE = "application/vnd.oci.image.config.v1+json";
+    public static final String MANIFEST_MEDIA_TYPE = "application/vnd.oci.image.manifest.v1+json";
+    public static final String INDEX_MEDIA_TYPE = "application/vnd.oci.image.index.v1+json";
+
+    public static final String JAVA_PATH = "/opt/java";
+
+    /**
+     * Reproducible images are dated at the epoch.
+     */
+    private static final String CREATED = "1970-01-01T00:00:00Z";
+    private static final String BLOBS = "blobs/sha256/";
+
+    private final File layerCacheDir;
+    private final BoostLoggerI logger;
+    private final Gson gson = new GsonBuilder().disableHtmlEscaping().create();
+
+    private final List<ImageLayer> layers = new ArrayList<ImageLayer>();
+    private final Map<String, String> env = new LinkedHashMap<String, String>();
+    private final List<String> exposedPorts = new ArrayList<String>();
+    private List<String> entrypoint;
+    private String workingDir;
+    private File baseImage;
+
+    /**
+     * @param layerCacheDir
+     *            where compressed layers are kept between builds
+     * @param logger
+     */
+    public OciImageWriter(File layerCacheDir, BoostLoggerI logger) {
+        this.layerCacheDir = layerCacheDir;
+        this.logger = logger;
+    }
+
+    /**
+     * Build the image on a base image.
+     *
+     * @param ociLayoutDir
+     *            an OCI image layout directory holding the base image
+     */
+    public void setBaseImage(File ociLayoutDir) {
+        this.baseImage = ociLayoutDir;
+    }
+
+    /**
+     * Add a layer on top of the layers already added. Empty layers are skipped.
+     */
+    public void addLayer(ImageLayer layer) {
+        if (!layer.isEmpty()) {
+            layers.add(layer);
+        }
+    }
+
+    /**
+     * Add a layer holding a Java runtime, and point JAVA_HOME at it. Add it
+     * first, as it changes the least.
+     *
+     * @param javaHome
+     *            a Java runtime for the operating system of the image
+     */
+    public void addJavaLayer(File javaHome) {
+        ImageLayer java = new ImageLayer("jre");
+        java.addDirectory(JAVA_PATH, javaHome, null);
+        addLayer(java);
+        setEnv("JAVA_HOME", JAVA_PATH);
+    }
+
+    public List<ImageLayer> getLayers() {
+        return layers;
+    }
+
+    /**
+     * Set an environment variable, replacing the value from the base image.
+     */
+    public void setEnv(String name, String value) {
+        env.put(name, value);
+    }
+
+    /**
+     * @param port
+     *            a TCP port the image listens on
+     */
+    public void addExposedPort(String port) {
+        exposedPorts.add(port + "/tcp");
+    }
+
+    /**
+     * Set the command run when a container starts. The command of the base
+     * image is replaced.
+     */
+    public void setEntrypoint(List<String> entrypoint) {
+        this.entrypoint = entrypoint;
+    }
+
+    public void setWorkingDir(String workingDir) {
+        this.workingDir = workingDir;
+    }
+
+    /**
+     * Write the image.
+     *
+     * @param archive
+     *            the image layout archive to write
+     * @param reference
+     *            the name and tag of the image, such as my-app:1.0
+     * @return the digest of the image manifest
+     */
+    public String write(File archive, String reference) throws IOException {
+        Files.createDirectories(layerCacheDir.toPath());
+
+        JsonObject baseManifest = null;
+        JsonObject baseConfig = null;
+        if (baseImage != null) {
+            baseManifest = readBaseManifest();
+            baseConfig = readJson(getBaseBlob(baseManifest.getAsJsonObject("config")));
+        }
+
+        List<Blob> layerBlobs = new ArrayList<Blob>();
+        for (ImageLayer layer : layers) {
+            layerBlobs.add(getLayerBlob(layer));
+        }
+
+        byte[] config = gson.toJson(createConfig(baseConfig, layerBlobs)).getBytes(StandardCharsets.UTF_8);
+        Blob configBlob = new Blob(sha256(config), config.length, null);
+
+        JsonObject manifest = new JsonObject();
+        manifest.addProperty("schemaVersion", 2);
+        manifest.addProperty("mediaType", MANIFEST_MEDIA_TYPE);
+        manifest.add("config", descriptor(CONFIG_MEDIA_TYPE, configBlob));
+        JsonArray manifestLayers = new JsonArray();
+        if (baseManifest != null) {
+            manifestLayers.addAll(baseManifest.getAsJsonArray("layers"));
+        }
+        for (Blob layerBlob : layerBlobs) {
+            manifestLayers.add(descriptor(LAYER_MEDIA_TYPE, layerBlob));
+        }
+        manifest.add("layers", manifestLayers);
+        byte[] manifestBytes = gson.toJson(manifest).getBytes(StandardCharsets.UTF_8);
+        Blob manifestBlob = new Blob(sha256(manifestBytes), manifestBytes.length, null);
+
+        Files.createDirectories(archive.getAbsoluteFile().getParentFile().toPath());
+        File tmp = new File(archive.getPath() + ".tmp");
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tmp.toPath()));
+                TarWriter tar = new TarWriter(out)) {
+            tar.addFile("oci-layout", "{\"imageLayoutVersion\":\"1.0.0\"}".getBytes(StandardCharsets.UTF_8));
+            tar.addFile("index.json", gson.toJson(createIndex(manifestBlob, reference))
+                    .getBytes(StandardCharsets.UTF_8));
+            tar.addFile("manifest.json", gson.toJson(createDockerManifest(configBlob, manifestLayers, reference))
+                    .getBytes(StandardCharsets.UTF_8));
+            tar.addDirectory("blobs");
+            tar.addDirectory("blobs/sha256");
+            if (baseManifest != null) {
+                for (JsonElement baseLayer : baseManifest.getAsJsonArray("layers")) {
+                    String digest = baseLayer.getAsJsonObject().get("digest").getAsString();
+                    tar.addFile(BLOBS + hex(digest), getBaseBlob(baseLayer.getAsJsonObject()), false);
+                }
+            }
+            for (Blob layerBlob : layerBlobs) {
+                tar.addFile(BLOBS + hex(layerBlob.digest), layerBlob.file, false);
+            }
+            tar.addFile(BLOBS + hex(configBlob.digest), config);
+            tar.addFile(BLOBS + hex(manifestBlob.digest), manifestBytes);
+        }
+        Files.move(tmp.toPath(), archive.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        logger.info("Wrote the image " + reference + " " + manifestBlob.digest + " to " + archive);
+        return manifestBlob.digest;
+    }
+
+    /**
+     * Get the compressed layer from the cache, or write it there.
+     */
+    private Blob getLayerBlob(ImageLayer layer) throws IOException {
+        String fingerprint = layer.getFingerprint();
+        File blobFile = new File(layerCacheDir, fingerprint + ".tar.gz");
+        File digestsFile = new File(layerCacheDir, fingerprint + ".digests");
+        if (blobFile.isFile() && digestsFile.isFile()) {
+            String[] digests = new String(Files.readAllBytes(digestsFile.toPath()), StandardCharsets.UTF_8).trim()
+                    .split(" ");
+            if (digests.length == 2) {
+                logger.debug("Reusing the " + layer.getName() + " layer " + digests[0]);
+                return new Blob(digests[0], blobFile.length(), digests[1], blobFile);
+            }
+        }
+
+        MessageDigest compressed = newSha256();
+        MessageDigest uncompressed = newSha256();
+        File tmp = new File(blobFile.getPath() + ".tmp");
+        try (OutputStream file = new BufferedOutputStream(Files.newOutputStream(tmp.toPath()));
+                DigestOutputStream compressedOut = new DigestOutputStream(file, compressed);
+                GZIPOutputStream gzip = new GZIPOutputStream(compressedOut, 64 * 1024);
+                DigestOutputStream uncompressedOut = new DigestOutputStream(gzip, uncompressed);
+                TarWriter tar = new TarWriter(uncompressedOut)) {
+            layer.write(tar);
+        }
+
+        String digest = "sha256:" + toHex(compressed.digest());
+        String diffId = "sha256:" + toHex(uncompressed.digest());
+        Files.move(tmp.toPath(), blobFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        Files.write(digestsFile.toPath(), (digest + " " + diffId).getBytes(StandardCharsets.UTF_8));
+        logger.info("Wrote the " + layer.getName() + " layer " + digest);
+        return new Blob(digest, blobFile.length(), diffId, blobFile);
+    }
+
+    private JsonObject createConfig(JsonObject baseConfig, List<Blob> layerBlobs) {
+        JsonObject config = new JsonObject();
+        config.addProperty("created", CREATED);
+        config.addProperty("architecture", baseConfig != null && baseConfig.has("architecture")
+                ? baseConfig.get("architecture").getAsString() : "amd64");
+        config.addProperty("os", baseConfig != null && baseConfig.has("os") ? baseConfig.get("os").getAsString()
+                : "linux");
+
+        JsonObject containerConfig = baseConfig != null && baseConfig.has("config")
+                ? baseConfig.getAsJsonObject("config") : new JsonObject();
+        Map<String, String> allEnv = new LinkedHashMap<String, String>();
+        if (containerConfig.has("Env") && containerConfig.get("Env").isJsonArray()) {
+            for (JsonElement variable : containerConfig.getAsJsonArray("Env")) {
+                String[] nameValue = variable.getAsString().split("=", 2);
+                allEnv.put(nameValue[0], nameValue.length > 1 ? nameValue[1] : "");
+            }
+        }
+        allEnv.putAll(env);
+        if (!allEnv.isEmpty()) {
+            JsonArray envArray = new JsonArray();
+            for (Map.Entry<String, String> variable : allEnv.entrySet()) {
+                envArray.add(variable.getKey() + "=" + variable.getValue());
+            }
+            containerConfig.add("Env", envArray);
+        }
+        if (entrypoint != null) {
+            containerConfig.add("Entrypoint", gson.toJsonTree(entrypoint));
+            containerConfig.remove("Cmd");
+        }
+        if (workingDir != null) {
+            containerConfig.addProperty("WorkingDir", workingDir);
+        }
+        if (!exposedPorts.isEmpty()) {
+            JsonObject ports = containerConfig.has("ExposedPorts") && containerConfig.get("ExposedPorts").isJsonObject()
+                    ? containerConfig.getAsJsonObject("ExposedPorts") : new JsonObject();
+            for (String port : exposedPorts) {
+                ports.add(port, new JsonObject());
+            }
+            containerConfig.add("ExposedPorts", ports);
+        }
+        config.add("config", containerConfig);
+
+        JsonArray diffIds = new JsonArray();
+        JsonArray history = new JsonArray();
+        if (baseConfig != null) {
+            diffIds.addAll(baseConfig.getAsJsonObject("rootfs").getAsJsonArray("diff_ids"));
+            if (baseConfig.has("history")) {
+                history.addAll(baseConfig.getAsJsonArray("history"));
+            }
+        }
+        for (int i = 0; i < layerBlobs.size(); i++) {
+            diffIds.add(layerBlobs.get(i).diffId);
+            JsonObject layerHistory = new JsonObject();
+            layerHistory.addProperty("created", CREATED);
+            layerHistory.addProperty("created_by", "boost: " + layers.get(i).getName());
+            history.add(layerHistory);
+        }
+        JsonObject rootfs = new JsonObject();
+        rootfs.addProperty("type", "layers");
+        rootfs.add("diff_ids", diffIds);
+        config.add("rootfs", rootfs);
+        config.add("history", history);
+        return config;
+    }
+
+    private JsonObject createIndex(Blob manifestBlob, String reference) {
+        JsonObject manifestDescriptor = descriptor(MANIFEST_MEDIA_TYPE, manifestBlob);
+        JsonObject annotations = new JsonObject();
+        annotations.addProperty("org.opencontainers.image.ref.name", getTag(reference));
+        manifestDescriptor.add("annotations", annotations);
+
+        JsonObject index = new JsonObject();
+        index.addProperty("schemaVersion", 2);
+        index.addProperty("mediaType", INDEX_MEDIA_TYPE);
+        JsonArray manifests = new JsonArray();
+        manifests.add(manifestDescriptor);
+        index.add("manifests", manifests);
+        return index;
+    }
+
+    /**
+     * The manifest that docker load reads, so that the archive can also be
+     * loaded into a local daemon.
+     */
+    private JsonArray createDockerManifest(Blob configBlob, JsonArray manifestLayers, String reference)
+            throws IOException {
+        JsonObject image = new JsonObject();
+        image.addProperty("Config", BLOBS + hex(configBlob.digest));
+        JsonArray repoTags = new JsonArray();
+        repoTags.add(reference);
+        image.add("RepoTags", repoTags);
+        JsonArray layerFiles = new JsonArray();
+        for (JsonElement layer : manifestLayers) {
+            layerFiles.add(BLOBS + hex(layer.getAsJsonObject().get("digest").getAsString()));
+        }
+        image.add("Layers", layerFiles);
+
+        JsonArray dockerManifest = new JsonArray();
+        dockerManifest.add(image);
+        return dockerManifest;
+    }
+
+    /**
+     * Read the manifest of the base image. When the layout holds an image index,
+     * the linux/amd64 image is used, or else the first one.
+     */
+    private JsonObject readBaseManifest() throws IOException {
+        JsonObject index = readJson(new File(baseImage, "index.json"));
+        while (true) {
+            JsonArray manifests = index.getAsJsonArray("manifests");
+            if (manifests == null || manifests.size() == 0) {
+                throw new IOException("The base image " + baseImage + " holds no image");
+            }
+            JsonObject selected = manifests.get(0).getAsJsonObject();
+            for (JsonElement manifest : manifests) {
+                JsonObject platform = manifest.getAsJsonObject().getAsJsonObject("platform");
+                if (platform != null && "linux".equals(platform.get("os").getAsString())
+                        && "amd64".equals(platform.get("architecture").getAsString())) {
+                    selected = manifest.getAsJsonObject();
+                    break;
+                }
+            }
+
+            JsonObject manifest = readJson(getBaseBlob(selected));
+            if (!manifest.has("manifests")) {
+                return manifest;
+            }
+            index = manifest;
+        }
+    }
+
+    private File getBaseBlob(JsonObject descriptor) throws IOException {
+        String digest = descriptor.get("digest").getAsString();
+        File blob = new File(baseImage, BLOBS + hex(digest));
+        if (!blob.isFile()) {
+            throw new IOException("The base image " + baseImage + " has no blob " + digest);
+        }
+        return blob;
+    }
+
+    private static JsonObject readJson(File file) throws IOException {
+        try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            return new JsonParser().parse(reader).getAsJsonObject();
+        } catch (JsonParseException | IllegalStateException e) {
+            throw new IOException("Unable to read " + file, e);
+        }
+    }
+
+    private static JsonObject descriptor(String mediaType, Blob blob) {
+        JsonObject descriptor = new JsonObject();
+        descriptor.addProperty("mediaType", mediaType);
+        descriptor.addProperty("digest", blob.digest);
+        descriptor.addProperty("size", blob.size);
+        return descriptor;
+    }
+
+    private static String getTag(String reference) {
+        int tag = reference.lastIndexOf(':');
+        return tag > reference.lastIndexOf('/') ? reference.substring(tag + 1) : "latest";
+    }
+
+    private static String hex(String digest) throws IOException {
+        if (!digest.startsWith("sha256:")) {
+            throw new IOException("Unsupported digest " + digest);
+        }
+        return digest.substring("sha256:".length());
+    }
+
+    private static String sha256(byte[] content) throws IOException {
+        return "sha256:" + BoostUtil.sha256(new ByteArrayInputStream(content));
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : bytes) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    private static class Blob {
+        private final String digest;
+        private final long size;
+        private final String diffId;
+        private final File file;
+
+        private Blob(String digest, long size, String diffId) {
+            this(digest, size, diffId, null);
+        }
+
+        private Blob(String digest, long size, String diffId, File file) {
+            this.digest = digest;
+            this.size = size;
+            this.diffId = diffId;
+            this.file = file;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.microshed.boost.common.image;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Writes a POSIX tar archive whose entries carry no time, owner or host
+ * specific metadata, so that the same content always gives the same bytes.
+ *
+ * Every entry is owned by root and dated at the epoch. Names longer than the
+ * ustar header allows are written with a pax extended header.
+ */
+class TarWriter implements Closeable {
+
+    private static final int BLOCK = 512;
+    private static final long MAX_SIZE = 077777777777L;
+
+    private final OutputStream out;
+
+    TarWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    void addDirectory(String name) throws IOException {
+        writeHeader(name.endsWith("/") ? name : name + "/", 0755, 0, '5', "");
+    }
+
+    void addFile(String name, File file, boolean executable) throws IOException {
+        long size = file.length();
+        writeHeader(name, executable ? 0755 : 0644, size, '0', "");
+        long written = Files.copy(file.toPath(), out);
+        if (written != size) {
+            throw new IOException(file + " changed while it was added to the archive");
+        }
+        pad(written);
+    }
+
+    void addFile(String name, byte[] content) throws IOException {
+        writeHeader(name, 0644, content.length, '0', "");
+        out.write(content);
+        pad(content.length);
+    }
+
+    void addSymbolicLink(String name, String target) throws IOException {
+        writeHeader(name, 0777, 0, '2', target);
+    }
+
+    /**
+     * Write the end of archive marker. The underlying stream is not closed.
+     */
+    @Override
+    public void close() throws IOException {
+        out.write(new byte[BLOCK * 2]);
+        out.flush();
+    }
+
+    private void writeHeader(String name, int mode, long size, char type, String linkName) throws IOException {
+        if (size > MAX_SIZE) {
+            throw new IOException(name + " is too large to be added to the archive");
+        }
+
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        byte[] linkBytes = linkName.getBytes(StandardCharsets.UTF_8);
+        if (nameBytes.length > 100 || linkBytes.length > 100) {
+            StringBuilder records = new StringBuilder();
+            if (nameBytes.length > 100) {
+                records.append(paxRecord("path", name));
+            }
+            if (linkBytes.length > 100) {
+                records.append(paxRecord("linkpath", linkName));
+            }
+            byte[] pax = records.toString().getBytes(StandardCharsets.UTF_8);
+            out.write(header(truncate(nameBytes), 0644, pax.length, 'x', new byte[0]));
+            out.write(pax);
+            pad(pax.length);
+        }
+        out.write(header(truncate(nameBytes), mode, size, type, truncate(linkBytes)));
+    }
+
+    private static byte[] header(byte[] name, int mode, long size, char type, byte[] linkName) {
+        byte[] header = new byte[BLOCK];
+        System.arraycopy(name, 0, header, 0, name.length);
+        octal(header, 100, 8, mode);
+        octal(header, 108, 8, 0);
+        octal(header, 116, 8, 0);
+        octal(header, 124, 12, size);
+        octal(header, 136, 12, 0);
+        header[156] = (byte) type;
+        System.arraycopy(linkName, 0, header, 157, linkName.length);
+        System.arraycopy("ustar\0".getBytes(StandardCharsets.US_ASCII), 0, header, 257, 6);
+        header[263] = '0';
+        header[264] = '0';
+
+        // The checksum is computed with its own field filled with spaces
+        for (int i = 148; i < 156; i++) {
+            header[i] = ' ';
+        }
+        long checksum = 0;
+        for (byte b : header) {
+            checksum += b & 0xff;
+        }
+        octal(header, 148, 7, checksum);
+        return header;
+    }
+
+    /**
+     * A pax record is prefixed by its own length in bytes, including the length.
+     */
+    private static String paxRecord(String key, String value) {
+        int length = key.getBytes(StandardCharsets.UTF_8).length + value.getBytes(StandardCharsets.UTF_8).length + 3;
+        int total = length + String.valueOf(length).length();
+        if (String.valueOf(total).length() != String.valueOf(length).length()) {
+            total++;
+        }
+        return total + " " + key + "=" + value + "\n";
+    }
+
+    private static byte[] truncate(byte[] value) {
+        if (value.length <= 100) {
+            return value;
+        }
+        byte[] truncated = new byte[100];
+        System.arraycopy(value, 0, truncated, 0, 100);
+        return truncated;
+    }
+
+    /**
+     * Write a zero padded, NUL terminated octal number.
+     */
+    private static void octal(byte[] header, int offset, int length, long value) {
+        String digits = Long.toOctalString(value);
+        int start = offset + length - 1 - digits.length();
+        for (int i = offset; i < start; i++) {
+            header[i] = '0';
+        }
+        System.arraycopy(digits.getBytes(StandardCharsets.US_ASCII), 0, header, start, digits.length());
+        header[offset + length - 1] = 0;
+    }
+
+    private void pad(long size) throws IOException {
+        int remainder = (int) (size % BLOCK);
+        if (remainder != 0) {
+            out.write(new byte[BLOCK - remainder]);
+        }
+    }
+}
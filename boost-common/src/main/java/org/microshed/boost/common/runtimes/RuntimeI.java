@@ -11,6 +11,7 @@
 package org.microshed.boost.common.runtimes;
 
 import org.microshed.boost.common.BoostException;
+import org.microshed.boost.common.image.OciImageWriter;
 
 public abstract interface RuntimeI {
     
@@ -24,4 +25,21 @@ public abstract interface RuntimeI {
     
     public void doStop() throws BoostException;
 
+    /**
+     * @return the directory of the packaged server
+     */
+    public String getServerPath();
+
+    /**
+     * @return the coordinates of the runtime installed into the server, as
+     *         groupId:artifactId:extension[:classifier]:version
+     */
+    public String getRuntimeArtifact();
+
+    /**
+     * Add the layers of the packaged server to an image, and run the server
+     * when a container starts.
+     */
+    public void addImageLayers(OciImageWriter image) throws BoostException;
+
 }
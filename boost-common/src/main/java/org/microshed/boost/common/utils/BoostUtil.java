@@ -11,18 +11,75 @@
 
 package org.microshed.boost.common.utils;
 
+import java.io.EOFException;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.jar.JarFile;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
+import java.util.zip.ZipFile;
 
 import org.microshed.boost.common.BoostLoggerI;
 
 public class BoostUtil {
 
+    /**
+     * Size above which the entries of an archive are extracted in parallel.
+     */
+    public static final long PARALLEL_EXTRACT_SIZE = 1024 * 1024;
+
+    /**
+     * Suffix of the temporary files that files are written through.
+     */
+    public static final String TMP_SUFFIX = ".tmp";
+
+    private static final long EXTRACT_CHUNK_SIZE = 8 * 1024 * 1024;
+
+    // Zip central directory records, see the APPNOTE of the zip format
+    private static final int ZIP_END_SIGNATURE = 0x06054b50;
+    private static final int ZIP_END_SIZE = 22;
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int ZIP64_LOCATOR_SIZE = 20;
+    private static final int ZIP64_END_SIZE = 56;
+    private static final int ZIP_ENTRY_SIGNATURE = 0x02014b50;
+    private static final int ZIP_ENTRY_SIZE = 46;
+    private static final int ZIP_UNIX = 3;
+
     public static boolean isNotNullOrEmpty(String s) {
         return s != null && !s.isEmpty();
     }
@@ -39,40 +96,403 @@ public class BoostUtil {
         return isLibertyJar;
     }
 
-    public static void extract(File artifact, File projectDirectory, String dependencyFolder) {
-        File extractDir = new File(projectDirectory.getPath() + File.separator + dependencyFolder);
-        if (!extractDir.exists())
-            extractDir.mkdirs();
+    /**
+     * Extract an archive into a folder of a directory.
+     *
+     * Entries are read from the archive with random access. Entries larger than
+     * {@link #PARALLEL_EXTRACT_SIZE} are written in parallel into files sized up
+     * front, while the smaller entries are written by the calling thread. An
+     * entry that resolves outside of the extract directory fails the
+     * extraction.
+     *
+     * An existing file is replaced rather than written into, so that a hard
+     * link into a shared cache is never modified. The Unix permissions recorded
+     * in the archive are restored where the file system supports them.
+     *
+     * @throws IOException
+     *             if the archive can not be read, an entry can not be written,
+     *             or an entry is outside of the extract directory
+     */
+    public static void extract(File artifact, File projectDirectory, String dependencyFolder) throws IOException {
+        final Path extractDir = new File(projectDirectory.getPath() + File.separator + dependencyFolder).toPath()
+                .toAbsolutePath().normalize();
+        Files.createDirectories(extractDir);
 
-        try {
-            byte[] buffer = new byte[1024];
-            ZipInputStream zis = new ZipInputStream(new FileInputStream(artifact));
-            ZipEntry ze = zis.getNextEntry();
-            while (ze != null) {
-                File newFile = new File(extractDir, ze.getName());
-                if (ze.isDirectory()) {
-                    newFile.mkdirs();
+        try (final ZipFile zip = new ZipFile(artifact)) {
+            Map<ZipEntry, Path> largeEntries = new LinkedHashMap<ZipEntry, Path>();
+            Map<ZipEntry, Path> smallEntries = new LinkedHashMap<ZipEntry, Path>();
+
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                Path target = extractDir.resolve(entry.getName()).normalize();
+                if (!target.startsWith(extractDir)) {
+                    throw new IOException("The entry " + entry.getName() + " of " + artifact
+                            + " is outside of the extract directory " + extractDir);
+                }
+                if (entry.isDirectory()) {
+                    Files.createDirectories(target);
                 } else {
-                    new File(newFile.getParent()).mkdirs();
-                    FileOutputStream fos = new FileOutputStream(newFile);
-                    int len;
-                    while ((len = zis.read(buffer)) > 0) {
-                        fos.write(buffer, 0, len);
+                    Files.createDirectories(target.getParent());
+                    if (entry.getSize() > PARALLEL_EXTRACT_SIZE) {
+                        largeEntries.put(entry, target);
+                    } else {
+                        smallEntries.put(entry, target);
                     }
-                    fos.close();
                 }
-                ze = zis.getNextEntry();
             }
-            // close last ZipEntry
-            zis.closeEntry();
-            zis.close();
-        } catch (IOException e) {
-            e.printStackTrace();
+
+            if (largeEntries.isEmpty()) {
+                extractEntries(zip, smallEntries);
+            } else {
+                extractInParallel(artifact, zip, largeEntries, smallEntries);
+            }
+        }
+
+        if (Files.getFileStore(extractDir).supportsFileAttributeView(PosixFileAttributeView.class)) {
+            for (Map.Entry<String, Integer> mode : readUnixModes(artifact).entrySet()) {
+                Path target = extractDir.resolve(mode.getKey()).normalize();
+                if (target.startsWith(extractDir) && Files.isRegularFile(target, LinkOption.NOFOLLOW_LINKS)) {
+                    Files.setPosixFilePermissions(target, toPermissions(mode.getValue()));
+                }
+            }
+        }
+    }
+
+    private static void extractInParallel(File artifact, final ZipFile zip, Map<ZipEntry, Path> largeEntries,
+            Map<ZipEntry, Path> smallEntries) throws IOException {
+        int threads = Math.min(largeEntries.size(), Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Void>> results = new ArrayList<Future<Void>>();
+            for (final Map.Entry<ZipEntry, Path> entry : largeEntries.entrySet()) {
+                results.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws IOException {
+                        extractEntry(zip, entry.getKey(), entry.getValue());
+                        return null;
+                    }
+                }));
+            }
+            extractEntries(zip, smallEntries);
+
+            for (Future<Void> result : results) {
+                try {
+                    result.get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof IOException) {
+                        throw (IOException) e.getCause();
+                    }
+                    throw new IOException("Unable to extract " + artifact, e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while extracting " + artifact);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void extractEntries(ZipFile zip, Map<ZipEntry, Path> entries) throws IOException {
+        for (Map.Entry<ZipEntry, Path> entry : entries.entrySet()) {
+            extractEntry(zip, entry.getKey(), entry.getValue());
+        }
+    }
+
+    private static void extractEntry(ZipFile zip, ZipEntry entry, Path target) throws IOException {
+        // Never write through a hard link to a file of a shared cache
+        Files.deleteIfExists(target);
+        try (ReadableByteChannel in = Channels.newChannel(zip.getInputStream(entry));
+                RandomAccessFile file = new RandomAccessFile(target.toFile(), "rw")) {
+            long size = entry.getSize();
+            if (size >= 0) {
+                file.setLength(size);
+            }
+            FileChannel out = file.getChannel();
+            long position = 0;
+            long transferred;
+            while ((transferred = out.transferFrom(in, position, EXTRACT_CHUNK_SIZE)) > 0) {
+                position += transferred;
+            }
+            file.setLength(position);
+        }
+    }
+
+    /**
+     * Read the Unix permissions of the entries of an archive from its central
+     * directory, which ZipFile does not expose.
+     *
+     * @return the permission bits by entry name, for the entries made on Unix
+     */
+    static Map<String, Integer> readUnixModes(File artifact) throws IOException {
+        Map<String, Integer> modes = new HashMap<String, Integer>();
+        try (FileChannel channel = FileChannel.open(artifact.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            int tailSize = (int) Math.min(size, ZIP_END_SIZE + 0xFFFF);
+            ByteBuffer tail = readFully(channel, size - tailSize, tailSize);
+            int end = tailSize - ZIP_END_SIZE;
+            while (end >= 0 && tail.getInt(end) != ZIP_END_SIGNATURE) {
+                end--;
+            }
+            if (end < 0) {
+                throw new IOException(artifact + " is not a zip file");
+            }
+
+            long entryCount = tail.getShort(end + 10) & 0xFFFF;
+            long directorySize = tail.getInt(end + 12) & 0xFFFFFFFFL;
+            long directoryOffset = tail.getInt(end + 16) & 0xFFFFFFFFL;
+            int locator = end - ZIP64_LOCATOR_SIZE;
+            if (locator >= 0 && tail.getInt(locator) == ZIP64_LOCATOR_SIGNATURE) {
+                ByteBuffer zip64End = readFully(channel, tail.getLong(locator + 8), ZIP64_END_SIZE);
+                entryCount = zip64End.getLong(32);
+                directorySize = zip64End.getLong(40);
+                directoryOffset = zip64End.getLong(48);
+            }
+            if (directorySize > Integer.MAX_VALUE) {
+                throw new IOException("The central directory of " + artifact + " is too large");
+            }
+
+            ByteBuffer directory = readFully(channel, directoryOffset, (int) directorySize);
+            int position = 0;
+            for (long i = 0; i < entryCount; i++) {
+                if (directory.getInt(position) != ZIP_ENTRY_SIGNATURE) {
+                    throw new IOException("The central directory of " + artifact + " is not valid");
+                }
+                int madeBy = (directory.getShort(position + 4) & 0xFFFF) >> 8;
+                int nameLength = directory.getShort(position + 28) & 0xFFFF;
+                int extraLength = directory.getShort(position + 30) & 0xFFFF;
+                int commentLength = directory.getShort(position + 32) & 0xFFFF;
+                int mode = directory.getInt(position + 38) >>> 16;
+                if (madeBy == ZIP_UNIX && mode != 0) {
+                    byte[] name = new byte[nameLength];
+                    directory.position(position + ZIP_ENTRY_SIZE);
+                    directory.get(name);
+                    modes.put(new String(name, StandardCharsets.UTF_8), mode & 0777);
+                }
+                position += ZIP_ENTRY_SIZE + nameLength + extraLength + commentLength;
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("The central directory of " + artifact + " is not valid", e);
+        }
+        return modes;
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException();
+            }
         }
+        buffer.flip();
+        return buffer;
+    }
 
+    private static Set<PosixFilePermission> toPermissions(int mode) {
+        PosixFilePermission[] bits = { PosixFilePermission.OTHERS_EXECUTE, PosixFilePermission.OTHERS_WRITE,
+                PosixFilePermission.OTHERS_READ, PosixFilePermission.GROUP_EXECUTE, PosixFilePermission.GROUP_WRITE,
+                PosixFilePermission.GROUP_READ, PosixFilePermission.OWNER_EXECUTE, PosixFilePermission.OWNER_WRITE,
+                PosixFilePermission.OWNER_READ };
+        Set<PosixFilePermission> permissions = EnumSet.noneOf(PosixFilePermission.class);
+        for (int i = 0; i < bits.length; i++) {
+            if ((mode & (1 << i)) != 0) {
+                permissions.add(bits[i]);
+            }
+        }
+        return permissions;
     }
 
     public static String makeVariable(String propertyName) {
         return "${" + propertyName + "}";
     }
+
+    /**
+     * Convert a Liberty duration to whole seconds, rounding up so that a
+     * timeout below a second is not disabled.
+     */
+    public static long toSeconds(String duration) {
+        long millis = toMillis(duration);
+        return millis < 0 ? -1 : TimeUnit.MILLISECONDS.toSeconds(millis + 999);
+    }
+
+    /**
+     * Convert a Liberty duration, such as 30s, 1h30m, 2d or -1, to
+     * milliseconds. A number without a unit is in seconds.
+     */
+    public static long toMillis(String duration) {
+        String value = duration.trim();
+        if (value.matches("-?\\d+")) {
+            long seconds = Long.parseLong(value);
+            return seconds < 0 ? -1 : seconds * 1000;
+        }
+
+        Matcher matcher = Pattern.compile("(\\d+)(ms|d|h|m|s)").matcher(value);
+        long millis = 0;
+        int end = 0;
+        while (matcher.find() && matcher.start() == end) {
+            long amount = Long.parseLong(matcher.group(1));
+            String unit = matcher.group(2);
+            if (unit.equals("d")) {
+                millis += TimeUnit.DAYS.toMillis(amount);
+            } else if (unit.equals("h")) {
+                millis += TimeUnit.HOURS.toMillis(amount);
+            } else if (unit.equals("m")) {
+                millis += TimeUnit.MINUTES.toMillis(amount);
+            } else if (unit.equals("s")) {
+                millis += TimeUnit.SECONDS.toMillis(amount);
+            } else {
+                millis += amount;
+            }
+            end = matcher.end();
+        }
+        if (end == 0 || end != value.length()) {
+            throw new IllegalArgumentException("The duration " + duration + " is not valid");
+        }
+        return millis;
+    }
+
+    /**
+     * Copy a file unless the target already has the same content.
+     *
+     * @return true if the file was copied
+     */
+    public static boolean copyIfChanged(File source, File target) throws IOException {
+        return placeIfChanged(source, target, false);
+    }
+
+    /**
+     * Place a file unless the target already has the same content.
+     *
+     * When link is true the target is created as a hard link to the source, so
+     * that no bytes are copied. The source must then never be written through
+     * the target. If the file system can not link the two files, for example
+     * because they are on different devices, or when link is false, the file is
+     * copied with FileChannel.transferTo and the copy is verified against the
+     * SHA-256 of the source.
+     *
+     * @return true if the file was placed
+     */
+    public static boolean placeIfChanged(File source, File target, boolean link) throws IOException {
+        Path sourcePath = source.toPath();
+        Path targetPath = target.toPath();
+
+        if (Files.isRegularFile(targetPath)) {
+            if (Files.isSameFile(sourcePath, targetPath)
+                    || (target.length() == source.length() && sha256(target).equals(sha256(source)))) {
+                return false;
+            }
+        }
+
+        Files.createDirectories(targetPath.getParent());
+        if (link && createLink(sourcePath, targetPath)) {
+            return true;
+        }
+
+        Path tmp = Files.createTempFile(targetPath.getParent(), target.getName(), TMP_SUFFIX);
+        try {
+            try (FileChannel in = FileChannel.open(sourcePath, StandardOpenOption.READ);
+                    FileChannel out = FileChannel.open(tmp, StandardOpenOption.WRITE,
+                            StandardOpenOption.TRUNCATE_EXISTING)) {
+                long size = in.size();
+                long position = 0;
+                while (position < size) {
+                    position += in.transferTo(position, size - position, out);
+                }
+            }
+
+            String sourceHash = sha256(source);
+            if (!sha256(tmp.toFile()).equals(sourceHash)) {
+                throw new IOException("The copy of " + source + " to " + target + " does not match its checksum");
+            }
+            Files.move(tmp, targetPath, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        return true;
+    }
+
+    /**
+     * Write a file through a temporary file in the same directory, so that other
+     * builds sharing the directory never read a partial file.
+     */
+    public static void writeAtomically(Path target, String content) throws IOException {
+        Path tmp = Files.createTempFile(target.getParent(), target.getFileName().toString(), TMP_SUFFIX);
+        try {
+            Files.write(tmp, content.getBytes(StandardCharsets.UTF_8));
+            try {
+                Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Replace the target with a hard link to the source.
+     *
+     * @return false if the file system does not support the link
+     */
+    private static boolean createLink(Path source, Path target) throws IOException {
+        Path tmp = target.resolveSibling(target.getFileName() + ".link.tmp");
+        try {
+            Files.deleteIfExists(tmp);
+            Files.createLink(tmp, source);
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+            return true;
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            return false;
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Return the hex encoded SHA-256 of a string.
+     */
+    public static String sha256(String value) {
+        MessageDigest digest = newDigest();
+        return toHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Return the hex encoded SHA-256 of the contents of a file.
+     */
+    public static String sha256(File file) throws IOException {
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            return sha256(in);
+        }
+    }
+
+    /**
+     * Return the hex encoded SHA-256 of the remaining contents of a stream.
+     */
+    public static String sha256(InputStream in) throws IOException {
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[64 * 1024];
+        int len;
+        while ((len = in.read(buffer)) != -1) {
+            digest.update(buffer, 0, len);
+        }
+        return toHex(digest.digest());
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
 }
@@ -0,0 +1,180 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.microshed.boost.common.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+
+import org.microshed.boost.common.BoostLoggerI;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+/**
+ * Time and memory spent in each phase of a Boost goal.
+ *
+ * Phases are timed with System.nanoTime. The bytes allocated by the thread
+ * running a phase are recorded where the JVM supports it, and are -1
+ * otherwise. Work that a phase hands to other threads is timed but its
+ * allocations are not counted.
+ */
+public class BuildMetrics {
+
+    /**
+     * Where the package goal writes its metrics, relative to the build
+     * directory. See {@link #getLocation(String)} for the other goals.
+     */
+    public static final String LOCATION = "boost/build-metrics.json";
+
+    private final String goal;
+    private final String startTime;
+    private long totalMillis;
+    private final List<Phase> phases = Collections.synchronizedList(new ArrayList<Phase>());
+
+    private final transient long startNanos;
+
+    public BuildMetrics(String goal) {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        this.goal = goal;
+        this.startTime = format.format(new Date());
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * Get where a goal writes its metrics, relative to the build directory. Each
+     * goal has a file of its own, so that a goal run after package, such as
+     * image, does not replace the metrics of the package goal.
+     */
+    public static String getLocation(String goal) {
+        if ("package".equals(goal)) {
+            return LOCATION;
+        }
+        return "boost/build-metrics-" + goal + ".json";
+    }
+
+    /**
+     * Start timing a phase. The phase is recorded when it is closed, whether or
+     * not it completes.
+     */
+    public Phase start(String name) {
+        return new Phase(this, name);
+    }
+
+    public List<Phase> getPhases() {
+        synchronized (phases) {
+            return new ArrayList<Phase>(phases);
+        }
+    }
+
+    /**
+     * Write the metrics as JSON.
+     */
+    public void write(File file) throws IOException {
+        totalMillis = toMillis(System.nanoTime() - startNanos);
+        Files.createDirectories(file.getParentFile().toPath());
+        Gson gson = new GsonBuilder().setPrettyPrinting().create();
+        try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            gson.toJson(this, writer);
+        }
+    }
+
+    /**
+     * Log a table of the phases and the time and memory they took.
+     */
+    public void logSummary(BoostLoggerI logger) {
+        List<Phase> recorded = getPhases();
+        if (recorded.isEmpty()) {
+            return;
+        }
+
+        logger.info("Boost " + goal + " phases:");
+        logger.info(String.format("  %-24s %10s %14s", "Phase", "Time (ms)", "Allocated (MB)"));
+        for (Phase phase : recorded) {
+            String allocated = phase.allocatedBytes < 0 ? "-"
+                    : String.format("%.1f", phase.allocatedBytes / (1024.0 * 1024.0));
+            logger.info(String.format("  %-24s %10d %14s", phase.name, phase.durationMillis, allocated));
+        }
+        logger.info(String.format("  %-24s %10d", "total", toMillis(System.nanoTime() - startNanos)));
+    }
+
+    private static long toMillis(long nanos) {
+        return nanos / 1000000L;
+    }
+
+    private static long getAllocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+            if (allocations.isThreadAllocatedMemorySupported() && allocations.isThreadAllocatedMemoryEnabled()) {
+                return allocations.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * A phase being timed, recorded in its metrics when closed.
+     */
+    public static class Phase implements AutoCloseable {
+
+        private final String name;
+        private long durationMillis;
+        private long allocatedBytes;
+
+        private final transient BuildMetrics metrics;
+        private final transient long startNanos;
+        private final transient long startAllocatedBytes;
+
+        private Phase(BuildMetrics metrics, String name) {
+            this.metrics = metrics;
+            this.name = name;
+            this.startAllocatedBytes = getAllocatedBytes();
+            this.startNanos = System.nanoTime();
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getDurationMillis() {
+            return durationMillis;
+        }
+
+        /**
+         * @return the bytes allocated by the thread running the phase, or -1 if
+         *         they are not known
+         */
+        public long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+
+        @Override
+        public void close() {
+            durationMillis = toMillis(System.nanoTime() - startNanos);
+            long endAllocatedBytes = BuildMetrics.getAllocatedBytes();
+            allocatedBytes = startAllocatedBytes < 0 || endAllocatedBytes < 0 ? -1
+                    : endAllocatedBytes - startAllocatedBytes;
+            metrics.phases.add(this);
+        }
+    }
+}
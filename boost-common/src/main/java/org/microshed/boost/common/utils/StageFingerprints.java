@@ -0,0 +1,152 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.microshed.boost.common.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import org.microshed.boost.common.BoostLoggerI;
+
+/**
+ * Records the fingerprint of each stage of a package, so that stages whose
+ * inputs and outputs are unchanged since the previous build can be skipped.
+ *
+ * A stage is identified by a fingerprint of its inputs, combined with the size
+ * and modification time of the files it produces. Stages run in order and build
+ * on the output of the stages before them, so once a stage runs, every later
+ * stage runs too.
+ */
+public class StageFingerprints {
+
+    public static final String LOCATION = "boost/stages.properties";
+
+    private final File file;
+    private final boolean incremental;
+    private final BoostLoggerI logger;
+    private final Properties fingerprints = new Properties();
+    private boolean stale;
+
+    /**
+     * @param file
+     *            where the fingerprints are stored
+     * @param incremental
+     *            whether stages may be skipped. Fingerprints are still recorded
+     *            when false, for the next incremental build.
+     * @param logger
+     */
+    public StageFingerprints(File file, boolean incremental, BoostLoggerI logger) {
+        this.file = file;
+        this.incremental = incremental;
+        this.logger = logger;
+        this.stale = !incremental;
+
+        if (file.isFile()) {
+            try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+                fingerprints.load(reader);
+            } catch (IOException | IllegalArgumentException e) {
+                logger.debug("Unable to read stage fingerprints from " + file, e);
+                fingerprints.clear();
+            }
+        }
+    }
+
+    /**
+     * Combine the inputs of a stage into a single fingerprint.
+     */
+    public static String fingerprint(Object... inputs) {
+        StringBuilder content = new StringBuilder();
+        for (Object input : inputs) {
+            content.append(input).append('\n');
+        }
+        return BoostUtil.sha256(content.toString());
+    }
+
+    /**
+     * Fingerprint of a set of properties that does not depend on their order.
+     */
+    public static String fingerprint(Properties properties) {
+        StringBuilder content = new StringBuilder();
+        for (Map.Entry<Object, Object> property : new TreeMap<Object, Object>(properties).entrySet()) {
+            content.append(property.getKey()).append('=').append(property.getValue()).append('\n');
+        }
+        return BoostUtil.sha256(content.toString());
+    }
+
+    /**
+     * Whether a stage can be skipped. If it can not, its previous fingerprint is
+     * forgotten until it completes again, so that a failed stage is not skipped
+     * on the next build.
+     *
+     * @param stage
+     * @param inputs
+     *            fingerprint of the stage inputs
+     * @param outputs
+     *            files or directories produced by the stage
+     */
+    public boolean isUpToDate(String stage, String inputs, File... outputs) {
+        if (!stale && getFingerprint(inputs, outputs).equals(fingerprints.getProperty(stage))) {
+            logger.info("Skipping the " + stage + " stage, its inputs have not changed.");
+            return true;
+        }
+
+        stale = true;
+        if (fingerprints.remove(stage) != null) {
+            save();
+        }
+        return false;
+    }
+
+    /**
+     * Record that a stage completed with the given inputs.
+     */
+    public void completed(String stage, String inputs, File... outputs) {
+        fingerprints.setProperty(stage, getFingerprint(inputs, outputs));
+        save();
+    }
+
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    private String getFingerprint(String inputs, File... outputs) {
+        StringBuilder content = new StringBuilder(inputs).append('\n');
+        for (File output : outputs) {
+            content.append(output.getAbsolutePath()).append(':');
+            if (output.isFile()) {
+                content.append(output.length()).append(':').append(output.lastModified());
+            } else if (output.isDirectory()) {
+                content.append("dir");
+            } else {
+                content.append("missing");
+            }
+            content.append('\n');
+        }
+        return BoostUtil.sha256(content.toString());
+    }
+
+    private void save() {
+        try {
+            Files.createDirectories(file.getParentFile().toPath());
+            try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+                fingerprints.store(writer, null);
+            }
+        } catch (IOException e) {
+            logger.debug("Unable to write stage fingerprints to " + file, e);
+        }
+    }
+}
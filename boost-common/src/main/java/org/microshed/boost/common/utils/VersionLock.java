@@ -0,0 +1,191 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.microshed.boost.common.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+import org.microshed.boost.common.BoostLoggerI;
+
+/**
+ * Records the concrete version each runtime version range resolved to, so that
+ * later builds reuse it instead of fetching the remote repository metadata
+ * again.
+ *
+ * A locked version is reused while the range it was resolved from is unchanged
+ * and it is younger than the time to live, unless an update is requested. An
+ * expired version is still available as a fallback for when the range can not
+ * be resolved, for example on a build agent without network access.
+ *
+ * The file is only rewritten when a version or range changes, so that a lock
+ * file committed with the project stays unchanged. The time the ranges were
+ * last resolved is the modification time of the file.
+ */
+public class VersionLock {
+
+    public static final String LOCATION = "boost.lock";
+
+    private static final String RANGE = ".range";
+    private static final String VERSION = ".version";
+    // Written by earlier versions, the modification time of the file is used
+    // instead
+    private static final String RESOLVED = ".resolved";
+    private static final String COMMENT = "# Versions resolved by Boost, delete or run with -Dboost.updateLock to update";
+
+    private final File file;
+    private final long ttlMillis;
+    private final boolean update;
+    private final BoostLoggerI logger;
+    private final Properties versions = new Properties();
+    private long resolvedMillis;
+    // Keys resolved again by this build
+    private final Set<String> resolvedKeys = new HashSet<String>();
+
+    /**
+     * @param file
+     *            where the locked versions are stored
+     * @param ttlMillis
+     *            how long a locked version is reused before the range is
+     *            resolved again, or a negative value to reuse it until an update
+     *            is requested
+     * @param update
+     *            whether every range is resolved again in this build
+     * @param logger
+     */
+    public VersionLock(File file, long ttlMillis, boolean update, BoostLoggerI logger) {
+        this.file = file;
+        this.ttlMillis = ttlMillis;
+        this.update = update;
+        this.logger = logger;
+
+        if (file.isFile()) {
+            try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+                versions.load(reader);
+                resolvedMillis = file.lastModified();
+            } catch (IOException | IllegalArgumentException e) {
+                logger.debug("Unable to read locked versions from " + file, e);
+                versions.clear();
+            }
+        }
+    }
+
+    /**
+     * Whether a version is a range, which has to be resolved against the
+     * repositories.
+     */
+    public static boolean isRange(String version) {
+        return version != null && (version.startsWith("[") || version.startsWith("("));
+    }
+
+    /**
+     * The version locked for a range, unless it expired or an update was
+     * requested.
+     *
+     * @param key
+     *            identifies the artifact, such as groupId:artifactId
+     * @param range
+     * @return the locked version, or null if the range has to be resolved
+     */
+    public synchronized String getVersion(String key, String range) {
+        if (update && !resolvedKeys.contains(key)) {
+            return null;
+        }
+
+        String version = getExpiredVersion(key, range);
+        if (version == null) {
+            return null;
+        }
+
+        if (ttlMillis >= 0 && !resolvedKeys.contains(key)) {
+            // Every range of the file expires at the same time, so that they
+            // are all resolved again in the same build
+            if (System.currentTimeMillis() - resolvedMillis > ttlMillis) {
+                logger.debug("The locked version " + version + " of " + key + " expired");
+                return null;
+            }
+        }
+        return version;
+    }
+
+    /**
+     * The version locked for a range, however old it is.
+     *
+     * @return the locked version, or null if the range was never resolved
+     */
+    public synchronized String getExpiredVersion(String key, String range) {
+        if (!range.equals(versions.getProperty(key + RANGE))) {
+            return null;
+        }
+        return versions.getProperty(key + VERSION);
+    }
+
+    /**
+     * Lock the version a range resolved to. The file is only rewritten if the
+     * version or the range changed, otherwise only its modification time is
+     * updated.
+     */
+    public synchronized void setVersion(String key, String range, String version) {
+        resolvedKeys.add(key);
+        try {
+            if (range.equals(versions.getProperty(key + RANGE)) && version.equals(versions.getProperty(key + VERSION))
+                    && file.isFile()) {
+                Files.setLastModifiedTime(file.toPath(), FileTime.fromMillis(System.currentTimeMillis()));
+                return;
+            }
+
+            logger.info("Locked " + key + " " + range + " to version " + version + " in " + file);
+            versions.setProperty(key + RANGE, range);
+            versions.setProperty(key + VERSION, version);
+            save();
+        } catch (IOException e) {
+            logger.warn("Unable to write the locked versions to " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Write the versions sorted by key, without the date comment of
+     * Properties.store, so that the same versions always give the same file.
+     */
+    private void save() throws IOException {
+        Properties stored = new Properties();
+        for (String key : versions.stringPropertyNames()) {
+            if (!key.endsWith(RESOLVED)) {
+                stored.setProperty(key, versions.getProperty(key));
+            }
+        }
+        StringWriter writer = new StringWriter();
+        stored.store(writer, null);
+
+        List<String> lines = new ArrayList<String>();
+        for (String line : writer.toString().split("\\R")) {
+            // Skip the date comment
+            if (!line.startsWith("#") && !line.isEmpty()) {
+                lines.add(line);
+            }
+        }
+        Collections.sort(lines);
+        lines.add(0, COMMENT);
+
+        Files.createDirectories(file.getAbsoluteFile().getParentFile().toPath());
+        Files.write(file.toPath(), lines, StandardCharsets.UTF_8);
+    }
+}
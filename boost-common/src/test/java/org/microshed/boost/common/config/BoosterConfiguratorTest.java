@@ -0,0 +1,176 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.microshed.boost.common.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.microshed.boost.common.BoostException;
+import org.microshed.boost.common.BoostLoggerI;
+import org.microshed.boost.common.boosters.AbstractBoosterConfig;
+import org.microshed.boost.common.boosters.CDIBoosterConfig;
+import org.microshed.boost.common.utils.QuietLogger;
+
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.CtNewConstructor;
+
+public class BoosterConfiguratorTest {
+
+    private static final String RUNTIME_BOOSTER = "test.runtime.RuntimeCDIBoosterConfig";
+
+    private static final int ITERATIONS = 1000;
+
+    // Heap that repeated discoveries may retain, well below what leaking one
+    // class loader and class pool per discovery would add up to
+    private static final long MAX_HEAP_GROWTH = 4 * 1024 * 1024;
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    private final BoostLoggerI logger = QuietLogger.getInstance();
+
+    private Map<String, String> dependencies;
+
+    @Before
+    public void setUp() throws Exception {
+        dependencies = new HashMap<String, String>();
+        dependencies.put(AbstractBoosterConfig.getCoordinates(CDIBoosterConfig.class), "0.1");
+    }
+
+    @Test
+    public void testRuntimeBoosterFoundInScannedJar() throws Exception {
+        File runtimeJar = createRuntimeJar(RUNTIME_BOOSTER);
+
+        try (URLClassLoader classLoader = newProjectClassLoader(runtimeJar)) {
+            List<AbstractBoosterConfig> boosterConfigs = discover(runtimeJar, classLoader);
+
+            assertEquals(1, boosterConfigs.size());
+            assertEquals(RUNTIME_BOOSTER, boosterConfigs.get(0).getClass().getName());
+        }
+
+        assertNull("Discovery should not use the JVM wide class pool",
+                ClassPool.getDefault().getOrNull(RUNTIME_BOOSTER));
+    }
+
+    @Test
+    public void testUnreadableClassFileIsSkipped() throws Exception {
+        File runtimeJar = createRuntimeJar(RUNTIME_BOOSTER, "broken/Truncated.class");
+
+        try (URLClassLoader classLoader = newProjectClassLoader(runtimeJar)) {
+            List<AbstractBoosterConfig> boosterConfigs = discover(runtimeJar, classLoader);
+
+            assertEquals(1, boosterConfigs.size());
+            assertEquals(RUNTIME_BOOSTER, boosterConfigs.get(0).getClass().getName());
+        }
+    }
+
+    /**
+     * Run discovery repeatedly in the same JVM, as a long-lived Maven process
+     * would, each time against a different runtime booster class. Check that
+     * neither the project class loaders nor the classes inspected are retained.
+     */
+    @Test
+    public void testRepeatedDiscoveryDoesNotRetainHeap() throws Exception {
+        List<WeakReference<ClassLoader>> classLoaders = new ArrayList<WeakReference<ClassLoader>>();
+        long baseline = 0;
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            if (i == ITERATIONS / 10) {
+                // Measure once class loading and JIT have warmed up
+                baseline = usedHeapAfterGc();
+            }
+
+            File runtimeJar = createRuntimeJar(RUNTIME_BOOSTER + i);
+            try (URLClassLoader classLoader = newProjectClassLoader(runtimeJar)) {
+                assertEquals(1, discover(runtimeJar, classLoader).size());
+                classLoaders.add(new WeakReference<ClassLoader>(classLoader));
+            }
+            runtimeJar.delete();
+        }
+
+        long growth = usedHeapAfterGc() - baseline;
+        assertTrue("Heap grew by " + growth + " bytes over " + ITERATIONS + " discoveries",
+                growth < MAX_HEAP_GROWTH);
+
+        int retained = 0;
+        for (WeakReference<ClassLoader> classLoader : classLoaders) {
+            if (classLoader.get() != null) {
+                retained++;
+            }
+        }
+        assertEquals("Project class loaders retained after discovery", 0, retained);
+    }
+
+    /**
+     * Create a runtime jar containing a runtime specific CDI booster. The jar has
+     * no booster index, so discovery has to scan it. Any extra class entries are
+     * written with truncated contents.
+     */
+    private File createRuntimeJar(String className, String... truncatedEntries) throws Exception {
+        ClassPool classPool = new ClassPool(true);
+        CtClass ctClass = classPool.makeClass(className, classPool.get(CDIBoosterConfig.class.getName()));
+        ctClass.addConstructor(CtNewConstructor.make("public " + ctClass.getSimpleName() + "("
+                + BoosterConfigParams.class.getName() + " params, " + BoostLoggerI.class.getName() + " logger) "
+                + "throws " + BoostException.class.getName() + " { super(params, logger); }", ctClass));
+        byte[] bytecode = ctClass.toBytecode();
+
+        File runtimeJar = tempDir.newFile(ctClass.getSimpleName() + ".jar");
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(runtimeJar))) {
+            out.putNextEntry(new JarEntry(className.replace('.', '/') + ".class"));
+            out.write(bytecode);
+            out.closeEntry();
+            for (String truncatedEntry : truncatedEntries) {
+                out.putNextEntry(new JarEntry(truncatedEntry));
+                out.write(bytecode, 0, 16);
+                out.closeEntry();
+            }
+        }
+        return runtimeJar;
+    }
+
+    private URLClassLoader newProjectClassLoader(File runtimeJar) throws Exception {
+        return new URLClassLoader(new URL[] { runtimeJar.toURI().toURL() }, getClass().getClassLoader());
+    }
+
+    private List<AbstractBoosterConfig> discover(File runtimeJar, ClassLoader classLoader) throws Exception {
+        return BoosterConfigurator.getBoosterConfigs(Collections.singletonList(runtimeJar), classLoader,
+                dependencies, new Properties(), logger);
+    }
+
+    private static long usedHeapAfterGc() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.microshed.boost.common.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.microshed.boost.common.BoostLoggerI;
+import org.microshed.boost.common.utils.BoostUtil;
+import org.microshed.boost.common.utils.QuietLogger;
+
+public class BoosterDiscoveryCacheTest {
+
+    private static final String GENERIC_BOOSTER = "org.microshed.boost.common.boosters.CDIBoosterConfig";
+    private static final String RUNTIME_BOOSTER = "test.runtime.RuntimeCDIBoosterConfig";
+
+    private static final int THREADS = 8;
+    private static final int MAX_ENTRIES = 10;
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    private final BoostLoggerI logger = QuietLogger.getInstance();
+
+    private File cacheDir;
+
+    @Before
+    public void setUp() throws Exception {
+        cacheDir = tempDir.newFolder();
+    }
+
+    @Test
+    public void testGetReturnsPutBoosters() throws Exception {
+        BoosterDiscoveryCache cache = new BoosterDiscoveryCache(cacheDir, logger);
+        File jar = createJar("runtime.jar");
+
+        assertNull(cache.get(jar));
+        cache.put(jar, Collections.singletonMap(GENERIC_BOOSTER, RUNTIME_BOOSTER));
+
+        assertEquals(Collections.singletonMap(GENERIC_BOOSTER, RUNTIME_BOOSTER), cache.get(jar));
+    }
+
+    @Test
+    public void testEntryFromAnotherVersionIsIgnored() throws Exception {
+        BoosterDiscoveryCache cache = new BoosterDiscoveryCache(cacheDir, logger);
+        File jar = createJar("runtime.jar");
+
+        String entry = "# another-version\n" + GENERIC_BOOSTER + " " + RUNTIME_BOOSTER + "\n";
+        Files.write(getEntry(jar).toPath(), entry.getBytes(StandardCharsets.UTF_8));
+
+        assertNull(cache.get(jar));
+    }
+
+    @Test
+    public void testParallelPutsOfSameJar() throws Exception {
+        final BoosterDiscoveryCache cache = new BoosterDiscoveryCache(cacheDir, logger);
+        final File jar = createJar("runtime.jar");
+        final Map<String, String> runtimeBoosters = Collections.singletonMap(GENERIC_BOOSTER, RUNTIME_BOOSTER);
+
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<Map<String, String>>> results = new ArrayList<Future<Map<String, String>>>();
+            for (int i = 0; i < THREADS; i++) {
+                results.add(executor.submit(new Callable<Map<String, String>>() {
+                    @Override
+                    public Map<String, String> call() throws Exception {
+                        start.await();
+                        cache.put(jar, runtimeBoosters);
+                        return cache.get(jar);
+                    }
+                }));
+            }
+            start.countDown();
+
+            // Every reader sees a complete entry, never a partial one
+            for (Future<Map<String, String>> result : results) {
+                assertEquals(runtimeBoosters, result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, new File(cacheDir, "jars").list().length);
+        assertEquals(1, new File(cacheDir, "paths").list().length);
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsedEntries() throws Exception {
+        BoosterDiscoveryCache cache = new BoosterDiscoveryCache(cacheDir, MAX_ENTRIES, logger);
+
+        List<File> jars = new ArrayList<File>();
+        for (int i = 0; i < MAX_ENTRIES + 2; i++) {
+            File jar = createJar("runtime-" + i + ".jar");
+            cache.put(jar, Collections.singletonMap(GENERIC_BOOSTER, RUNTIME_BOOSTER + i));
+            jars.add(jar);
+        }
+
+        // Put is not responsible for eviction
+        assertEquals(MAX_ENTRIES + 2, new File(cacheDir, "jars").list().length);
+
+        // Age the entries in the order they were put, then use the oldest one
+        long lastUsed = System.currentTimeMillis() - 3600000;
+        for (File jar : jars) {
+            getEntry(jar).setLastModified(lastUsed);
+            lastUsed += 1000;
+        }
+        assertNotNull(cache.get(jars.get(0)));
+
+        cache.evict();
+
+        // Down to 90% of the maximum, the least recently used entries go first
+        assertEquals(MAX_ENTRIES * 9 / 10, new File(cacheDir, "jars").list().length);
+        assertNotNull(cache.get(jars.get(0)));
+        for (int i = 1; i <= 3; i++) {
+            assertNull(jars.get(i) + " should have been evicted", cache.get(jars.get(i)));
+        }
+        for (int i = 4; i < jars.size(); i++) {
+            assertEquals(Collections.singletonMap(GENERIC_BOOSTER, RUNTIME_BOOSTER + i), cache.get(jars.get(i)));
+        }
+    }
+
+    private File createJar(String name) throws Exception {
+        File jar = tempDir.newFile(name);
+        Files.write(jar.toPath(), name.getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(jar.toPath(), FileTime.fromMillis(1000000000000L));
+        return jar;
+    }
+
+    private File getEntry(File jar) throws Exception {
+        return new File(new File(cacheDir, "jars"), BoostUtil.sha256(jar));
+    }
+}
@@ -0,0 +1,111 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.microshed.boost.common.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.microshed.boost.common.boosters.CDIBoosterConfig;
+
+public class BoosterIndexProcessorTest {
+
+    private static final String GENERIC_BOOSTER = "test.boosters.TestBoosterConfig";
+    private static final String RUNTIME_BOOSTER = "test.runtime.RuntimeCDIBoosterConfig";
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    @Test
+    public void testIndexIsWritten() throws Exception {
+        File classesDir = compile(
+                source(GENERIC_BOOSTER,
+                        "@org.microshed.boost.common.boosters.AbstractBoosterConfig.BoosterCoordinates(\"test.boosters:test\")",
+                        "public class TestBoosterConfig extends org.microshed.boost.common.boosters.AbstractBoosterConfig {",
+                        "    public TestBoosterConfig() { super(\"1.0\"); }",
+                        "    public java.util.List<String> getDependencies() { return null; }",
+                        "}"),
+                source(RUNTIME_BOOSTER,
+                        "public class RuntimeCDIBoosterConfig extends " + CDIBoosterConfig.class.getName() + " {",
+                        "    public RuntimeCDIBoosterConfig() throws Exception { super(null, null); }",
+                        "}"),
+                source("test.runtime.NotABooster", "public class NotABooster {", "}"));
+
+        File indexFile = new File(classesDir, BoosterIndex.LOCATION);
+        assertTrue(BoosterIndex.LOCATION + " was not written", indexFile.isFile());
+
+        BoosterIndex index = new BoosterIndex();
+        try (Reader reader = new InputStreamReader(Files.newInputStream(indexFile.toPath()),
+                StandardCharsets.UTF_8)) {
+            index.load(reader);
+        }
+        assertEquals("test.boosters:test", index.getGenericBoosters().get(GENERIC_BOOSTER));
+        assertEquals(RUNTIME_BOOSTER, index.getRuntimeBoosters().get(CDIBoosterConfig.class.getName()));
+        assertEquals(2, index.getGenericBoosters().size());
+        assertEquals(1, index.getRuntimeBoosters().size());
+    }
+
+    @Test
+    public void testNoIndexWithoutBoosters() throws Exception {
+        File classesDir = compile(source("test.runtime.NotABooster", "public class NotABooster {", "}"));
+
+        assertFalse(new File(classesDir, BoosterIndex.LOCATION).exists());
+    }
+
+    /**
+     * Compile sources with the booster index processor, as the boost-common
+     * and runtime builds do.
+     *
+     * @return the class output directory
+     */
+    private File compile(File... sources) throws Exception {
+        File classesDir = tempDir.newFolder();
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null,
+                StandardCharsets.UTF_8)) {
+            Iterable<? extends JavaFileObject> units = fileManager.getJavaFileObjectsFromFiles(Arrays.asList(sources));
+            List<String> options = Arrays.asList("-d", classesDir.getAbsolutePath(), "-classpath",
+                    System.getProperty("java.class.path"), "-processor", BoosterIndexProcessor.class.getName());
+            assertTrue("Compilation failed", compiler.getTask(null, fileManager, null, options, null, units).call());
+        }
+        return classesDir;
+    }
+
+    private File source(String className, String... lines) throws Exception {
+        int lastDot = className.lastIndexOf('.');
+        File source = new File(tempDir.getRoot(), "src/" + className.replace('.', '/') + ".java");
+        source.getParentFile().mkdirs();
+
+        StringBuilder content = new StringBuilder("package " + className.substring(0, lastDot) + ";\n");
+        for (String line : lines) {
+            content.append(line).append('\n');
+        }
+        Files.write(source.toPath(), Collections.singletonList(content.toString()), StandardCharsets.UTF_8);
+        return source;
+    }
+}
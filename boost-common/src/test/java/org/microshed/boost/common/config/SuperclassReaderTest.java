@@ -0,0 +1,163 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.microshed.boost.common.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class SuperclassReaderTest {
+
+    private static final String CLASS_NAME = "test/runtime/RuntimeCDIBoosterConfig";
+    private static final String SUPERCLASS_NAME = "org/microshed/boost/common/boosters/CDIBoosterConfig";
+
+    @Test
+    public void testEveryConstantTag() throws Exception {
+        byte[] classFile = createClassFile(true);
+
+        assertEquals(SUPERCLASS_NAME.replace('/', '.'), read(classFile));
+    }
+
+    @Test
+    public void testNoSuperclass() throws Exception {
+        byte[] classFile = createClassFile(false);
+
+        assertNull(read(classFile));
+    }
+
+    @Test
+    public void testCompiledClass() throws Exception {
+        try (InputStream in = getClass().getResourceAsStream(getClass().getSimpleName() + ".class")) {
+            assertEquals(Object.class.getName(), SuperclassReader.readSuperclassName(in));
+        }
+    }
+
+    @Test(expected = EOFException.class)
+    public void testTruncatedConstantPool() throws Exception {
+        byte[] classFile = createClassFile(true);
+
+        // Ends in the middle of the constant pool
+        read(Arrays.copyOf(classFile, 40));
+    }
+
+    @Test(expected = EOFException.class)
+    public void testTruncatedHeader() throws Exception {
+        byte[] classFile = createClassFile(true);
+
+        // Ends after this_class, before super_class
+        read(Arrays.copyOf(classFile, classFile.length - 1));
+    }
+
+    @Test(expected = IOException.class)
+    public void testNotAClassFile() throws Exception {
+        read(new byte[] { 'P', 'K', 3, 4, 0, 0, 0, 0 });
+    }
+
+    @Test(expected = IOException.class)
+    public void testUnknownConstantTag() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0xCAFEBABE);
+        out.writeShort(0);
+        out.writeShort(52);
+        out.writeShort(2);
+        out.writeByte(2);
+        out.flush();
+
+        read(bytes.toByteArray());
+    }
+
+    private static String read(byte[] classFile) throws IOException {
+        return SuperclassReader.readSuperclassName(new ByteArrayInputStream(classFile));
+    }
+
+    /**
+     * Create a class file with one constant of every tag, that ends right after
+     * its super_class.
+     */
+    private static byte[] createClassFile(boolean hasSuperclass) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        out.writeInt(0xCAFEBABE);
+        out.writeShort(0); // minor_version
+        out.writeShort(55); // major_version
+
+        out.writeShort(22); // constant_pool_count
+        // #1 Utf8, #2 Class
+        out.writeByte(1);
+        out.writeUTF(CLASS_NAME);
+        out.writeByte(7);
+        out.writeShort(1);
+        // #3 Utf8, #4 Class
+        out.writeByte(1);
+        out.writeUTF(SUPERCLASS_NAME);
+        out.writeByte(7);
+        out.writeShort(3);
+        // #5 Integer, #6 Float
+        out.writeByte(3);
+        out.writeInt(42);
+        out.writeByte(4);
+        out.writeFloat(4.2f);
+        // #7 Long and #9 Double, each taking up two entries
+        out.writeByte(5);
+        out.writeLong(42L);
+        out.writeByte(6);
+        out.writeDouble(4.2d);
+        // #11 String
+        out.writeByte(8);
+        out.writeShort(1);
+        // #12 Fieldref, #13 Methodref, #14 InterfaceMethodref
+        for (int tag = 9; tag <= 11; tag++) {
+            out.writeByte(tag);
+            out.writeShort(2);
+            out.writeShort(15);
+        }
+        // #15 NameAndType
+        out.writeByte(12);
+        out.writeShort(1);
+        out.writeShort(3);
+        // #16 MethodHandle
+        out.writeByte(15);
+        out.writeByte(6);
+        out.writeShort(13);
+        // #17 MethodType
+        out.writeByte(16);
+        out.writeShort(3);
+        // #18 Dynamic, #19 InvokeDynamic
+        for (int tag = 17; tag <= 18; tag++) {
+            out.writeByte(tag);
+            out.writeShort(0);
+            out.writeShort(15);
+        }
+        // #20 Module, #21 Package
+        out.writeByte(19);
+        out.writeShort(1);
+        out.writeByte(20);
+        out.writeShort(3);
+
+        out.writeShort(0x0021); // access_flags
+        out.writeShort(2); // this_class
+        out.writeShort(hasSuperclass ? 4 : 0); // super_class
+
+        out.flush();
+        return bytes.toByteArray();
+    }
+}
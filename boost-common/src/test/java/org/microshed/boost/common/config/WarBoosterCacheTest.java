@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.microshed.boost.common.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.microshed.boost.common.BoostLoggerI;
+import org.microshed.boost.common.utils.BoostUtil;
+import org.microshed.boost.common.utils.QuietLogger;
+
+public class WarBoosterCacheTest {
+
+    private static final String WAR = "org.example:app:1.0";
+    private static final String OTHER_WAR = "org.example:other:1.0";
+    private static final String CDI_BOOSTER = "org.microshed.boost.boosters:cdi";
+    private static final String JAXRS_BOOSTER = "org.microshed.boost.boosters:jaxrs";
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    private final BoostLoggerI logger = QuietLogger.getInstance();
+
+    private File cacheDir;
+
+    @Before
+    public void setUp() throws Exception {
+        cacheDir = tempDir.newFolder();
+    }
+
+    @Test
+    public void testGetReturnsPutBoosters() throws Exception {
+        WarBoosterCache cache = new WarBoosterCache(cacheDir, logger);
+        Map<String, String> boosters = new LinkedHashMap<String, String>();
+        boosters.put(CDI_BOOSTER, "2.0-0.2.2");
+        boosters.put(JAXRS_BOOSTER, "2.1-0.2.2");
+
+        assertNull(cache.get(WAR));
+        cache.put(WAR, boosters);
+
+        assertEquals(boosters, cache.get(WAR));
+        assertEquals(boosters, new WarBoosterCache(cacheDir, logger).get(WAR));
+    }
+
+    @Test
+    public void testWarWithoutBoostersIsCached() throws Exception {
+        WarBoosterCache cache = new WarBoosterCache(cacheDir, logger);
+        cache.put(WAR, Collections.<String, String> emptyMap());
+
+        assertEquals(Collections.<String, String> emptyMap(), cache.get(WAR));
+    }
+
+    @Test
+    public void testHashCollisionIsIgnored() throws Exception {
+        WarBoosterCache cache = new WarBoosterCache(cacheDir, logger);
+
+        // An entry at the hash of one war that records another war
+        File entry = new File(new File(cacheDir, "wars"), BoostUtil.sha256(WAR));
+        Files.write(entry.toPath(), (OTHER_WAR + "\n" + CDI_BOOSTER + " 2.0-0.2.2\n").getBytes(StandardCharsets.UTF_8));
+
+        assertNull(cache.get(WAR));
+    }
+
+    @Test
+    public void testSnapshotsAreNotCacheable() {
+        assertTrue(WarBoosterCache.isCacheable("1.0"));
+        assertTrue(WarBoosterCache.isCacheable("1.0-M1"));
+        assertFalse(WarBoosterCache.isCacheable("1.0-SNAPSHOT"));
+    }
+
+    @Test
+    public void testEntryIsReadAgainAfterRewrite() throws Exception {
+        WarBoosterCache cache = new WarBoosterCache(cacheDir, logger);
+        WarBoosterCache otherBuild = new WarBoosterCache(cacheDir, logger);
+        cache.put(WAR, Collections.singletonMap(CDI_BOOSTER, "2.0-0.2.2"));
+        assertEquals(Collections.singletonMap(CDI_BOOSTER, "2.0-0.2.2"), otherBuild.get(WAR));
+
+        // Another build replaces the entry through a temporary file
+        otherBuild.put(WAR, Collections.singletonMap(JAXRS_BOOSTER, "2.1-0.2.2"));
+
+        assertEquals(Collections.singletonMap(JAXRS_BOOSTER, "2.1-0.2.2"), cache.get(WAR));
+        assertEquals(1, new File(cacheDir, "wars").list().length);
+    }
+}
@@ -0,0 +1,223 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.microshed.boost.common.image;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.microshed.boost.common.BoostLoggerI;
+import org.microshed.boost.common.utils.QuietLogger;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+public class OciImageWriterTest {
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    private final BoostLoggerI logger = QuietLogger.getInstance();
+
+    private File installDir;
+    private File runtimeZip;
+
+    @Before
+    public void setUp() throws Exception {
+        File root = tempDir.newFolder();
+        installDir = new File(root, "liberty/wlp");
+        write(new File(installDir, "lib/kernel.jar"), "kernel");
+        write(new File(installDir, "lib/features/jaxrs-2.1.mf"), "jaxrs");
+        write(new File(installDir, ".boost-runtime"), "marker");
+
+        File serverDir = new File(installDir, "usr/servers/defaultServer");
+        write(new File(serverDir, "server.xml"), "<server/>");
+        write(new File(serverDir, "resources/derby.jar"), "derby");
+        write(new File(serverDir, "logs/messages.log"), "started");
+
+        File war = new File(serverDir, "apps/app.war");
+        war.getParentFile().mkdirs();
+        try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(war))) {
+            addEntry(zip, "WEB-INF/classes/App.class", "app");
+            addEntry(zip, "WEB-INF/lib/library.jar", "library");
+        }
+
+        runtimeZip = new File(root, "openliberty-runtime.zip");
+        try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(runtimeZip))) {
+            addEntry(zip, "wlp/lib/kernel.jar", "kernel");
+        }
+    }
+
+    @Test
+    public void testLayersOfALibertyServer() throws Exception {
+        File archive = writeImage(tempDir.newFolder());
+
+        Map<String, byte[]> files = readTar(Files.readAllBytes(archive.toPath()));
+        assertTrue(files.containsKey("oci-layout"));
+        JsonObject index = parse(files.get("index.json"));
+        String manifestDigest = index.getAsJsonArray("manifests").get(0).getAsJsonObject().get("digest")
+                .getAsString();
+        JsonObject manifest = parse(files.get(blob(manifestDigest)));
+        JsonObject config = parse(files.get(blob(manifest.getAsJsonObject("config").get("digest").getAsString())));
+
+        JsonArray history = config.getAsJsonArray("history");
+        List<String> layerNames = new ArrayList<String>();
+        for (int i = 0; i < history.size(); i++) {
+            layerNames.add(history.get(i).getAsJsonObject().get("created_by").getAsString());
+        }
+        assertEquals("[boost: liberty-kernel, boost: liberty-features, boost: booster-resources, "
+                + "boost: libraries, boost: application]", layerNames.toString());
+        assertEquals("[\"/opt/ol/wlp/bin/server\",\"run\",\"defaultServer\"]",
+                config.getAsJsonObject("config").get("Entrypoint").toString());
+
+        JsonArray layers = manifest.getAsJsonArray("layers");
+        Map<String, byte[]> kernel = readLayer(files, layers, 0);
+        assertTrue(kernel.containsKey("opt/ol/wlp/lib/kernel.jar"));
+        assertFalse(kernel.containsKey("opt/ol/wlp/lib/features/jaxrs-2.1.mf"));
+        assertFalse(kernel.containsKey("opt/ol/wlp/.boost-runtime"));
+        assertTrue(readLayer(files, layers, 1).containsKey("opt/ol/wlp/lib/features/jaxrs-2.1.mf"));
+        assertTrue(readLayer(files, layers, 2)
+                .containsKey("opt/ol/wlp/usr/servers/defaultServer/resources/derby.jar"));
+        assertTrue(readLayer(files, layers, 3)
+                .containsKey("opt/ol/wlp/usr/servers/defaultServer/apps/app.war/WEB-INF/lib/library.jar"));
+
+        Map<String, byte[]> application = readLayer(files, layers, 4);
+        assertArrayEquals("app".getBytes(StandardCharsets.UTF_8),
+                application.get("opt/ol/wlp/usr/servers/defaultServer/apps/app.war/WEB-INF/classes/App.class"));
+        assertTrue(application.containsKey("opt/ol/wlp/usr/servers/defaultServer/server.xml"));
+        assertFalse(application.containsKey("opt/ol/wlp/usr/servers/defaultServer/logs/messages.log"));
+        assertFalse(application
+                .containsKey("opt/ol/wlp/usr/servers/defaultServer/apps/app.war/WEB-INF/lib/library.jar"));
+    }
+
+    @Test
+    public void testImagesAreReproducible() throws Exception {
+        File first = writeImage(tempDir.newFolder());
+        // Touch every file, only the content of a layer should matter
+        for (File file : new File[] { new File(installDir, "lib/kernel.jar"),
+                new File(installDir, "usr/servers/defaultServer/server.xml") }) {
+            file.setLastModified(file.lastModified() - 60000);
+        }
+        File second = writeImage(tempDir.newFolder());
+
+        assertArrayEquals(Files.readAllBytes(first.toPath()), Files.readAllBytes(second.toPath()));
+    }
+
+    @Test
+    public void testApplicationChangeOnlyChangesItsLayer() throws Exception {
+        File cacheDir = tempDir.newFolder();
+        JsonArray before = getLayers(writeImage(cacheDir));
+
+        write(new File(installDir, "usr/servers/defaultServer/server.xml"), "<server description=\"changed\"/>");
+        JsonArray after = getLayers(writeImage(cacheDir));
+
+        assertEquals(before.size(), after.size());
+        for (int i = 0; i < before.size() - 1; i++) {
+            assertEquals(before.get(i), after.get(i));
+        }
+        assertNotEquals(before.get(before.size() - 1), after.get(after.size() - 1));
+    }
+
+    private File writeImage(File cacheDir) throws Exception {
+        OciImageWriter image = new OciImageWriter(new File(cacheDir, "layers"), logger);
+        LibertyImageLayers.addLayers(image, installDir, "defaultServer", runtimeZip, new File(cacheDir, "apps"));
+        File archive = new File(cacheDir, "image.tar");
+        image.write(archive, "app:1.0");
+        return archive;
+    }
+
+    private JsonArray getLayers(File archive) throws Exception {
+        Map<String, byte[]> files = readTar(Files.readAllBytes(archive.toPath()));
+        String manifestDigest = parse(files.get("index.json")).getAsJsonArray("manifests").get(0).getAsJsonObject()
+                .get("digest").getAsString();
+        return parse(files.get(blob(manifestDigest))).getAsJsonArray("layers");
+    }
+
+    private Map<String, byte[]> readLayer(Map<String, byte[]> files, JsonArray layers, int layer) throws Exception {
+        byte[] compressed = files.get(blob(layers.get(layer).getAsJsonObject().get("digest").getAsString()));
+        try (InputStream in = new GZIPInputStream(new java.io.ByteArrayInputStream(compressed))) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int len;
+            while ((len = in.read(buffer)) != -1) {
+                out.write(buffer, 0, len);
+            }
+            return readTar(out.toByteArray());
+        }
+    }
+
+    /**
+     * Read the regular files of a tar archive, following pax path records.
+     */
+    private static Map<String, byte[]> readTar(byte[] tar) {
+        Map<String, byte[]> files = new LinkedHashMap<String, byte[]>();
+        String paxPath = null;
+        int offset = 0;
+        while (offset + 512 <= tar.length && tar[offset] != 0) {
+            String name = new String(tar, offset, 100, StandardCharsets.UTF_8).replace("\0", "");
+            long size = Long.parseLong(new String(tar, offset + 124, 11, StandardCharsets.US_ASCII).trim(), 8);
+            char type = (char) tar[offset + 156];
+            byte[] content = new byte[(int) size];
+            System.arraycopy(tar, offset + 512, content, 0, content.length);
+            if (type == 'x') {
+                String record = new String(content, StandardCharsets.UTF_8);
+                paxPath = record.substring(record.indexOf("path=") + 5, record.length() - 1);
+            } else {
+                if (type == '0') {
+                    files.put(paxPath != null ? paxPath : name, content);
+                }
+                paxPath = null;
+            }
+            offset += 512 + ((size + 511) / 512) * 512;
+        }
+        return files;
+    }
+
+    private static String blob(String digest) {
+        return "blobs/sha256/" + digest.substring("sha256:".length());
+    }
+
+    private static JsonObject parse(byte[] json) {
+        return new JsonParser().parse(new String(json, StandardCharsets.UTF_8)).getAsJsonObject();
+    }
+
+    private static void write(File file, String content) throws Exception {
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void addEntry(ZipOutputStream zip, String name, String content) throws Exception {
+        zip.putNextEntry(new ZipEntry(name));
+        zip.write(content.getBytes(StandardCharsets.UTF_8));
+        zip.closeEntry();
+    }
+}
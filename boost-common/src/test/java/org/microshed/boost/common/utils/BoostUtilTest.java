@@ -0,0 +1,217 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.microshed.boost.common.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BoostUtilTest {
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    private File source;
+    private File target;
+
+    @Before
+    public void setUp() throws Exception {
+        source = tempDir.newFile("driver.jar");
+        Files.write(source.toPath(), "driver contents".getBytes(StandardCharsets.UTF_8));
+        target = new File(tempDir.newFolder(), "resources/driver.jar");
+    }
+
+    @Test
+    public void testCopiedFileMatchesSource() throws Exception {
+        assertTrue(BoostUtil.placeIfChanged(source, target, false));
+
+        assertFalse(Files.isSameFile(source.toPath(), target.toPath()));
+        assertEquals(BoostUtil.sha256(source), BoostUtil.sha256(target));
+    }
+
+    @Test
+    public void testLinkedFileIsSource() throws Exception {
+        assertTrue(BoostUtil.placeIfChanged(source, target, true));
+
+        assertTrue(Files.isSameFile(source.toPath(), target.toPath()));
+    }
+
+    @Test
+    public void testUnchangedFileIsNotPlacedAgain() throws Exception {
+        BoostUtil.placeIfChanged(source, target, false);
+
+        assertFalse(BoostUtil.placeIfChanged(source, target, false));
+        assertFalse(BoostUtil.placeIfChanged(source, target, true));
+    }
+
+    @Test
+    public void testChangedFileIsReplaced() throws Exception {
+        BoostUtil.placeIfChanged(source, target, true);
+        Files.delete(source.toPath());
+        Files.write(source.toPath(), "new driver contents".getBytes(StandardCharsets.UTF_8));
+
+        assertTrue(BoostUtil.placeIfChanged(source, target, false));
+        assertEquals(BoostUtil.sha256(source), BoostUtil.sha256(target));
+    }
+
+    @Test
+    public void testExtract() throws Exception {
+        byte[] large = new byte[(int) BoostUtil.PARALLEL_EXTRACT_SIZE * 2 + 1];
+        Arrays.fill(large, (byte) 'x');
+        File zip = createZip(new String[] { "wlp/lib/large.jar", "wlp/lib/other.jar", "wlp/README.TXT" },
+                new byte[][] { large, large, "readme".getBytes(StandardCharsets.UTF_8) });
+        File extractDir = tempDir.newFolder();
+
+        BoostUtil.extract(zip, extractDir, "liberty");
+
+        assertEquals(large.length, new File(extractDir, "liberty/wlp/lib/large.jar").length());
+        assertEquals(large.length, new File(extractDir, "liberty/wlp/lib/other.jar").length());
+        assertEquals("readme", new String(
+                Files.readAllBytes(new File(extractDir, "liberty/wlp/README.TXT").toPath()), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testExtractRejectsEntriesOutsideOfDirectory() throws Exception {
+        File zip = createZip(new String[] { "../escaped.txt" },
+                new byte[][] { "escaped".getBytes(StandardCharsets.UTF_8) });
+        File extractDir = tempDir.newFolder();
+
+        try {
+            BoostUtil.extract(zip, extractDir, "liberty");
+            fail("The entry outside of the extract directory was extracted");
+        } catch (IOException e) {
+            assertFalse(new File(extractDir, "escaped.txt").exists());
+        }
+    }
+
+    @Test
+    public void testExtractDoesNotWriteThroughLinks() throws Exception {
+        File zip = createZip(new String[] { "wlp/lib/driver.jar" },
+                new byte[][] { "new driver contents".getBytes(StandardCharsets.UTF_8) });
+        File extractDir = tempDir.newFolder();
+        File linked = new File(extractDir, "wlp/lib/driver.jar");
+        linked.getParentFile().mkdirs();
+        Files.createLink(linked.toPath(), source.toPath());
+
+        BoostUtil.extract(zip, extractDir, "");
+
+        assertEquals("new driver contents",
+                new String(Files.readAllBytes(linked.toPath()), StandardCharsets.UTF_8));
+        assertEquals("driver contents", new String(Files.readAllBytes(source.toPath()), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testExtractRestoresUnixModes() throws Exception {
+        File zip = createZip(new String[] { "wlp/bin/server", "wlp/lib/kernel.jar" },
+                new byte[][] { "#!/bin/sh".getBytes(StandardCharsets.UTF_8),
+                        "kernel".getBytes(StandardCharsets.UTF_8) });
+        setUnixMode(zip, "wlp/bin/server", 0100750);
+        File extractDir = tempDir.newFolder();
+        if (!Files.getFileStore(extractDir.toPath()).supportsFileAttributeView(PosixFileAttributeView.class)) {
+            return;
+        }
+
+        assertEquals(Integer.valueOf(0750), BoostUtil.readUnixModes(zip).get("wlp/bin/server"));
+        assertFalse(BoostUtil.readUnixModes(zip).containsKey("wlp/lib/kernel.jar"));
+
+        BoostUtil.extract(zip, extractDir, "");
+
+        assertEquals(PosixFilePermissions.fromString("rwxr-x---"),
+                Files.getPosixFilePermissions(new File(extractDir, "wlp/bin/server").toPath()));
+    }
+
+    @Test
+    public void testToMillis() {
+        assertEquals(30000, BoostUtil.toMillis("30"));
+        assertEquals(30000, BoostUtil.toMillis("30s"));
+        assertEquals(250, BoostUtil.toMillis("250ms"));
+        assertEquals(5400000, BoostUtil.toMillis("1h30m"));
+        assertEquals(172800000, BoostUtil.toMillis("2d"));
+        assertEquals(93784005, BoostUtil.toMillis("1d2h3m4s5ms"));
+        assertEquals(0, BoostUtil.toMillis("0"));
+        assertEquals(-1, BoostUtil.toMillis("-1"));
+        assertEquals(-1, BoostUtil.toMillis("-5"));
+        assertEquals(60000, BoostUtil.toMillis(" 1m "));
+    }
+
+    @Test
+    public void testToMillisRejectsInvalidDurations() {
+        for (String duration : new String[] { "", "s", "1x", "1.5s", "30s ago", "m30", "-1s" }) {
+            try {
+                BoostUtil.toMillis(duration);
+                fail("The duration " + duration + " was accepted");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testToSeconds() {
+        assertEquals(30, BoostUtil.toSeconds("30s"));
+        assertEquals(90, BoostUtil.toSeconds("1m30s"));
+        assertEquals(86400, BoostUtil.toSeconds("1d"));
+        // Rounded up, so that a timeout below a second is not disabled
+        assertEquals(1, BoostUtil.toSeconds("1ms"));
+        assertEquals(2, BoostUtil.toSeconds("1500ms"));
+        assertEquals(0, BoostUtil.toSeconds("0"));
+        assertEquals(-1, BoostUtil.toSeconds("-1"));
+    }
+
+    private File createZip(String[] names, byte[][] contents) throws IOException {
+        File zip = tempDir.newFile();
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip))) {
+            for (int i = 0; i < names.length; i++) {
+                out.putNextEntry(new ZipEntry(names[i]));
+                out.write(contents[i]);
+                out.closeEntry();
+            }
+        }
+        return zip;
+    }
+
+    /**
+     * Mark an entry of a zip as made on Unix with a mode, which
+     * ZipOutputStream can not write.
+     */
+    private void setUnixMode(File zip, String name, int mode) throws IOException {
+        byte[] bytes = Files.readAllBytes(zip.toPath());
+        ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i + 46 + nameBytes.length <= bytes.length; i++) {
+            if (buffer.getInt(i) == 0x02014b50 && buffer.getShort(i + 28) == nameBytes.length
+                    && name.equals(new String(bytes, i + 46, nameBytes.length, StandardCharsets.UTF_8))) {
+                buffer.putShort(i + 4, (short) (3 << 8 | 20));
+                buffer.putInt(i + 38, mode << 16);
+            }
+        }
+        Files.write(zip.toPath(), bytes);
+    }
+}
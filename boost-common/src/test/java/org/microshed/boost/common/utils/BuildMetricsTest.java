@@ -0,0 +1,77 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.microshed.boost.common.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+public class BuildMetricsTest {
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    @Test
+    public void testPhasesAreRecordedWhenClosed() throws Exception {
+        BuildMetrics metrics = new BuildMetrics("package");
+        try (BuildMetrics.Phase phase = metrics.start("create")) {
+            Thread.sleep(5);
+        }
+        try {
+            try (BuildMetrics.Phase phase = metrics.start("deploy")) {
+                throw new IllegalStateException("deploy failed");
+            }
+        } catch (IllegalStateException e) {
+            // The failed phase is still recorded
+        }
+
+        assertEquals(2, metrics.getPhases().size());
+        assertEquals("create", metrics.getPhases().get(0).getName());
+        assertTrue(metrics.getPhases().get(0).getDurationMillis() >= 5);
+        assertEquals("deploy", metrics.getPhases().get(1).getName());
+    }
+
+    @Test
+    public void testEachGoalHasItsOwnLocation() {
+        assertEquals(BuildMetrics.LOCATION, BuildMetrics.getLocation("package"));
+        assertEquals("boost/build-metrics-image.json", BuildMetrics.getLocation("image"));
+    }
+
+    @Test
+    public void testWrite() throws Exception {
+        BuildMetrics metrics = new BuildMetrics("package");
+        try (BuildMetrics.Phase phase = metrics.start("create")) {
+        }
+        File file = new File(tempDir.getRoot(), BuildMetrics.LOCATION);
+
+        metrics.write(file);
+
+        try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            JsonObject json = new JsonParser().parse(reader).getAsJsonObject();
+            assertEquals("package", json.get("goal").getAsString());
+            JsonArray phases = json.getAsJsonArray("phases");
+            assertEquals(1, phases.size());
+            assertEquals("create", phases.get(0).getAsJsonObject().get("name").getAsString());
+        }
+    }
+}
@@ -0,0 +1,57 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+
+package org.microshed.boost.common.utils;
+
+import org.microshed.boost.common.BoostLoggerI;
+
+/**
+ * A logger that discards every message, for tests and benchmarks whose output
+ * should not be mixed with log lines.
+ */
+public class QuietLogger implements BoostLoggerI {
+
+    private static final QuietLogger logger = new QuietLogger();
+
+    public static QuietLogger getInstance() {
+        return logger;
+    }
+
+    @Override
+    public void debug(String msg) {
+    }
+
+    @Override
+    public void debug(String msg, Throwable e) {
+    }
+
+    @Override
+    public void debug(Throwable e) {
+    }
+
+    @Override
+    public void warn(String msg) {
+    }
+
+    @Override
+    public void info(String msg) {
+    }
+
+    @Override
+    public void error(String msg) {
+    }
+
+    @Override
+    public boolean isDebugEnabled() {
+        return false;
+    }
+
+}
@@ -0,0 +1,157 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.microshed.boost.common.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.microshed.boost.common.BoostLoggerI;
+
+public class StageFingerprintsTest {
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    private final RecordingLogger logger = new RecordingLogger();
+
+    private File fingerprintsFile;
+    private File output;
+
+    @Before
+    public void setUp() throws Exception {
+        fingerprintsFile = new File(tempDir.newFolder(), StageFingerprints.LOCATION);
+        output = tempDir.newFile("output.txt");
+    }
+
+    @Test
+    public void testUnchangedStagesAreSkipped() throws Exception {
+        runStages("a", "b");
+
+        StageFingerprints stages = new StageFingerprints(fingerprintsFile, true, logger);
+        assertTrue(stages.isUpToDate("first", "a", output));
+        assertTrue(stages.isUpToDate("second", "b"));
+        assertEquals(2, logger.infos.size());
+    }
+
+    @Test
+    public void testLaterStagesRunAfterAChangedStage() throws Exception {
+        runStages("a", "b");
+
+        StageFingerprints stages = new StageFingerprints(fingerprintsFile, true, logger);
+        assertFalse(stages.isUpToDate("first", "changed", output));
+        assertFalse(stages.isUpToDate("second", "b"));
+    }
+
+    @Test
+    public void testChangedOutputIsNotSkipped() throws Exception {
+        runStages("a", "b");
+        Files.write(output.toPath(), "modified by another plugin".getBytes(StandardCharsets.UTF_8));
+
+        StageFingerprints stages = new StageFingerprints(fingerprintsFile, true, logger);
+        assertFalse(stages.isUpToDate("first", "a", output));
+    }
+
+    @Test
+    public void testFailedStageIsNotSkipped() throws Exception {
+        runStages("a", "b");
+
+        // The first stage starts again but does not complete
+        new StageFingerprints(fingerprintsFile, false, logger).isUpToDate("first", "a", output);
+
+        StageFingerprints stages = new StageFingerprints(fingerprintsFile, true, logger);
+        assertFalse(stages.isUpToDate("first", "a", output));
+    }
+
+    @Test
+    public void testNothingIsSkippedWhenNotIncremental() throws Exception {
+        runStages("a", "b");
+
+        StageFingerprints stages = new StageFingerprints(fingerprintsFile, false, logger);
+        assertFalse(stages.isUpToDate("first", "a", output));
+        stages.completed("first", "a", output);
+        assertFalse(stages.isUpToDate("second", "b"));
+        stages.completed("second", "b");
+
+        // Fingerprints are still recorded for the next incremental build
+        stages = new StageFingerprints(fingerprintsFile, true, logger);
+        assertTrue(stages.isUpToDate("first", "a", output));
+    }
+
+    @Test
+    public void testPropertiesFingerprintDoesNotDependOnOrder() {
+        Properties first = new Properties();
+        first.setProperty("boost_http_port", "9080");
+        first.setProperty("boost_db_user", "user");
+        Properties second = new Properties();
+        second.setProperty("boost_db_user", "user");
+        second.setProperty("boost_http_port", "9080");
+
+        assertEquals(StageFingerprints.fingerprint(first), StageFingerprints.fingerprint(second));
+    }
+
+    private void runStages(String firstInputs, String secondInputs) {
+        StageFingerprints stages = new StageFingerprints(fingerprintsFile, true, logger);
+        if (!stages.isUpToDate("first", firstInputs, output)) {
+            stages.completed("first", firstInputs, output);
+        }
+        if (!stages.isUpToDate("second", secondInputs)) {
+            stages.completed("second", secondInputs);
+        }
+        logger.infos.clear();
+    }
+
+    private static class RecordingLogger implements BoostLoggerI {
+
+        private final List<String> infos = new ArrayList<String>();
+
+        @Override
+        public void debug(String msg) {
+        }
+
+        @Override
+        public void debug(String msg, Throwable e) {
+        }
+
+        @Override
+        public void debug(Throwable e) {
+        }
+
+        @Override
+        public void warn(String msg) {
+        }
+
+        @Override
+        public void info(String msg) {
+            infos.add(msg);
+        }
+
+        @Override
+        public void error(String msg) {
+        }
+
+        @Override
+        public boolean isDebugEnabled() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.microshed.boost.common.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.microshed.boost.common.BoostLoggerI;
+
+public class VersionLockTest {
+
+    private static final String KEY = "io.openliberty:openliberty-runtime";
+    private static final String RANGE = "[19.0.0.6,)";
+    private static final long TTL = TimeUnit.HOURS.toMillis(24);
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    private final BoostLoggerI logger = QuietLogger.getInstance();
+
+    private File lockFile;
+
+    @Before
+    public void setUp() throws Exception {
+        lockFile = new File(tempDir.newFolder(), VersionLock.LOCATION);
+    }
+
+    @Test
+    public void testLockedVersionIsReused() throws Exception {
+        new VersionLock(lockFile, TTL, false, logger).setVersion(KEY, RANGE, "19.0.0.9");
+
+        VersionLock lock = new VersionLock(lockFile, TTL, false, logger);
+        assertEquals("19.0.0.9", lock.getVersion(KEY, RANGE));
+        assertNull(lock.getVersion("org.apache.tomee:apache-tomee", RANGE));
+    }
+
+    @Test
+    public void testChangedRangeIsResolvedAgain() throws Exception {
+        new VersionLock(lockFile, TTL, false, logger).setVersion(KEY, RANGE, "19.0.0.9");
+
+        VersionLock lock = new VersionLock(lockFile, TTL, false, logger);
+        assertNull(lock.getVersion(KEY, "[19.0.0.9,)"));
+        assertNull(lock.getExpiredVersion(KEY, "[19.0.0.9,)"));
+    }
+
+    @Test
+    public void testExpiredVersionIsResolvedAgain() throws Exception {
+        new VersionLock(lockFile, TTL, false, logger).setVersion(KEY, RANGE, "19.0.0.9");
+        setResolvedTime(System.currentTimeMillis() - TTL - 1000);
+
+        VersionLock lock = new VersionLock(lockFile, TTL, false, logger);
+        assertNull(lock.getVersion(KEY, RANGE));
+        assertEquals("19.0.0.9", lock.getExpiredVersion(KEY, RANGE));
+
+        // Without a time to live the version is kept until an update
+        assertEquals("19.0.0.9", new VersionLock(lockFile, -1, false, logger).getVersion(KEY, RANGE));
+    }
+
+    @Test
+    public void testUpdateResolvesAgain() throws Exception {
+        new VersionLock(lockFile, TTL, false, logger).setVersion(KEY, RANGE, "19.0.0.9");
+
+        VersionLock lock = new VersionLock(lockFile, TTL, true, logger);
+        assertNull(lock.getVersion(KEY, RANGE));
+        lock.setVersion(KEY, RANGE, "19.0.0.10");
+
+        assertEquals("19.0.0.10", new VersionLock(lockFile, TTL, false, logger).getVersion(KEY, RANGE));
+    }
+
+    @Test
+    public void testUnchangedVersionDoesNotRewriteFile() throws Exception {
+        new VersionLock(lockFile, TTL, false, logger).setVersion(KEY, RANGE, "19.0.0.9");
+        byte[] locked = Files.readAllBytes(lockFile.toPath());
+        setResolvedTime(System.currentTimeMillis() - TTL - 1000);
+
+        // The expired range resolves to the same version
+        VersionLock lock = new VersionLock(lockFile, TTL, false, logger);
+        assertNull(lock.getVersion(KEY, RANGE));
+        lock.setVersion(KEY, RANGE, "19.0.0.9");
+        assertEquals("19.0.0.9", lock.getVersion(KEY, RANGE));
+
+        assertTrue(Arrays.equals(locked, Files.readAllBytes(lockFile.toPath())));
+        // The resolution time is kept as the modification time of the file
+        assertEquals("19.0.0.9", new VersionLock(lockFile, TTL, false, logger).getVersion(KEY, RANGE));
+    }
+
+    @Test
+    public void testLockFileHasNoTimestamps() throws Exception {
+        VersionLock lock = new VersionLock(lockFile, TTL, false, logger);
+        lock.setVersion("org.apache.tomee:apache-tomee", "[8.0.0,)", "8.0.0");
+        lock.setVersion(KEY, RANGE, "19.0.0.9");
+        String content = new String(Files.readAllBytes(lockFile.toPath()), StandardCharsets.UTF_8);
+
+        File otherFile = new File(tempDir.newFolder(), VersionLock.LOCATION);
+        VersionLock other = new VersionLock(otherFile, TTL, false, logger);
+        other.setVersion(KEY, RANGE, "19.0.0.9");
+        other.setVersion("org.apache.tomee:apache-tomee", "[8.0.0,)", "8.0.0");
+
+        // The same versions give the same file, whatever the order and time
+        assertEquals(content, new String(Files.readAllBytes(otherFile.toPath()), StandardCharsets.UTF_8));
+        assertFalse(content.contains(".resolved"));
+        assertEquals(1, content.split("#", -1).length - 1);
+    }
+
+    @Test
+    public void testIsRange() {
+        assertTrue(VersionLock.isRange("[19.0.0.6,)"));
+        assertTrue(VersionLock.isRange("(,8.0.0]"));
+        assertFalse(VersionLock.isRange("8.0.0-M2"));
+        assertFalse(VersionLock.isRange(null));
+    }
+
+    private void setResolvedTime(long time) throws Exception {
+        assertTrue(lockFile.setLastModified(time));
+    }
+}
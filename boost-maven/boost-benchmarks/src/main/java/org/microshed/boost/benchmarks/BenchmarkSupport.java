@@ -0,0 +1,164 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.microshed.boost.benchmarks;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import org.microshed.boost.common.BoostException;
+import org.microshed.boost.common.BoostLoggerI;
+import org.microshed.boost.common.boosters.AbstractBoosterConfig;
+import org.microshed.boost.common.config.BoostProperties;
+import org.microshed.boost.common.config.BoosterConfigParams;
+import org.microshed.boost.common.config.BoosterIndex;
+import org.microshed.boost.common.utils.QuietLogger;
+
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.CtField;
+import javassist.CtNewConstructor;
+import javassist.CtNewMethod;
+
+/**
+ * Fixtures shared by the benchmarks: synthetic project classpaths, booster
+ * dependencies and a logger that discards everything.
+ */
+final class BenchmarkSupport {
+
+    static final String BOOSTER_VERSION = "0.2.2-SNAPSHOT";
+
+    static final BoostLoggerI QUIET_LOGGER = QuietLogger.getInstance();
+
+    private static final String RUNTIME_PACKAGE = "synthetic.runtime.";
+    private static final String LIBRARY_PACKAGE = "synthetic.library";
+
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * The coordinates of every booster known to boost-common, so that all
+     * boosters are enabled.
+     */
+    static Map<String, String> getAllBoosterDependencies() throws IOException {
+        Map<String, String> dependencies = new LinkedHashMap<String, String>();
+        for (String coordinates : getGenericBoosters().values()) {
+            dependencies.put(coordinates, BOOSTER_VERSION);
+        }
+        return dependencies;
+    }
+
+    /**
+     * @return generic booster class name to booster coordinates
+     */
+    static Map<String, String> getGenericBoosters() throws IOException {
+        return BoosterIndex.read(AbstractBoosterConfig.class.getClassLoader()).getGenericBoosters();
+    }
+
+    /**
+     * Boost properties that exercise the data source and endpoint configuration.
+     */
+    static Properties getBoostProperties() {
+        Properties properties = new Properties();
+        properties.put(BoostProperties.ENDPOINT_HOST, "localhost");
+        properties.put(BoostProperties.ENDPOINT_HTTP_PORT, "9080");
+        properties.put(BoostProperties.DATASOURCE_DATABASE_NAME, "benchmarkDB");
+        properties.put(BoostProperties.DATASOURCE_USER, "user");
+        // Already encoded, so that the Liberty securityUtility is never run
+        properties.put(BoostProperties.DATASOURCE_PASSWORD, "{aes}AEmVKa+jOeA7pos+pxIoHhm9wvMp9jEDwVnSxqh3SOr1");
+        return properties;
+    }
+
+    /**
+     * Create a synthetic project classpath. The first jar is an unindexed
+     * runtime containing a runtime specific booster for every generic booster,
+     * the other jars are libraries with plain classes.
+     */
+    static List<File> createClasspath(File dir, int jarCount, int classesPerJar,
+            Collection<String> genericBoosterClassNames) throws Exception {
+        List<File> jars = new ArrayList<File>();
+        ClassPool classPool = new ClassPool(true);
+
+        File runtimeJar = new File(dir, "runtime.jar");
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(runtimeJar))) {
+            for (String genericBoosterClassName : genericBoosterClassNames) {
+                String simpleName = genericBoosterClassName.substring(genericBoosterClassName.lastIndexOf('.') + 1);
+                CtClass ctClass = classPool.makeClass(RUNTIME_PACKAGE + "Runtime" + simpleName,
+                        classPool.get(genericBoosterClassName));
+                ctClass.addConstructor(CtNewConstructor.make("public " + ctClass.getSimpleName() + "("
+                        + BoosterConfigParams.class.getName() + " params, " + BoostLoggerI.class.getName()
+                        + " logger) throws " + BoostException.class.getName() + " { super(params, logger); }",
+                        ctClass));
+                addClass(out, ctClass);
+            }
+        }
+        jars.add(runtimeJar);
+
+        for (int i = 1; i < jarCount; i++) {
+            File libraryJar = new File(dir, "library" + i + ".jar");
+            try (JarOutputStream out = new JarOutputStream(new FileOutputStream(libraryJar))) {
+                for (int j = 0; j < classesPerJar; j++) {
+                    CtClass ctClass = classPool.makeClass(LIBRARY_PACKAGE + i + ".Type" + j);
+                    ctClass.addField(CtField.make("private String name;", ctClass));
+                    ctClass.addMethod(CtNewMethod.make("public String getName() { return name; }", ctClass));
+                    addClass(out, ctClass);
+                }
+            }
+            jars.add(libraryJar);
+        }
+
+        return jars;
+    }
+
+    private static void addClass(JarOutputStream out, CtClass ctClass) throws Exception {
+        out.putNextEntry(new JarEntry(ctClass.getName().replace('.', '/') + ".class"));
+        out.write(ctClass.toBytecode());
+        out.closeEntry();
+        ctClass.detach();
+    }
+
+    /**
+     * Instantiate the given booster classes, as the runtime would after
+     * discovery, for a project compiled for the given Java target.
+     */
+    static List<AbstractBoosterConfig> createBoosterConfigs(List<Class<? extends AbstractBoosterConfig>> classes,
+            Map<String, String> dependencies, Properties boostProperties, String javaCompilerTargetVersion)
+            throws Exception {
+        List<AbstractBoosterConfig> boosterConfigs = new ArrayList<AbstractBoosterConfig>();
+        BoosterConfigParams params = new BoosterConfigParams(dependencies, boostProperties,
+                javaCompilerTargetVersion);
+        for (Class<? extends AbstractBoosterConfig> boosterClass : classes) {
+            Constructor<? extends AbstractBoosterConfig> cons = boosterClass.getConstructor(BoosterConfigParams.class,
+                    BoostLoggerI.class);
+            boosterConfigs.add(cons.newInstance(params, QUIET_LOGGER));
+        }
+        return boosterConfigs;
+    }
+
+    static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
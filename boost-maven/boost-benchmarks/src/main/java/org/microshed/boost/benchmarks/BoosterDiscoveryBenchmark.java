@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.microshed.boost.benchmarks;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.microshed.boost.common.boosters.AbstractBoosterConfig;
+import org.microshed.boost.common.config.BoosterConfigurator;
+import org.microshed.boost.common.config.BoosterDiscoveryCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Booster discovery over synthetic project classpaths, with every booster
+ * enabled.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BoosterDiscoveryBenchmark {
+
+    private static final int CLASSES_PER_JAR = 50;
+
+    @Param({ "10", "100", "1000" })
+    public int jarCount;
+
+    private File workDir;
+    private List<File> jars;
+    private URLClassLoader classLoader;
+    private Map<String, String> dependencies;
+    private Properties boostProperties;
+    private BoosterDiscoveryCache cache;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        workDir = Files.createTempDirectory("boost-benchmark").toFile();
+
+        File classpathDir = new File(workDir, "classpath");
+        classpathDir.mkdirs();
+        jars = BenchmarkSupport.createClasspath(classpathDir, jarCount, CLASSES_PER_JAR,
+                BenchmarkSupport.getGenericBoosters().keySet());
+
+        URL[] urls = new URL[jars.size()];
+        for (int i = 0; i < jars.size(); i++) {
+            urls[i] = jars.get(i).toURI().toURL();
+        }
+        classLoader = new URLClassLoader(urls, getClass().getClassLoader());
+
+        dependencies = BenchmarkSupport.getAllBoosterDependencies();
+        boostProperties = BenchmarkSupport.getBoostProperties();
+
+        // Populate the discovery cache once, so that discoverCached measures hits
+        cache = new BoosterDiscoveryCache(new File(workDir, "cache"), BenchmarkSupport.QUIET_LOGGER);
+        BoosterConfigurator.getBoosterConfigs(jars, classLoader, dependencies, boostProperties, cache,
+                BenchmarkSupport.QUIET_LOGGER);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        classLoader.close();
+        BenchmarkSupport.delete(workDir);
+    }
+
+    /**
+     * Discovery with every jar inspected.
+     */
+    @Benchmark
+    public List<AbstractBoosterConfig> discover() throws Exception {
+        return BoosterConfigurator.getBoosterConfigs(jars, classLoader, dependencies, boostProperties,
+                BenchmarkSupport.QUIET_LOGGER);
+    }
+
+    /**
+     * Discovery with every jar found in the discovery cache.
+     */
+    @Benchmark
+    public List<AbstractBoosterConfig> discoverCached() throws Exception {
+        return BoosterConfigurator.getBoosterConfigs(jars, classLoader, dependencies, boostProperties, cache,
+                BenchmarkSupport.QUIET_LOGGER);
+    }
+}
@@ -0,0 +1,56 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.microshed.boost.benchmarks;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.microshed.boost.common.boosters.AbstractBoosterConfig;
+import org.microshed.boost.common.config.BoosterConfigurator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Collecting the dependencies to copy into the runtime, with every booster
+ * enabled.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DependenciesToCopyBenchmark {
+
+    private List<AbstractBoosterConfig> boosterConfigs;
+
+    @Setup
+    public void setUp() throws Exception {
+        boosterConfigs = BoosterConfigurator.getBoosterConfigs(Collections.<File> emptyList(),
+                getClass().getClassLoader(), BenchmarkSupport.getAllBoosterDependencies(),
+                BenchmarkSupport.getBoostProperties(), BenchmarkSupport.QUIET_LOGGER);
+    }
+
+    @Benchmark
+    public List<String> getDependenciesToCopy() {
+        return BoosterConfigurator.getDependenciesToCopy(boosterConfigs, BenchmarkSupport.QUIET_LOGGER);
+    }
+}
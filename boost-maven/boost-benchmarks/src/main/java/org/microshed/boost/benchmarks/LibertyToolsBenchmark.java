@@ -0,0 +1,196 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.microshed.boost.benchmarks;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.microshed.boost.runtimes.openliberty.InProcessLibertyTools;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Creating a Liberty server in-process, against running the create goal of the
+ * liberty-maven-plugin, which is what boost:package falls back to with
+ * -Dboost.inProcessTools=false.
+ *
+ * The goal runs in an embedded Maven, loaded from the Maven installation given
+ * by the maven.home system property or the MAVEN_HOME environment variable,
+ * so that it resolves the plugin, sets up its class realm and injects its
+ * configuration as in a build. An embedded Maven also starts a container and
+ * reads the project on every run, which a goal executed from Boost does not, so
+ * mavenBaseline runs Maven on the same project without any goal. The time
+ * saved by the in-process path is pluginGoal - mavenBaseline - inProcess.
+ *
+ * Both paths create the server from the same Liberty installation, extracted
+ * from the openliberty-runtime zip of the local repository. The runtime and the
+ * liberty-maven-plugin must already be in the local repository, Maven runs
+ * offline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LibertyToolsBenchmark {
+
+    private static final String SERVER_NAME = "defaultServer";
+    private static final String LIBERTY_PLUGIN = "io.openliberty.tools:liberty-maven-plugin:3.0.1";
+
+    @Param("19.0.0.6")
+    public String runtimeVersion;
+
+    private File workDir;
+    private File installDir;
+    private File pom;
+    private String localRepository;
+    private URLClassLoader mavenClassLoader;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        workDir = Files.createTempDirectory("boost-benchmark").toFile();
+        installDir = new File(workDir, "liberty/wlp");
+
+        localRepository = System.getProperty("maven.repo.local",
+                System.getProperty("user.home") + "/.m2/repository");
+        File runtimeZip = new File(localRepository, "io/openliberty/openliberty-runtime/" + runtimeVersion
+                + "/openliberty-runtime-" + runtimeVersion + ".zip");
+        if (!runtimeZip.isFile()) {
+            throw new IllegalStateException(runtimeZip + " does not exist, see boost-benchmarks/README.md");
+        }
+        new InProcessLibertyTools(installDir, BenchmarkSupport.QUIET_LOGGER).extractRuntime(runtimeZip);
+
+        pom = new File(workDir, "pom.xml");
+        String[] plugin = LIBERTY_PLUGIN.split(":");
+        List<String> lines = Arrays.asList(
+                "<project xmlns=\"http://maven.apache.org/POM/4.0.0\">",
+                "  <modelVersion>4.0.0</modelVersion>",
+                "  <groupId>org.microshed.boost.benchmarks</groupId>",
+                "  <artifactId>liberty-tools</artifactId>",
+                "  <version>1.0</version>",
+                "  <packaging>pom</packaging>",
+                "  <build>",
+                "    <plugins>",
+                "      <plugin>",
+                "        <groupId>" + plugin[0] + "</groupId>",
+                "        <artifactId>" + plugin[1] + "</artifactId>",
+                "        <version>" + plugin[2] + "</version>",
+                "        <configuration>",
+                "          <installDirectory>" + installDir.getAbsolutePath() + "</installDirectory>",
+                "          <serverName>" + SERVER_NAME + "</serverName>",
+                "        </configuration>",
+                "      </plugin>",
+                "    </plugins>",
+                "  </build>",
+                "</project>");
+        Files.write(pom.toPath(), lines, StandardCharsets.UTF_8);
+
+        mavenClassLoader = createMavenClassLoader();
+    }
+
+    @Setup(Level.Invocation)
+    public void deleteServer() {
+        BenchmarkSupport.delete(new File(installDir, "usr"));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        if (mavenClassLoader != null) {
+            mavenClassLoader.close();
+        }
+        BenchmarkSupport.delete(workDir);
+    }
+
+    @Benchmark
+    public boolean inProcess() throws Exception {
+        return new InProcessLibertyTools(installDir, BenchmarkSupport.QUIET_LOGGER).createServer(SERVER_NAME);
+    }
+
+    @Benchmark
+    public int pluginGoal() throws Exception {
+        return runMaven(LIBERTY_PLUGIN + ":create");
+    }
+
+    @Benchmark
+    public int mavenBaseline() throws Exception {
+        return runMaven("validate");
+    }
+
+    /**
+     * Load Maven from its installation, apart from the benchmark classpath, which
+     * holds other versions of the resolver API through the Boost runtimes.
+     */
+    private static URLClassLoader createMavenClassLoader() throws Exception {
+        String mavenHome = System.getProperty("maven.home", System.getenv("MAVEN_HOME"));
+        if (mavenHome == null) {
+            throw new IllegalStateException("Set maven.home or MAVEN_HOME to the Maven installation to run");
+        }
+        System.setProperty("maven.home", mavenHome);
+
+        List<URL> urls = new ArrayList<URL>();
+        for (String dir : Arrays.asList("boot", "lib")) {
+            File[] jars = new File(mavenHome, dir).listFiles();
+            if (jars == null) {
+                throw new IllegalStateException(mavenHome + " is not a Maven installation");
+            }
+            for (File jar : jars) {
+                if (jar.getName().endsWith(".jar")) {
+                    urls.add(jar.toURI().toURL());
+                }
+            }
+        }
+        return new URLClassLoader(urls.toArray(new URL[urls.size()]), ClassLoader.getSystemClassLoader().getParent());
+    }
+
+    private int runMaven(String goal) throws Exception {
+        String[] args = { "-B", "-q", "-o", "-Dmaven.repo.local=" + localRepository, "-f", pom.getAbsolutePath(),
+                goal };
+        System.setProperty("maven.multiModuleProjectDirectory", workDir.getAbsolutePath());
+
+        Thread thread = Thread.currentThread();
+        ClassLoader contextClassLoader = thread.getContextClassLoader();
+        thread.setContextClassLoader(mavenClassLoader);
+        try {
+            Class<?> cliClass = mavenClassLoader.loadClass("org.apache.maven.cli.MavenCli");
+            Method doMain = cliClass.getMethod("doMain", String[].class, String.class, PrintStream.class,
+                    PrintStream.class);
+            int exitCode = (Integer) doMain.invoke(cliClass.newInstance(), args, workDir.getAbsolutePath(),
+                    System.out, System.err);
+            if (exitCode != 0) {
+                throw new IllegalStateException("Maven failed running " + goal + " with exit code " + exitCode);
+            }
+            return exitCode;
+        } finally {
+            thread.setContextClassLoader(contextClassLoader);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.microshed.boost.benchmarks;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.microshed.boost.common.boosters.AbstractBoosterConfig;
+import org.microshed.boost.common.config.BoostProperties;
+import org.microshed.boost.runtimes.openliberty.LibertyServerConfigGenerator;
+import org.microshed.boost.runtimes.openliberty.boosters.*;
+import org.microshed.boost.runtimes.tomee.TomeeServerConfigGenerator;
+import org.microshed.boost.runtimes.tomee.boosters.TomeeMPConfigBoosterConfig;
+import org.microshed.boost.runtimes.tomee.boosters.TomeeMPHealthBoosterConfig;
+import org.microshed.boost.runtimes.tomee.boosters.TomeeMPJWTBoosterConfig;
+import org.microshed.boost.runtimes.tomee.boosters.TomeeMPRestClientBoosterConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End to end server configuration generation for each runtime, with every
+ * booster enabled. The generated files are written to a temporary directory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ServerConfigBenchmark {
+
+    private static final List<Class<? extends AbstractBoosterConfig>> LIBERTY_BOOSTERS = Arrays.asList(
+            LibertyBeanValidationBoosterConfig.class, LibertyCDIBoosterConfig.class, LibertyJAXRSBoosterConfig.class,
+            LibertyJDBCBoosterConfig.class, LibertyJPABoosterConfig.class, LibertyJSONBBoosterConfig.class,
+            LibertyJSONPBoosterConfig.class, LibertyMPConfigBoosterConfig.class,
+            LibertyMPFaultToleranceBoosterConfig.class, LibertyMPHealthBoosterConfig.class,
+            LibertyMPJWTBoosterConfig.class, LibertyMPMetricsBoosterConfig.class, LibertyMPOpenAPIBoosterConfig.class,
+            LibertyMPOpenTracingBoosterConfig.class, LibertyMPRestClientBoosterConfig.class);
+
+    private static final List<Class<? extends AbstractBoosterConfig>> TOMEE_BOOSTERS = Arrays.asList(
+            TomeeMPConfigBoosterConfig.class, TomeeMPHealthBoosterConfig.class, TomeeMPJWTBoosterConfig.class,
+            TomeeMPRestClientBoosterConfig.class);
+
+    private static final String TOMEE_SERVER_XML = "<Server port=\"8005\" shutdown=\"SHUTDOWN\">\n"
+            + "  <Service name=\"Catalina\">\n"
+            + "    <Connector port=\"8080\" protocol=\"HTTP/1.1\" connectionTimeout=\"20000\" />\n"
+            + "    <Engine name=\"Catalina\" defaultHost=\"localhost\">\n"
+            + "      <Host name=\"localhost\" appBase=\"webapps\" unpackWARs=\"true\" autoDeploy=\"true\" />\n"
+            + "    </Engine>\n" + "  </Service>\n" + "</Server>\n";
+
+    private static final String TOMEE_XML = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<tomee>\n</tomee>\n";
+
+    private static final String CATALINA_PROPERTIES = "common.loader=\"${catalina.base}/lib\",\"${catalina.base}/lib/*.jar\"\n";
+
+    private File workDir;
+    private File libertyServerDir;
+    private File tomeeConfigDir;
+    private Properties boostProperties;
+    private List<AbstractBoosterConfig> libertyBoosterConfigs;
+    private List<AbstractBoosterConfig> tomeeBoosterConfigs;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        workDir = Files.createTempDirectory("boost-benchmark").toFile();
+        libertyServerDir = new File(workDir, "liberty/wlp/usr/servers/defaultServer");
+        libertyServerDir.mkdirs();
+        tomeeConfigDir = new File(workDir, "tomee/apache-tomee/conf");
+        tomeeConfigDir.mkdirs();
+
+        Map<String, String> dependencies = BenchmarkSupport.getAllBoosterDependencies();
+        boostProperties = BenchmarkSupport.getBoostProperties();
+        // The compiler target selects the jdbc feature of the Liberty JDBC booster
+        libertyBoosterConfigs = BenchmarkSupport.createBoosterConfigs(getBoosterClasses(LIBERTY_BOOSTERS),
+                dependencies, boostProperties, "1.8");
+        tomeeBoosterConfigs = BenchmarkSupport.createBoosterConfigs(getBoosterClasses(TOMEE_BOOSTERS), dependencies,
+                boostProperties, "1.8");
+    }
+
+    /**
+     * The TomEE generator edits its configuration in place, so start every
+     * invocation from a freshly installed configuration.
+     */
+    @Setup(Level.Invocation)
+    public void resetTomeeConfig() throws Exception {
+        Files.write(new File(tomeeConfigDir, "server.xml").toPath(), TOMEE_SERVER_XML.getBytes(StandardCharsets.UTF_8));
+        Files.write(new File(tomeeConfigDir, "tomee.xml").toPath(), TOMEE_XML.getBytes(StandardCharsets.UTF_8));
+        Files.write(new File(tomeeConfigDir, "catalina.properties").toPath(),
+                CATALINA_PROPERTIES.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkSupport.delete(workDir);
+    }
+
+    /**
+     * Mirrors LibertyRuntime.generateLibertyServerConfig.
+     */
+    @Benchmark
+    public LibertyServerConfigGenerator liberty() throws Exception {
+        LibertyServerConfigGenerator libertyConfig = new LibertyServerConfigGenerator(
+                libertyServerDir.getAbsolutePath(), null, BenchmarkSupport.QUIET_LOGGER);
+
+        libertyConfig.addHostname(boostProperties.getProperty(BoostProperties.ENDPOINT_HOST));
+        libertyConfig.addHttpPort(boostProperties.getProperty(BoostProperties.ENDPOINT_HTTP_PORT));
+        libertyConfig.addHttpsPort("9443");
+        libertyConfig.addApplication("benchmark");
+
+        for (AbstractBoosterConfig configurator : libertyBoosterConfigs) {
+            if (configurator instanceof LibertyBoosterI) {
+                ((LibertyBoosterI) configurator).addServerConfig(libertyConfig);
+                libertyConfig.addFeature(((LibertyBoosterI) configurator).getFeature());
+            }
+        }
+
+        libertyConfig.writeToServer();
+        return libertyConfig;
+    }
+
+    /**
+     * Mirrors TomeeRuntime.configureTomeeServer.
+     */
+    @Benchmark
+    public TomeeServerConfigGenerator tomee() throws Exception {
+        TomeeServerConfigGenerator tomeeConfig = new TomeeServerConfigGenerator(tomeeConfigDir.getAbsolutePath(),
+                BenchmarkSupport.QUIET_LOGGER);
+        tomeeConfig.addJarsDirToSharedLoader();
+
+        tomeeConfig.addHostname(boostProperties.getProperty(BoostProperties.ENDPOINT_HOST));
+        tomeeConfig.addHttpPort(boostProperties.getProperty(BoostProperties.ENDPOINT_HTTP_PORT));
+
+        for (AbstractBoosterConfig configurator : tomeeBoosterConfigs) {
+            tomeeConfig.addServerConfig(configurator);
+        }
+        return tomeeConfig;
+    }
+
+    /**
+     * Every generic booster, replaced by the given runtime specific booster
+     * where the runtime provides one.
+     */
+    @SuppressWarnings("unchecked")
+    private static List<Class<? extends AbstractBoosterConfig>> getBoosterClasses(
+            List<Class<? extends AbstractBoosterConfig>> runtimeBoosters) throws Exception {
+        List<Class<? extends AbstractBoosterConfig>> boosterClasses = new ArrayList<Class<? extends AbstractBoosterConfig>>();
+        for (String genericBoosterClassName : BenchmarkSupport.getGenericBoosters().keySet()) {
+            Class<? extends AbstractBoosterConfig> boosterClass = (Class<? extends AbstractBoosterConfig>) Class
+                    .forName(genericBoosterClassName);
+            for (Class<? extends AbstractBoosterConfig> runtimeBooster : runtimeBoosters) {
+                if (runtimeBooster.getSuperclass().equals(boosterClass)) {
+                    boosterClass = runtimeBooster;
+                }
+            }
+            boosterClasses.add(boosterClass);
+        }
+        return boosterClasses;
+    }
+}
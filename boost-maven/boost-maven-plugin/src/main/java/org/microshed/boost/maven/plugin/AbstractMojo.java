@@ -16,32 +16,51 @@ import static org.twdata.maven.mojoexecutor.MojoExecutor.groupId;
 import static org.twdata.maven.mojoexecutor.MojoExecutor.plugin;
 
 import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import java.net.URL;
 import java.net.URLClassLoader;
 
+import org.apache.maven.RepositoryUtils;
+import org.apache.maven.artifact.Artifact;
 import org.apache.maven.execution.MavenSession;
 import org.apache.maven.model.Plugin;
 import org.apache.maven.plugin.BuildPluginManager;
+import org.apache.maven.plugin.MojoExecution;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.DefaultDependencyResolutionRequest;
+import org.apache.maven.project.DependencyResolutionException;
+import org.apache.maven.project.DependencyResolutionResult;
 import org.apache.maven.project.MavenProject;
+import org.apache.maven.project.ProjectDependenciesResolver;
 import org.codehaus.mojo.pluginsupport.MojoSupport;
 import org.eclipse.aether.RepositorySystem;
 import org.eclipse.aether.RepositorySystemSession;
 import org.eclipse.aether.repository.RemoteRepository;
 import org.microshed.boost.common.boosters.AbstractBoosterConfig;
 import org.microshed.boost.common.config.BoostProperties;
+import org.microshed.boost.common.config.BoosterConfigParams;
+import org.microshed.boost.common.config.BoosterDiscoveryCache;
 import org.microshed.boost.common.config.BoosterConfigurator;
+import org.microshed.boost.common.config.WarBoosterCache;
 import org.microshed.boost.common.runtimes.RuntimeI;
+import org.microshed.boost.common.utils.BuildMetrics;
+import org.microshed.boost.common.utils.VersionLock;
+import org.microshed.boost.maven.runtimes.RuntimeManifest;
 import org.microshed.boost.maven.runtimes.RuntimeParams;
 import org.microshed.boost.maven.utils.BoostLogger;
 import org.microshed.boost.maven.utils.MavenProjectUtil;
@@ -49,9 +68,11 @@ import org.twdata.maven.mojoexecutor.MojoExecutor.ExecutionEnvironment;
 
 public abstract class AbstractMojo extends MojoSupport {
 
-    private ClassLoader projectClassLoader;
+    private URLClassLoader projectClassLoader;
     private List<AbstractBoosterConfig> boosterConfigs;
     private Properties boostProperties;
+    private BuildMetrics buildMetrics;
+    private VersionLock versionLock;
 
     protected String mavenDependencyPluginGroupId = "org.apache.maven.plugins";
     protected String mavenDependencyPluginArtifactId = "maven-dependency-plugin";
@@ -59,12 +80,98 @@ public abstract class AbstractMojo extends MojoSupport {
     @Parameter(defaultValue = "${project.build.directory}", readonly = true)
     protected String projectBuildDir;
 
+    /**
+     * Directory where the booster classes found in each classpath jar, and the
+     * boosters each released war dependency depends on, are cached between
+     * builds. Point several projects at a shared directory, such
+     * as ~/.m2/boost-cache, to reuse the results across them.
+     */
+    @Parameter(property = "boost.cacheDirectory", defaultValue = "${project.build.directory}/boost-cache")
+    protected File cacheDirectory;
+
+    /**
+     * Skip the package stages whose inputs have not changed since the previous
+     * build. Set to false to always run every stage.
+     */
+    @Parameter(property = "boost.incremental", defaultValue = "true")
+    protected boolean incremental;
+
+    /**
+     * Place booster dependencies in the server with hard links to the local
+     * repository instead of copying them, where the file system supports it.
+     */
+    @Parameter(property = "boost.linkDependencies", defaultValue = "false")
+    protected boolean linkDependencies;
+
+    /**
+     * Directory shared between projects where runtimes are extracted once, such
+     * as ~/.m2/boost-runtimes. The runtime installation of each project is then
+     * built with hard links to it instead of extracting the runtime again, and
+     * features already installed for the same runtime are restored from it.
+     */
+    @Parameter(property = "boost.installCacheDirectory")
+    protected File installCacheDirectory;
+
+    /**
+     * Run the runtime steps that support it, such as creating the Liberty server
+     * and installing its features, in the build JVM rather than through the
+     * runtime's Maven plugin. Set to false to always use the plugin goals.
+     */
+    @Parameter(property = "boost.inProcessTools", defaultValue = "true")
+    protected boolean inProcessTools;
+
+    /**
+     * File where the concrete version each runtime version range resolved to is
+     * recorded, so that later builds do not resolve the range against the remote
+     * repositories again. It is kept in the build directory by default. To pin
+     * the runtime versions of a project, set it to ${project.basedir}/boost.lock
+     * and commit it.
+     */
+    @Parameter(property = "boost.lockFile", defaultValue = "${project.build.directory}/boost/" + VersionLock.LOCATION)
+    protected File lockFile;
+
+    /**
+     * Hours a locked runtime version is reused before its range is resolved
+     * again. By default it is kept until boost.updateLock is set, so that a
+     * committed lock file only changes when asked to.
+     */
+    @Parameter(property = "boost.lockTtl", defaultValue = "-1")
+    protected long lockTtl;
+
+    /**
+     * Resolve every runtime version range again and update the lock file.
+     */
+    @Parameter(property = "boost.updateLock", defaultValue = "false")
+    protected boolean updateLock;
+
+    /**
+     * Start the packaged server once to generate a class data sharing archive,
+     * an AppCDS archive on HotSpot or a shared classes cache on OpenJ9, that
+     * later starts of the server load classes from. The archive is only used
+     * when the server runs in place, such as with boost:start, boost:run or
+     * boost:debug. It is left out of the runnable jar and the image, where the
+     * server runs from another path that the archive does not match.
+     */
+    @Parameter(property = "boost.classDataSharing", defaultValue = "false")
+    protected boolean classDataSharing;
+
+    /**
+     * The Java installation the packaged server will run on, that the class
+     * data sharing archive is generated for. Defaults to the Java running the
+     * build.
+     */
+    @Parameter(property = "boost.classDataSharing.javaHome", defaultValue = "${java.home}")
+    protected File classDataSharingJavaHome;
+
     @Parameter(defaultValue = "${project}", readonly = true)
     protected MavenProject project;
 
     @Parameter(defaultValue = "${session}", readonly = true)
     protected MavenSession session;
 
+    @Parameter(defaultValue = "${mojoExecution}", readonly = true)
+    protected MojoExecution mojoExecution;
+
     @Parameter(defaultValue = "${repositorySystemSession}", readonly = true)
     protected RepositorySystemSession repoSession;
 
@@ -77,6 +184,9 @@ public abstract class AbstractMojo extends MojoSupport {
     @Component
     protected RepositorySystem repoSystem;
 
+    @Component
+    protected ProjectDependenciesResolver projectDependenciesResolver;
+
     protected Map<String, String> dependencies;
 
     protected Plugin getMavenDependencyPlugin() throws MojoExecutionException {
@@ -91,39 +201,250 @@ public abstract class AbstractMojo extends MojoSupport {
     public void execute() throws MojoExecutionException {
         try {
             init();
-            BoostLogger boostLogger = new BoostLogger(getLog());
-            // TODO move this into getRuntimeInstance()
-            this.dependencies = MavenProjectUtil.getAllDependencies(project, repoSystem, repoSession, remoteRepos, boostLogger);
-                    
+            loadProjectAnalysis();
+        } catch (Exception e) {
+            throw new MojoExecutionException(e.getMessage(), e);
+        }
+    }
 
-            List<File> compileClasspathJars = new ArrayList<File>();
+    private void loadProjectAnalysis() throws Exception {
+        BoostLogger boostLogger = new BoostLogger(getLog());
 
-            List<URL> pathUrls = new ArrayList<URL>();
-            for (String compilePathElement : project.getCompileClasspathElements()) {
-                pathUrls.add(new File(compilePathElement).toURI().toURL());
-                if (compilePathElement.endsWith(".jar")) {
-                    compileClasspathJars.add(new File(compilePathElement));
-                }
+        Properties configuredBoostProperties = BoostProperties
+                .getConfiguredBoostProperties(project.getProperties(), boostLogger);
+        List<String> compileClasspathElements = project.getCompileClasspathElements();
+        String javaCompilerTargetVersion = MavenProjectUtil.getJavaCompilerTargetVersion(project);
+        String analysisKey = ProjectAnalysis.createKey(compileClasspathElements, project.getArtifacts(),
+                configuredBoostProperties, javaCompilerTargetVersion);
+
+        closeProjectClassLoader();
+        projectClassLoader = createProjectClassLoader(compileClasspathElements);
+
+        // Reuse the analysis from an earlier Boost goal on this project, as
+        // long as its classpath and boost properties have not changed
+        ProjectAnalysis analysis = ProjectAnalysis.get(getPluginContext());
+        if (analysis != null && analysis.getKey().equals(analysisKey)) {
+            boostLogger.debug("Reusing the project analysis from an earlier Boost goal.");
+        } else {
+            if (analysis != null) {
+                boostLogger.debug("The project classpath or boost properties changed, analyzing the project again.");
+            }
+            analysis = analyzeProject(analysisKey, compileClasspathElements, configuredBoostProperties,
+                    javaCompilerTargetVersion, boostLogger);
+            ProjectAnalysis.put(getPluginContext(), analysis);
+        }
+
+        this.dependencies = analysis.getDependencies();
+        this.boostProperties = analysis.getBoostProperties();
+        BoosterConfigParams params = new BoosterConfigParams(dependencies, boostProperties,
+                javaCompilerTargetVersion);
+        this.boosterConfigs = BoosterConfigurator.createBoosterConfigs(analysis.getBoosterClassNames(),
+                projectClassLoader, params, boostLogger);
+    }
+
+    /**
+     * Close the class loader created over the project classpath, so that the jars
+     * it opened are released once the goal is finished. Goals call this when
+     * their execution ends.
+     */
+    protected void closeProjectClassLoader() {
+        if (projectClassLoader != null) {
+            try {
+                projectClassLoader.close();
+            } catch (IOException e) {
+                getLog().debug("Unable to close the project class loader", e);
             }
-            URL[] urlsForClassLoader = pathUrls.toArray(new URL[pathUrls.size()]);
-            this.projectClassLoader = new URLClassLoader(urlsForClassLoader, this.getClass().getClassLoader());
-            
-            boostProperties = BoostProperties.getConfiguredBoostProperties(project.getProperties(), boostLogger);
-            
-            boosterConfigs = BoosterConfigurator.getBoosterConfigs(compileClasspathJars, projectClassLoader,
-                    dependencies, boostProperties, boostLogger);
+            projectClassLoader = null;
+        }
+    }
 
+    /**
+     * Get the runtime of a project that was already packaged. The runtime
+     * manifest written by the package goal is used while it is still valid, so
+     * that the project dependencies are not resolved and boosters are not
+     * discovered again. Otherwise the project is resolved and analyzed as the
+     * other goals do.
+     */
+    protected RuntimeI getPackagedRuntimeInstance() throws MojoExecutionException {
+        try {
+            init();
+            BoostLogger boostLogger = new BoostLogger(getLog());
+
+            File manifestFile = RuntimeManifest.getFile(projectBuildDir);
+            RuntimeManifest manifest = RuntimeManifest.read(manifestFile);
+            if (manifest != null && manifest.isValid(getProjectKey(boostLogger), projectBuildDir)) {
+                boostLogger.debug("Using the runtime recorded in " + manifestFile);
+                return createRuntimeInstance(manifest, boostLogger);
+            }
+
+            boostLogger.debug("No valid runtime manifest found, resolving the project dependencies.");
+            resolveProjectDependencies();
+            loadProjectAnalysis();
         } catch (Exception e) {
             throw new MojoExecutionException(e.getMessage(), e);
         }
+
+        return getRuntimeInstance();
+    }
+
+    /**
+     * Get the timings of the phases of this goal.
+     */
+    protected BuildMetrics getBuildMetrics() {
+        if (buildMetrics == null) {
+            buildMetrics = new BuildMetrics(mojoExecution.getGoal());
+        }
+        return buildMetrics;
+    }
+
+    /**
+     * Get the versions that runtime version ranges resolved to.
+     */
+    protected VersionLock getVersionLock() {
+        if (versionLock == null) {
+            long ttlMillis = lockTtl < 0 ? -1 : TimeUnit.HOURS.toMillis(lockTtl);
+            versionLock = new VersionLock(lockFile, ttlMillis, updateLock, new BoostLogger(getLog()));
+        }
+        return versionLock;
+    }
+
+    /**
+     * Write the timings of the phases of this goal to the build directory and
+     * log a summary of them. Failing to write them does not fail the build.
+     */
+    protected void writeBuildMetrics() {
+        BoostLogger boostLogger = new BoostLogger(getLog());
+        File metricsFile = new File(projectBuildDir, BuildMetrics.getLocation(mojoExecution.getGoal()));
+        getBuildMetrics().logSummary(boostLogger);
+        try {
+            getBuildMetrics().write(metricsFile);
+        } catch (IOException e) {
+            boostLogger.warn("Unable to write the build metrics " + metricsFile + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Write the runtime manifest for the packaged runtime.
+     */
+    protected void writeRuntimeManifest(RuntimeI runtime) throws MojoExecutionException {
+        File manifestFile = RuntimeManifest.getFile(projectBuildDir);
+        try {
+            RuntimeManifest.create(runtime, getProjectKey(new BoostLogger(getLog()))).write(manifestFile);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to write the runtime manifest " + manifestFile, e);
+        }
+    }
+
+    private String getProjectKey(BoostLogger boostLogger) throws IOException {
+        return RuntimeManifest.createProjectKey(project,
+                BoostProperties.getConfiguredBoostProperties(project.getProperties(), boostLogger), lockFile);
+    }
+
+    /**
+     * Create the runtime recorded in a manifest. It is loaded with a class
+     * loader of its own, that the goal closes when it ends.
+     */
+    private RuntimeI createRuntimeInstance(RuntimeManifest manifest, BoostLogger boostLogger) throws Exception {
+        List<URL> runtimeUrls = new ArrayList<URL>();
+        for (String path : manifest.getRuntimeClasspath()) {
+            runtimeUrls.add(new File(path).toURI().toURL());
+        }
+        closeProjectClassLoader();
+        this.projectClassLoader = new URLClassLoader(runtimeUrls.toArray(new URL[runtimeUrls.size()]),
+                this.getClass().getClassLoader());
+
+        // Only the runtime is needed to act on a packaged server
+        this.boostProperties = BoostProperties.getConfiguredBoostProperties(project.getProperties(), boostLogger);
+        this.boosterConfigs = Collections.emptyList();
+
+        // Act on the runtime and server the package goal recorded, rather than
+        // resolving the runtime version again
+        RuntimeParams params = createRuntimeParams();
+        params.setPackagedRuntimeArtifact(manifest.getRuntimeArtifact());
+        params.setPackagedServerPath(manifest.getServerPath());
+        Class<?> runtimeClass = projectClassLoader.loadClass(manifest.getRuntimeClass());
+        return (RuntimeI) runtimeClass.getConstructor(RuntimeParams.class).newInstance(params);
+    }
+
+    private RuntimeParams createRuntimeParams() throws MojoExecutionException {
+        RuntimeParams params = new RuntimeParams(boosterConfigs, boostProperties, getExecutionEnvironment(), project,
+                getLog(), repoSystem, repoSession, remoteRepos, getMavenDependencyPlugin());
+        params.setIncremental(incremental);
+        params.setLinkDependencies(linkDependencies);
+        params.setInstallCacheDirectory(installCacheDirectory);
+        params.setInProcessTools(inProcessTools);
+        params.setVersionLock(getVersionLock());
+        params.setBuildMetrics(getBuildMetrics());
+        params.setClassDataSharing(classDataSharing);
+        params.setClassDataSharingJavaHome(classDataSharingJavaHome);
+        return params;
+    }
+
+    /**
+     * Resolve the project dependencies for goals that do not require Maven to
+     * resolve them, with the same scopes as the other goals.
+     */
+    private void resolveProjectDependencies() throws DependencyResolutionException {
+        DependencyResolutionResult result = projectDependenciesResolver
+                .resolve(new DefaultDependencyResolutionRequest(project, repoSession));
+
+        Set<Artifact> artifacts = new LinkedHashSet<Artifact>();
+        if (result.getDependencyGraph() != null) {
+            RepositoryUtils.toArtifacts(artifacts, result.getDependencyGraph().getChildren(),
+                    Collections.singletonList(project.getArtifact().getId()), null);
+        }
+
+        Iterator<Artifact> iterator = artifacts.iterator();
+        while (iterator.hasNext()) {
+            if (Artifact.SCOPE_TEST.equals(iterator.next().getScope())) {
+                iterator.remove();
+            }
+        }
+        project.setArtifacts(artifacts);
+    }
+
+    private ProjectAnalysis analyzeProject(String analysisKey, List<String> compileClasspathElements,
+            Properties configuredBoostProperties, String javaCompilerTargetVersion, BoostLogger boostLogger)
+            throws Exception {
+        // TODO move this into getRuntimeInstance()
+        Map<String, String> allDependencies;
+        try (BuildMetrics.Phase phase = getBuildMetrics().start("dependency-resolution")) {
+            allDependencies = MavenProjectUtil.getAllDependencies(project, repoSystem, repoSession, remoteRepos,
+                    new WarBoosterCache(cacheDirectory, boostLogger), boostLogger);
+        }
+
+        List<File> compileClasspathJars = new ArrayList<File>();
+        for (String compilePathElement : compileClasspathElements) {
+            if (compilePathElement.endsWith(".jar")) {
+                compileClasspathJars.add(new File(compilePathElement));
+            }
+        }
+
+        try (BuildMetrics.Phase phase = getBuildMetrics().start("booster-discovery")) {
+            BoosterDiscoveryCache discoveryCache = new BoosterDiscoveryCache(cacheDirectory, boostLogger);
+            BoosterConfigParams params = new BoosterConfigParams(allDependencies, configuredBoostProperties,
+                    javaCompilerTargetVersion);
+            List<String> boosterClassNames = BoosterConfigurator.getBoosterClassNames(compileClasspathJars,
+                    projectClassLoader, params, discoveryCache, boostLogger);
+
+            return new ProjectAnalysis(analysisKey, allDependencies, configuredBoostProperties, boosterClassNames);
+        }
+    }
+
+    private URLClassLoader createProjectClassLoader(List<String> compileClasspathElements) throws IOException {
+        List<URL> pathUrls = new ArrayList<URL>();
+        for (String compilePathElement : compileClasspathElements) {
+            pathUrls.add(new File(compilePathElement).toURI().toURL());
+        }
+        URL[] urlsForClassLoader = pathUrls.toArray(new URL[pathUrls.size()]);
+        return new URLClassLoader(urlsForClassLoader, this.getClass().getClassLoader());
     }
 
     protected RuntimeI getRuntimeInstance() throws MojoExecutionException {
         
         RuntimeI runtime = null;
         
-        RuntimeParams params = new RuntimeParams(boosterConfigs, boostProperties, getExecutionEnvironment(), project, getLog(),
-                repoSystem, repoSession, remoteRepos, getMavenDependencyPlugin());
+        RuntimeParams params = createRuntimeParams();
         try {
             ServiceLoader<RuntimeI> runtimes = ServiceLoader.load(RuntimeI.class, projectClassLoader);
             if (!runtimes.iterator().hasNext()) {
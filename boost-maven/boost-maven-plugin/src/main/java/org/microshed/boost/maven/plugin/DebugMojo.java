@@ -13,7 +13,6 @@ package org.microshed.boost.maven.plugin;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
-import org.apache.maven.plugins.annotations.ResolutionScope;
 import org.microshed.boost.common.BoostException;
 
 /**
@@ -21,7 +20,7 @@ import org.microshed.boost.common.BoostException;
  * debugger connects to debug port <b>7777</b>.
  *
  */
-@Mojo(name = "debug", requiresDependencyResolution = ResolutionScope.COMPILE_PLUS_RUNTIME, requiresDependencyCollection = ResolutionScope.COMPILE_PLUS_RUNTIME)
+@Mojo(name = "debug", threadSafe = true)
 public class DebugMojo extends AbstractMojo {
 
     /**
@@ -32,11 +31,12 @@ public class DebugMojo extends AbstractMojo {
 
     @Override
     public void execute() throws MojoExecutionException {
-        super.execute();
         try {
-            this.getRuntimeInstance().doDebug(clean);
+            this.getPackagedRuntimeInstance().doDebug(clean);
         } catch (BoostException e) {
             throw new MojoExecutionException("Error debugging server", e);
+        } finally {
+            closeProjectClassLoader();
         }
     }
 
@@ -0,0 +1,90 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.microshed.boost.maven.plugin;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.microshed.boost.common.BoostException;
+import org.microshed.boost.common.image.OciImageWriter;
+import org.microshed.boost.common.utils.BuildMetrics;
+import org.microshed.boost.maven.utils.BoostLogger;
+
+/**
+ * Builds a layered container image of the packaged server as an OCI image
+ * archive, without a container daemon. The archive can be loaded with
+ * <code>podman load</code> or pushed with
+ * <code>skopeo copy oci-archive:&lt;archive&gt; docker://&lt;registry&gt;/&lt;name&gt;</code>.
+ *
+ */
+@Mojo(name = "image", defaultPhase = LifecyclePhase.PACKAGE, threadSafe = true)
+public class ImageMojo extends AbstractMojo {
+
+    /**
+     * Name and tag of the image.
+     */
+    @Parameter(property = "boost.image.name", defaultValue = "${project.artifactId}:${project.version}")
+    private String imageName;
+
+    /**
+     * The OCI image archive to write.
+     */
+    @Parameter(property = "boost.image.output", defaultValue = "${project.build.directory}/${project.artifactId}-image.tar")
+    private File imageOutput;
+
+    /**
+     * An OCI image layout directory holding the base image, such as one written
+     * by <code>skopeo copy docker://&lt;image&gt; oci:&lt;directory&gt;</code>.
+     * The server layers are added on top of its layers. Required, the server is
+     * started with a shell script.
+     */
+    @Parameter(property = "boost.image.baseImage")
+    private File baseImage;
+
+    /**
+     * A Java installation to add to the image as a layer of its own, for base
+     * images that do not provide Java.
+     */
+    @Parameter(property = "boost.image.javaHome")
+    private File javaHome;
+
+    @Override
+    public void execute() throws MojoExecutionException {
+        // The server layers hold neither an operating system nor a shell, and
+        // the runtimes start with shell scripts
+        if (baseImage == null) {
+            throw new MojoExecutionException("The image needs a base image (boost.image.baseImage) that provides "
+                    + "the shell the server scripts run with.");
+        }
+
+        BoostLogger boostLogger = new BoostLogger(getLog());
+        try (BuildMetrics.Phase phase = getBuildMetrics().start("image")) {
+            OciImageWriter image = new OciImageWriter(new File(projectBuildDir, "boost/image/layers"), boostLogger);
+            image.setBaseImage(baseImage);
+            if (javaHome != null) {
+                image.addJavaLayer(javaHome);
+            }
+            getPackagedRuntimeInstance().addImageLayers(image);
+
+            image.write(imageOutput, imageName);
+        } catch (BoostException | IOException e) {
+            throw new MojoExecutionException("Error building the server image", e);
+        } finally {
+            closeProjectClassLoader();
+            writeBuildMetrics();
+        }
+    }
+
+}
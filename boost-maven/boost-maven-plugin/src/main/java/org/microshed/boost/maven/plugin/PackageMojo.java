@@ -13,6 +13,7 @@ package org.microshed.boost.maven.plugin;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.microshed.boost.common.BoostException;
+import org.microshed.boost.common.runtimes.RuntimeI;
 import org.apache.maven.plugins.annotations.*;
 
 /**
@@ -21,16 +22,21 @@ import org.apache.maven.plugins.annotations.*;
  * the 'jar' packaging type).
  *
  */
-@Mojo(name = "package", defaultPhase = LifecyclePhase.PACKAGE, requiresDependencyResolution = ResolutionScope.COMPILE_PLUS_RUNTIME, requiresDependencyCollection = ResolutionScope.COMPILE_PLUS_RUNTIME)
+@Mojo(name = "package", defaultPhase = LifecyclePhase.PACKAGE, requiresDependencyResolution = ResolutionScope.COMPILE_PLUS_RUNTIME, requiresDependencyCollection = ResolutionScope.COMPILE_PLUS_RUNTIME, threadSafe = true)
 public class PackageMojo extends AbstractMojo {
         
     @Override
     public void execute() throws MojoExecutionException {
-        super.execute();
         try {
-            this.getRuntimeInstance().doPackage();
+            super.execute();
+            RuntimeI runtime = this.getRuntimeInstance();
+            runtime.doPackage();
+            writeRuntimeManifest(runtime);
         } catch (BoostException e) {
             throw new MojoExecutionException("Error performing server package", e);
+        } finally {
+            closeProjectClassLoader();
+            writeBuildMetrics();
         }
     }
 }
\ No newline at end of file
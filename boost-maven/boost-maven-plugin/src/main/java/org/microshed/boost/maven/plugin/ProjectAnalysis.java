@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.microshed.boost.maven.plugin;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import org.apache.maven.artifact.Artifact;
+
+/**
+ * The result of analyzing a project: its dependencies, boost properties and
+ * the names of its booster classes.
+ *
+ * An analysis is kept in the plugin context, which Maven holds for each project
+ * for the whole session, so that goals running later in the same build (for
+ * example start and stop after package) reuse it. It is only valid as long as
+ * the project classpath and boost properties are unchanged, which is captured
+ * by its key. The project class loader is not part of it, each goal creates
+ * its own and closes it when it ends, so that no jar stays open once the
+ * session is over.
+ */
+class ProjectAnalysis {
+
+    private static final String CONTEXT_KEY = ProjectAnalysis.class.getName();
+
+    private final String key;
+    private final Map<String, String> dependencies;
+    private final Properties boostProperties;
+    private final List<String> boosterClassNames;
+
+    ProjectAnalysis(String key, Map<String, String> dependencies, Properties boostProperties,
+            List<String> boosterClassNames) {
+        this.key = key;
+        this.dependencies = dependencies;
+        this.boostProperties = boostProperties;
+        this.boosterClassNames = boosterClassNames;
+    }
+
+    String getKey() {
+        return key;
+    }
+
+    Map<String, String> getDependencies() {
+        return dependencies;
+    }
+
+    Properties getBoostProperties() {
+        return boostProperties;
+    }
+
+    List<String> getBoosterClassNames() {
+        return boosterClassNames;
+    }
+
+    /**
+     * Build the key identifying the inputs of an analysis. Classpath files are
+     * identified by their size and modification time, so that a jar rebuilt
+     * earlier in the session invalidates the analysis.
+     */
+    static String createKey(List<String> compileClasspathElements, Collection<Artifact> artifacts,
+            Properties boostProperties, String javaCompilerTargetVersion) {
+        StringBuilder key = new StringBuilder();
+        key.append(javaCompilerTargetVersion).append('\n');
+
+        for (String element : compileClasspathElements) {
+            File file = new File(element);
+            key.append(element);
+            if (file.isFile()) {
+                key.append(':').append(file.length()).append(':').append(file.lastModified());
+            }
+            key.append('\n');
+        }
+
+        for (Artifact artifact : artifacts) {
+            key.append(artifact.getId()).append(':').append(artifact.getScope()).append('\n');
+        }
+
+        // Sort the properties, their iteration order is not stable
+        for (Map.Entry<Object, Object> property : new TreeMap<Object, Object>(boostProperties).entrySet()) {
+            key.append(property.getKey()).append('=').append(property.getValue()).append('\n');
+        }
+
+        return key.toString();
+    }
+
+    static ProjectAnalysis get(Map<?, ?> pluginContext) {
+        return pluginContext == null ? null : (ProjectAnalysis) pluginContext.get(CONTEXT_KEY);
+    }
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    static void put(Map pluginContext, ProjectAnalysis analysis) {
+        if (pluginContext != null) {
+            pluginContext.put(CONTEXT_KEY, analysis);
+        }
+    }
+}
@@ -19,7 +19,7 @@ import org.microshed.boost.common.BoostException;
 /**
  * Runs the executable archive application (in the console foreground).
  */
-@Mojo(name = "run", requiresDependencyResolution = ResolutionScope.COMPILE_PLUS_RUNTIME, requiresDependencyCollection = ResolutionScope.COMPILE_PLUS_RUNTIME)
+@Mojo(name = "run", requiresDependencyResolution = ResolutionScope.COMPILE_PLUS_RUNTIME, requiresDependencyCollection = ResolutionScope.COMPILE_PLUS_RUNTIME, threadSafe = true)
 public class RunMojo extends AbstractMojo {
 
     /**
@@ -30,12 +30,13 @@ public class RunMojo extends AbstractMojo {
 
     @Override
     public void execute() throws MojoExecutionException {
-        super.execute();
-        
         try {
+            super.execute();
             this.getRuntimeInstance().doRun(clean);
         } catch (BoostException e) {
             throw new MojoExecutionException("Error running server", e);
+        } finally {
+            closeProjectClassLoader();
         }
     }
 
@@ -13,14 +13,13 @@ package org.microshed.boost.maven.plugin;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
-import org.apache.maven.plugins.annotations.ResolutionScope;
 import org.microshed.boost.common.BoostException;
 
 /**
  * Starts the executable archive application as a background process.
  * 
  */
-@Mojo(name = "start", requiresDependencyResolution = ResolutionScope.COMPILE_PLUS_RUNTIME, requiresDependencyCollection = ResolutionScope.COMPILE_PLUS_RUNTIME)
+@Mojo(name = "start", threadSafe = true)
 public class StartMojo extends AbstractMojo {
 
     /**
@@ -43,12 +42,12 @@ public class StartMojo extends AbstractMojo {
 
     @Override
     public void execute() throws MojoExecutionException {
-        super.execute();
-
         try {
-            this.getRuntimeInstance().doStart(clean, verifyTimeout, serverStartTimeout);
+            this.getPackagedRuntimeInstance().doStart(clean, verifyTimeout, serverStartTimeout);
         } catch (BoostException e) {
             throw new MojoExecutionException("Error starting server", e);
+        } finally {
+            closeProjectClassLoader();
         }
     }
 
@@ -12,24 +12,23 @@ package org.microshed.boost.maven.plugin;
 
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.Mojo;
-import org.apache.maven.plugins.annotations.ResolutionScope;
 import org.microshed.boost.common.BoostException;
 
 /**
  * Stops the executable archive application started by the 'start' or 'run'
  * goals.
  */
-@Mojo(name = "stop", requiresDependencyResolution = ResolutionScope.COMPILE_PLUS_RUNTIME, requiresDependencyCollection = ResolutionScope.COMPILE_PLUS_RUNTIME)
+@Mojo(name = "stop", threadSafe = true)
 public class StopMojo extends AbstractMojo {
 
     @Override
     public void execute() throws MojoExecutionException {
-        super.execute();
-
         try {
-            this.getRuntimeInstance().doStop();
+            this.getPackagedRuntimeInstance().doStop();
         } catch (BoostException e) {
             throw new MojoExecutionException("Error stopping server", e);
+        } finally {
+            closeProjectClassLoader();
         }
     }
 
@@ -0,0 +1,198 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.microshed.boost.maven.runtimes;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import org.apache.maven.model.Dependency;
+import org.apache.maven.project.MavenProject;
+import org.microshed.boost.common.runtimes.RuntimeI;
+import org.microshed.boost.common.utils.BoostUtil;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+
+/**
+ * Describes the server created by the package goal, so that the start, stop
+ * and debug goals can act on it without resolving the project dependencies or
+ * discovering boosters again.
+ */
+public class RuntimeManifest {
+
+    public static final String LOCATION = "boost/runtime.json";
+
+    private String runtimeClass;
+    private List<String> runtimeClasspath;
+    private String serverPath;
+    private String runtimeArtifact;
+    private String projectKey;
+
+    public String getRuntimeClass() {
+        return runtimeClass;
+    }
+
+    /**
+     * @return the classpath that the runtime class is loaded from
+     */
+    public List<String> getRuntimeClasspath() {
+        return runtimeClasspath;
+    }
+
+    public String getServerPath() {
+        return serverPath;
+    }
+
+    public String getRuntimeArtifact() {
+        return runtimeArtifact;
+    }
+
+    /**
+     * @return the key of the project the server was packaged for, from
+     *         {@link #createProjectKey(MavenProject, Properties, File)}
+     */
+    public String getProjectKey() {
+        return projectKey;
+    }
+
+    /**
+     * Whether the manifest still describes the server of the project: the
+     * project declares the same dependencies and boost properties as when it
+     * was packaged, and the runtime jars and the packaged server recorded in
+     * the manifest are still there.
+     *
+     * @param projectKey
+     *            the key of the project, from
+     *            {@link #createProjectKey(MavenProject, Properties, File)}
+     * @param projectBuildDir
+     *            the build directory of the project, that holds the server
+     */
+    public boolean isValid(String projectKey, String projectBuildDir) {
+        if (runtimeClass == null || runtimeClasspath == null || runtimeClasspath.isEmpty() || serverPath == null
+                || runtimeArtifact == null || !projectKey.equals(this.projectKey)) {
+            return false;
+        }
+        for (String path : runtimeClasspath) {
+            if (!new File(path).exists()) {
+                return false;
+            }
+        }
+        File server = new File(serverPath);
+        return server.toPath().toAbsolutePath().normalize()
+                .startsWith(new File(projectBuildDir).toPath().toAbsolutePath().normalize()) && server.isDirectory();
+    }
+
+    /**
+     * Build the key of the inputs that select the runtime of a project and its
+     * version: the declared dependencies, which hold the runtime dependency,
+     * the boost properties, which hold the runtime version, and the lock file
+     * that version ranges are resolved from. Nothing is resolved, so the key
+     * is cheap to build.
+     *
+     * @param project
+     * @param boostProperties
+     * @param lockFile
+     */
+    public static String createProjectKey(MavenProject project, Properties boostProperties, File lockFile)
+            throws IOException {
+        StringBuilder key = new StringBuilder();
+        for (Dependency dependency : project.getDependencies()) {
+            key.append(dependency.getManagementKey()).append(':').append(dependency.getVersion()).append(':')
+                    .append(dependency.getScope()).append('\n');
+        }
+
+        // Sort the properties, their iteration order is not stable
+        for (Map.Entry<Object, Object> property : new TreeMap<Object, Object>(boostProperties).entrySet()) {
+            key.append(property.getKey()).append('=').append(property.getValue()).append('\n');
+        }
+
+        if (lockFile.isFile()) {
+            key.append(BoostUtil.sha256(lockFile)).append('\n');
+        }
+        return BoostUtil.sha256(key.toString());
+    }
+
+    public static RuntimeManifest create(RuntimeI runtime, String projectKey) throws IOException {
+        RuntimeManifest manifest = new RuntimeManifest();
+        manifest.runtimeClass = runtime.getClass().getName();
+        manifest.runtimeClasspath = new ArrayList<String>();
+        manifest.serverPath = runtime.getServerPath();
+        manifest.runtimeArtifact = runtime.getRuntimeArtifact();
+        manifest.projectKey = projectKey;
+
+        // The runtime is loaded over the project classpath, which also holds the
+        // libraries it depends on
+        ClassLoader runtimeClassLoader = runtime.getClass().getClassLoader();
+        if (runtimeClassLoader instanceof URLClassLoader) {
+            for (URL url : ((URLClassLoader) runtimeClassLoader).getURLs()) {
+                manifest.runtimeClasspath.add(toFile(url).getAbsolutePath());
+            }
+        } else {
+            CodeSource codeSource = runtime.getClass().getProtectionDomain().getCodeSource();
+            if (codeSource != null) {
+                manifest.runtimeClasspath.add(toFile(codeSource.getLocation()).getAbsolutePath());
+            }
+        }
+        return manifest;
+    }
+
+    public static File getFile(String projectBuildDir) {
+        return new File(projectBuildDir, LOCATION);
+    }
+
+    /**
+     * Read the runtime manifest of a project.
+     *
+     * @param file
+     * @return the manifest, or null if the project was not packaged yet
+     * @throws IOException
+     */
+    public static RuntimeManifest read(File file) throws IOException {
+        if (!file.isFile()) {
+            return null;
+        }
+        try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            return new Gson().fromJson(reader, RuntimeManifest.class);
+        } catch (JsonParseException e) {
+            throw new IOException("Unable to read the runtime manifest " + file, e);
+        }
+    }
+
+    public void write(File file) throws IOException {
+        Files.createDirectories(file.getParentFile().toPath());
+        Gson gson = new GsonBuilder().setPrettyPrinting().create();
+        try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            gson.toJson(this, writer);
+        }
+    }
+
+    private static File toFile(URL url) throws IOException {
+        try {
+            return new File(url.toURI());
+        } catch (URISyntaxException e) {
+            throw new IOException("Unable to locate the runtime jar " + url, e);
+        }
+    }
+}
@@ -10,6 +10,7 @@
  *******************************************************************************/
 package org.microshed.boost.maven.runtimes;
 
+import java.io.File;
 import java.util.List;
 import java.util.Properties;
 
@@ -21,6 +22,8 @@ import org.eclipse.aether.RepositorySystem;
 import org.eclipse.aether.RepositorySystemSession;
 import org.eclipse.aether.repository.RemoteRepository;
 import org.microshed.boost.common.boosters.AbstractBoosterConfig;
+import org.microshed.boost.common.utils.BuildMetrics;
+import org.microshed.boost.common.utils.VersionLock;
 import org.twdata.maven.mojoexecutor.MojoExecutor.ExecutionEnvironment;
 
 public class RuntimeParams {
@@ -35,7 +38,21 @@ public class RuntimeParams {
     List<RemoteRepository> remoteRepos;
     Plugin mavenDepPlugin;
     String projectBuildDir;
+    boolean incremental;
+    boolean linkDependencies;
+    File installCacheDirectory;
+    boolean inProcessTools;
+    VersionLock versionLock;
+    BuildMetrics buildMetrics;
+    boolean classDataSharing;
+    File classDataSharingJavaHome;
+    String packagedRuntimeArtifact;
+    String packagedServerPath;
 
+    /**
+     * The other options of the goal are set with their setters, so that adding
+     * an option does not change the constructor.
+     */
     public RuntimeParams(List<AbstractBoosterConfig> boosterConfigs, Properties boostProperties, ExecutionEnvironment env, MavenProject project,
             Log log, RepositorySystem repoSystem, RepositorySystemSession repoSession,
             List<RemoteRepository> remoteRepos, Plugin mavenDepPlugin) {
@@ -90,4 +107,134 @@ public class RuntimeParams {
     public Plugin getMavenDepPlugin() {
         return this.mavenDepPlugin;
     }
+
+    /**
+     * @return whether package stages whose inputs have not changed may be
+     *         skipped
+     */
+    public boolean isIncremental() {
+        return this.incremental;
+    }
+
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    /**
+     * @return whether booster dependencies should be hard linked from the local
+     *         repository rather than copied
+     */
+    public boolean isLinkDependencies() {
+        return this.linkDependencies;
+    }
+
+    public void setLinkDependencies(boolean linkDependencies) {
+        this.linkDependencies = linkDependencies;
+    }
+
+    /**
+     * @return the directory where runtimes are extracted once and shared
+     *         between projects, or null to extract the runtime in each project
+     */
+    public File getInstallCacheDirectory() {
+        return this.installCacheDirectory;
+    }
+
+    public void setInstallCacheDirectory(File installCacheDirectory) {
+        this.installCacheDirectory = installCacheDirectory;
+    }
+
+    /**
+     * @return whether runtime steps may run in the build JVM rather than through
+     *         the runtime's Maven plugin
+     */
+    public boolean isInProcessTools() {
+        return this.inProcessTools;
+    }
+
+    public void setInProcessTools(boolean inProcessTools) {
+        this.inProcessTools = inProcessTools;
+    }
+
+    /**
+     * @return the versions that runtime version ranges resolved to
+     */
+    public VersionLock getVersionLock() {
+        return this.versionLock;
+    }
+
+    public void setVersionLock(VersionLock versionLock) {
+        this.versionLock = versionLock;
+    }
+
+    /**
+     * @return the timings of the phases of the current goal
+     */
+    public BuildMetrics getBuildMetrics() {
+        return this.buildMetrics;
+    }
+
+    public void setBuildMetrics(BuildMetrics buildMetrics) {
+        this.buildMetrics = buildMetrics;
+    }
+
+    /**
+     * @return whether the packaged server should be started once to generate a
+     *         class data sharing archive for its later starts
+     */
+    public boolean isClassDataSharing() {
+        return this.classDataSharing;
+    }
+
+    public void setClassDataSharing(boolean classDataSharing) {
+        this.classDataSharing = classDataSharing;
+    }
+
+    /**
+     * @return the Java installation the class data sharing archive is generated
+     *         for
+     */
+    public File getClassDataSharingJavaHome() {
+        return this.classDataSharingJavaHome;
+    }
+
+    public void setClassDataSharingJavaHome(File classDataSharingJavaHome) {
+        this.classDataSharingJavaHome = classDataSharingJavaHome;
+    }
+
+    /**
+     * @return the coordinates of the runtime recorded by the package goal, as
+     *         groupId:artifactId:extension[:classifier]:version, or null when
+     *         the runtime is created from the project
+     */
+    public String getPackagedRuntimeArtifact() {
+        return this.packagedRuntimeArtifact;
+    }
+
+    public void setPackagedRuntimeArtifact(String packagedRuntimeArtifact) {
+        this.packagedRuntimeArtifact = packagedRuntimeArtifact;
+    }
+
+    /**
+     * @return the version of the runtime recorded by the package goal, or null
+     *         when the runtime is created from the project
+     */
+    public String getPackagedRuntimeVersion() {
+        if (this.packagedRuntimeArtifact == null) {
+            return null;
+        }
+        return this.packagedRuntimeArtifact.substring(this.packagedRuntimeArtifact.lastIndexOf(':') + 1);
+    }
+
+    /**
+     * @return the directory of the server recorded by the package goal, or null
+     *         when the runtime is created from the project
+     */
+    public String getPackagedServerPath() {
+        return this.packagedServerPath;
+    }
+
+    public void setPackagedServerPath(String packagedServerPath) {
+        this.packagedServerPath = packagedServerPath;
+    }
 }
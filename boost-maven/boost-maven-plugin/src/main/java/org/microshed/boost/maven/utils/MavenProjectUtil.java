@@ -10,15 +10,28 @@
  *******************************************************************************/
 package org.microshed.boost.maven.utils;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.project.MavenProject;
+import org.eclipse.aether.RepositoryException;
 import org.eclipse.aether.RepositorySystem;
 import org.eclipse.aether.RepositorySystemSession;
 import org.eclipse.aether.artifact.DefaultArtifact;
@@ -27,45 +40,63 @@ import org.eclipse.aether.repository.RemoteRepository;
 import org.eclipse.aether.resolution.ArtifactDescriptorException;
 import org.eclipse.aether.resolution.ArtifactDescriptorRequest;
 import org.eclipse.aether.resolution.ArtifactDescriptorResult;
+import org.eclipse.aether.resolution.ArtifactRequest;
+import org.eclipse.aether.resolution.ArtifactResolutionException;
+import org.eclipse.aether.resolution.ArtifactResult;
+import org.eclipse.aether.resolution.VersionRangeRequest;
+import org.eclipse.aether.resolution.VersionRangeResolutionException;
+import org.eclipse.aether.resolution.VersionRangeResult;
 import org.microshed.boost.common.boosters.AbstractBoosterConfig;
+import org.microshed.boost.common.config.WarBoosterCache;
+import org.microshed.boost.common.utils.BoostUtil;
+import org.microshed.boost.common.utils.VersionLock;
 
 public class MavenProjectUtil {
 
+    private static final String EXECUTOR_KEY = MavenProjectUtil.class.getName() + ":executor";
+    private static final long EXECUTOR_KEEP_ALIVE_SECONDS = 60;
+
+    /**
+     * Get the dependencies of the project, as groupId:artifactId to version. A
+     * war dependency contributes the boosters it depends on instead of itself.
+     *
+     * The boosters of each war are found by reading its artifact descriptor.
+     * Descriptors that are not cached are read concurrently, by threads shared
+     * by every project of the repository session.
+     *
+     * @param warBoosterCache
+     *            cache of the boosters found for released wars, or null to
+     *            read every war descriptor
+     */
     public static Map<String, String> getAllDependencies(MavenProject project, RepositorySystem repoSystem,
-            RepositorySystemSession repoSession, List<RemoteRepository> remoteRepos, BoostLogger logger)
-            throws ArtifactDescriptorException {
+            RepositorySystemSession repoSession, List<RemoteRepository> remoteRepos, WarBoosterCache warBoosterCache,
+            BoostLogger logger) throws ArtifactDescriptorException, InterruptedException {
         logger.debug("Processing project for dependencies.");
         Map<String, String> dependencies = new HashMap<String, String>();
 
+        List<Artifact> wars = new ArrayList<Artifact>();
+        for (Artifact artifact : project.getArtifacts()) {
+            if (artifact.getType().equals("war")) {
+                wars.add(artifact);
+            }
+        }
+        Map<String, Map<String, String>> warBoosters = getWarBoosters(wars, repoSystem, repoSession, remoteRepos,
+                warBoosterCache, logger);
+
         for (Artifact artifact : project.getArtifacts()) {
             logger.debug("Found dependency while processing project: " + artifact.getGroupId() + ":"
                     + artifact.getArtifactId() + ":" + artifact.getVersion() + ":" + artifact.getType() + ":"
                     + artifact.getScope());
 
             if (artifact.getType().equals("war")) {
-                logger.debug("Resolving transitive booster dependencies for war");
-                org.eclipse.aether.artifact.Artifact pomArtifact = new DefaultArtifact(artifact.getGroupId(),
-                        artifact.getArtifactId(), "pom", artifact.getVersion());
-
-                List<org.eclipse.aether.artifact.Artifact> warArtifacts = getWarArtifacts(pomArtifact, repoSystem,
-                        repoSession, remoteRepos);
-
-                for (org.eclipse.aether.artifact.Artifact warArtifact : warArtifacts) {
-                    // Only add booster dependencies for this war. Anything else
-                    // like datasource
-                    // dependencies must be explicitly defined by this project.
-                    // This is to allow the
-                    // current project to have full control over those optional
-                    // dependencies.
-                    if (warArtifact.getGroupId().equals(AbstractBoosterConfig.BOOSTERS_GROUP_ID)) {
-                        logger.debug("Found booster dependency: " + warArtifact.getGroupId() + ":"
-                                + warArtifact.getArtifactId() + ":" + warArtifact.getVersion());
-
-                        dependencies.put(warArtifact.getGroupId() + ":" + warArtifact.getArtifactId(),
-                                warArtifact.getVersion());
-                    }
+                // Only add booster dependencies for this war. Anything else
+                // like datasource dependencies must be explicitly defined by
+                // this project. This is to allow the current project to have
+                // full control over those optional dependencies.
+                for (Map.Entry<String, String> booster : warBoosters.get(getCoordinates(artifact)).entrySet()) {
+                    logger.debug("Found booster dependency: " + booster.getKey() + ":" + booster.getValue());
+                    dependencies.put(booster.getKey(), booster.getValue());
                 }
-
             } else {
                 dependencies.put(artifact.getGroupId() + ":" + artifact.getArtifactId(), artifact.getVersion());
             }
@@ -74,6 +105,267 @@ public class MavenProjectUtil {
         return dependencies;
     }
 
+    /**
+     * Find the boosters each war depends on, from the repository session, then
+     * from the cache, and only then from the war descriptors.
+     *
+     * @return groupId:artifactId:version of each war to the groupId:artifactId
+     *         and version of its boosters
+     */
+    private static Map<String, Map<String, String>> getWarBoosters(List<Artifact> wars,
+            final RepositorySystem repoSystem, final RepositorySystemSession repoSession,
+            final List<RemoteRepository> remoteRepos, WarBoosterCache warBoosterCache, BoostLogger logger)
+            throws ArtifactDescriptorException, InterruptedException {
+        Map<String, Map<String, String>> warBoosters = new HashMap<String, Map<String, String>>();
+        List<Artifact> toRead = new ArrayList<Artifact>();
+        for (Artifact war : wars) {
+            String coordinates = getCoordinates(war);
+            if (warBoosters.containsKey(coordinates)) {
+                continue;
+            }
+
+            Map<String, String> boosters = getSessionWarBoosters(repoSession, coordinates);
+            if (boosters == null && warBoosterCache != null && WarBoosterCache.isCacheable(war.getVersion())) {
+                boosters = warBoosterCache.get(coordinates);
+            }
+            if (boosters != null) {
+                logger.debug("Reusing the boosters found for the war " + coordinates);
+                warBoosters.put(coordinates, boosters);
+            } else {
+                warBoosters.put(coordinates, null);
+                toRead.add(war);
+            }
+        }
+        if (toRead.isEmpty()) {
+            return warBoosters;
+        }
+
+        logger.debug("Resolving transitive booster dependencies for " + toRead.size() + " wars");
+        List<Future<Map<String, String>>> results = new ArrayList<Future<Map<String, String>>>();
+        ExecutorService executor = getExecutor(repoSession);
+        try {
+            for (Artifact war : toRead) {
+                final org.eclipse.aether.artifact.Artifact pomArtifact = new DefaultArtifact(war.getGroupId(),
+                        war.getArtifactId(), "pom", war.getVersion());
+                results.add(executor.submit(new Callable<Map<String, String>>() {
+                    @Override
+                    public Map<String, String> call() throws ArtifactDescriptorException {
+                        return getBoosters(getWarArtifacts(pomArtifact, repoSystem, repoSession, remoteRepos));
+                    }
+                }));
+            }
+
+            for (int i = 0; i < toRead.size(); i++) {
+                Artifact war = toRead.get(i);
+                Map<String, String> boosters;
+                try {
+                    boosters = results.get(i).get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof ArtifactDescriptorException) {
+                        throw (ArtifactDescriptorException) e.getCause();
+                    }
+                    if (e.getCause() instanceof RuntimeException) {
+                        throw (RuntimeException) e.getCause();
+                    }
+                    throw new IllegalStateException("Unable to read the descriptor of " + war, e.getCause());
+                }
+
+                String coordinates = getCoordinates(war);
+                warBoosters.put(coordinates, boosters);
+                repoSession.getData().set(getSessionKey(coordinates), boosters);
+                if (warBoosterCache != null && WarBoosterCache.isCacheable(war.getVersion())) {
+                    warBoosterCache.put(coordinates, boosters);
+                }
+            }
+        } finally {
+            // Stop reading the remaining descriptors after a failure
+            for (Future<Map<String, String>> result : results) {
+                result.cancel(true);
+            }
+        }
+        return warBoosters;
+    }
+
+    /**
+     * Get the executor that reads war descriptors for a repository session,
+     * creating it for the first project of the session. Its threads are daemon
+     * threads and stop once idle, since the session has no end to shut it down
+     * at.
+     */
+    private static ExecutorService getExecutor(RepositorySystemSession repoSession) {
+        ExecutorService executor = (ExecutorService) repoSession.getData().get(EXECUTOR_KEY);
+        if (executor != null) {
+            return executor;
+        }
+
+        int threads = Runtime.getRuntime().availableProcessors();
+        ThreadPoolExecutor created = new ThreadPoolExecutor(threads, threads, EXECUTOR_KEEP_ALIVE_SECONDS,
+                TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "boost-war-descriptors-" + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        created.allowCoreThreadTimeOut(true);
+
+        // Another project of the session may have created one meanwhile
+        if (repoSession.getData().set(EXECUTOR_KEY, null, created)) {
+            return created;
+        }
+        created.shutdown();
+        return (ExecutorService) repoSession.getData().get(EXECUTOR_KEY);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, String> getSessionWarBoosters(RepositorySystemSession repoSession,
+            String coordinates) {
+        return (Map<String, String>) repoSession.getData().get(getSessionKey(coordinates));
+    }
+
+    private static String getSessionKey(String coordinates) {
+        return WarBoosterCache.class.getName() + ":" + coordinates;
+    }
+
+    private static String getCoordinates(Artifact artifact) {
+        return artifact.getGroupId() + ":" + artifact.getArtifactId() + ":" + artifact.getVersion();
+    }
+
+    /**
+     * Keep the booster dependencies of a war, as groupId:artifactId to version.
+     */
+    private static Map<String, String> getBoosters(List<org.eclipse.aether.artifact.Artifact> warArtifacts) {
+        Map<String, String> boosters = new LinkedHashMap<String, String>();
+        for (org.eclipse.aether.artifact.Artifact warArtifact : warArtifacts) {
+            if (warArtifact.getGroupId().equals(AbstractBoosterConfig.BOOSTERS_GROUP_ID)) {
+                boosters.put(warArtifact.getGroupId() + ":" + warArtifact.getArtifactId(), warArtifact.getVersion());
+            }
+        }
+        return boosters;
+    }
+
+    /**
+     * Resolve jar dependencies and copy them to a directory, named as the
+     * maven-dependency-plugin copy goal names them.
+     *
+     * The dependencies are resolved in a single request, so that the repository
+     * connector downloads the missing ones concurrently. Files already in the
+     * directory with the same content are not copied again.
+     *
+     * @param dependencies
+     *            groupId:artifactId:version coordinates
+     * @param outputDirectory
+     * @param link
+     *            hard link the files from the local repository where possible
+     *            instead of copying them
+     * @throws ArtifactResolutionException
+     *             if any of the dependencies can not be resolved
+     * @throws IOException
+     */
+    public static void copyDependencies(List<String> dependencies, File outputDirectory, boolean link,
+            RepositorySystem repoSystem, RepositorySystemSession repoSession, List<RemoteRepository> remoteRepos,
+            BoostLogger logger)
+            throws ArtifactResolutionException, IOException {
+        List<ArtifactRequest> requests = new ArrayList<ArtifactRequest>();
+        for (String dependency : dependencies) {
+            String[] dependencyInfo = dependency.split(":");
+            requests.add(new ArtifactRequest(
+                    new DefaultArtifact(dependencyInfo[0], dependencyInfo[1], "jar", dependencyInfo[2]), remoteRepos,
+                    null));
+        }
+
+        for (ArtifactResult result : repoSystem.resolveArtifacts(repoSession, requests)) {
+            org.eclipse.aether.artifact.Artifact artifact = result.getArtifact();
+            File target = new File(outputDirectory,
+                    artifact.getArtifactId() + "-" + artifact.getBaseVersion() + "." + artifact.getExtension());
+
+            if (BoostUtil.placeIfChanged(artifact.getFile(), target, link)) {
+                logger.debug("Placed " + artifact + " at " + target);
+            } else {
+                logger.debug(target + " is up to date");
+            }
+        }
+    }
+
+    /**
+     * Resolve an artifact from the repositories.
+     *
+     * @param version
+     *            a version, or a version range in which case the highest
+     *            available version is resolved
+     * @return the artifact file in the local repository
+     * @throws RepositoryException
+     */
+    public static File resolveArtifact(String groupId, String artifactId, String extension, String version,
+            RepositorySystem repoSystem, RepositorySystemSession repoSession, List<RemoteRepository> remoteRepos)
+            throws RepositoryException {
+        org.eclipse.aether.artifact.Artifact artifact = new DefaultArtifact(groupId, artifactId, extension, version);
+
+        VersionRangeResult rangeResult = repoSystem.resolveVersionRange(repoSession,
+                new VersionRangeRequest(artifact, remoteRepos, null));
+        if (rangeResult.getHighestVersion() == null) {
+            throw new VersionRangeResolutionException(rangeResult, "No version of " + artifact + " was found");
+        }
+        artifact = artifact.setVersion(rangeResult.getHighestVersion().toString());
+
+        return repoSystem.resolveArtifact(repoSession, new ArtifactRequest(artifact, remoteRepos, null)).getArtifact()
+                .getFile();
+    }
+
+    /**
+     * Resolve a version range to the version locked for it, resolving it
+     * against the repositories only when nothing is locked or the locked
+     * version expired. A version that is not a range is returned as is.
+     *
+     * When the range can not be resolved, for example in offline mode, an
+     * expired locked version is used instead.
+     *
+     * @return the concrete version
+     * @throws RepositoryException
+     *             if the range can not be resolved and was never locked
+     */
+    public static String resolveLockedVersion(VersionLock lock, String groupId, String artifactId, String extension,
+            String version, RepositorySystem repoSystem, RepositorySystemSession repoSession,
+            List<RemoteRepository> remoteRepos, BoostLogger logger) throws RepositoryException {
+        if (!VersionLock.isRange(version)) {
+            return version;
+        }
+
+        String key = groupId + ":" + artifactId;
+        String locked = lock.getVersion(key, version);
+        if (locked == null && repoSession.isOffline()) {
+            locked = lock.getExpiredVersion(key, version);
+        }
+        if (locked != null) {
+            return locked;
+        }
+
+        org.eclipse.aether.artifact.Artifact artifact = new DefaultArtifact(groupId, artifactId, extension, version);
+        String resolved;
+        try {
+            VersionRangeResult rangeResult = repoSystem.resolveVersionRange(repoSession,
+                    new VersionRangeRequest(artifact, remoteRepos, null));
+            if (rangeResult.getHighestVersion() == null) {
+                throw new VersionRangeResolutionException(rangeResult, "No version of " + artifact + " was found");
+            }
+            resolved = rangeResult.getHighestVersion().toString();
+        } catch (VersionRangeResolutionException e) {
+            String expired = lock.getExpiredVersion(key, version);
+            if (expired == null) {
+                throw e;
+            }
+            logger.warn("Unable to resolve " + artifact
+                    + ", using the previously locked version " + expired + ": " + e.getMessage());
+            return expired;
+        }
+
+        lock.setVersion(key, version, resolved);
+        return resolved;
+    }
+
     public static String getJavaCompilerTargetVersion(MavenProject project) {
 
         // Check maven compiler properties
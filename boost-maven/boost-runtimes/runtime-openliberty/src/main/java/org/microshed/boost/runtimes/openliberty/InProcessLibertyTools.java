@@ -0,0 +1,231 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.microshed.boost.runtimes.openliberty;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.aether.RepositoryException;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.microshed.boost.common.BoostLoggerI;
+import org.microshed.boost.common.utils.BoostUtil;
+import org.microshed.boost.common.utils.StageFingerprints;
+import org.microshed.boost.maven.utils.MavenProjectUtil;
+
+import io.openliberty.tools.common.plugins.util.InstallFeatureUtil;
+import io.openliberty.tools.common.plugins.util.PluginExecutionException;
+import io.openliberty.tools.common.plugins.util.PluginScenarioException;
+
+/**
+ * The Liberty tooling steps that can run in the build JVM, rather than through
+ * a liberty-maven-plugin goal executed with mojo-executor. Executing a goal
+ * resolves the plugin, creates its class realm and injects its configuration
+ * every time, which costs more than the steps below.
+ *
+ * Each step returns false when it can not run in-process for this
+ * installation, so that the caller can fall back to the plugin goal.
+ */
+public class InProcessLibertyTools {
+
+    /**
+     * Marker written into an installation extracted in-process, holding the
+     * fingerprint of the path, size and modification time of the runtime zip it
+     * was extracted from.
+     */
+    public static final String MARKER = ".boost-runtime";
+
+    private static final String SERVER_TEMPLATE = "templates/servers/defaultServer";
+
+    private final File installDir;
+    private final BoostLoggerI logger;
+
+    /**
+     * @param installDir
+     *            the wlp directory of the project
+     * @param logger
+     */
+    public InProcessLibertyTools(File installDir, BoostLoggerI logger) {
+        this.installDir = installDir;
+        this.logger = logger;
+    }
+
+    /**
+     * Whether an installation was extracted in-process.
+     *
+     * @param installDir
+     *            the wlp directory of the project
+     */
+    public static boolean isExtractedInstall(File installDir) {
+        return new File(installDir, MARKER).isFile();
+    }
+
+    /**
+     * Extract the runtime into the installation unless it was already extracted
+     * from the same zip. The zip is not hashed, it is the same as long as its
+     * path, size and modification time are. Existing servers are kept.
+     *
+     * @param runtimeZip
+     */
+    public void extractRuntime(File runtimeZip) throws IOException {
+        String fingerprint = StageFingerprints.fingerprint(runtimeZip.getAbsolutePath(), runtimeZip.length(),
+                runtimeZip.lastModified());
+        File marker = new File(installDir, MARKER);
+        if (marker.isFile()
+                && new String(Files.readAllBytes(marker.toPath()), StandardCharsets.UTF_8).equals(fingerprint)) {
+            logger.debug("The Liberty installation in " + installDir + " is up to date");
+            return;
+        }
+
+        logger.info("Extracting " + runtimeZip + " into " + installDir);
+        LibertyInstallCache.removeInstall(installDir);
+        Files.deleteIfExists(marker.toPath());
+        // The runtime zip holds the installation under wlp/
+        BoostUtil.extract(runtimeZip, installDir.getParentFile(), "");
+        makeScriptsExecutable();
+        Files.write(marker.toPath(), fingerprint.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Make the files directly in bin/ executable, since zip entries do not
+     * always carry permissions. The server and productInfo scripts are run by
+     * the feature installation and the liberty-maven-plugin goals.
+     */
+    private void makeScriptsExecutable() throws IOException {
+        File[] scripts = new File(installDir, "bin").listFiles();
+        if (scripts == null) {
+            return;
+        }
+        for (File script : scripts) {
+            if (script.isFile() && !script.setExecutable(true, false)) {
+                throw new IOException("Unable to make " + script + " executable");
+            }
+        }
+    }
+
+    /**
+     * Create a server from the default server template of the installation, as
+     * the server create command does. An existing server is kept.
+     *
+     * @param serverName
+     * @return false if the installation has no server template
+     */
+    public boolean createServer(String serverName) throws IOException {
+        final Path serverDir = installDir.toPath().resolve("usr/servers").resolve(serverName);
+        if (Files.isRegularFile(serverDir.resolve("server.xml"))) {
+            logger.debug("The server " + serverName + " already exists");
+            return true;
+        }
+
+        final Path template = installDir.toPath().resolve(SERVER_TEMPLATE);
+        if (!Files.isDirectory(template)) {
+            return false;
+        }
+
+        Files.walkFileTree(template, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                Files.createDirectories(serverDir.resolve(template.relativize(dir).toString()));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                BoostUtil.copyIfChanged(file.toFile(), serverDir.resolve(template.relativize(file).toString()).toFile());
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        Files.createDirectories(serverDir.resolve("apps"));
+        Files.createDirectories(serverDir.resolve("dropins"));
+        logger.info("Created the server " + serverName + " in " + serverDir);
+        return true;
+    }
+
+    /**
+     * Install the features of a server that are not installed yet, with the same
+     * utility that the install-feature goal uses. Feature artifacts are resolved
+     * from the project repositories.
+     *
+     * @param serverName
+     * @return false if the installation does not support installing features
+     *         this way
+     */
+    public boolean installFeatures(String serverName, final RepositorySystem repoSystem,
+            final RepositorySystemSession repoSession, final List<RemoteRepository> remoteRepos)
+            throws PluginExecutionException {
+        InstallFeatureUtil util;
+        try {
+            util = new InstallFeatureUtil(installDir, null, null, Collections.<String> emptySet()) {
+                @Override
+                public void debug(String msg) {
+                    logger.debug(msg);
+                }
+
+                @Override
+                public void debug(String msg, Throwable e) {
+                    logger.debug(msg, e);
+                }
+
+                @Override
+                public void debug(Throwable e) {
+                    logger.debug(e);
+                }
+
+                @Override
+                public void warn(String msg) {
+                    logger.warn(msg);
+                }
+
+                @Override
+                public void info(String msg) {
+                    logger.info(msg);
+                }
+
+                @Override
+                public boolean isDebugEnabled() {
+                    return logger.isDebugEnabled();
+                }
+
+                @Override
+                public File downloadArtifact(String groupId, String artifactId, String type, String version)
+                        throws PluginExecutionException {
+                    try {
+                        return MavenProjectUtil.resolveArtifact(groupId, artifactId, type, version, repoSystem,
+                                repoSession, remoteRepos);
+                    } catch (RepositoryException e) {
+                        throw new PluginExecutionException(e);
+                    }
+                }
+            };
+        } catch (PluginScenarioException e) {
+            logger.debug("Features can not be installed in-process: " + e.getMessage());
+            return false;
+        }
+
+        Set<String> features = util.getServerFeatures(new File(installDir, "usr/servers/" + serverName));
+        if (features == null || features.isEmpty()) {
+            return true;
+        }
+        util.installFeatures(false, new ArrayList<String>(features));
+        return true;
+    }
+}
@@ -0,0 +1,462 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.microshed.boost.runtimes.openliberty;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.FileUtils;
+import org.microshed.boost.common.BoostLoggerI;
+import org.microshed.boost.common.image.ImageLayer;
+import org.microshed.boost.common.image.OciImageWriter;
+
+/**
+ * Generates a class data sharing archive for a Liberty server from a training
+ * start, so that later starts load the server classes from the archive rather
+ * than from the jars.
+ *
+ * On HotSpot, the classes loaded by the training start are dumped into an
+ * AppCDS archive. On OpenJ9, the training start populates a shared classes
+ * cache. Either is written under the server directory and referenced with its
+ * absolute path, since WLP_OUTPUT_DIR changes the working directory of the
+ * server process.
+ *
+ * The archive is only used when the server runs in place, from the build
+ * directory. An AppCDS archive records the class path it was dumped with, the
+ * absolute path of the server launcher, and a JVM started with another class
+ * path does not use it, nor the default archive of the JDK. The archive and its
+ * options are therefore left out of the runnable jar and of the image, where
+ * the server is installed at another path.
+ *
+ * The options are written so that a different JVM at runtime starts without
+ * them. The HotSpot option goes into the server jvm.options, where OpenJ9
+ * ignores it as it does every unknown -XX option, and an archive that does not
+ * match the JVM is not used. The OpenJ9 option, which HotSpot would reject,
+ * goes into OPENJ9_JAVA_OPTIONS in the server.env, which only OpenJ9 reads.
+ */
+public class LibertyClassDataSharing {
+
+    /**
+     * Directory of the archive, relative to the server directory.
+     */
+    public static final String DIRECTORY = "boost/cds";
+
+    static final String BEGIN = "# Begin class data sharing generated by Boost";
+    static final String END = "# End class data sharing generated by Boost";
+
+    private static final String HOTSPOT_ARCHIVE = DIRECTORY + "/app-cds.jsa";
+    private static final String CLASS_LIST = DIRECTORY + "/classes.lst";
+    private static final String TRAINING_LOG = DIRECTORY + "/training.log";
+    private static final String OPENJ9_CACHE_NAME = "boost";
+    private static final String JVM_OPTIONS = "jvm.options";
+    private static final String SERVER_ENV = "server.env";
+
+    private static final long TIMEOUT_MINUTES = 5;
+    private static final boolean WINDOWS = File.separatorChar == '\\';
+
+    /**
+     * The kind of JVM the archive is generated for.
+     */
+    enum Jvm {
+        HOTSPOT, OPENJ9
+    }
+
+    private final File installDir;
+    private final String serverName;
+    private final File serverDir;
+    private final File javaHome;
+    private final BoostLoggerI logger;
+
+    /**
+     * @param installDir
+     *            the wlp directory holding the server
+     * @param serverName
+     * @param javaHome
+     *            the Java installation the server will run on
+     * @param logger
+     */
+    public LibertyClassDataSharing(File installDir, String serverName, File javaHome, BoostLoggerI logger) {
+        this.installDir = installDir;
+        this.serverName = serverName;
+        this.serverDir = new File(installDir, "usr/servers/" + serverName);
+        this.javaHome = javaHome;
+        this.logger = logger;
+    }
+
+    /**
+     * Start the server once without an archive, generate the archive from it,
+     * start the server again with the archive and report both startup times.
+     *
+     * @return false if class data sharing is not supported on the JVM
+     */
+    public boolean generate() throws IOException, InterruptedException {
+        String versionOutput = run(Arrays.asList(getJavaCommand(), "-version"), null);
+        Jvm jvm = getJvm(versionOutput);
+        int version = getFeatureVersion(versionOutput);
+        // Options left by an earlier archive must not outlive it
+        remove(serverDir);
+        if (jvm == Jvm.HOTSPOT && version < 10) {
+            logger.warn("Class data sharing for applications needs Java 10 or later on HotSpot, " + javaHome
+                    + " is Java " + version + ".");
+            return false;
+        }
+
+        Files.createDirectories(new File(serverDir, DIRECTORY).toPath());
+
+        logger.info("Starting the server " + serverName + " to generate a class data sharing archive for " + jvm
+                + " Java " + version + ".");
+        String trainingArgs = jvm == Jvm.HOTSPOT ? join(getClassListOptions(version)) : "";
+        long withoutArchive = startAndStop(trainingArgs);
+
+        if (jvm == Jvm.HOTSPOT) {
+            dumpArchive(version);
+            writeOptions(serverDir, jvm, version);
+        } else {
+            // The first start with the options populates the cache
+            writeOptions(serverDir, jvm, version);
+            startAndStop("");
+        }
+        long withArchive = startAndStop("");
+
+        logger.info("The server started in " + withoutArchive + " ms without class data sharing and in "
+                + withArchive + " ms with it. The archive is used when the server runs from " + installDir
+                + ", it is left out of the runnable jar and the image.");
+        // The server output of the training starts does not belong in the package
+        FileUtils.deleteDirectory(new File(serverDir, "logs"));
+        FileUtils.deleteDirectory(new File(serverDir, "workarea"));
+        return true;
+    }
+
+    /**
+     * Add the options that use the archive to the jvm.options or server.env of
+     * a server, replacing the ones written before.
+     *
+     * @param version
+     *            the Java feature version the archive is generated with
+     */
+    static void writeOptions(File serverDir, Jvm jvm, int version) throws IOException {
+        removeOptions(new File(serverDir, JVM_OPTIONS));
+        removeOptions(new File(serverDir, SERVER_ENV));
+        if (jvm == Jvm.HOTSPOT) {
+            // With the default -Xshare:auto, an archive that does not match the
+            // JVM is not used
+            List<String> options = getAppCdsOptions(version);
+            options.add("-XX:SharedArchiveFile=" + new File(serverDir, HOTSPOT_ARCHIVE).getAbsolutePath());
+            addOptions(new File(serverDir, JVM_OPTIONS), options);
+        } else {
+            addOptions(new File(serverDir, SERVER_ENV), Arrays.asList("OPENJ9_JAVA_OPTIONS=-Xshareclasses:name="
+                    + OPENJ9_CACHE_NAME + ",cacheDir=" + new File(serverDir, DIRECTORY).getAbsolutePath()
+                    + ",nonfatal"));
+        }
+    }
+
+    /**
+     * Move the archive of a server to a holding directory and remove its
+     * options, until the returned Closeable is closed, so that the server can
+     * be packaged without them.
+     */
+    public static Closeable setAside(File serverDir, File holdingDir) throws IOException {
+        final File archiveDir = new File(serverDir, DIRECTORY);
+        final File heldDir = new File(holdingDir, "cds");
+        final Map<File, byte[]> optionFiles = new LinkedHashMap<File, byte[]>();
+        for (String name : Arrays.asList(JVM_OPTIONS, SERVER_ENV)) {
+            File file = new File(serverDir, name);
+            if (file.isFile()) {
+                optionFiles.put(file, Files.readAllBytes(file.toPath()));
+            }
+        }
+
+        FileUtils.deleteDirectory(heldDir);
+        if (archiveDir.isDirectory()) {
+            Files.createDirectories(holdingDir.toPath());
+            Files.move(archiveDir.toPath(), heldDir.toPath());
+        }
+        removeOptions(new File(serverDir, JVM_OPTIONS));
+        removeOptions(new File(serverDir, SERVER_ENV));
+
+        return new Closeable() {
+            @Override
+            public void close() throws IOException {
+                for (Map.Entry<File, byte[]> optionFile : optionFiles.entrySet()) {
+                    Files.write(optionFile.getKey().toPath(), optionFile.getValue());
+                }
+                if (heldDir.isDirectory()) {
+                    Files.move(heldDir.toPath(), archiveDir.toPath());
+                }
+            }
+        };
+    }
+
+    /**
+     * Remove the archive of a server from the layers of an image, and replace
+     * its jvm.options and server.env with copies that do not have the options
+     * of the archive.
+     *
+     * @param image
+     * @param serverPath
+     *            absolute path of the server directory in the image
+     * @param workDir
+     *            where the copies of the options files are written
+     */
+    public static void excludeFromImage(OciImageWriter image, String serverPath, File workDir) throws IOException {
+        String archivePath = (serverPath + "/" + DIRECTORY).substring(1);
+        String archiveParentPath = archivePath.substring(0, archivePath.lastIndexOf('/'));
+        for (ImageLayer layer : image.getLayers()) {
+            boolean parentHoldsOtherFiles = false;
+            Iterator<String> paths = layer.getEntries().keySet().iterator();
+            while (paths.hasNext()) {
+                String path = paths.next();
+                if (path.equals(archivePath) || path.startsWith(archivePath + "/")) {
+                    paths.remove();
+                } else if (path.startsWith(archiveParentPath + "/")) {
+                    parentHoldsOtherFiles = true;
+                }
+            }
+            if (!parentHoldsOtherFiles) {
+                layer.getEntries().remove(archiveParentPath);
+            }
+
+            for (String name : Arrays.asList(JVM_OPTIONS, SERVER_ENV)) {
+                File source = layer.getEntries().get((serverPath + "/" + name).substring(1));
+                if (source == null) {
+                    continue;
+                }
+                List<String> lines = readOptions(source);
+                if (lines.isEmpty()) {
+                    layer.getEntries().remove((serverPath + "/" + name).substring(1));
+                } else if (lines.size() != Files.readAllLines(source.toPath(), StandardCharsets.UTF_8).size()) {
+                    File copy = new File(workDir, name);
+                    writeIfChanged(copy, lines);
+                    layer.add(serverPath + "/" + name, copy);
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove the archive of a server and the options written by
+     * {@link #writeOptions}, keeping the other options of the server.
+     */
+    public static void remove(File serverDir) throws IOException {
+        FileUtils.deleteDirectory(new File(serverDir, DIRECTORY));
+        removeOptions(new File(serverDir, JVM_OPTIONS));
+        removeOptions(new File(serverDir, SERVER_ENV));
+    }
+
+    private static void addOptions(File file, List<String> options) throws IOException {
+        List<String> lines = readOptions(file);
+        lines.add(BEGIN);
+        lines.addAll(options);
+        lines.add(END);
+        Files.write(file.toPath(), lines, StandardCharsets.UTF_8);
+    }
+
+    private static void removeOptions(File file) throws IOException {
+        if (!file.isFile()) {
+            return;
+        }
+        List<String> lines = readOptions(file);
+        if (lines.isEmpty()) {
+            Files.delete(file.toPath());
+        } else if (lines.size() != Files.readAllLines(file.toPath(), StandardCharsets.UTF_8).size()) {
+            Files.write(file.toPath(), lines, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * The lines of a server jvm.options or server.env, without the class data
+     * sharing options.
+     */
+    private static List<String> readOptions(File file) throws IOException {
+        List<String> lines = new ArrayList<String>();
+        if (!file.isFile()) {
+            return lines;
+        }
+        boolean generated = false;
+        for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+            if (line.equals(BEGIN)) {
+                generated = true;
+            } else if (line.equals(END)) {
+                generated = false;
+            } else if (!generated) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Write the lines of a file unless it already holds them, so that its
+     * modification time only changes with its content.
+     */
+    private static void writeIfChanged(File file, List<String> lines) throws IOException {
+        if (file.isFile() && Files.readAllLines(file.toPath(), StandardCharsets.UTF_8).equals(lines)) {
+            return;
+        }
+        Files.createDirectories(file.getParentFile().toPath());
+        Files.write(file.toPath(), lines, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Java 10 only archives the application classes with -XX:+UseAppCDS, that
+     * later versions ignore or reject.
+     */
+    private static List<String> getAppCdsOptions(int version) {
+        List<String> options = new ArrayList<String>();
+        if (version == 10) {
+            options.add("-XX:+UseAppCDS");
+        }
+        return options;
+    }
+
+    /**
+     * The options of the HotSpot training start, that records the classes it
+     * loads.
+     */
+    List<String> getClassListOptions(int version) {
+        List<String> options = getAppCdsOptions(version);
+        options.add("-XX:DumpLoadedClassList=" + new File(serverDir, CLASS_LIST).getAbsolutePath());
+        return options;
+    }
+
+    /**
+     * The server launcher, by the path the server script runs it with. The
+     * script finds the installation with cd and pwd, which keep symbolic
+     * links, so the path is absolute but not canonical.
+     */
+    File getLauncher() {
+        return new File(installDir, "bin/tools/ws-server.jar").getAbsoluteFile().toPath().normalize().toFile();
+    }
+
+    /**
+     * The kind of JVM, from the output of java -version.
+     */
+    static Jvm getJvm(String versionOutput) {
+        return versionOutput.contains("OpenJ9") || versionOutput.contains("J9 VM") ? Jvm.OPENJ9 : Jvm.HOTSPOT;
+    }
+
+    /**
+     * The Java feature version, such as 8 or 11, from the output of java
+     * -version.
+     */
+    static int getFeatureVersion(String versionOutput) {
+        Matcher matcher = Pattern.compile("version \"(1\\.)?(\\d+)").matcher(versionOutput);
+        if (!matcher.find()) {
+            throw new IllegalArgumentException("Unable to find the Java version in: " + versionOutput);
+        }
+        return Integer.parseInt(matcher.group(2));
+    }
+
+    /**
+     * Dump the classes loaded by the training start into an archive, with the
+     * same class path as the server launcher.
+     */
+    void dumpArchive(int version) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<String>();
+        command.add(getJavaCommand());
+        command.add("-Xshare:dump");
+        command.addAll(getAppCdsOptions(version));
+        command.add("-XX:SharedClassListFile=" + new File(serverDir, CLASS_LIST).getAbsolutePath());
+        command.add("-XX:SharedArchiveFile=" + new File(serverDir, HOTSPOT_ARCHIVE).getAbsolutePath());
+        command.add("-cp");
+        command.add(getLauncher().getPath());
+        run(command, null);
+        Files.delete(new File(serverDir, CLASS_LIST).toPath());
+    }
+
+    /**
+     * Start the server, then stop it.
+     *
+     * @param jvmArgs
+     *            options added to the ones of the server
+     * @return the time the start took, in milliseconds
+     */
+    private long startAndStop(String jvmArgs) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        run(Arrays.asList(getServerCommand(), "start", serverName), jvmArgs);
+        long startupTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        run(Arrays.asList(getServerCommand(), "stop", serverName), "");
+        return startupTime;
+    }
+
+    /**
+     * Run a command with the server Java installation. The output goes to a
+     * file rather than a pipe, so that a command that hangs is stopped after
+     * the timeout instead of blocking the build while its output is read.
+     *
+     * @param jvmArgs
+     *            options added by the server script, or null for a command that
+     *            is not a server command
+     * @return the output of the command
+     */
+    private String run(List<String> command, String jvmArgs) throws IOException, InterruptedException {
+        File outputFile = File.createTempFile("boost-cds", ".log");
+        ProcessBuilder builder = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(outputFile);
+        Map<String, String> env = builder.environment();
+        env.put("JAVA_HOME", javaHome.getAbsolutePath());
+        if (jvmArgs != null) {
+            env.put("JVM_ARGS", jvmArgs);
+        }
+        logger.debug("Running " + command);
+        Process process = builder.start();
+        process.getOutputStream().close();
+
+        if (!process.waitFor(TIMEOUT_MINUTES, TimeUnit.MINUTES)) {
+            process.destroyForcibly();
+            throw new IOException(command + " did not complete in " + TIMEOUT_MINUTES + " minutes, its output is in "
+                    + outputFile);
+        }
+
+        String result = new String(Files.readAllBytes(outputFile.toPath()), StandardCharsets.UTF_8);
+        Files.delete(outputFile.toPath());
+        if (jvmArgs != null) {
+            File trainingLog = new File(serverDir, TRAINING_LOG);
+            Files.write(trainingLog.toPath(), (command + "\n" + result).getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+        if (process.exitValue() != 0) {
+            throw new IOException(command + " failed with exit code " + process.exitValue() + ": " + result);
+        }
+        return result;
+    }
+
+    private static String join(List<String> options) {
+        StringBuilder joined = new StringBuilder();
+        for (String option : options) {
+            if (joined.length() > 0) {
+                joined.append(' ');
+            }
+            joined.append(option);
+        }
+        return joined.toString();
+    }
+
+    private String getJavaCommand() {
+        return new File(javaHome, WINDOWS ? "bin/java.exe" : "bin/java").getAbsolutePath();
+    }
+
+    private String getServerCommand() {
+        return new File(installDir, WINDOWS ? "bin/server.bat" : "bin/server").getAbsolutePath();
+    }
+}
@@ -0,0 +1,442 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.microshed.boost.runtimes.openliberty;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.microshed.boost.common.BoostLoggerI;
+import org.microshed.boost.common.utils.BoostUtil;
+
+/**
+ * Liberty installations extracted once into a directory shared between
+ * projects, and linked into each project.
+ *
+ * Installations are stored by the SHA-256 of the runtime zip. A project
+ * installation is built from the shared one with a hard link for every file, so
+ * that it takes almost no space or time to create. Only usr/, which holds the
+ * servers, is copied and private to the project. Files of the shared
+ * installation are made read-only, so that they can not be modified through a
+ * project installation.
+ *
+ * Where the file system has no POSIX permissions, as on Windows, the files are
+ * copied into each project instead. The DOS read-only attribute is shared by
+ * the links too, so it would also keep the project installation from being
+ * deleted.
+ *
+ * The files added by installing a set of features are cached the same way, by
+ * the runtime version and the sorted feature names. Entries do not depend on
+ * the machine, so a cache directory can be seeded for offline builds.
+ */
+public class LibertyInstallCache {
+
+    /**
+     * Marker written into a project installation built from the cache, holding
+     * the hash of the shared installation.
+     */
+    public static final String MARKER = ".boost-install";
+
+    private static final String INSTALLS_DIR = "liberty";
+    private static final String ZIPS_DIR = "zips";
+    private static final String FEATURES_DIR = "features";
+    private static final String VERSIONS_DIR = "lib/versions";
+    private static final String USR_DIR = "usr";
+    private static final String SEPARATOR = " ";
+
+    private final Path installsDir;
+    private final Path zipsDir;
+    private final Path featuresDir;
+    private final boolean link;
+    private final BoostLoggerI logger;
+
+    public LibertyInstallCache(File cacheDir, BoostLoggerI logger) throws IOException {
+        this(cacheDir, null, logger);
+    }
+
+    /**
+     * @param link
+     *            whether project installations link to the cached files, or
+     *            null to link only where the files can be made read-only
+     */
+    LibertyInstallCache(File cacheDir, Boolean link, BoostLoggerI logger) throws IOException {
+        this.installsDir = Files.createDirectories(cacheDir.toPath().resolve(INSTALLS_DIR));
+        this.zipsDir = Files.createDirectories(cacheDir.toPath().resolve(ZIPS_DIR));
+        this.featuresDir = Files.createDirectories(cacheDir.toPath().resolve(FEATURES_DIR));
+        this.link = link != null ? link : isPosix(installsDir);
+        this.logger = logger;
+        if (!this.link) {
+            logger.debug("The Liberty installation cache in " + cacheDir
+                    + " can not be made read-only, project installations are copied from it");
+        }
+    }
+
+    /**
+     * Whether a project installation was built from the cache.
+     *
+     * @param installDir
+     *            the wlp directory of the project
+     */
+    public static boolean isCachedInstall(File installDir) {
+        return new File(installDir, MARKER).isFile();
+    }
+
+    /**
+     * Remove a project installation built from the cache, keeping its servers,
+     * so that the runtime can be extracted into the project again without
+     * writing through the links into the cache.
+     *
+     * @param installDir
+     *            the wlp directory of the project
+     */
+    public static void removeInstall(File installDir) throws IOException {
+        deleteInstall(installDir.toPath());
+        Files.deleteIfExists(new File(installDir, MARKER).toPath());
+    }
+
+    /**
+     * Build the installation of a project from the shared installation of a
+     * runtime. Existing servers of the project are kept.
+     *
+     * @param runtimeZip
+     * @param installDir
+     *            the wlp directory of the project
+     */
+    public void createInstall(File runtimeZip, File installDir) throws IOException {
+        String hash = getZipHash(runtimeZip);
+        File marker = new File(installDir, MARKER);
+        if (marker.isFile() && new String(Files.readAllBytes(marker.toPath()), StandardCharsets.UTF_8).equals(hash)) {
+            logger.debug("The Liberty installation in " + installDir + " is up to date");
+            return;
+        }
+
+        final Path sharedInstall = getSharedInstall(runtimeZip, hash);
+        final Path target = installDir.toPath();
+        logger.info((link ? "Linking" : "Copying") + " the Liberty installation from " + sharedInstall);
+
+        // Replace anything left by a previous runtime, except the servers
+        deleteInstall(target);
+        Files.walkFileTree(sharedInstall, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                Files.createDirectories(target.resolve(sharedInstall.relativize(dir).toString()));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Path relative = sharedInstall.relativize(file);
+                Path targetFile = target.resolve(relative.toString());
+                if (relative.startsWith(USR_DIR)) {
+                    if (!Files.exists(targetFile)) {
+                        Files.copy(file, targetFile);
+                        targetFile.toFile().setWritable(true);
+                    }
+                } else {
+                    BoostUtil.placeIfChanged(file.toFile(), targetFile.toFile(), link);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        Files.write(marker.toPath(), hash.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Get the key of the features installed into an installation, from the
+     * product versions of the installation and the feature names.
+     *
+     * @param installDir
+     *            the wlp directory of the project
+     * @param features
+     */
+    public static String getFeaturesKey(File installDir, Collection<String> features) throws IOException {
+        StringBuilder key = new StringBuilder();
+
+        List<Path> versionFiles = new ArrayList<Path>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(installDir.toPath().resolve(VERSIONS_DIR),
+                "*.properties")) {
+            for (Path versionFile : stream) {
+                versionFiles.add(versionFile);
+            }
+        } catch (NoSuchFileException e) {
+            throw new IOException(installDir + " is not a Liberty installation", e);
+        }
+        Collections.sort(versionFiles);
+        for (Path versionFile : versionFiles) {
+            key.append(new String(Files.readAllBytes(versionFile), StandardCharsets.UTF_8)).append('\n');
+        }
+
+        for (String feature : new TreeSet<String>(features)) {
+            key.append(feature).append('\n');
+        }
+        return BoostUtil.sha256(key.toString());
+    }
+
+    /**
+     * Restore the files added by installing features, if they are in the cache.
+     *
+     * @param key
+     *            from {@link #getFeaturesKey(File, Collection)}
+     * @param installDir
+     *            the wlp directory of the project
+     * @return false if the features are not in the cache
+     */
+    public boolean restoreFeatures(String key, File installDir) throws IOException {
+        final Path entry = featuresDir.resolve(key);
+        if (!Files.isDirectory(entry)) {
+            return false;
+        }
+
+        final Path target = installDir.toPath();
+        Files.walkFileTree(entry, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                BoostUtil.placeIfChanged(file.toFile(), target.resolve(entry.relativize(file).toString()).toFile(),
+                        link);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Record the state of an installation before features are installed into
+     * it.
+     *
+     * @param installDir
+     *            the wlp directory of the project
+     * @return the size and modification time of each file, by relative path
+     */
+    public static Map<String, String> snapshot(File installDir) throws IOException {
+        final Path install = installDir.toPath();
+        final Map<String, String> state = new HashMap<String, String>();
+        Files.walkFileTree(install, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                return install.relativize(dir).startsWith(USR_DIR) ? FileVisitResult.SKIP_SUBTREE
+                        : FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                state.put(install.relativize(file).toString(), getState(attrs));
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return state;
+    }
+
+    /**
+     * Store the files that installing features added to or changed in an
+     * installation.
+     *
+     * @param key
+     *            from {@link #getFeaturesKey(File, Collection)}
+     * @param installDir
+     *            the wlp directory of the project
+     * @param before
+     *            from {@link #snapshot(File)}, taken before the features were
+     *            installed
+     */
+    public void storeFeatures(String key, File installDir, final Map<String, String> before) throws IOException {
+        final Path install = installDir.toPath();
+        final Path tmp = Files.createTempDirectory(featuresDir, key);
+        try {
+            Files.walkFileTree(install, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    return install.relativize(dir).startsWith(USR_DIR) ? FileVisitResult.SKIP_SUBTREE
+                            : FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    String relative = install.relativize(file).toString();
+                    if (!getState(attrs).equals(before.get(relative)) && !relative.equals(MARKER)) {
+                        Path copy = tmp.resolve(relative);
+                        Files.createDirectories(copy.getParent());
+                        Files.copy(file, copy);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+            makeReadOnly(tmp, null);
+
+            try {
+                Files.move(tmp, featuresDir.resolve(key), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, featuresDir.resolve(key));
+            }
+        } catch (IOException e) {
+            if (!Files.isDirectory(featuresDir.resolve(key))) {
+                throw e;
+            }
+            logger.debug("The features were stored into the cache by another build");
+        } finally {
+            if (Files.exists(tmp)) {
+                deleteTree(tmp);
+            }
+        }
+    }
+
+    /**
+     * Get the shared installation of a runtime, extracting it if it is not in
+     * the cache yet. Several builds may extract the same runtime at once, the
+     * first one to finish wins.
+     */
+    private Path getSharedInstall(File runtimeZip, String hash) throws IOException {
+        Path install = installsDir.resolve(hash);
+        Path wlp = install.resolve("wlp");
+        if (Files.isDirectory(wlp)) {
+            return wlp;
+        }
+
+        logger.info("Extracting " + runtimeZip + " into the Liberty installation cache");
+        Path tmp = Files.createTempDirectory(installsDir, hash);
+        try {
+            BoostUtil.extract(runtimeZip, tmp.toFile(), "");
+            if (!Files.isDirectory(tmp.resolve("wlp/lib"))) {
+                throw new IOException(runtimeZip + " is not a Liberty runtime");
+            }
+            makeReadOnly(tmp.resolve("wlp"), tmp.resolve("wlp/bin"));
+
+            try {
+                Files.move(tmp, install, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, install);
+            }
+        } catch (IOException e) {
+            if (!Files.isDirectory(wlp)) {
+                throw e;
+            }
+            logger.debug("The runtime was extracted into the cache by another build");
+        } finally {
+            if (Files.exists(tmp)) {
+                deleteTree(tmp);
+            }
+        }
+        return wlp;
+    }
+
+    /**
+     * Make every file read-only, and the files directly in executableDir
+     * executable, in case the zip did not record the Unix modes of its scripts.
+     */
+    private static void makeReadOnly(Path dir, final Path executableDir) throws IOException {
+        if (!isPosix(dir)) {
+            // Only copies are handed out, see the class comment
+            return;
+        }
+
+        Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(file);
+                permissions.remove(PosixFilePermission.OWNER_WRITE);
+                permissions.remove(PosixFilePermission.GROUP_WRITE);
+                permissions.remove(PosixFilePermission.OTHERS_WRITE);
+                if (file.getParent().equals(executableDir)) {
+                    permissions.add(PosixFilePermission.OWNER_EXECUTE);
+                    permissions.add(PosixFilePermission.GROUP_EXECUTE);
+                    permissions.add(PosixFilePermission.OTHERS_EXECUTE);
+                }
+                Files.setPosixFilePermissions(file, permissions);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private static boolean isPosix(Path path) throws IOException {
+        return Files.getFileStore(path).supportsFileAttributeView(PosixFileAttributeView.class);
+    }
+
+    private static String getState(BasicFileAttributes attrs) {
+        return attrs.size() + SEPARATOR + attrs.lastModifiedTime().toMillis();
+    }
+
+    /**
+     * Return the SHA-256 of the runtime zip. The hash recorded for this path is
+     * reused as long as the size and modification time of the zip are unchanged.
+     */
+    private String getZipHash(File runtimeZip) throws IOException {
+        Path zipPath = runtimeZip.toPath().toAbsolutePath().normalize();
+        long size = Files.size(zipPath);
+        long lastModified = Files.getLastModifiedTime(zipPath).toMillis();
+
+        Path zipEntry = zipsDir.resolve(BoostUtil.sha256(zipPath.toString()));
+        try {
+            String[] fields = new String(Files.readAllBytes(zipEntry), StandardCharsets.UTF_8).trim()
+                    .split(SEPARATOR);
+            if (fields.length == 3 && fields[0].equals(String.valueOf(size))
+                    && fields[1].equals(String.valueOf(lastModified))) {
+                return fields[2];
+            }
+        } catch (NoSuchFileException e) {
+            // First time this zip is seen
+        }
+
+        String hash = BoostUtil.sha256(runtimeZip);
+        BoostUtil.writeAtomically(zipEntry, size + SEPARATOR + lastModified + SEPARATOR + hash);
+        return hash;
+    }
+
+    private static void deleteInstall(Path installDir) throws IOException {
+        if (!Files.isDirectory(installDir)) {
+            return;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(installDir)) {
+            for (Path child : stream) {
+                if (!child.getFileName().toString().equals(USR_DIR)) {
+                    deleteTree(child);
+                }
+            }
+        }
+    }
+
+    private static void deleteTree(Path path) throws IOException {
+        Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+                if (e != null) {
+                    throw e;
+                }
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
@@ -20,38 +20,71 @@ import static org.twdata.maven.mojoexecutor.MojoExecutor.name;
 import static org.twdata.maven.mojoexecutor.MojoExecutor.plugin;
 import static org.twdata.maven.mojoexecutor.MojoExecutor.version;
 
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+
+import javax.xml.parsers.ParserConfigurationException;
 
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.model.Plugin;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.project.MavenProject;
 import org.codehaus.plexus.util.xml.Xpp3Dom;
+import org.eclipse.aether.RepositoryException;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.resolution.ArtifactResolutionException;
 import org.microshed.boost.common.BoostException;
 import org.microshed.boost.common.boosters.AbstractBoosterConfig;
 import org.microshed.boost.common.config.BoostProperties;
 import org.microshed.boost.common.config.BoosterConfigurator;
 import org.microshed.boost.common.config.ConfigConstants;
+import org.microshed.boost.common.image.LibertyImageLayers;
+import org.microshed.boost.common.image.OciImageWriter;
 import org.microshed.boost.common.runtimes.RuntimeI;
+import org.microshed.boost.common.utils.BoostUtil;
+import org.microshed.boost.common.utils.BuildMetrics;
+import org.microshed.boost.common.utils.StageFingerprints;
+import org.microshed.boost.common.utils.VersionLock;
 import org.microshed.boost.maven.runtimes.RuntimeParams;
 import org.microshed.boost.maven.utils.BoostLogger;
 import org.microshed.boost.maven.utils.MavenProjectUtil;
 import org.microshed.boost.runtimes.openliberty.boosters.LibertyBoosterI;
 import org.twdata.maven.mojoexecutor.MojoExecutor.Element;
 import org.twdata.maven.mojoexecutor.MojoExecutor.ExecutionEnvironment;
+import org.xml.sax.SAXException;
+
+import io.openliberty.tools.common.plugins.util.PluginExecutionException;
 
 public class LibertyRuntime implements RuntimeI {
     private final List<AbstractBoosterConfig> boosterConfigs;
     private final Properties boostProperties;
     private final ExecutionEnvironment env;
     private final MavenProject project;
-    private final Plugin mavenDepPlugin;
+    private final RepositorySystem repoSystem;
+    private final RepositorySystemSession repoSession;
+    private final List<RemoteRepository> remoteRepos;
 
     private final String serverName = "defaultServer";
     private final String projectBuildDir;
+    private final String libertyInstallDir;
     private final String libertyServerPath;
+    private final boolean incremental;
+    private final boolean linkDependencies;
+    private final File installCacheDirectory;
+    private final boolean inProcessTools;
+    private final VersionLock versionLock;
+    private final BuildMetrics buildMetrics;
+    private final boolean classDataSharing;
+    private final File classDataSharingJavaHome;
 
     private final String runtimeGroupId = "io.openliberty";
     private final String runtimeArtifactId = "openliberty-runtime";
@@ -68,8 +101,19 @@ public class LibertyRuntime implements RuntimeI {
         this.env = null;
         this.project = null;
         this.projectBuildDir = null;
+        this.libertyInstallDir = null;
         this.libertyServerPath = null;
-        this.mavenDepPlugin = null;
+        this.repoSystem = null;
+        this.repoSession = null;
+        this.remoteRepos = null;
+        this.incremental = false;
+        this.linkDependencies = false;
+        this.installCacheDirectory = null;
+        this.inProcessTools = false;
+        this.versionLock = null;
+        this.buildMetrics = null;
+        this.classDataSharing = false;
+        this.classDataSharingJavaHome = null;
         this.runtimeVersion = defaultRuntimeVersion;
     }
 
@@ -79,9 +123,30 @@ public class LibertyRuntime implements RuntimeI {
         this.env = runtimeParams.getEnv();
         this.project = runtimeParams.getProject();
         this.projectBuildDir = project.getBuild().getDirectory();
-        this.libertyServerPath = projectBuildDir + "/liberty/wlp/usr/servers/" + serverName;
-        this.mavenDepPlugin = runtimeParams.getMavenDepPlugin();
-        this.runtimeVersion = boostProperties.getProperty("libertyRuntimeVersion", defaultRuntimeVersion);
+        if (runtimeParams.getPackagedServerPath() != null) {
+            // The server is in usr/servers of the installation
+            this.libertyServerPath = runtimeParams.getPackagedServerPath();
+            this.libertyInstallDir = new File(libertyServerPath).getParentFile().getParentFile().getParent();
+        } else {
+            this.libertyInstallDir = projectBuildDir + "/liberty/wlp";
+            this.libertyServerPath = libertyInstallDir + "/usr/servers/" + serverName;
+        }
+        this.repoSystem = runtimeParams.getRepoSystem();
+        this.repoSession = runtimeParams.getRepoSession();
+        this.remoteRepos = runtimeParams.getRemoteRepos();
+        this.incremental = runtimeParams.isIncremental();
+        this.linkDependencies = runtimeParams.isLinkDependencies();
+        this.installCacheDirectory = runtimeParams.getInstallCacheDirectory();
+        this.inProcessTools = runtimeParams.isInProcessTools();
+        this.versionLock = runtimeParams.getVersionLock();
+        this.buildMetrics = runtimeParams.getBuildMetrics();
+        this.classDataSharing = runtimeParams.isClassDataSharing();
+        this.classDataSharingJavaHome = runtimeParams.getClassDataSharingJavaHome();
+        if (runtimeParams.getPackagedRuntimeVersion() != null) {
+            this.runtimeVersion = runtimeParams.getPackagedRuntimeVersion();
+        } else {
+            this.runtimeVersion = boostProperties.getProperty("libertyRuntimeVersion", defaultRuntimeVersion);
+        }
         BoostLogger log = BoostLogger.getSystemStreamLogger();
         log.info("Liberty Runtime version selected = " + runtimeVersion);
     }
@@ -94,64 +159,163 @@ public class LibertyRuntime implements RuntimeI {
     @Override
     public void doPackage() throws BoostException {
         String javaCompilerTargetVersion = MavenProjectUtil.getJavaCompilerTargetVersion(project);
-        System.setProperty(BoostProperties.INTERNAL_COMPILER_TARGET, javaCompilerTargetVersion);
         try {
-            packageLiberty(boosterConfigs);
+            packageLiberty(boosterConfigs, javaCompilerTargetVersion);
         } catch (MojoExecutionException e) {
             throw new BoostException("Error packaging Liberty server", e);
         }
     }
 
-    private void packageLiberty(List<AbstractBoosterConfig> boosterConfigs) throws MojoExecutionException {
-        createLibertyServer();
+    private void packageLiberty(List<AbstractBoosterConfig> boosterConfigs, String javaCompilerTargetVersion)
+            throws MojoExecutionException, BoostException {
+        BoostLogger log = BoostLogger.getSystemStreamLogger();
+        StageFingerprints stages = new StageFingerprints(new File(projectBuildDir, StageFingerprints.LOCATION),
+                incremental, log);
+
+        List<String> dependenciesToCopy = BoosterConfigurator.getDependenciesToCopy(boosterConfigs, log);
+        String warName = getWarName();
+
+        lockRuntimeVersion();
+        String createInputs = StageFingerprints.fingerprint(getRuntimeArtifact(), serverName,
+                installCacheDirectory, inProcessTools);
+        try (BuildMetrics.Phase phase = buildMetrics.start("create")) {
+            if (!stages.isUpToDate("create", createInputs, new File(libertyServerPath))) {
+                createLibertyServer();
+                stages.completed("create", createInputs, new File(libertyServerPath));
+            }
+        }
 
         // targeting a liberty install
-        copyBoosterDependencies(boosterConfigs);
+        String copyInputs = StageFingerprints.fingerprint(dependenciesToCopy, linkDependencies);
+        File resourcesDir = new File(libertyServerPath, "resources");
+        try (BuildMetrics.Phase phase = buildMetrics.start("copy-dependencies")) {
+            if (!stages.isUpToDate("copy-dependencies", copyInputs, resourcesDir)) {
+                copyBoosterDependencies(dependenciesToCopy);
+                stages.completed("copy-dependencies", copyInputs, resourcesDir);
+            }
+        }
 
-        generateServerConfig(boosterConfigs);
+        String configInputs = StageFingerprints.fingerprint(getBoosterVersions(boosterConfigs),
+                StageFingerprints.fingerprint(boostProperties), javaCompilerTargetVersion, warName);
+        File serverXml = new File(libertyServerPath, "server.xml");
+        try (BuildMetrics.Phase phase = buildMetrics.start("generate-config")) {
+            if (!stages.isUpToDate("generate-config", configInputs, serverXml)) {
+                generateServerConfig(boosterConfigs);
+                stages.completed("generate-config", configInputs, serverXml);
+            }
+        }
+
+        // The features to install only depend on the generated config
+        try (BuildMetrics.Phase phase = buildMetrics.start("install-feature")) {
+            if (!stages.isUpToDate("install-feature", configInputs)) {
+                installMissingFeatures();
+                stages.completed("install-feature", configInputs);
+            }
+        }
 
-        installMissingFeatures();
         // we install the app now, after server.xml is configured. This is
         // so that we can specify a custom config-root in server.xml ("/").
         // If we installed the app prior to server.xml configuration, then
         // the LMP would write out a webapp stanza into config dropins that
         // would include a config-root setting set to the app name.
-        if (project.getPackaging().equals("war")) {
-            installApp(ConfigConstants.INSTALL_PACKAGE_ALL);
-        } else {
-            // This is temporary. When packing type is "jar", if we
-            // set installAppPackages=all, the LMP will try to install
-            // the project jar and fail. Once this is fixed, we can always
-            // set installAppPackages=all.
-            installApp(ConfigConstants.INSTALL_PACKAGE_DEP);
+        String deployInputs = StageFingerprints.fingerprint(project.getPackaging(), getWarHash(), getArtifactIds());
+        File appsDir = new File(libertyServerPath, "apps");
+        try (BuildMetrics.Phase phase = buildMetrics.start("deploy")) {
+            if (!stages.isUpToDate("deploy", deployInputs, appsDir)) {
+                if (project.getPackaging().equals("war")) {
+                    installApp(ConfigConstants.INSTALL_PACKAGE_ALL);
+                } else {
+                    // This is temporary. When packing type is "jar", if we
+                    // set installAppPackages=all, the LMP will try to install
+                    // the project jar and fail. Once this is fixed, we can always
+                    // set installAppPackages=all.
+                    installApp(ConfigConstants.INSTALL_PACKAGE_DEP);
+                }
+                stages.completed("deploy", deployInputs, appsDir);
+            }
         }
 
-        // Create the Liberty runnable jar
-        createUberJar();
+        // Start the server once to generate the class data sharing archive. The
+        // archive depends on the classes the server loads, so on its config
+        // and applications.
+        String cdsInputs = StageFingerprints.fingerprint(configInputs, deployInputs, classDataSharing,
+                classDataSharingJavaHome);
+        File cdsDir = new File(libertyServerPath, LibertyClassDataSharing.DIRECTORY);
+        try (BuildMetrics.Phase phase = buildMetrics.start("class-data-sharing")) {
+            if (!stages.isUpToDate("class-data-sharing", cdsInputs, cdsDir)) {
+                generateClassDataSharing();
+                stages.completed("class-data-sharing", cdsInputs, cdsDir);
+            }
+        }
+
+        // Create the Liberty runnable jar. It is checked as an output, since
+        // the jar plugin may have replaced it since the previous build.
+        File uberJar = new File(projectBuildDir, project.getBuild().getFinalName() + ".jar");
+        try (BuildMetrics.Phase phase = buildMetrics.start("package")) {
+            if (!stages.isUpToDate("package", deployInputs, uberJar)) {
+                createUberJar();
+                stages.completed("package", deployInputs, uberJar);
+            }
+        }
     }
 
     /**
-     * Get all booster dependencies and invoke the maven-dependency-plugin to copy
-     * them to the Liberty server.
+     * Copy all booster dependencies to the Liberty server.
      * 
      * @throws MojoExecutionException
      *
      */
-    private void copyBoosterDependencies(List<AbstractBoosterConfig> boosterConfigs) throws MojoExecutionException {
-        List<String> dependenciesToCopy = BoosterConfigurator.getDependenciesToCopy(boosterConfigs,
-                BoostLogger.getSystemStreamLogger());
+    private void copyBoosterDependencies(List<String> dependenciesToCopy) throws MojoExecutionException {
+        try {
+            MavenProjectUtil.copyDependencies(dependenciesToCopy, new File(libertyServerPath, "resources"),
+                    linkDependencies, repoSystem, repoSession, remoteRepos, BoostLogger.getSystemStreamLogger());
+        } catch (ArtifactResolutionException | IOException e) {
+            throw new MojoExecutionException("Unable to copy booster dependencies to the Liberty server.", e);
+        }
+    }
 
-        for (String dep : dependenciesToCopy) {
+    private List<String> getBoosterVersions(List<AbstractBoosterConfig> boosterConfigs) {
+        List<String> boosterVersions = new ArrayList<String>();
+        for (AbstractBoosterConfig boosterConfig : boosterConfigs) {
+            boosterVersions.add(boosterConfig.getClass().getName() + ":" + boosterConfig.getVersion());
+        }
+        return boosterVersions;
+    }
 
-            String[] dependencyInfo = dep.split(":");
+    private List<String> getArtifactIds() {
+        List<String> artifactIds = new ArrayList<String>();
+        for (Artifact artifact : project.getArtifacts()) {
+            artifactIds.add(artifact.getId() + ":" + artifact.getScope());
+        }
+        Collections.sort(artifactIds);
+        return artifactIds;
+    }
 
-            executeMojo(mavenDepPlugin, goal("copy"),
-                    configuration(element(name("outputDirectory"), libertyServerPath + "/resources"),
-                            element(name("artifactItems"),
-                                    element(name("artifactItem"), element(name("groupId"), dependencyInfo[0]),
-                                            element(name("artifactId"), dependencyInfo[1]),
-                                            element(name("version"), dependencyInfo[2])))),
-                    env);
+    /**
+     * Hash of the WAR that is deployed to the server. If the WAR can not be
+     * found, a value that never matches a previous build is returned so that the
+     * deploy stage always runs.
+     */
+    private String getWarHash() throws MojoExecutionException {
+        File war = null;
+        if (project.getPackaging().equals(ConfigConstants.WAR_PKG_TYPE)) {
+            war = new File(projectBuildDir, project.getBuild().getFinalName() + ".war");
+        } else {
+            for (Artifact artifact : project.getArtifacts()) {
+                if (artifact.getType().equals("war")) {
+                    war = artifact.getFile();
+                    break;
+                }
+            }
+        }
+
+        if (war == null || !war.isFile()) {
+            return String.valueOf(System.nanoTime());
+        }
+        try {
+            return BoostUtil.sha256(war);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to read " + war, e);
         }
     }
 
@@ -240,24 +404,160 @@ public class LibertyRuntime implements RuntimeI {
         libertyConfig.writeToServer();
     }
 
+    /**
+     * Resolve a runtime version range to the version recorded in the lock file,
+     * so that the plugin goals and the installation cache all use the same
+     * version without resolving the range against the remote repositories.
+     */
+    private void lockRuntimeVersion() throws MojoExecutionException {
+        if (versionLock == null || !VersionLock.isRange(runtimeVersion)) {
+            return;
+        }
+        BoostLogger log = BoostLogger.getSystemStreamLogger();
+        try {
+            runtimeVersion = MavenProjectUtil.resolveLockedVersion(versionLock, runtimeGroupId, runtimeArtifactId,
+                    "zip", runtimeVersion, repoSystem, repoSession, remoteRepos, log);
+        } catch (RepositoryException e) {
+            throw new MojoExecutionException("Unable to resolve the Liberty runtime version " + runtimeVersion, e);
+        }
+        log.info("Liberty Runtime version locked = " + runtimeVersion);
+    }
+
+    /**
+     * Generate the class data sharing archive of the server when enabled,
+     * otherwise remove the options of an archive generated by an earlier build.
+     */
+    private void generateClassDataSharing() throws MojoExecutionException {
+        try {
+            if (classDataSharing) {
+                new LibertyClassDataSharing(new File(libertyInstallDir), serverName, classDataSharingJavaHome,
+                        BoostLogger.getSystemStreamLogger()).generate();
+            } else {
+                LibertyClassDataSharing.remove(new File(libertyServerPath));
+            }
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to generate the class data sharing archive of the server.", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while generating the class data sharing archive.", e);
+        }
+    }
+
     // Liberty Maven Plugin executions
 
     /**
-     * Invoke the liberty-maven-plugin to run the create-server goal
+     * Create the Liberty server in-process where possible, otherwise invoke the
+     * liberty-maven-plugin to run the create-server goal
      */
     private void createLibertyServer() throws MojoExecutionException {
+        File installDir = new File(libertyInstallDir);
+        if (installCacheDirectory != null) {
+            createLibertyInstall();
+        } else if (LibertyInstallCache.isCachedInstall(installDir)
+                || (!inProcessTools && InProcessLibertyTools.isExtractedInstall(installDir))) {
+            // Let the liberty-maven-plugin extract the runtime again
+            try {
+                LibertyInstallCache.removeInstall(installDir);
+            } catch (IOException e) {
+                throw new MojoExecutionException("Unable to remove the Liberty installation " + libertyInstallDir, e);
+            }
+        }
+
+        if (inProcessTools && createLibertyServerInProcess()) {
+            return;
+        }
         executeMojo(getPlugin(), goal("create"),
                 configuration(element(name("serverName"), serverName), getRuntimeArtifactElement()), env);
     }
 
     /**
-     * Invoke the liberty-maven-plugin to run the install-feature goal.
+     * Extract the runtime, unless it comes from the installation cache, and
+     * create the server from its template without the liberty-maven-plugin.
+     *
+     * @return false if the server can not be created in-process
+     */
+    private boolean createLibertyServerInProcess() throws MojoExecutionException {
+        BoostLogger log = BoostLogger.getSystemStreamLogger();
+        InProcessLibertyTools tools = new InProcessLibertyTools(new File(libertyInstallDir), log);
+        try {
+            if (installCacheDirectory == null) {
+                tools.extractRuntime(MavenProjectUtil.resolveArtifact(runtimeGroupId, runtimeArtifactId, "zip",
+                        runtimeVersion, repoSystem, repoSession, remoteRepos));
+            }
+            if (tools.createServer(serverName)) {
+                return true;
+            }
+        } catch (RepositoryException | IOException e) {
+            throw new MojoExecutionException("Unable to create the Liberty server " + serverName, e);
+        }
+
+        log.debug("The Liberty installation has no server template, creating the server with the plugin.");
+        return false;
+    }
+
+    /**
+     * Build the Liberty installation from the runtime extracted in the shared
+     * installation cache, rather than letting the liberty-maven-plugin extract
+     * the runtime into this project.
+     */
+    private void createLibertyInstall() throws MojoExecutionException {
+        try {
+            File runtimeZip = MavenProjectUtil.resolveArtifact(runtimeGroupId, runtimeArtifactId, "zip",
+                    runtimeVersion, repoSystem, repoSession, remoteRepos);
+            new LibertyInstallCache(installCacheDirectory, BoostLogger.getSystemStreamLogger())
+                    .createInstall(runtimeZip, new File(libertyInstallDir));
+        } catch (RepositoryException | IOException e) {
+            throw new MojoExecutionException("Unable to create the Liberty installation from "
+                    + installCacheDirectory, e);
+        }
+    }
+
+    /**
+     * Install the features of the server, in-process where possible, otherwise
+     * with the liberty-maven-plugin install-feature goal.
      *
      * This will install any missing features defined in the server.xml or
-     * configDropins.
+     * configDropins. With an installation cache, features installed for the
+     * same runtime version and feature set are restored from the cache instead,
+     * without going to the network.
      *
      */
     private void installMissingFeatures() throws MojoExecutionException {
+        if (installCacheDirectory == null) {
+            runInstallFeature();
+            return;
+        }
+
+        BoostLogger log = BoostLogger.getSystemStreamLogger();
+        File installDir = new File(libertyInstallDir);
+        try {
+            LibertyInstallCache cache = new LibertyInstallCache(installCacheDirectory, log);
+            Set<String> features = LibertyServerConfigGenerator.getFeatures(libertyServerPath);
+            String key = LibertyInstallCache.getFeaturesKey(installDir, features);
+            if (cache.restoreFeatures(key, installDir)) {
+                log.info("Restored the features " + features + " from " + installCacheDirectory);
+                return;
+            }
+
+            Map<String, String> before = LibertyInstallCache.snapshot(installDir);
+            runInstallFeature();
+            cache.storeFeatures(key, installDir, before);
+        } catch (ParserConfigurationException | SAXException | IOException e) {
+            throw new MojoExecutionException("Unable to install features from " + installCacheDirectory, e);
+        }
+    }
+
+    private void runInstallFeature() throws MojoExecutionException {
+        if (inProcessTools) {
+            try {
+                if (new InProcessLibertyTools(new File(libertyInstallDir), BoostLogger.getSystemStreamLogger())
+                        .installFeatures(serverName, repoSystem, repoSession, remoteRepos)) {
+                    return;
+                }
+            } catch (PluginExecutionException e) {
+                throw new MojoExecutionException("Unable to install the features of the Liberty server.", e);
+            }
+        }
         executeMojo(getPlugin(), goal("install-feature"), configuration(element(name("serverName"), serverName),
                 element(name("features"), element(name("acceptLicense"), "false"))), env);
     }
@@ -276,7 +576,43 @@ public class LibertyRuntime implements RuntimeI {
         executeMojo(getPlugin(), goal("deploy"), configuration, env);
     }
 
-    private Element getRuntimeArtifactElement() {
+    @Override
+    public String getServerPath() {
+        return libertyServerPath;
+    }
+
+    @Override
+    public String getRuntimeArtifact() {
+        return runtimeGroupId + ":" + runtimeArtifactId + ":zip:" + runtimeVersion;
+    }
+
+    @Override
+    public void addImageLayers(OciImageWriter image) throws BoostException {
+        try {
+            lockRuntimeVersion();
+            File runtimeZip = MavenProjectUtil.resolveArtifact(runtimeGroupId, runtimeArtifactId, "zip",
+                    runtimeVersion, repoSystem, repoSession, remoteRepos);
+            LibertyImageLayers.addLayers(image, new File(libertyInstallDir), serverName, runtimeZip,
+                    new File(projectBuildDir, "boost/image/apps"));
+            LibertyClassDataSharing.excludeFromImage(image,
+                    LibertyImageLayers.INSTALL_PATH + "/usr/servers/" + serverName,
+                    new File(projectBuildDir, "boost/image/server"));
+        } catch (MojoExecutionException | RepositoryException | IOException e) {
+            throw new BoostException("Error adding the Liberty server to the image", e);
+        }
+
+        image.addExposedPort((String) boostProperties.getOrDefault(BoostProperties.ENDPOINT_HTTP_PORT, "9080"));
+        image.addExposedPort((String) boostProperties.getOrDefault(BoostProperties.ENDPOINT_HTTPS_PORT, "9443"));
+    }
+
+    private Element getRuntimeArtifactElement() throws MojoExecutionException {
+        lockRuntimeVersion();
+
+        // An installation built by Boost must not be extracted over
+        File installDir = new File(libertyInstallDir);
+        if (LibertyInstallCache.isCachedInstall(installDir) || InProcessLibertyTools.isExtractedInstall(installDir)) {
+            return element(name("installDirectory"), libertyInstallDir);
+        }
         return element(name("assemblyArtifact"), element(name("groupId"), runtimeGroupId),
                 element(name("artifactId"), runtimeArtifactId), element(name("version"), runtimeVersion),
                 element(name("type"), "zip"));
@@ -284,14 +620,20 @@ public class LibertyRuntime implements RuntimeI {
 
     /**
      * Invoke the liberty-maven-plugin to package the server into a runnable Liberty
-     * JAR
+     * JAR. The class data sharing archive only matches the server in place, so
+     * it is set aside while the server is packaged.
      */
     private void createUberJar() throws MojoExecutionException {
-        executeMojo(getPlugin(), goal("package"),
-                configuration(element(name("isInstall"), "false"), element(name("include"), "minify"),
-                        element(name("outputDirectory"), "target/liberty-alt-output-dir"),
-                        element(name("packageType"), "jar"), element(name("serverName"), serverName)),
-                env);
+        try (Closeable classDataSharing = LibertyClassDataSharing.setAside(new File(libertyServerPath),
+                new File(projectBuildDir, "boost/package"))) {
+            executeMojo(getPlugin(), goal("package"),
+                    configuration(element(name("isInstall"), "false"), element(name("include"), "minify"),
+                            element(name("outputDirectory"), "target/liberty-alt-output-dir"),
+                            element(name("packageType"), "jar"), element(name("serverName"), serverName)),
+                    env);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to set the class data sharing archive aside.", e);
+        }
     }
 
     @Override
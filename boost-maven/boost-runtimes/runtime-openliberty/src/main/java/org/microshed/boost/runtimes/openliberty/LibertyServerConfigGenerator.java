@@ -25,6 +25,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -42,6 +44,8 @@ import org.microshed.boost.common.config.BoostProperties;
 import org.microshed.boost.common.utils.BoostUtil;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
 
 import io.openliberty.tools.common.plugins.util.OSUtil;
 
@@ -68,6 +72,7 @@ public class LibertyServerConfigGenerator {
     private Element variablesRoot;
 
     private Set<String> featuresAdded;
+    private boolean jdbcDriverAdded;
 
     public LibertyServerConfigGenerator(String serverPath, String encryptionKey, BoostLoggerI logger)
             throws ParserConfigurationException {
@@ -169,6 +174,25 @@ public class LibertyServerConfigGenerator {
 
     }
 
+    /**
+     * Read the features enabled in the server.xml of a server.
+     *
+     * @param serverPath
+     * @return the feature names, sorted
+     */
+    public static SortedSet<String> getFeatures(String serverPath)
+            throws ParserConfigurationException, SAXException, IOException {
+        DocumentBuilder docBuilder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+        Document doc = docBuilder.parse(new File(serverPath + "/server.xml"));
+
+        SortedSet<String> features = new TreeSet<String>();
+        NodeList featureElements = doc.getElementsByTagName(FEATURE);
+        for (int i = 0; i < featureElements.getLength(); i++) {
+            features.add(featureElements.item(i).getTextContent().trim());
+        }
+        return features;
+    }
+
     public void addConfigVariables(Properties properties) throws IOException {
 
         if (properties != null) {
@@ -186,8 +210,10 @@ public class LibertyServerConfigGenerator {
         // encryption we want to use
         Map<String, String> propertiesToEncrypt = BoostProperties.getPropertiesToEncrypt();
 
-        if (propertiesToEncrypt.containsKey(key) && value != null && !value.equals("")) {
-            value = encrypt(key, value);
+        // Named datasource properties are encrypted as the default ones
+        String encryptionKey = BoostProperties.getDefaultDataSourceProperty(key);
+        if (propertiesToEncrypt.containsKey(encryptionKey) && value != null && !value.equals("")) {
+            value = encrypt(encryptionKey, value);
         }
 
         Element variable = variablesXml.createElement("variable");
@@ -312,6 +338,43 @@ public class LibertyServerConfigGenerator {
     }
 
     public void addDataSource(Map<String, String> driverInfo, Properties datasourceProperties) throws Exception {
+        addDataSource(driverInfo, datasourceProperties, new Properties());
+    }
+
+    public void addDataSource(Map<String, String> driverInfo, Properties datasourceProperties,
+            Properties connectionPoolProperties) throws Exception {
+        addDataSource(driverInfo, datasourceProperties, connectionPoolProperties, new Properties());
+    }
+
+    public void addDataSource(Map<String, String> driverInfo, Properties datasourceProperties,
+            Properties connectionPoolProperties, Properties statementProperties) throws Exception {
+        addDataSource(driverInfo, null, null, datasourceProperties, connectionPoolProperties, statementProperties);
+    }
+
+    /**
+     * Add a data source, with a connection manager configured from the
+     * connection pool properties when there are any. All data sources share
+     * the library and JDBC driver of the driver jar.
+     *
+     * @param driverInfo
+     * @param name
+     *            the name of a named data source, or null for the default data
+     *            source
+     * @param jndiName
+     *            the JNDI name of the data source, or null for none
+     * @param datasourceProperties
+     *            the properties of the vendor data source, with the prefix of
+     *            the data source
+     * @param connectionPoolProperties
+     *            the "pool_" properties of the connection manager, with the
+     *            prefix of the data source
+     * @param statementProperties
+     *            the properties of the data source itself, such as the
+     *            statement cache size, with the prefix of the data source
+     */
+    public void addDataSource(Map<String, String> driverInfo, String name, String jndiName,
+            Properties datasourceProperties, Properties connectionPoolProperties, Properties statementProperties)
+            throws Exception {
         String datasourcePropertiesElement = null;
 
         String driverName = driverInfo.get(JDBCBoosterConfig.DRIVER_NAME);
@@ -325,40 +388,70 @@ public class LibertyServerConfigGenerator {
             datasourcePropertiesElement = PROPERTIES_POSTGRESQL;
         }
 
-        // Add library
-        Element lib = serverXml.createElement(LIBRARY);
-        lib.setAttribute("id", JDBC_LIBRARY_1);
-        Element fileLoc = serverXml.createElement(FILESET);
-        fileLoc.setAttribute("dir", RESOURCES);
-        fileLoc.setAttribute("includes", driverInfo.get(JDBCBoosterConfig.DRIVER_JAR));
-        lib.appendChild(fileLoc);
-        serverRoot.appendChild(lib);
+        if (!jdbcDriverAdded) {
+            addJdbcDriver(driverInfo);
+        }
+
+        String prefix = BoostProperties.getDataSourcePrefix(name);
+        String poolPrefix = BoostProperties.getDataSourceProperty(name, BoostProperties.DATASOURCE_POOL_PREFIX);
 
         // Add datasource
         Element dataSource = serverXml.createElement(DATASOURCE);
-        dataSource.setAttribute("id", DEFAULT_DATASOURCE);
+        dataSource.setAttribute("id", name == null ? DEFAULT_DATASOURCE : name);
+        if (jndiName != null) {
+            dataSource.setAttribute(JNDI_NAME, jndiName);
+        }
         dataSource.setAttribute(JDBC_DRIVER_REF, JDBC_DRIVER_1);
+        for (String property : new TreeSet<String>(statementProperties.stringPropertyNames())) {
+            String attribute = property.substring(prefix.length());
+            dataSource.setAttribute(attribute, BoostUtil.makeVariable(property));
+        }
 
         // Add all configured datasource properties
         Element props = serverXml.createElement(datasourcePropertiesElement);
-        addDatasourceProperties(datasourceProperties, props);
+        addDatasourceProperties(datasourceProperties, props, prefix);
         dataSource.appendChild(props);
 
+        // Add the connection pool configuration
+        if (!connectionPoolProperties.isEmpty()) {
+            Element connectionManager = serverXml.createElement(CONNECTION_MANAGER);
+            for (String property : new TreeSet<String>(connectionPoolProperties.stringPropertyNames())) {
+                String attribute = property.substring(poolPrefix.length());
+                connectionManager.setAttribute(attribute, BoostUtil.makeVariable(property));
+            }
+            dataSource.appendChild(connectionManager);
+        }
+
         serverRoot.appendChild(dataSource);
 
+        // Add variables
+        addConfigVariables(datasourceProperties);
+        addConfigVariables(connectionPoolProperties);
+        addConfigVariables(statementProperties);
+    }
+
+    private void addJdbcDriver(Map<String, String> driverInfo) {
+        // Add library
+        Element lib = serverXml.createElement(LIBRARY);
+        lib.setAttribute("id", JDBC_LIBRARY_1);
+        Element fileLoc = serverXml.createElement(FILESET);
+        fileLoc.setAttribute("dir", RESOURCES);
+        fileLoc.setAttribute("includes", driverInfo.get(JDBCBoosterConfig.DRIVER_JAR));
+        lib.appendChild(fileLoc);
+        serverRoot.appendChild(lib);
+
         // Add jdbc driver
         Element jdbcDriver = serverXml.createElement(JDBC_DRIVER);
         jdbcDriver.setAttribute("id", JDBC_DRIVER_1);
         jdbcDriver.setAttribute(LIBRARY_REF, JDBC_LIBRARY_1);
         serverRoot.appendChild(jdbcDriver);
 
-        // Add variables
-        addConfigVariables(datasourceProperties);
+        jdbcDriverAdded = true;
     }
 
-    private void addDatasourceProperties(Properties serverProperties, Element propertiesElement) {
+    private void addDatasourceProperties(Properties serverProperties, Element propertiesElement, String prefix) {
         for (String property : serverProperties.stringPropertyNames()) {
-            String attribute = property.replace(BoostProperties.DATASOURCE_PREFIX, "");
+            String attribute = property.substring(prefix.length());
             propertiesElement.setAttribute(attribute, BoostUtil.makeVariable(property));
         }
     }
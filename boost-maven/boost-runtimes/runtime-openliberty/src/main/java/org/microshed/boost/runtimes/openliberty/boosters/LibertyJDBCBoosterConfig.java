@@ -22,14 +22,17 @@ import org.microshed.boost.runtimes.openliberty.boosters.LibertyBoosterI;
 
 public class LibertyJDBCBoosterConfig extends JDBCBoosterConfig implements LibertyBoosterI {
 
+    private final String compilerVersion;
+    private final BoostLoggerI logger;
+
     public LibertyJDBCBoosterConfig(BoosterConfigParams params, BoostLoggerI logger) throws BoostException {
         super(params, logger);
-
+        this.compilerVersion = params.getJavaCompilerTargetVersion();
+        this.logger = logger;
     }
 
     @Override
     public String getFeature() {
-        String compilerVersion = System.getProperty(BoostProperties.INTERNAL_COMPILER_TARGET);
 
         if ("1.8".equals(compilerVersion) || "8".equals(compilerVersion) || "9".equals(compilerVersion)
                 || "10".equals(compilerVersion)) {
@@ -45,10 +48,39 @@ public class LibertyJDBCBoosterConfig extends JDBCBoosterConfig implements Liber
 
     @Override
     public void addServerConfig(LibertyServerConfigGenerator libertyServerConfigGenerator) throws BoostException {
+        if (hasDefaultDataSource()) {
+            warnIfPrewarm(null, DEFAULT_DATASOURCE);
+        }
+        for (String name : getDataSourceNames()) {
+            warnIfPrewarm(name, name);
+        }
+
         try {
-            libertyServerConfigGenerator.addDataSource(getDriverInfo(), getDatasourceProperties());
+            if (hasDefaultDataSource()) {
+                libertyServerConfigGenerator.addDataSource(getDriverInfo(), getDatasourceProperties(),
+                        getConnectionPoolProperties(), getStatementProperties());
+            }
+            for (String name : getDataSourceNames()) {
+                libertyServerConfigGenerator.addDataSource(getDriverInfo(), name, getJndiName(name),
+                        getDatasourceProperties(name), getConnectionPoolProperties(name),
+                        getStatementProperties(name));
+            }
         } catch (Exception e) {
             throw new BoostException("Error when configuring JDBC data source.", e);
         }
     }
+
+    /**
+     * Liberty opens the connections of a pool when they are first requested,
+     * and has no setting to open them when the server starts. The property is
+     * ignored rather than rejected, so that a project configured for several
+     * runtimes still builds on Liberty.
+     */
+    private void warnIfPrewarm(String name, String id) {
+        if (isPrewarm(name)) {
+            logger.warn("The " + BoostProperties.DATASOURCE_PREWARM + " property of the " + id
+                    + " data source is not supported on Open Liberty and is ignored. The pool opens its connections"
+                    + " when they are first requested.");
+        }
+    }
 }
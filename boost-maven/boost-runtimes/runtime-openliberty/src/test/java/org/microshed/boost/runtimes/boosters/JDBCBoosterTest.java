@@ -11,23 +11,29 @@
 
 package org.microshed.boost.runtimes.boosters;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.microshed.boost.common.config.ConfigConstants.*;
 
+import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.TransformerException;
 
 import org.junit.Rule;
 import org.junit.Test;
-import org.junit.contrib.java.lang.system.RestoreSystemProperties;
 import org.junit.rules.TemporaryFolder;
 import org.microshed.boost.common.BoostException;
 import org.microshed.boost.common.BoostLoggerI;
-import org.microshed.boost.common.config.BoostProperties;
 import org.microshed.boost.common.config.BoosterConfigParams;
 import org.microshed.boost.runtimes.openliberty.LibertyServerConfigGenerator;
 import org.microshed.boost.runtimes.openliberty.boosters.*;
@@ -40,9 +46,6 @@ public class JDBCBoosterTest {
     @Rule
     public TemporaryFolder outputDir = new TemporaryFolder();
 
-    @Rule
-    public final RestoreSystemProperties restoreSystemProperties = new RestoreSystemProperties();
-
     BoostLoggerI logger = CommonLogger.getInstance();
 
     /**
@@ -66,10 +69,8 @@ public class JDBCBoosterTest {
         LibertyServerConfigGenerator serverConfig = new LibertyServerConfigGenerator(
                 outputDir.getRoot().getAbsolutePath(), null, logger);
 
-        // Set compiler target property
-        System.setProperty(BoostProperties.INTERNAL_COMPILER_TARGET, "1.6");
-
-        BoosterConfigParams params = new BoosterConfigParams(BoosterUtil.getJDBCDependency(), new Properties());
+        BoosterConfigParams params = new BoosterConfigParams(BoosterUtil.getJDBCDependency(), new Properties(),
+                "1.6");
         LibertyJDBCBoosterConfig libJDBCConfig = new LibertyJDBCBoosterConfig(params, logger);
         
         serverConfig.addFeature(libJDBCConfig.getFeature());
@@ -96,10 +97,8 @@ public class JDBCBoosterTest {
         LibertyServerConfigGenerator serverConfig = new LibertyServerConfigGenerator(
                 outputDir.getRoot().getAbsolutePath(), null, logger);
 
-        // Set compiler target property
-        System.setProperty(BoostProperties.INTERNAL_COMPILER_TARGET, "1.7");
-
-        BoosterConfigParams params = new BoosterConfigParams(BoosterUtil.getJDBCDependency(), new Properties());
+        BoosterConfigParams params = new BoosterConfigParams(BoosterUtil.getJDBCDependency(), new Properties(),
+                "1.7");
         LibertyJDBCBoosterConfig libJDBCConfig = new LibertyJDBCBoosterConfig(params, logger);
         
         serverConfig.addFeature(libJDBCConfig.getFeature());
@@ -126,10 +125,8 @@ public class JDBCBoosterTest {
         LibertyServerConfigGenerator serverConfig = new LibertyServerConfigGenerator(
                 outputDir.getRoot().getAbsolutePath(), null, logger);
 
-        // Set compiler target property
-        System.setProperty(BoostProperties.INTERNAL_COMPILER_TARGET, "7");
-
-        BoosterConfigParams params = new BoosterConfigParams(BoosterUtil.getJDBCDependency(), new Properties());
+        BoosterConfigParams params = new BoosterConfigParams(BoosterUtil.getJDBCDependency(), new Properties(),
+                "7");
         LibertyJDBCBoosterConfig libJDBCConfig = new LibertyJDBCBoosterConfig(params, logger);
 
         serverConfig.addFeature(libJDBCConfig.getFeature());
@@ -156,10 +153,8 @@ public class JDBCBoosterTest {
         LibertyServerConfigGenerator serverConfig = new LibertyServerConfigGenerator(
                 outputDir.getRoot().getAbsolutePath(), null, logger);
 
-        // Set compiler target property
-        System.setProperty(BoostProperties.INTERNAL_COMPILER_TARGET, "1.8");
-
-        BoosterConfigParams params = new BoosterConfigParams(BoosterUtil.getJDBCDependency(), new Properties());
+        BoosterConfigParams params = new BoosterConfigParams(BoosterUtil.getJDBCDependency(), new Properties(),
+                "1.8");
         LibertyJDBCBoosterConfig libJDBCConfig = new LibertyJDBCBoosterConfig(params, logger);
 
         serverConfig.addFeature(libJDBCConfig.getFeature());
@@ -186,10 +181,8 @@ public class JDBCBoosterTest {
         LibertyServerConfigGenerator serverConfig = new LibertyServerConfigGenerator(
                 outputDir.getRoot().getAbsolutePath(), null, logger);
 
-        // Set compiler target property
-        System.setProperty(BoostProperties.INTERNAL_COMPILER_TARGET, "8");
-
-        BoosterConfigParams params = new BoosterConfigParams(BoosterUtil.getJDBCDependency(), new Properties());
+        BoosterConfigParams params = new BoosterConfigParams(BoosterUtil.getJDBCDependency(), new Properties(),
+                "8");
         LibertyJDBCBoosterConfig libJDBCConfig = new LibertyJDBCBoosterConfig(params, logger);
 
         serverConfig.addFeature(libJDBCConfig.getFeature());
@@ -216,10 +209,8 @@ public class JDBCBoosterTest {
         LibertyServerConfigGenerator serverConfig = new LibertyServerConfigGenerator(
                 outputDir.getRoot().getAbsolutePath(), null, logger);
 
-        // Set compiler target property
-        System.setProperty(BoostProperties.INTERNAL_COMPILER_TARGET, "9");
-
-        BoosterConfigParams params = new BoosterConfigParams(BoosterUtil.getJDBCDependency(), new Properties());
+        BoosterConfigParams params = new BoosterConfigParams(BoosterUtil.getJDBCDependency(), new Properties(),
+                "9");
         LibertyJDBCBoosterConfig libJDBCConfig = new LibertyJDBCBoosterConfig(params, logger);
 
         serverConfig.addFeature(libJDBCConfig.getFeature());
@@ -246,10 +237,8 @@ public class JDBCBoosterTest {
         LibertyServerConfigGenerator serverConfig = new LibertyServerConfigGenerator(
                 outputDir.getRoot().getAbsolutePath(), null, logger);
 
-        // Set compiler target property
-        System.setProperty(BoostProperties.INTERNAL_COMPILER_TARGET, "11");
-
-        BoosterConfigParams params = new BoosterConfigParams(BoosterUtil.getJDBCDependency(), new Properties());
+        BoosterConfigParams params = new BoosterConfigParams(BoosterUtil.getJDBCDependency(), new Properties(),
+                "11");
         LibertyJDBCBoosterConfig libJDBCConfig = new LibertyJDBCBoosterConfig(params, logger);
 
         serverConfig.addFeature(libJDBCConfig.getFeature());
@@ -262,4 +251,44 @@ public class JDBCBoosterTest {
 
     }
 
+    /**
+     * Test that projects with different compiler targets configured at the same
+     * time, as in a parallel build, each get the jdbc feature of their own
+     * target.
+     */
+    @Test
+    public void testConcurrentProjectsUseTheirOwnCompilerTarget() throws Exception {
+        final String[] targets = { "1.7", "1.8", "11" };
+        final String[] features = { JDBC_41, JDBC_42, JDBC_43 };
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<Future<String>>();
+            for (int i = 0; i < 48; i++) {
+                final String target = targets[i % targets.length];
+                final File serverDir = outputDir.newFolder();
+                results.add(executor.submit(new Callable<String>() {
+                    @Override
+                    public String call() throws Exception {
+                        BoosterConfigParams params = new BoosterConfigParams(BoosterUtil.getJDBCDependency(),
+                                new Properties(), target);
+                        LibertyJDBCBoosterConfig libJDBCConfig = new LibertyJDBCBoosterConfig(params, logger);
+
+                        LibertyServerConfigGenerator serverConfig = new LibertyServerConfigGenerator(
+                                serverDir.getAbsolutePath(), null, logger);
+                        serverConfig.addFeature(libJDBCConfig.getFeature());
+                        serverConfig.writeToServer();
+                        return LibertyServerConfigGenerator.getFeatures(serverDir.getAbsolutePath()).first();
+                    }
+                }));
+            }
+
+            for (int i = 0; i < results.size(); i++) {
+                assertEquals("Wrong jdbc feature for compiler target " + targets[i % targets.length],
+                        features[i % features.length], results.get(i).get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 }
@@ -11,6 +11,7 @@
 package org.microshed.boost.runtimes.config;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.microshed.boost.common.config.ConfigConstants.*;
 import static org.microshed.boost.runtimes.utils.DOMUtils.getDirectChildrenByTag;
@@ -28,6 +29,7 @@ import javax.xml.transform.TransformerException;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
+import org.microshed.boost.common.BoostException;
 import org.microshed.boost.common.BoostLoggerI;
 import org.microshed.boost.common.boosters.JDBCBoosterConfig;
 import org.microshed.boost.common.config.BoostProperties;
@@ -421,4 +423,307 @@ public class LibertyServerConfigGeneratorTest {
                 ConfigFileUtils.findVariableInXml(variablesXml, BoostProperties.DATASOURCE_PASSWORD));
     }
 
+    /**
+     * Test that the connection pool properties configure the connection
+     * manager of the data source, with defaults sized from the configured
+     * processors
+     */
+    @Test
+    public void testAddDatasource_ConnectionPool() throws Exception {
+
+        LibertyServerConfigGenerator serverConfig = new LibertyServerConfigGenerator(
+                outputDir.getRoot().getAbsolutePath(), null, logger);
+
+        Properties boostProperties = new Properties();
+        boostProperties.put(BoostProperties.DATASOURCE_POOL_PROCESSORS, "4");
+        boostProperties.put(BoostProperties.DATASOURCE_POOL_MAX_POOL_SIZE, "1");
+        boostProperties.put(BoostProperties.DATASOURCE_POOL_PURGE_POLICY, "FailingConnectionOnly");
+
+        BoosterConfigParams params = new BoosterConfigParams(BoosterUtil.getJDBCDependency(), boostProperties);
+        LibertyJDBCBoosterConfig jdbcConfig = new LibertyJDBCBoosterConfig(params, logger);
+        jdbcConfig.addServerConfig(serverConfig);
+        serverConfig.writeToServer();
+
+        // Parse server.xml
+        File serverXml = new File(outputDir.getRoot().getAbsolutePath() + "/server.xml");
+        DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
+        DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
+        Document doc = dBuilder.parse(serverXml);
+
+        Element dataSource = getDirectChildrenByTag(doc.getDocumentElement(), DATASOURCE).get(0);
+        List<Element> connectionManagerList = getDirectChildrenByTag(dataSource, CONNECTION_MANAGER);
+        assertEquals("Didn't find one and only one " + CONNECTION_MANAGER, 1, connectionManagerList.size());
+
+        Element connectionManager = connectionManagerList.get(0);
+        assertEquals("The maxPoolSize attribute is not correct",
+                BoostUtil.makeVariable(BoostProperties.DATASOURCE_POOL_MAX_POOL_SIZE),
+                connectionManager.getAttribute("maxPoolSize"));
+        assertEquals("The agedTimeout attribute is not correct",
+                BoostUtil.makeVariable(BoostProperties.DATASOURCE_POOL_AGED_TIMEOUT),
+                connectionManager.getAttribute("agedTimeout"));
+
+        // Pool properties are not vendor data source properties
+        Element properties = getDirectChildrenByTag(dataSource, PROPERTIES_DERBY_EMBEDDED).get(0);
+        assertEquals("The pool property was added to the vendor properties", "",
+                properties.getAttribute("pool_maxPoolSize"));
+        assertEquals("The processors were added to the connection manager", "",
+                connectionManager.getAttribute("processors"));
+
+        // Check variables.xml content
+        String variablesXml = outputDir.getRoot().getAbsolutePath() + LibertyServerConfigGenerator.CONFIG_DROPINS_DIR
+                + "/variables.xml";
+
+        assertEquals("The variable set for " + BoostProperties.DATASOURCE_POOL_MAX_POOL_SIZE + " is not correct",
+                "1", ConfigFileUtils.findVariableInXml(variablesXml, BoostProperties.DATASOURCE_POOL_MAX_POOL_SIZE));
+        // The default minimum is lowered to the configured maximum
+        assertEquals("The variable set for " + BoostProperties.DATASOURCE_POOL_MIN_POOL_SIZE + " is not correct",
+                "1", ConfigFileUtils.findVariableInXml(variablesXml, BoostProperties.DATASOURCE_POOL_MIN_POOL_SIZE));
+        assertEquals("The variable set for " + BoostProperties.DATASOURCE_POOL_PURGE_POLICY + " is not correct",
+                "FailingConnectionOnly",
+                ConfigFileUtils.findVariableInXml(variablesXml, BoostProperties.DATASOURCE_POOL_PURGE_POLICY));
+        assertEquals("The variable set for " + BoostProperties.DATASOURCE_POOL_CONNECTION_TIMEOUT + " is not correct",
+                "30s", ConfigFileUtils.findVariableInXml(variablesXml, BoostProperties.DATASOURCE_POOL_CONNECTION_TIMEOUT));
+    }
+
+    /**
+     * Test that the default pool size follows the number of processors
+     */
+    @Test
+    public void testDefaultConnectionPoolSize() throws Exception {
+        Properties poolProperties = JDBCBoosterConfig.getDefaultConnectionPoolProperties(4);
+
+        assertEquals("9", poolProperties.getProperty(BoostProperties.DATASOURCE_POOL_MAX_POOL_SIZE));
+        assertEquals("4", poolProperties.getProperty(BoostProperties.DATASOURCE_POOL_MIN_POOL_SIZE));
+    }
+
+    /**
+     * Test that the pool is not sized from the processors of the build machine
+     * when the processors of the server are not configured
+     */
+    @Test
+    public void testConnectionPoolSizeWithoutProcessors() throws Exception {
+        BoosterConfigParams params = new BoosterConfigParams(BoosterUtil.getJDBCDependency(), new Properties());
+        Properties poolProperties = new LibertyJDBCBoosterConfig(params, logger).getConnectionPoolProperties();
+
+        assertNull(poolProperties.getProperty(BoostProperties.DATASOURCE_POOL_MAX_POOL_SIZE));
+        assertNull(poolProperties.getProperty(BoostProperties.DATASOURCE_POOL_MIN_POOL_SIZE));
+        assertEquals("30s", poolProperties.getProperty(BoostProperties.DATASOURCE_POOL_CONNECTION_TIMEOUT));
+    }
+
+    /**
+     * Test that the throughput profile adds the MySQL preset and that
+     * configured properties replace the preset values
+     */
+    @Test
+    public void testAddJdbcBoosterConfig_ThroughputProfile() throws Exception {
+
+        LibertyServerConfigGenerator serverConfig = new LibertyServerConfigGenerator(
+                outputDir.getRoot().getAbsolutePath(), null, logger);
+
+        Map<String, String> jdbcDependency = BoosterUtil.getJDBCDependency();
+        jdbcDependency.put(JDBCBoosterConfig.MYSQL_GROUP_ID + ":" + JDBCBoosterConfig.MYSQL_ARTIFACT_ID, "1.0");
+
+        Properties boostProperties = new Properties();
+        boostProperties.put(BoostProperties.DATASOURCE_URL, MYSQL_URL);
+        boostProperties.put(BoostProperties.DATASOURCE_PERFORMANCE_PROFILE,
+                JDBCBoosterConfig.PERFORMANCE_PROFILE_THROUGHPUT);
+        boostProperties.put(BoostProperties.DATASOURCE_PREFIX + "prepStmtCacheSize", "50");
+
+        BoosterConfigParams params = new BoosterConfigParams(jdbcDependency, boostProperties);
+        LibertyJDBCBoosterConfig jdbcConfig = new LibertyJDBCBoosterConfig(params, logger);
+        jdbcConfig.addServerConfig(serverConfig);
+        serverConfig.writeToServer();
+
+        File serverXml = new File(outputDir.getRoot().getAbsolutePath() + "/server.xml");
+        DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
+        DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
+        Document doc = dBuilder.parse(serverXml);
+
+        Element dataSource = getDirectChildrenByTag(doc.getDocumentElement(), DATASOURCE).get(0);
+        Element properties = getDirectChildrenByTag(dataSource, PROPERTIES).get(0);
+        assertEquals("The rewriteBatchedStatements attribute is not correct",
+                BoostUtil.makeVariable(BoostProperties.DATASOURCE_PREFIX + "rewriteBatchedStatements"),
+                properties.getAttribute("rewriteBatchedStatements"));
+        assertEquals("The profile was added to the vendor properties", "",
+                properties.getAttribute("performanceProfile"));
+
+        String variablesXml = outputDir.getRoot().getAbsolutePath() + LibertyServerConfigGenerator.CONFIG_DROPINS_DIR
+                + "/variables.xml";
+        assertEquals("The preset value of cachePrepStmts is not correct", "true",
+                ConfigFileUtils.findVariableInXml(variablesXml, BoostProperties.DATASOURCE_PREFIX + "cachePrepStmts"));
+        assertEquals("The configured value of prepStmtCacheSize did not replace the preset", "50",
+                ConfigFileUtils.findVariableInXml(variablesXml, BoostProperties.DATASOURCE_PREFIX + "prepStmtCacheSize"));
+    }
+
+    /**
+     * Test that the statement properties are set on the dataSource element and
+     * that the fetch size is set with the PostgreSQL property name
+     */
+    @Test
+    public void testAddDatasource_StatementProperties() throws Exception {
+
+        LibertyServerConfigGenerator serverConfig = new LibertyServerConfigGenerator(
+                outputDir.getRoot().getAbsolutePath(), null, logger);
+
+        Map<String, String> jdbcDependency = BoosterUtil.getJDBCDependency();
+        jdbcDependency.put(JDBCBoosterConfig.POSTGRESQL_GROUP_ID + ":" + JDBCBoosterConfig.POSTGRESQL_ARTIFACT_ID,
+                "1.0");
+
+        Properties boostProperties = new Properties();
+        boostProperties.put(BoostProperties.DATASOURCE_URL, POSTGRESQL_URL);
+        boostProperties.put(BoostProperties.DATASOURCE_ISOLATION_LEVEL, "TRANSACTION_READ_COMMITTED");
+        boostProperties.put(BoostProperties.DATASOURCE_QUERY_TIMEOUT, "10s");
+        boostProperties.put(BoostProperties.DATASOURCE_FETCH_SIZE, "200");
+
+        BoosterConfigParams params = new BoosterConfigParams(jdbcDependency, boostProperties);
+        LibertyJDBCBoosterConfig jdbcConfig = new LibertyJDBCBoosterConfig(params, logger);
+        jdbcConfig.addServerConfig(serverConfig);
+        serverConfig.writeToServer();
+
+        File serverXml = new File(outputDir.getRoot().getAbsolutePath() + "/server.xml");
+        DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
+        DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
+        Document doc = dBuilder.parse(serverXml);
+
+        Element dataSource = getDirectChildrenByTag(doc.getDocumentElement(), DATASOURCE).get(0);
+        assertEquals("The statementCacheSize attribute is not correct",
+                BoostUtil.makeVariable(BoostProperties.DATASOURCE_STATEMENT_CACHE_SIZE),
+                dataSource.getAttribute("statementCacheSize"));
+        assertEquals("The isolationLevel attribute is not correct",
+                BoostUtil.makeVariable(BoostProperties.DATASOURCE_ISOLATION_LEVEL),
+                dataSource.getAttribute("isolationLevel"));
+        assertEquals("The validationTimeout attribute was set without being configured", "",
+                dataSource.getAttribute("validationTimeout"));
+
+        Element properties = getDirectChildrenByTag(dataSource, PROPERTIES_POSTGRESQL).get(0);
+        assertEquals("The queryTimeout was added to the vendor properties", "",
+                properties.getAttribute("queryTimeout"));
+        assertEquals("The defaultRowFetchSize attribute is not correct",
+                BoostUtil.makeVariable(BoostProperties.DATASOURCE_PREFIX + "defaultRowFetchSize"),
+                properties.getAttribute("defaultRowFetchSize"));
+
+        String variablesXml = outputDir.getRoot().getAbsolutePath() + LibertyServerConfigGenerator.CONFIG_DROPINS_DIR
+                + "/variables.xml";
+        assertEquals("The variable set for " + BoostProperties.DATASOURCE_STATEMENT_CACHE_SIZE + " is not correct",
+                JDBCBoosterConfig.DEFAULT_STATEMENT_CACHE_SIZE,
+                ConfigFileUtils.findVariableInXml(variablesXml, BoostProperties.DATASOURCE_STATEMENT_CACHE_SIZE));
+        assertEquals("The variable set for " + BoostProperties.DATASOURCE_QUERY_TIMEOUT + " is not correct", "10s",
+                ConfigFileUtils.findVariableInXml(variablesXml, BoostProperties.DATASOURCE_QUERY_TIMEOUT));
+    }
+
+    /**
+     * Test that named datasources share the JDBC driver, are published under
+     * the JNDI name of their role and have pools of their own
+     */
+    @Test
+    public void testAddDatasource_Named() throws Exception {
+
+        LibertyServerConfigGenerator serverConfig = new LibertyServerConfigGenerator(
+                outputDir.getRoot().getAbsolutePath(), null, logger);
+
+        Map<String, String> jdbcDependency = BoosterUtil.getJDBCDependency();
+        jdbcDependency.put(JDBCBoosterConfig.MYSQL_GROUP_ID + ":" + JDBCBoosterConfig.MYSQL_ARTIFACT_ID, "1.0");
+
+        String replicaUrl = "jdbc:mysql://replica:3306/testdb";
+        Properties boostProperties = new Properties();
+        boostProperties.put("boost_db.orders.url", MYSQL_URL);
+        boostProperties.put("boost_db.ordersReplica.url", replicaUrl);
+        boostProperties.put("boost_db.ordersReplica.role", JDBCBoosterConfig.ROLE_REPLICA);
+        boostProperties.put("boost_db.ordersReplica.pool_maxPoolSize", "20");
+        boostProperties.put(BoostProperties.DATASOURCE_POOL_PROCESSORS, "2");
+
+        BoosterConfigParams params = new BoosterConfigParams(jdbcDependency, boostProperties);
+        LibertyJDBCBoosterConfig jdbcConfig = new LibertyJDBCBoosterConfig(params, logger);
+        jdbcConfig.addServerConfig(serverConfig);
+        serverConfig.writeToServer();
+
+        File serverXml = new File(outputDir.getRoot().getAbsolutePath() + "/server.xml");
+        DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
+        DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
+        Document doc = dBuilder.parse(serverXml);
+
+        Element serverRoot = doc.getDocumentElement();
+        assertEquals("Didn't find one and only one library", 1, getDirectChildrenByTag(serverRoot, LIBRARY).size());
+        assertEquals("Didn't find one and only one jdbcDriver", 1,
+                getDirectChildrenByTag(serverRoot, JDBC_DRIVER).size());
+
+        // No default datasource without "boost_db_" properties
+        List<Element> dataSourceList = getDirectChildrenByTag(serverRoot, DATASOURCE);
+        assertEquals("Didn't find two dataSources", 2, dataSourceList.size());
+
+        Element primary = dataSourceList.get(0);
+        assertEquals("DataSource id is not correct", "orders", primary.getAttribute("id"));
+        assertEquals("DataSource jndiName is not correct", "jdbc/orders", primary.getAttribute(JNDI_NAME));
+        assertEquals("DataSource jdbcDriverRef is not correct", JDBC_DRIVER_1, primary.getAttribute(JDBC_DRIVER_REF));
+        assertEquals("The url attribute is not correct", BoostUtil.makeVariable("boost_db.orders.url"),
+                getDirectChildrenByTag(primary, PROPERTIES).get(0).getAttribute(URL));
+
+        Element replica = dataSourceList.get(1);
+        assertEquals("DataSource id is not correct", "ordersReplica", replica.getAttribute("id"));
+        assertEquals("DataSource jndiName is not correct", "jdbc/replicas/ordersReplica",
+                replica.getAttribute(JNDI_NAME));
+        Element replicaProperties = getDirectChildrenByTag(replica, PROPERTIES).get(0);
+        assertEquals("The role was added to the vendor properties", "", replicaProperties.getAttribute("role"));
+        assertEquals("The maxPoolSize attribute is not correct",
+                BoostUtil.makeVariable("boost_db.ordersReplica.pool_maxPoolSize"),
+                getDirectChildrenByTag(replica, CONNECTION_MANAGER).get(0).getAttribute("maxPoolSize"));
+
+        String variablesXml = outputDir.getRoot().getAbsolutePath() + LibertyServerConfigGenerator.CONFIG_DROPINS_DIR
+                + "/variables.xml";
+        assertEquals("The replica url variable is not correct", replicaUrl,
+                ConfigFileUtils.findVariableInXml(variablesXml, "boost_db.ordersReplica.url"));
+        assertEquals("The replica pool variable is not correct", "20",
+                ConfigFileUtils.findVariableInXml(variablesXml, "boost_db.ordersReplica.pool_maxPoolSize"));
+        // The processors of the default datasource size the pools of the
+        // named datasources
+        assertEquals("The primary pool variable is not correct", "5",
+                ConfigFileUtils.findVariableInXml(variablesXml, "boost_db.orders.pool_maxPoolSize"));
+    }
+
+    /**
+     * Test that the prewarm properties are ignored, since Liberty opens the
+     * connections of a pool when they are first requested
+     */
+    @Test
+    public void testAddDatasource_Prewarm() throws Exception {
+
+        LibertyServerConfigGenerator serverConfig = new LibertyServerConfigGenerator(
+                outputDir.getRoot().getAbsolutePath(), null, logger);
+
+        Map<String, String> jdbcDependency = BoosterUtil.getJDBCDependency();
+        jdbcDependency.put(JDBCBoosterConfig.POSTGRESQL_GROUP_ID + ":" + JDBCBoosterConfig.POSTGRESQL_ARTIFACT_ID,
+                "1.0");
+
+        Properties boostProperties = new Properties();
+        boostProperties.put(BoostProperties.DATASOURCE_URL, POSTGRESQL_URL);
+        boostProperties.put(BoostProperties.DATASOURCE_PREWARM, "true");
+        boostProperties.put(BoostProperties.DATASOURCE_PREWARM_TIMEOUT, "1m");
+
+        BoosterConfigParams params = new BoosterConfigParams(jdbcDependency, boostProperties);
+        LibertyJDBCBoosterConfig jdbcConfig = new LibertyJDBCBoosterConfig(params, logger);
+        jdbcConfig.addServerConfig(serverConfig);
+        serverConfig.writeToServer();
+
+        File serverXml = new File(outputDir.getRoot().getAbsolutePath() + "/server.xml");
+        Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(serverXml);
+        Element dataSource = getDirectChildrenByTag(doc.getDocumentElement(), DATASOURCE).get(0);
+        Element properties = getDirectChildrenByTag(dataSource, PROPERTIES_POSTGRESQL).get(0);
+        assertEquals("The prewarm property was added to the vendor properties", "",
+                properties.getAttribute("prewarm"));
+        assertEquals("The prewarm timeout was added to the vendor properties", "",
+                properties.getAttribute("prewarmTimeout"));
+    }
+
+    /**
+     * Test that an unknown performance profile is rejected
+     */
+    @Test(expected = BoostException.class)
+    public void testUnknownPerformanceProfile() throws Exception {
+        Properties boostProperties = new Properties();
+        boostProperties.put(BoostProperties.DATASOURCE_PERFORMANCE_PROFILE, "fast");
+
+        BoosterConfigParams params = new BoosterConfigParams(BoosterUtil.getJDBCDependency(), boostProperties);
+        new LibertyJDBCBoosterConfig(params, logger);
+    }
+
 }
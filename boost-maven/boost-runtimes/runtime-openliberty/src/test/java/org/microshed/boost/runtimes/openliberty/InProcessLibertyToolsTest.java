@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.microshed.boost.runtimes.openliberty;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.microshed.boost.common.BoostLoggerI;
+import org.microshed.boost.runtimes.utils.CommonLogger;
+
+public class InProcessLibertyToolsTest {
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    BoostLoggerI logger = CommonLogger.getInstance();
+
+    private File runtimeZip;
+    private File installDir;
+
+    @Before
+    public void setUp() throws Exception {
+        runtimeZip = new File(tempDir.getRoot(), "openliberty-runtime.zip");
+        try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(runtimeZip))) {
+            addEntry(zip, "wlp/bin/server", "#!/bin/sh");
+            addEntry(zip, "wlp/bin/productInfo", "#!/bin/sh");
+            addEntry(zip, "wlp/lib/kernel.jar", "kernel");
+            addEntry(zip, "wlp/templates/servers/defaultServer/server.xml", "<server/>");
+        }
+        installDir = new File(tempDir.newFolder(), "liberty/wlp");
+    }
+
+    @Test
+    public void testServerIsCreatedFromTemplate() throws Exception {
+        InProcessLibertyTools tools = new InProcessLibertyTools(installDir, logger);
+        tools.extractRuntime(runtimeZip);
+
+        assertTrue(InProcessLibertyTools.isExtractedInstall(installDir));
+        assertTrue(tools.createServer("defaultServer"));
+        File serverDir = new File(installDir, "usr/servers/defaultServer");
+        assertEquals("<server/>",
+                new String(Files.readAllBytes(new File(serverDir, "server.xml").toPath()), StandardCharsets.UTF_8));
+        assertTrue(new File(serverDir, "apps").isDirectory());
+    }
+
+    @Test
+    public void testScriptsAreExecutable() throws Exception {
+        new InProcessLibertyTools(installDir, logger).extractRuntime(runtimeZip);
+
+        assertTrue("bin/server is not executable", new File(installDir, "bin/server").canExecute());
+        assertTrue("bin/productInfo is not executable", new File(installDir, "bin/productInfo").canExecute());
+    }
+
+    @Test
+    public void testUnchangedZipIsNotExtractedAgain() throws Exception {
+        InProcessLibertyTools tools = new InProcessLibertyTools(installDir, logger);
+        tools.extractRuntime(runtimeZip);
+        File kernel = new File(installDir, "lib/kernel.jar");
+        Files.write(kernel.toPath(), "changed".getBytes(StandardCharsets.UTF_8));
+
+        tools.extractRuntime(runtimeZip);
+        assertEquals("changed", new String(Files.readAllBytes(kernel.toPath()), StandardCharsets.UTF_8));
+
+        // A newer zip at the same path is extracted again
+        assertTrue(runtimeZip.setLastModified(runtimeZip.lastModified() + 2000));
+        tools.extractRuntime(runtimeZip);
+        assertEquals("kernel", new String(Files.readAllBytes(kernel.toPath()), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testExistingServerIsKept() throws Exception {
+        InProcessLibertyTools tools = new InProcessLibertyTools(installDir, logger);
+        tools.extractRuntime(runtimeZip);
+        tools.createServer("defaultServer");
+        File serverXml = new File(installDir, "usr/servers/defaultServer/server.xml");
+        Files.write(serverXml.toPath(), "<server description=\"boost\"/>".getBytes(StandardCharsets.UTF_8));
+
+        try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(runtimeZip))) {
+            addEntry(zip, "wlp/lib/kernel.jar", "new kernel");
+            addEntry(zip, "wlp/templates/servers/defaultServer/server.xml", "<server/>");
+        }
+        tools.extractRuntime(runtimeZip);
+        assertTrue(tools.createServer("defaultServer"));
+
+        assertEquals("new kernel",
+                new String(Files.readAllBytes(new File(installDir, "lib/kernel.jar").toPath()), StandardCharsets.UTF_8));
+        assertEquals("<server description=\"boost\"/>",
+                new String(Files.readAllBytes(serverXml.toPath()), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testServerIsNotCreatedWithoutTemplate() throws Exception {
+        installDir.mkdirs();
+
+        assertFalse(new InProcessLibertyTools(installDir, logger).createServer("defaultServer"));
+    }
+
+    private void addEntry(ZipOutputStream zip, String name, String content) throws Exception {
+        zip.putNextEntry(new ZipEntry(name));
+        zip.write(content.getBytes(StandardCharsets.UTF_8));
+        zip.closeEntry();
+    }
+}
@@ -0,0 +1,256 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.microshed.boost.runtimes.openliberty;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.microshed.boost.common.image.ImageLayer;
+import org.microshed.boost.common.image.OciImageWriter;
+import org.microshed.boost.runtimes.openliberty.LibertyClassDataSharing.Jvm;
+import org.microshed.boost.runtimes.utils.CommonLogger;
+
+public class LibertyClassDataSharingTest {
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    @Test
+    public void testJvmIsDetectedFromVersionOutput() {
+        String hotspot8 = "openjdk version \"1.8.0_222\"\n"
+                + "OpenJDK Runtime Environment (AdoptOpenJDK)(build 1.8.0_222-b10)\n"
+                + "OpenJDK 64-Bit Server VM (AdoptOpenJDK)(build 25.222-b10, mixed mode)";
+        String openj9 = "openjdk version \"11.0.4\" 2019-07-16\n"
+                + "OpenJDK Runtime Environment AdoptOpenJDK (build 11.0.4+11)\n"
+                + "Eclipse OpenJ9 VM AdoptOpenJDK (build openj9-0.15.1, JRE 11 Linux amd64-64-Bit)";
+
+        assertEquals(Jvm.HOTSPOT, LibertyClassDataSharing.getJvm(hotspot8));
+        assertEquals(8, LibertyClassDataSharing.getFeatureVersion(hotspot8));
+        assertEquals(Jvm.OPENJ9, LibertyClassDataSharing.getJvm(openj9));
+        assertEquals(11, LibertyClassDataSharing.getFeatureVersion(openj9));
+    }
+
+    @Test
+    public void testOptionsReplaceEarlierOnesAndKeepUserOptions() throws Exception {
+        File serverDir = tempDir.newFolder();
+        File jvmOptions = new File(serverDir, "jvm.options");
+        Files.write(jvmOptions.toPath(), Arrays.asList("-Xmx512m"), StandardCharsets.UTF_8);
+
+        LibertyClassDataSharing.writeOptions(serverDir, Jvm.OPENJ9, 11);
+        LibertyClassDataSharing.writeOptions(serverDir, Jvm.HOTSPOT, 11);
+
+        List<String> lines = Files.readAllLines(jvmOptions.toPath(), StandardCharsets.UTF_8);
+        assertEquals(Arrays.asList("-Xmx512m", LibertyClassDataSharing.BEGIN,
+                "-XX:SharedArchiveFile=" + new File(serverDir, "boost/cds/app-cds.jsa").getAbsolutePath(),
+                LibertyClassDataSharing.END), lines);
+        assertFalse(new File(serverDir, "server.env").exists());
+
+        LibertyClassDataSharing.remove(serverDir);
+        assertEquals(Arrays.asList("-Xmx512m"), Files.readAllLines(jvmOptions.toPath(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testOpenJ9OptionIsOnlyReadByOpenJ9() throws Exception {
+        File serverDir = tempDir.newFolder();
+        File serverEnv = new File(serverDir, "server.env");
+        Files.write(serverEnv.toPath(), Arrays.asList("keystore_password=secret"), StandardCharsets.UTF_8);
+
+        LibertyClassDataSharing.writeOptions(serverDir, Jvm.OPENJ9, 11);
+
+        assertFalse(new File(serverDir, "jvm.options").exists());
+        assertEquals(Arrays.asList("keystore_password=secret", LibertyClassDataSharing.BEGIN,
+                "OPENJ9_JAVA_OPTIONS=-Xshareclasses:name=boost,cacheDir="
+                        + new File(serverDir, "boost/cds").getAbsolutePath() + ",nonfatal",
+                LibertyClassDataSharing.END), Files.readAllLines(serverEnv.toPath(), StandardCharsets.UTF_8));
+
+        LibertyClassDataSharing.remove(serverDir);
+        assertEquals(Arrays.asList("keystore_password=secret"),
+                Files.readAllLines(serverEnv.toPath(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testGeneratedJvmOptionsAreRemoved() throws Exception {
+        File serverDir = tempDir.newFolder();
+        File archive = new File(serverDir, LibertyClassDataSharing.DIRECTORY + "/app-cds.jsa");
+        archive.getParentFile().mkdirs();
+        Files.write(archive.toPath(), new byte[] { 1 });
+        LibertyClassDataSharing.writeOptions(serverDir, Jvm.HOTSPOT, 11);
+
+        LibertyClassDataSharing.remove(serverDir);
+
+        assertFalse(new File(serverDir, "jvm.options").exists());
+        assertFalse(archive.exists());
+    }
+
+    @Test
+    public void testJava10ArchivesApplicationClasses() throws Exception {
+        File serverDir = tempDir.newFolder();
+
+        LibertyClassDataSharing.writeOptions(serverDir, Jvm.HOTSPOT, 10);
+
+        List<String> lines = Files.readAllLines(new File(serverDir, "jvm.options").toPath(), StandardCharsets.UTF_8);
+        assertEquals("-XX:+UseAppCDS", lines.get(1));
+    }
+
+    @Test
+    public void testArchiveIsSetAsideWhilePackaging() throws Exception {
+        File serverDir = tempDir.newFolder();
+        File jvmOptions = new File(serverDir, "jvm.options");
+        Files.write(jvmOptions.toPath(), Arrays.asList("-Xmx512m"), StandardCharsets.UTF_8);
+        File archive = new File(serverDir, LibertyClassDataSharing.DIRECTORY + "/app-cds.jsa");
+        archive.getParentFile().mkdirs();
+        Files.write(archive.toPath(), new byte[] { 1 });
+        LibertyClassDataSharing.writeOptions(serverDir, Jvm.HOTSPOT, 11);
+        List<String> options = Files.readAllLines(jvmOptions.toPath(), StandardCharsets.UTF_8);
+
+        try (Closeable setAside = LibertyClassDataSharing.setAside(serverDir, tempDir.newFolder())) {
+            assertFalse(archive.exists());
+            assertEquals(Arrays.asList("-Xmx512m"), Files.readAllLines(jvmOptions.toPath(), StandardCharsets.UTF_8));
+        }
+
+        assertTrue(archive.isFile());
+        assertEquals(options, Files.readAllLines(jvmOptions.toPath(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testArchiveIsLeftOutOfTheImage() throws Exception {
+        File serverDir = tempDir.newFolder();
+        File jvmOptions = new File(serverDir, "jvm.options");
+        Files.write(jvmOptions.toPath(), Arrays.asList("-Xmx512m"), StandardCharsets.UTF_8);
+        File archive = new File(serverDir, LibertyClassDataSharing.DIRECTORY + "/app-cds.jsa");
+        archive.getParentFile().mkdirs();
+        Files.write(archive.toPath(), new byte[] { 1 });
+        LibertyClassDataSharing.writeOptions(serverDir, Jvm.HOTSPOT, 11);
+
+        String serverPath = "/opt/ol/wlp/usr/servers/defaultServer";
+        ImageLayer application = new ImageLayer("application");
+        application.addDirectory(serverPath, serverDir, null);
+        OciImageWriter image = new OciImageWriter(tempDir.newFolder(), CommonLogger.getInstance());
+        image.addLayer(application);
+
+        File workDir = tempDir.newFolder();
+        LibertyClassDataSharing.excludeFromImage(image, serverPath, workDir);
+
+        assertEquals(Arrays.asList("opt", "opt/ol", "opt/ol/wlp", "opt/ol/wlp/usr", "opt/ol/wlp/usr/servers",
+                "opt/ol/wlp/usr/servers/defaultServer", "opt/ol/wlp/usr/servers/defaultServer/jvm.options"),
+                new ArrayList<String>(application.getEntries().keySet()));
+        File copy = application.getEntries().get("opt/ol/wlp/usr/servers/defaultServer/jvm.options");
+        assertEquals(new File(workDir, "jvm.options"), copy);
+        assertEquals(Arrays.asList("-Xmx512m"), Files.readAllLines(copy.toPath(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Dump an archive for a server launcher, then start the launcher as the
+     * server script does, from another working directory and with the options
+     * written for the server. With -Xshare:on, the JVM fails to start unless it
+     * uses the archive.
+     */
+    @Test
+    public void testArchiveIsUsedByTheServerLauncher() throws Exception {
+        File javaHome = new File(System.getProperty("java.home"));
+        String versionOutput = run(null, getJava(javaHome), "-version");
+        assumeTrue(LibertyClassDataSharing.getJvm(versionOutput) == Jvm.HOTSPOT);
+        int version = LibertyClassDataSharing.getFeatureVersion(versionOutput);
+        assumeTrue(version >= 10);
+
+        File installDir = new File(tempDir.newFolder(), "wlp");
+        File serverDir = new File(installDir, "usr/servers/defaultServer");
+        new File(serverDir, LibertyClassDataSharing.DIRECTORY).mkdirs();
+        LibertyClassDataSharing cds = new LibertyClassDataSharing(installDir, "defaultServer", javaHome,
+                CommonLogger.getInstance());
+        createLauncher(cds.getLauncher());
+
+        // The training start, then the archive and its options
+        List<String> command = new ArrayList<String>();
+        command.add(getJava(javaHome));
+        command.addAll(cds.getClassListOptions(version));
+        command.addAll(Arrays.asList("-jar", cds.getLauncher().getPath()));
+        run(null, command.toArray(new String[command.size()]));
+        cds.dumpArchive(version);
+        LibertyClassDataSharing.writeOptions(serverDir, Jvm.HOTSPOT, version);
+
+        command = new ArrayList<String>();
+        command.add(getJava(javaHome));
+        command.add("-Xshare:on");
+        command.add("-Xlog:class+load=info");
+        for (String line : Files.readAllLines(new File(serverDir, "jvm.options").toPath(), StandardCharsets.UTF_8)) {
+            if (line.startsWith("-")) {
+                command.add(line);
+            }
+        }
+        command.addAll(Arrays.asList("-jar", installDir.getAbsolutePath() + "/bin/tools/ws-server.jar"));
+        String output = run(tempDir.newFolder(), command.toArray(new String[command.size()]));
+
+        assertTrue(output, output.contains("test.Launcher source: shared objects file"));
+    }
+
+    /**
+     * A ws-server.jar whose main class only loads a few classes.
+     */
+    private void createLauncher(File launcher) throws Exception {
+        File sourceDir = tempDir.newFolder();
+        File source = new File(sourceDir, "test/Launcher.java");
+        source.getParentFile().mkdirs();
+        Files.write(source.toPath(), Collections.singletonList("package test; public class Launcher {"
+                + " public static void main(String[] args) {"
+                + " System.out.println(new java.util.ArrayList<String>()); } }"), StandardCharsets.UTF_8);
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assertEquals(0, compiler.run(null, null, null, source.getPath()));
+
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().put(Attributes.Name.MAIN_CLASS, "test.Launcher");
+        launcher.getParentFile().mkdirs();
+        try (JarOutputStream jar = new JarOutputStream(new FileOutputStream(launcher), manifest)) {
+            jar.putNextEntry(new JarEntry("test/Launcher.class"));
+            jar.write(Files.readAllBytes(new File(sourceDir, "test/Launcher.class").toPath()));
+            jar.closeEntry();
+        }
+    }
+
+    private static String getJava(File javaHome) {
+        return new File(javaHome, File.separatorChar == '\\' ? "bin/java.exe" : "bin/java").getAbsolutePath();
+    }
+
+    private static String run(File workingDir, String... command) throws Exception {
+        File outputFile = File.createTempFile("boost-cds-test", ".log");
+        Process process = new ProcessBuilder(command).directory(workingDir).redirectErrorStream(true)
+                .redirectOutput(outputFile).start();
+        assertTrue(process.waitFor(1, TimeUnit.MINUTES));
+        String output = new String(Files.readAllBytes(outputFile.toPath()), StandardCharsets.UTF_8);
+        Files.delete(outputFile.toPath());
+        assertEquals(output, 0, process.exitValue());
+        return output;
+    }
+}
@@ -0,0 +1,150 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.microshed.boost.runtimes.openliberty;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.microshed.boost.common.BoostLoggerI;
+import org.microshed.boost.runtimes.utils.CommonLogger;
+
+public class LibertyInstallCacheTest {
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    BoostLoggerI logger = CommonLogger.getInstance();
+
+    private File runtimeZip;
+    private File cacheDir;
+
+    @Before
+    public void setUp() throws Exception {
+        runtimeZip = new File(tempDir.getRoot(), "openliberty-runtime.zip");
+        try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(runtimeZip))) {
+            addEntry(zip, "wlp/bin/server", "#!/bin/sh");
+            addEntry(zip, "wlp/lib/kernel.jar", "kernel");
+            addEntry(zip, "wlp/lib/versions/openliberty.properties", "com.ibm.websphere.productVersion=19.0.0.6");
+            addEntry(zip, "wlp/usr/shared/shared.txt", "shared");
+        }
+        cacheDir = tempDir.newFolder();
+    }
+
+    @Test
+    public void testProjectInstallsShareFiles() throws Exception {
+        LibertyInstallCache cache = new LibertyInstallCache(cacheDir, logger);
+        File firstInstall = new File(tempDir.newFolder(), "liberty/wlp");
+        File secondInstall = new File(tempDir.newFolder(), "liberty/wlp");
+
+        cache.createInstall(runtimeZip, firstInstall);
+        cache.createInstall(runtimeZip, secondInstall);
+
+        assertTrue(LibertyInstallCache.isCachedInstall(firstInstall));
+        assertTrue(Files.isSameFile(new File(firstInstall, "lib/kernel.jar").toPath(),
+                new File(secondInstall, "lib/kernel.jar").toPath()));
+        assertTrue(new File(firstInstall, "bin/server").canExecute());
+
+        // usr/ is private to each project
+        File sharedFile = new File(firstInstall, "usr/shared/shared.txt");
+        assertFalse(Files.isSameFile(sharedFile.toPath(), new File(secondInstall, "usr/shared/shared.txt").toPath()));
+        assertTrue(sharedFile.canWrite());
+    }
+
+    /**
+     * Without POSIX permissions the cached files can not be made read-only, so
+     * they are copied rather than linked into the projects
+     */
+    @Test
+    public void testProjectInstallsAreCopiesWithoutReadOnlyFiles() throws Exception {
+        LibertyInstallCache cache = new LibertyInstallCache(cacheDir, false, logger);
+        File install = new File(tempDir.newFolder(), "liberty/wlp");
+        cache.createInstall(runtimeZip, install);
+
+        File kernel = new File(install, "lib/kernel.jar");
+        assertEquals("kernel", new String(Files.readAllBytes(kernel.toPath()), StandardCharsets.UTF_8));
+        kernel.setWritable(true);
+        Files.write(kernel.toPath(), "patched".getBytes(StandardCharsets.UTF_8));
+
+        File otherInstall = new File(tempDir.newFolder(), "liberty/wlp");
+        cache.createInstall(runtimeZip, otherInstall);
+        assertEquals("kernel", new String(Files.readAllBytes(new File(otherInstall, "lib/kernel.jar").toPath()),
+                StandardCharsets.UTF_8));
+        assertFalse(Files.isSameFile(kernel.toPath(), new File(otherInstall, "lib/kernel.jar").toPath()));
+    }
+
+    @Test
+    public void testServersAreKeptWhenRuntimeChanges() throws Exception {
+        LibertyInstallCache cache = new LibertyInstallCache(cacheDir, logger);
+        File install = new File(tempDir.newFolder(), "liberty/wlp");
+        cache.createInstall(runtimeZip, install);
+
+        File serverXml = new File(install, "usr/servers/defaultServer/server.xml");
+        serverXml.getParentFile().mkdirs();
+        Files.write(serverXml.toPath(), "<server/>".getBytes(StandardCharsets.UTF_8));
+
+        try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(runtimeZip))) {
+            addEntry(zip, "wlp/lib/kernel.jar", "new kernel");
+        }
+        cache.createInstall(runtimeZip, install);
+
+        assertEquals("new kernel",
+                new String(Files.readAllBytes(new File(install, "lib/kernel.jar").toPath()), StandardCharsets.UTF_8));
+        assertFalse(new File(install, "bin/server").exists());
+        assertTrue(serverXml.exists());
+    }
+
+    @Test
+    public void testInstalledFeaturesAreRestored() throws Exception {
+        LibertyInstallCache cache = new LibertyInstallCache(cacheDir, logger);
+        List<String> features = Arrays.asList("mpMetrics-2.0", "mpOpenTracing-1.3");
+
+        File firstInstall = new File(tempDir.newFolder(), "liberty/wlp");
+        cache.createInstall(runtimeZip, firstInstall);
+        String key = LibertyInstallCache.getFeaturesKey(firstInstall, features);
+        assertFalse(cache.restoreFeatures(key, firstInstall));
+
+        Map<String, String> before = LibertyInstallCache.snapshot(firstInstall);
+        File featureManifest = new File(firstInstall, "lib/features/mpMetrics-2.0.mf");
+        featureManifest.getParentFile().mkdirs();
+        Files.write(featureManifest.toPath(), "mpMetrics".getBytes(StandardCharsets.UTF_8));
+        cache.storeFeatures(key, firstInstall, before);
+
+        File secondInstall = new File(tempDir.newFolder(), "liberty/wlp");
+        cache.createInstall(runtimeZip, secondInstall);
+        String secondKey = LibertyInstallCache.getFeaturesKey(secondInstall,
+                Arrays.asList("mpOpenTracing-1.3", "mpMetrics-2.0"));
+        assertEquals(key, secondKey);
+        assertTrue(cache.restoreFeatures(secondKey, secondInstall));
+        assertTrue(new File(secondInstall, "lib/features/mpMetrics-2.0.mf").isFile());
+        assertFalse(new File(cacheDir, "features/" + key + "/lib/kernel.jar").exists());
+    }
+
+    private void addEntry(ZipOutputStream zip, String name, String content) throws Exception {
+        zip.putNextEntry(new ZipEntry(name));
+        zip.write(content.getBytes(StandardCharsets.UTF_8));
+        zip.closeEntry();
+    }
+}
@@ -20,18 +20,33 @@ import static org.twdata.maven.mojoexecutor.MojoExecutor.name;
 import static org.twdata.maven.mojoexecutor.MojoExecutor.plugin;
 import static org.twdata.maven.mojoexecutor.MojoExecutor.version;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Properties;
+import java.util.Set;
 
 import org.apache.maven.model.Plugin;
 import org.apache.maven.plugin.MojoExecutionException;
+import org.eclipse.aether.RepositoryException;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.resolution.ArtifactResolutionException;
 import org.microshed.boost.common.BoostException;
 import org.microshed.boost.common.boosters.AbstractBoosterConfig;
 import org.microshed.boost.common.config.BoostProperties;
 import org.microshed.boost.common.config.BoosterConfigurator;
+import org.microshed.boost.common.image.ImageLayer;
+import org.microshed.boost.common.image.OciImageWriter;
 import org.microshed.boost.common.runtimes.RuntimeI;
+import org.microshed.boost.common.utils.BuildMetrics;
+import org.microshed.boost.common.utils.VersionLock;
 import org.microshed.boost.maven.runtimes.RuntimeParams;
 import org.microshed.boost.maven.utils.BoostLogger;
+import org.microshed.boost.maven.utils.MavenProjectUtil;
 import org.twdata.maven.mojoexecutor.MojoExecutor.ExecutionEnvironment;
 
 public class TomeeRuntime implements RuntimeI {
@@ -41,10 +56,29 @@ public class TomeeRuntime implements RuntimeI {
 
     private final String tomeeMavenPluginGroupId = "org.apache.tomee.maven";
     private final String tomeeMavenPluginArtifactId = "tomee-maven-plugin";
+    private final String tomeeMavenPluginVersion = "8.0.0-M2";
+
+    private final String runtimeGroupId = "org.apache.tomee";
+    private final String runtimeArtifactId = "apache-tomee";
+    private final String defaultRuntimeVersion = "8.0.0-M2";
+    private String runtimeVersion;
     private final String installDir;
+
+    private static final String IMAGE_INSTALL_PATH = "/usr/local/tomee";
+
+    /**
+     * Directories written by a running server, that do not belong in an image.
+     */
+    private static final Set<String> SERVER_OUTPUT = new HashSet<String>(
+            Arrays.asList("logs", "temp", "work"));
     private final String configDir;
 
-    private final Plugin mavenDepPlugin;
+    private final RepositorySystem repoSystem;
+    private final RepositorySystemSession repoSession;
+    private final List<RemoteRepository> remoteRepos;
+    private final boolean linkDependencies;
+    private final VersionLock versionLock;
+    private final BuildMetrics buildMetrics;
 
     public TomeeRuntime() {
         this.boosterConfigs = null;
@@ -54,7 +88,13 @@ public class TomeeRuntime implements RuntimeI {
         this.installDir = null;
         this.configDir = null;
 
-        this.mavenDepPlugin = null;
+        this.repoSystem = null;
+        this.repoSession = null;
+        this.remoteRepos = null;
+        this.linkDependencies = false;
+        this.versionLock = null;
+        this.buildMetrics = null;
+        this.runtimeVersion = defaultRuntimeVersion;
     }
 
     public TomeeRuntime(RuntimeParams params) {
@@ -62,32 +102,133 @@ public class TomeeRuntime implements RuntimeI {
         this.boostProperties = params.getBoostProperties();
         this.env = params.getEnv();
 
-        this.installDir = params.getProjectBuildDir() + "/apache-tomee/";
+        if (params.getPackagedServerPath() != null) {
+            String serverPath = params.getPackagedServerPath();
+            this.installDir = serverPath.endsWith("/") ? serverPath : serverPath + "/";
+        } else {
+            this.installDir = params.getProjectBuildDir() + "/apache-tomee/";
+        }
         this.configDir = installDir + "conf";
-        this.mavenDepPlugin = params.getMavenDepPlugin();
+        this.repoSystem = params.getRepoSystem();
+        this.repoSession = params.getRepoSession();
+        this.remoteRepos = params.getRemoteRepos();
+        this.linkDependencies = params.isLinkDependencies();
+        this.versionLock = params.getVersionLock();
+        this.buildMetrics = params.getBuildMetrics();
+        if (params.getPackagedRuntimeVersion() != null) {
+            this.runtimeVersion = params.getPackagedRuntimeVersion();
+        } else {
+            this.runtimeVersion = boostProperties.getProperty(BoostProperties.TOMEE_VERSION, defaultRuntimeVersion);
+        }
     }
 
     private Plugin getPlugin() throws MojoExecutionException {
-        return plugin(groupId(tomeeMavenPluginGroupId), artifactId(tomeeMavenPluginArtifactId), version("8.0.0-M2"));
+        return plugin(groupId(tomeeMavenPluginGroupId), artifactId(tomeeMavenPluginArtifactId), version(tomeeMavenPluginVersion));
     }
 
     public void doPackage() throws BoostException {
         try {
-            createTomeeServer();
-            configureTomeeServer(boosterConfigs);
-            copyTomeeJarDependencies(boosterConfigs);
-            createUberJar();
+            try (BuildMetrics.Phase phase = buildMetrics.start("create")) {
+                createTomeeServer();
+            }
+            try (BuildMetrics.Phase phase = buildMetrics.start("generate-config")) {
+                configureTomeeServer(boosterConfigs);
+            }
+            try (BuildMetrics.Phase phase = buildMetrics.start("copy-dependencies")) {
+                copyTomeeJarDependencies(boosterConfigs);
+            }
+            try (BuildMetrics.Phase phase = buildMetrics.start("package")) {
+                createUberJar();
+            }
         } catch (Exception e) {
             throw new BoostException("Error packaging TomEE server", e);
         }
     }
 
+    @Override
+    public String getServerPath() {
+        return installDir;
+    }
+
+    @Override
+    public String getRuntimeArtifact() {
+        return runtimeGroupId + ":" + runtimeArtifactId + ":zip:plus:" + runtimeVersion;
+    }
+
+    /**
+     * Add the TomEE installation to the image, with the booster dependencies,
+     * the web application libraries and the rest of the applications and
+     * configuration in layers of their own.
+     */
+    @Override
+    public void addImageLayers(OciImageWriter image) throws BoostException {
+        File tomeeDir = new File(installDir);
+        File[] children = tomeeDir.listFiles();
+        if (children == null) {
+            throw new BoostException("The TomEE server at " + installDir + " has not been packaged");
+        }
+
+        ImageLayer tomee = new ImageLayer("tomee");
+        ImageLayer resources = new ImageLayer("booster-resources");
+        ImageLayer libraries = new ImageLayer("libraries");
+        ImageLayer application = new ImageLayer("application");
+        try {
+            for (File child : children) {
+                String childPath = IMAGE_INSTALL_PATH + "/" + child.getName();
+                if (SERVER_OUTPUT.contains(child.getName())) {
+                    continue;
+                } else if (child.getName().equals("boost")) {
+                    resources.addDirectory(childPath, child, null);
+                } else if (child.getName().equals("webapps")) {
+                    application.add(childPath, child);
+                    File[] apps = child.listFiles();
+                    for (File app : apps == null ? new File[0] : apps) {
+                        ImageLayer.addApplication(childPath + "/" + app.getName(), app,
+                                new File(tomeeDir.getParentFile(), "boost/image/apps"), libraries, application);
+                    }
+                } else if (child.getName().equals("conf")) {
+                    application.addDirectory(childPath, child, null);
+                } else if (child.isDirectory()) {
+                    tomee.addDirectory(childPath, child, null);
+                } else {
+                    tomee.add(childPath, child);
+                }
+            }
+        } catch (IOException e) {
+            throw new BoostException("Error adding the TomEE server to the image", e);
+        }
+        image.addLayer(tomee);
+        image.addLayer(resources);
+        image.addLayer(libraries);
+        image.addLayer(application);
+
+        image.setEntrypoint(Arrays.asList(IMAGE_INSTALL_PATH + "/bin/catalina.sh", "run"));
+        image.addExposedPort((String) boostProperties.getOrDefault(BoostProperties.ENDPOINT_HTTP_PORT, "8080"));
+    }
+
+    /**
+     * The TomEE version, with a version range resolved to the version recorded
+     * in the lock file.
+     */
+    private String getRuntimeVersion() throws MojoExecutionException {
+        if (versionLock != null && VersionLock.isRange(runtimeVersion)) {
+            try {
+                runtimeVersion = MavenProjectUtil.resolveLockedVersion(versionLock, runtimeGroupId,
+                        runtimeArtifactId, "zip", runtimeVersion, repoSystem, repoSession, remoteRepos,
+                        BoostLogger.getSystemStreamLogger());
+            } catch (RepositoryException e) {
+                throw new MojoExecutionException("Unable to resolve the TomEE version " + runtimeVersion, e);
+            }
+        }
+        return runtimeVersion;
+    }
+
     /**
      * Invoke the liberty-maven-plugin to run the create-server goal
      */
     private void createTomeeServer() throws MojoExecutionException {
         executeMojo(getPlugin(), goal("build"), configuration(element(name("context"), "ROOT"),
-                element(name("tomeeVersion"), "8.0.0-M2"), element(name("tomeeClassifier"), "plus")), env);
+                element(name("tomeeVersion"), getRuntimeVersion()), element(name("tomeeClassifier"), "plus")), env);
     }
 
     /**
@@ -116,8 +257,9 @@ public class TomeeRuntime implements RuntimeI {
     }
 
     /**
-     * Get all booster dependencies and invoke the maven-dependency-plugin to copy
-     * them to the Liberty server.
+     * Get all booster dependencies and copy them into the boost directory of
+     * the TomEE server with {@link MavenProjectUtil#copyDependencies}, linking
+     * them instead when linkDependencies is set.
      * 
      * @throws MojoExecutionException
      *
@@ -125,16 +267,11 @@ public class TomeeRuntime implements RuntimeI {
     private void copyTomeeJarDependencies(List<AbstractBoosterConfig> boosterConfigs) throws MojoExecutionException {
         List<String> tomeeDependencyJarsToCopy = BoosterConfigurator.getDependenciesToCopy(boosterConfigs,
                 BoostLogger.getSystemStreamLogger());
-        for (String dep : tomeeDependencyJarsToCopy) {
-            String[] dependencyInfo = dep.split(":");
-
-            executeMojo(mavenDepPlugin, goal("copy"),
-                    configuration(element(name("outputDirectory"), installDir + "boost"),
-                            element(name("artifactItems"),
-                                    element(name("artifactItem"), element(name("groupId"), dependencyInfo[0]),
-                                            element(name("artifactId"), dependencyInfo[1]),
-                                            element(name("version"), dependencyInfo[2])))),
-                    env);
+        try {
+            MavenProjectUtil.copyDependencies(tomeeDependencyJarsToCopy, new File(installDir + "boost"),
+                    linkDependencies, repoSystem, repoSession, remoteRepos, BoostLogger.getSystemStreamLogger());
+        } catch (ArtifactResolutionException | IOException e) {
+            throw new MojoExecutionException("Unable to copy booster dependencies to the TomEE server.", e);
         }
     }
 
@@ -145,7 +282,7 @@ public class TomeeRuntime implements RuntimeI {
         executeMojo(getPlugin(), goal("exec"),
                 configuration(element(name("classifier"), "exec"), element(name("tomeeAlreadyInstalled"), "true"),
                         element(name("classpaths"), "[]"), element(name("context"), "ROOT"),
-                        element(name("tomeeVersion"), "8.0.0-M2"), element(name("tomeeClassifier"), "plus"),
+                        element(name("tomeeVersion"), getRuntimeVersion()), element(name("tomeeClassifier"), "plus"),
                         element(name("catalinaBase"), installDir), element(name("config"), configDir)),
                 env);
     }
@@ -158,7 +295,8 @@ public class TomeeRuntime implements RuntimeI {
         try {
             executeMojo(getPlugin(), goal("run"),
                     configuration(element(name("tomeeAlreadyInstalled"), "true"), element(name("context"), "ROOT"),
-                            element(name("tomeeVersion"), "8.0.0-M2"), element(name("tomeeClassifier"), "plus")),
+                            element(name("tomeeVersion"), getRuntimeVersion()),
+                            element(name("tomeeClassifier"), "plus")),
                     env);
         } catch (MojoExecutionException e) {
             throw new BoostException("Error running TomEE server", e);
@@ -169,7 +307,8 @@ public class TomeeRuntime implements RuntimeI {
         try {
             executeMojo(getPlugin(), goal("start"),
                     configuration(element(name("tomeeAlreadyInstalled"), "true"), element(name("context"), "ROOT"),
-                            element(name("tomeeVersion"), "8.0.0-M2"), element(name("tomeeClassifier"), "plus")),
+                            element(name("tomeeVersion"), getRuntimeVersion()),
+                            element(name("tomeeClassifier"), "plus")),
                     env);
         } catch (MojoExecutionException e) {
             throw new BoostException("Error starting TomEE server", e);
@@ -180,7 +319,8 @@ public class TomeeRuntime implements RuntimeI {
         try {
             executeMojo(getPlugin(), goal("stop"),
                     configuration(element(name("tomeeAlreadyInstalled"), "true"), element(name("context"), "ROOT"),
-                            element(name("tomeeVersion"), "8.0.0-M2"), element(name("tomeeClassifier"), "plus")),
+                            element(name("tomeeVersion"), getRuntimeVersion()),
+                            element(name("tomeeClassifier"), "plus")),
                     env);
         } catch (MojoExecutionException e) {
             throw new BoostException("Error stopping TomEE server", e);
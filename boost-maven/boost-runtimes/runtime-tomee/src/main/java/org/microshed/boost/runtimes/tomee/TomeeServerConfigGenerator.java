@@ -22,6 +22,7 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -31,6 +32,7 @@ import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 
+import org.microshed.boost.common.BoostException;
 import org.microshed.boost.common.BoostLoggerI;
 import org.microshed.boost.common.boosters.AbstractBoosterConfig;
 import org.microshed.boost.common.boosters.JDBCBoosterConfig;
@@ -63,6 +65,21 @@ public class TomeeServerConfigGenerator {
     private final String USERNAME_PROPERTY = "UserName";
     private final String PASSWORD_PROPERTY = "Password";
     private final String CONNECTION_PROPERTIES_PROPERTY = "connectionProperties";
+    private final String MAX_ACTIVE_PROPERTY = "MaxActive";
+    private final String MAX_IDLE_PROPERTY = "MaxIdle";
+    private final String MIN_IDLE_PROPERTY = "MinIdle";
+    private final String MAX_WAIT_TIME_PROPERTY = "MaxWaitTime";
+    private final String MIN_EVICTABLE_IDLE_TIME_PROPERTY = "MinEvictableIdleTime";
+    private final String MAX_AGE_PROPERTY = "MaxAge";
+    private final String POOL_PREPARED_STATEMENTS_PROPERTY = "PoolPreparedStatements";
+    private final String MAX_OPEN_PREPARED_STATEMENTS_PROPERTY = "MaxOpenPreparedStatements";
+    private final String DEFAULT_TRANSACTION_ISOLATION_PROPERTY = "DefaultTransactionIsolation";
+    private final String JDBC_INTERCEPTORS_PROPERTY = "JdbcInterceptors";
+    private final String TEST_ON_BORROW_PROPERTY = "TestOnBorrow";
+    private final String VALIDATION_QUERY_TIMEOUT_PROPERTY = "ValidationQueryTimeout";
+    private final String INITIAL_SIZE_PROPERTY = "InitialSize";
+    private final String TEST_ON_CONNECT_PROPERTY = "TestOnConnect";
+    private final String IGNORE_EXCEPTION_ON_PRELOAD_PROPERTY = "IgnoreExceptionOnPreLoad";
 
     private final String configPath;
     private final String tomeeInstallPath;
@@ -78,11 +95,37 @@ public class TomeeServerConfigGenerator {
 
     public void addServerConfig(AbstractBoosterConfig boosterConfig) throws Exception {
         if (boosterConfig instanceof JDBCBoosterConfig) {
-            addDataSource(((JDBCBoosterConfig) boosterConfig).getDriverInfo(),
-                    ((JDBCBoosterConfig) boosterConfig).getDatasourceProperties());
+            JDBCBoosterConfig jdbcConfig = (JDBCBoosterConfig) boosterConfig;
+            if (jdbcConfig.hasDefaultDataSource()) {
+                addDataSource(jdbcConfig.getDriverInfo(), null, null, jdbcConfig.getDatasourceProperties(),
+                        jdbcConfig.getConnectionPoolProperties(), jdbcConfig.getStatementProperties(),
+                        getPrewarmTimeout(jdbcConfig, null));
+            }
+            for (String name : jdbcConfig.getDataSourceNames()) {
+                addDataSource(jdbcConfig.getDriverInfo(), name, jdbcConfig.getJndiName(name),
+                        jdbcConfig.getDatasourceProperties(name), jdbcConfig.getConnectionPoolProperties(name),
+                        jdbcConfig.getStatementProperties(name), getPrewarmTimeout(jdbcConfig, name));
+            }
         }
     }
 
+    /**
+     * The prewarm timeout of a datasource, or null if it is not prewarmed. The
+     * number of connections to open at startup must be configured, rather than
+     * come from the default pool size.
+     */
+    private String getPrewarmTimeout(JDBCBoosterConfig jdbcConfig, String name) throws BoostException {
+        if (!jdbcConfig.isPrewarm(name)) {
+            return null;
+        }
+        if (jdbcConfig.getConfiguredMinPoolSize(name) == null) {
+            throw new BoostException("The " + BoostProperties.DATASOURCE_PREWARM + " property requires "
+                    + BoostProperties.getDataSourceProperty(name, BoostProperties.DATASOURCE_POOL_MIN_POOL_SIZE)
+                    + ", the number of connections to open when the server starts.");
+        }
+        return jdbcConfig.getPrewarmTimeout(name);
+    }
+
     public void addJarsDirToSharedLoader() throws ParserConfigurationException {
         try {
 
@@ -216,6 +259,44 @@ public class TomeeServerConfigGenerator {
     }
 
     public void addDataSource(Map<String, String> driverInfo, Properties boostDbProperties) throws Exception {
+        addDataSource(driverInfo, boostDbProperties, new Properties());
+    }
+
+    public void addDataSource(Map<String, String> driverInfo, Properties boostDbProperties,
+            Properties connectionPoolProperties) throws Exception {
+        addDataSource(driverInfo, boostDbProperties, connectionPoolProperties, new Properties());
+    }
+
+    public void addDataSource(Map<String, String> driverInfo, Properties boostDbProperties,
+            Properties connectionPoolProperties, Properties statementProperties) throws Exception {
+        addDataSource(driverInfo, null, null, boostDbProperties, connectionPoolProperties, statementProperties,
+                null);
+    }
+
+    /**
+     * Add a data source resource to tomee.xml.
+     *
+     * @param driverInfo
+     * @param name
+     *            the name of a named data source, or null for the default data
+     *            source
+     * @param jndiName
+     *            the id of the resource of a named data source
+     * @param boostDbProperties
+     *            the properties of the vendor data source, with the prefix of
+     *            the data source
+     * @param connectionPoolProperties
+     *            the pool properties, with the prefix of the data source
+     * @param statementProperties
+     *            the statement properties, with the prefix of the data source
+     * @param prewarmTimeout
+     *            the time to open the minimum number of connections of the pool
+     *            when the resource is created at startup, or null to open them
+     *            when they are first requested
+     */
+    public void addDataSource(Map<String, String> driverInfo, String name, String jndiName,
+            Properties boostDbProperties, Properties connectionPoolProperties, Properties statementProperties,
+            String prewarmTimeout) throws Exception {
         // Read tomee.xml
         File tomeeXml = new File(configPath + "/" + TOMEE_XML);
         DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
@@ -225,7 +306,7 @@ public class TomeeServerConfigGenerator {
 
         // Create Resource element
         Element resource = doc.createElement(RESOURCE_ELEMENT);
-        resource.setAttribute("id", "DefaultDataSource");
+        resource.setAttribute("id", name == null ? "DefaultDataSource" : jndiName);
         resource.setAttribute("type", "DataSource");
         resource.appendChild(doc.createTextNode(System.lineSeparator()));
         tomee.appendChild(resource);
@@ -236,36 +317,39 @@ public class TomeeServerConfigGenerator {
         resource.appendChild(jdbcDriverText);
 
         // Add UserName if set. Remove from list to avoid adding it again below
-        String username = (String) boostDbProperties.remove(BoostProperties.DATASOURCE_USER);
+        String userProperty = BoostProperties.getDataSourceProperty(name, BoostProperties.DATASOURCE_USER);
+        String username = (String) boostDbProperties.remove(userProperty);
         if (username != null) {
-            Text usernameText = doc.createTextNode(USERNAME_PROPERTY + " = "
-                    + BoostUtil.makeVariable(BoostProperties.DATASOURCE_USER) + System.lineSeparator());
+            Text usernameText = doc.createTextNode(
+                    USERNAME_PROPERTY + " = " + BoostUtil.makeVariable(userProperty) + System.lineSeparator());
             resource.appendChild(usernameText);
 
-            addCatalinaProperty(BoostProperties.DATASOURCE_USER, username);
+            addCatalinaProperty(userProperty, username);
         }
 
         // Add Password if set. Remove from list to avoid adding it again below
-        String password = (String) boostDbProperties.remove(BoostProperties.DATASOURCE_PASSWORD);
+        String passwordProperty = BoostProperties.getDataSourceProperty(name, BoostProperties.DATASOURCE_PASSWORD);
+        String password = (String) boostDbProperties.remove(passwordProperty);
         if (password != null) {
-            Text passwordText = doc.createTextNode(PASSWORD_PROPERTY + " = "
-                    + BoostUtil.makeVariable(BoostProperties.DATASOURCE_PASSWORD) + System.lineSeparator());
+            Text passwordText = doc.createTextNode(
+                    PASSWORD_PROPERTY + " = " + BoostUtil.makeVariable(passwordProperty) + System.lineSeparator());
             resource.appendChild(passwordText);
 
-            addCatalinaProperty(BoostProperties.DATASOURCE_PASSWORD, password);
+            addCatalinaProperty(passwordProperty, password);
         }
 
         // Tomee requires a url for datasource configuration. If one was not
         // set,
         // we need to build it based on the separate datasource properties
         // configured.
-        String url = (String) boostDbProperties.remove(BoostProperties.DATASOURCE_URL);
+        String urlProperty = BoostProperties.getDataSourceProperty(name, BoostProperties.DATASOURCE_URL);
+        String url = (String) boostDbProperties.remove(urlProperty);
         if (url != null) {
-            Text jdbcUrlText = doc.createTextNode(JDBC_URL_PROPERTY + " = "
-                    + BoostUtil.makeVariable(BoostProperties.DATASOURCE_URL) + System.lineSeparator());
+            Text jdbcUrlText = doc.createTextNode(
+                    JDBC_URL_PROPERTY + " = " + BoostUtil.makeVariable(urlProperty) + System.lineSeparator());
             resource.appendChild(jdbcUrlText);
 
-            addCatalinaProperty(BoostProperties.DATASOURCE_URL, url);
+            addCatalinaProperty(urlProperty, url);
         } else {
 
             // Build the url
@@ -273,35 +357,42 @@ public class TomeeServerConfigGenerator {
             StringBuilder jdbcUrl = new StringBuilder();
             jdbcUrl.append("jdbc:" + driverName);
 
+            String databaseNameProperty = BoostProperties.getDataSourceProperty(name,
+                    BoostProperties.DATASOURCE_DATABASE_NAME);
             if (driverName.equals(JDBCBoosterConfig.DERBY_DRIVER_NAME)) {
 
                 // Derby's URL is slightly different than MySQL and DB2
-                String databaseName = (String) boostDbProperties.remove(BoostProperties.DATASOURCE_DATABASE_NAME);
-                jdbcUrl.append(":" + BoostUtil.makeVariable(BoostProperties.DATASOURCE_DATABASE_NAME));
-                addCatalinaProperty(BoostProperties.DATASOURCE_DATABASE_NAME, databaseName);
+                String databaseName = (String) boostDbProperties.remove(databaseNameProperty);
+                jdbcUrl.append(":" + BoostUtil.makeVariable(databaseNameProperty));
+                addCatalinaProperty(databaseNameProperty, databaseName);
 
-                String createDatabase = (String) boostDbProperties.remove(BoostProperties.DATASOURCE_CREATE_DATABASE);
+                String createDatabase = (String) boostDbProperties.remove(
+                        BoostProperties.getDataSourceProperty(name, BoostProperties.DATASOURCE_CREATE_DATABASE));
                 if ("create".equals(createDatabase)) {
                     jdbcUrl.append(";create=true");
                 }
             } else {
 
-                String serverName = (String) boostDbProperties.remove(BoostProperties.DATASOURCE_SERVER_NAME);
+                String serverNameProperty = BoostProperties.getDataSourceProperty(name,
+                        BoostProperties.DATASOURCE_SERVER_NAME);
+                String serverName = (String) boostDbProperties.remove(serverNameProperty);
                 if (serverName != null) {
-                    jdbcUrl.append("://" + BoostUtil.makeVariable(BoostProperties.DATASOURCE_SERVER_NAME));
-                    addCatalinaProperty(BoostProperties.DATASOURCE_SERVER_NAME, serverName);
+                    jdbcUrl.append("://" + BoostUtil.makeVariable(serverNameProperty));
+                    addCatalinaProperty(serverNameProperty, serverName);
                 }
 
-                String portNumber = (String) boostDbProperties.remove(BoostProperties.DATASOURCE_PORT_NUMBER);
+                String portNumberProperty = BoostProperties.getDataSourceProperty(name,
+                        BoostProperties.DATASOURCE_PORT_NUMBER);
+                String portNumber = (String) boostDbProperties.remove(portNumberProperty);
                 if (portNumber != null) {
-                    jdbcUrl.append(":" + BoostUtil.makeVariable(BoostProperties.DATASOURCE_PORT_NUMBER));
-                    addCatalinaProperty(BoostProperties.DATASOURCE_PORT_NUMBER, portNumber);
+                    jdbcUrl.append(":" + BoostUtil.makeVariable(portNumberProperty));
+                    addCatalinaProperty(portNumberProperty, portNumber);
                 }
 
-                String databaseName = (String) boostDbProperties.remove(BoostProperties.DATASOURCE_DATABASE_NAME);
+                String databaseName = (String) boostDbProperties.remove(databaseNameProperty);
                 if (databaseName != null) {
-                    jdbcUrl.append("/" + BoostUtil.makeVariable(BoostProperties.DATASOURCE_DATABASE_NAME));
-                    addCatalinaProperty(BoostProperties.DATASOURCE_DATABASE_NAME, databaseName);
+                    jdbcUrl.append("/" + BoostUtil.makeVariable(databaseNameProperty));
+                    addCatalinaProperty(databaseNameProperty, databaseName);
                 }
             }
 
@@ -310,10 +401,15 @@ public class TomeeServerConfigGenerator {
             resource.appendChild(jdbcUrlText);
         }
 
+        if (prewarmTimeout != null) {
+            addPrewarmLoginTimeout(driverInfo, name, boostDbProperties, connectionPoolProperties, prewarmTimeout);
+        }
+
         // Add any additional datasource properties as connectionProperties
+        String prefix = BoostProperties.getDataSourcePrefix(name);
         StringBuilder connectionProperties = new StringBuilder();
         for (String boostProperty : boostDbProperties.stringPropertyNames()) {
-            String datasourceProperty = boostProperty.replace(BoostProperties.DATASOURCE_PREFIX, "");
+            String datasourceProperty = boostProperty.substring(prefix.length());
             connectionProperties.append(datasourceProperty);
             connectionProperties.append("=");
             connectionProperties.append(BoostUtil.makeVariable(boostProperty));
@@ -326,6 +422,12 @@ public class TomeeServerConfigGenerator {
                 + connectionProperties.toString() + "]" + System.lineSeparator());
         resource.appendChild(connectionPropertiesText);
 
+        addConnectionPool(doc, resource, name, connectionPoolProperties);
+        addStatementProperties(doc, resource, name, statementProperties);
+        if (prewarmTimeout != null) {
+            addPrewarm(doc, resource, name, connectionPoolProperties, prewarmTimeout);
+        }
+
         // Overwrite content
         TransformerFactory transformerFactory = TransformerFactory.newInstance();
         Transformer transformer = transformerFactory.newTransformer();
@@ -339,6 +441,193 @@ public class TomeeServerConfigGenerator {
 
     }
 
+    /**
+     * Add the pool properties of the TomEE data source that match the Liberty
+     * connection manager properties. Liberty durations are converted to
+     * milliseconds. The purge policy and thread local connections have no
+     * TomEE equivalent.
+     */
+    private void addConnectionPool(Document doc, Element resource, String name, Properties poolProperties)
+            throws IOException {
+        String maxPoolSizeProperty = BoostProperties.getDataSourceProperty(name,
+                BoostProperties.DATASOURCE_POOL_MAX_POOL_SIZE);
+        String maxPoolSize = poolProperties.getProperty(maxPoolSizeProperty);
+        if (maxPoolSize != null) {
+            addResourceProperty(doc, resource, MAX_ACTIVE_PROPERTY, maxPoolSizeProperty, "");
+            addResourceProperty(doc, resource, MAX_IDLE_PROPERTY, maxPoolSizeProperty, "");
+            addCatalinaProperty(maxPoolSizeProperty, maxPoolSize);
+        }
+
+        String minPoolSizeProperty = BoostProperties.getDataSourceProperty(name,
+                BoostProperties.DATASOURCE_POOL_MIN_POOL_SIZE);
+        String minPoolSize = poolProperties.getProperty(minPoolSizeProperty);
+        if (minPoolSize != null) {
+            addResourceProperty(doc, resource, MIN_IDLE_PROPERTY, minPoolSizeProperty, "");
+            addCatalinaProperty(minPoolSizeProperty, minPoolSize);
+        }
+
+        String connectionTimeoutProperty = BoostProperties.getDataSourceProperty(name,
+                BoostProperties.DATASOURCE_POOL_CONNECTION_TIMEOUT);
+        String connectionTimeout = poolProperties.getProperty(connectionTimeoutProperty);
+        if (connectionTimeout != null) {
+            // -1 waits for a connection indefinitely, as in Liberty
+            addResourceProperty(doc, resource, MAX_WAIT_TIME_PROPERTY, connectionTimeoutProperty, " milliseconds");
+            addCatalinaProperty(connectionTimeoutProperty, String.valueOf(BoostUtil.toMillis(connectionTimeout)));
+        }
+
+        String maxIdleTimeProperty = BoostProperties.getDataSourceProperty(name,
+                BoostProperties.DATASOURCE_POOL_MAX_IDLE_TIME);
+        String maxIdleTime = poolProperties.getProperty(maxIdleTimeProperty);
+        if (maxIdleTime != null && BoostUtil.toMillis(maxIdleTime) >= 0) {
+            addResourceProperty(doc, resource, MIN_EVICTABLE_IDLE_TIME_PROPERTY, maxIdleTimeProperty,
+                    " milliseconds");
+            addCatalinaProperty(maxIdleTimeProperty, String.valueOf(BoostUtil.toMillis(maxIdleTime)));
+        }
+
+        String agedTimeoutProperty = BoostProperties.getDataSourceProperty(name,
+                BoostProperties.DATASOURCE_POOL_AGED_TIMEOUT);
+        String agedTimeout = poolProperties.getProperty(agedTimeoutProperty);
+        if (agedTimeout != null) {
+            // A max age of 0 keeps connections forever, as -1 does in Liberty
+            addResourceProperty(doc, resource, MAX_AGE_PROPERTY, agedTimeoutProperty, "");
+            addCatalinaProperty(agedTimeoutProperty, String.valueOf(Math.max(0, BoostUtil.toMillis(agedTimeout))));
+        }
+
+        for (String property : poolProperties.stringPropertyNames()) {
+            String poolProperty = BoostProperties.getDefaultDataSourceProperty(property);
+            if (poolProperty.equals(BoostProperties.DATASOURCE_POOL_PURGE_POLICY)
+                    || poolProperty.equals(BoostProperties.DATASOURCE_POOL_NUM_CONNECTIONS_PER_THREAD_LOCAL)) {
+                logger.debug("The " + property + " property has no TomEE equivalent and is ignored.");
+            }
+        }
+    }
+
+    /**
+     * Add the properties of the TomEE data source that match the Liberty data
+     * source statement properties. The statement cache size is the number of
+     * pooled prepared statements of each connection, and Liberty isolation
+     * levels and durations are converted to TomEE isolation levels and
+     * seconds.
+     */
+    private void addStatementProperties(Document doc, Element resource, String name,
+            Properties statementProperties) throws IOException {
+        String statementCacheSizeProperty = BoostProperties.getDataSourceProperty(name,
+                BoostProperties.DATASOURCE_STATEMENT_CACHE_SIZE);
+        String statementCacheSize = statementProperties.getProperty(statementCacheSizeProperty);
+        if (statementCacheSize != null) {
+            boolean poolStatements = Integer.parseInt(statementCacheSize.trim()) > 0;
+            resource.appendChild(doc.createTextNode(
+                    POOL_PREPARED_STATEMENTS_PROPERTY + " = " + poolStatements + System.lineSeparator()));
+            addResourceProperty(doc, resource, MAX_OPEN_PREPARED_STATEMENTS_PROPERTY, statementCacheSizeProperty, "");
+            addCatalinaProperty(statementCacheSizeProperty, statementCacheSize);
+        }
+
+        String isolationLevelProperty = BoostProperties.getDataSourceProperty(name,
+                BoostProperties.DATASOURCE_ISOLATION_LEVEL);
+        String isolationLevel = statementProperties.getProperty(isolationLevelProperty);
+        if (isolationLevel != null) {
+            // TRANSACTION_READ_COMMITTED in Liberty is READ_COMMITTED in TomEE
+            addResourceProperty(doc, resource, DEFAULT_TRANSACTION_ISOLATION_PROPERTY, isolationLevelProperty, "");
+            addCatalinaProperty(isolationLevelProperty, isolationLevel.trim().replaceFirst("^TRANSACTION_", ""));
+        }
+
+        String queryTimeoutProperty = BoostProperties.getDataSourceProperty(name,
+                BoostProperties.DATASOURCE_QUERY_TIMEOUT);
+        String queryTimeout = statementProperties.getProperty(queryTimeoutProperty);
+        if (queryTimeout != null && BoostUtil.toMillis(queryTimeout) > 0) {
+            String interceptor = "QueryTimeoutInterceptor(queryTimeout=" + BoostUtil.makeVariable(queryTimeoutProperty)
+                    + ")";
+            resource.appendChild(
+                    doc.createTextNode(JDBC_INTERCEPTORS_PROPERTY + " = " + interceptor + System.lineSeparator()));
+            addCatalinaProperty(queryTimeoutProperty, String.valueOf(BoostUtil.toSeconds(queryTimeout)));
+        }
+
+        String validationTimeoutProperty = BoostProperties.getDataSourceProperty(name,
+                BoostProperties.DATASOURCE_VALIDATION_TIMEOUT);
+        String validationTimeout = statementProperties.getProperty(validationTimeoutProperty);
+        if (validationTimeout != null) {
+            resource.appendChild(
+                    doc.createTextNode(TEST_ON_BORROW_PROPERTY + " = true" + System.lineSeparator()));
+            addResourceProperty(doc, resource, VALIDATION_QUERY_TIMEOUT_PROPERTY, validationTimeoutProperty, "");
+            addCatalinaProperty(validationTimeoutProperty, String.valueOf(BoostUtil.toSeconds(validationTimeout)));
+        }
+    }
+
+    /**
+     * Open the minimum number of connections of the pool when TomEE creates
+     * the resource at startup, validating each one. A connection that cannot be
+     * opened does not fail the startup.
+     */
+    private void addPrewarm(Document doc, Element resource, String name, Properties poolProperties,
+            String prewarmTimeout) {
+        String minPoolSizeProperty = BoostProperties.getDataSourceProperty(name,
+                BoostProperties.DATASOURCE_POOL_MIN_POOL_SIZE);
+        addResourceProperty(doc, resource, INITIAL_SIZE_PROPERTY, minPoolSizeProperty, "");
+        resource.appendChild(doc.createTextNode(TEST_ON_CONNECT_PROPERTY + " = true" + System.lineSeparator()));
+        resource.appendChild(
+                doc.createTextNode(IGNORE_EXCEPTION_ON_PRELOAD_PROPERTY + " = true" + System.lineSeparator()));
+
+        // Boost only writes the configuration, the server reports the actual
+        // connections when it starts
+        logger.info("The " + resource.getAttribute("id") + " pool is configured to open "
+                + poolProperties.getProperty(minPoolSizeProperty) + " connections when the server starts, within "
+                + prewarmTimeout + ".");
+    }
+
+    /**
+     * Bound the time to prewarm a pool with the login timeout of the driver.
+     * The pool opens its initial connections one after the other, so each
+     * connection gets an equal share of the prewarm timeout. A login timeout
+     * set explicitly is kept, and embedded Derby does not connect over the
+     * network.
+     *
+     * This bounds opening the connections, not validating them, and drivers
+     * whose login timeout is in seconds wait at least a second per connection,
+     * so the startup may still take somewhat longer than the prewarm timeout.
+     */
+    private void addPrewarmLoginTimeout(Map<String, String> driverInfo, String name, Properties boostDbProperties,
+            Properties poolProperties, String prewarmTimeout) {
+        String minPoolSizeProperty = BoostProperties.getDataSourceProperty(name,
+                BoostProperties.DATASOURCE_POOL_MIN_POOL_SIZE);
+        String minPoolSize = poolProperties.getProperty(minPoolSizeProperty);
+        if (minPoolSize == null) {
+            return;
+        }
+
+        long timeout = BoostUtil.toMillis(prewarmTimeout);
+        int connections = Integer.parseInt(minPoolSize.trim());
+        if (timeout < 0 || connections <= 0) {
+            return;
+        }
+        long connectionTimeout = timeout / connections;
+
+        String driverName = driverInfo.get(JDBCBoosterConfig.DRIVER_NAME);
+        String property;
+        String value;
+        if (driverName.equals(JDBCBoosterConfig.MYSQL_DRIVER_NAME)) {
+            property = BoostProperties.getDataSourcePrefix(name) + "connectTimeout";
+            value = String.valueOf(Math.max(1, connectionTimeout));
+        } else if (driverName.equals(JDBCBoosterConfig.POSTGRESQL_DRIVER_NAME)
+                || driverName.equals(JDBCBoosterConfig.DB2_DRIVER_NAME)) {
+            property = BoostProperties.getDataSourcePrefix(name) + "loginTimeout";
+            value = String.valueOf(Math.max(1, TimeUnit.MILLISECONDS.toSeconds(connectionTimeout)));
+        } else {
+            return;
+        }
+
+        if (boostDbProperties.containsKey(property)) {
+            logger.debug("The " + property + " property is set, it bounds each connection of the prewarmed pool.");
+        } else {
+            boostDbProperties.put(property, value);
+        }
+    }
+
+    private void addResourceProperty(Document doc, Element resource, String name, String boostProperty,
+            String suffix) {
+        resource.appendChild(doc.createTextNode(
+                name + " = " + BoostUtil.makeVariable(boostProperty) + suffix + System.lineSeparator()));
+    }
+
     private void addCatalinaProperty(String key, String value) throws IOException {
 
         BufferedWriter output = new BufferedWriter(new FileWriter(configPath + "/" + CATALINA_PROPERTIES, true));
@@ -0,0 +1,264 @@
+/*******************************************************************************
+ * Copyright (c) 2019 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.microshed.boost.runtimes.tomee;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.microshed.boost.common.BoostException;
+import org.microshed.boost.common.BoostLoggerI;
+import org.microshed.boost.common.boosters.AbstractBoosterConfig;
+import org.microshed.boost.common.boosters.JDBCBoosterConfig;
+import org.microshed.boost.common.config.BoostProperties;
+import org.microshed.boost.common.config.BoosterConfigParams;
+import org.microshed.boost.common.utils.QuietLogger;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+public class TomeeServerConfigGeneratorTest {
+
+    private static final String POSTGRESQL_URL = "jdbc:postgresql://localhost:5432/testdb";
+
+    @Rule
+    public TemporaryFolder configDir = new TemporaryFolder();
+
+    private final BoostLoggerI logger = QuietLogger.getInstance();
+
+    @Before
+    public void setUp() throws Exception {
+        Files.write(new File(configDir.getRoot(), "tomee.xml").toPath(),
+                Arrays.asList("<?xml version=\"1.0\" encoding=\"UTF-8\"?>", "<tomee>", "</tomee>"),
+                StandardCharsets.UTF_8);
+        Files.write(new File(configDir.getRoot(), "catalina.properties").toPath(),
+                Arrays.asList("common.loader=\"${catalina.base}/lib\""), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Test that the connection pool properties map to the pool properties of
+     * the resource, with Liberty durations in milliseconds
+     */
+    @Test
+    public void testConnectionPool() throws Exception {
+        Properties boostProperties = new Properties();
+        boostProperties.put(BoostProperties.DATASOURCE_POOL_PROCESSORS, "4");
+        boostProperties.put(BoostProperties.DATASOURCE_POOL_MAX_POOL_SIZE, "10");
+        boostProperties.put(BoostProperties.DATASOURCE_POOL_CONNECTION_TIMEOUT, "10s");
+        boostProperties.put(BoostProperties.DATASOURCE_POOL_AGED_TIMEOUT, "1h");
+
+        addServerConfig(getJDBCDependency(), boostProperties);
+
+        List<String> resource = getResources().get("DefaultDataSource");
+        assertTrue(resource.contains("MaxActive = ${boost_db_pool_maxPoolSize}"));
+        assertTrue(resource.contains("MaxIdle = ${boost_db_pool_maxPoolSize}"));
+        assertTrue(resource.contains("MinIdle = ${boost_db_pool_minPoolSize}"));
+        assertTrue(resource.contains("MaxWaitTime = ${boost_db_pool_connectionTimeout} milliseconds"));
+        assertTrue(resource.contains("MinEvictableIdleTime = ${boost_db_pool_maxIdleTime} milliseconds"));
+        assertTrue(resource.contains("MaxAge = ${boost_db_pool_agedTimeout}"));
+
+        Properties catalina = getCatalinaProperties();
+        assertEquals("10", catalina.getProperty(BoostProperties.DATASOURCE_POOL_MAX_POOL_SIZE));
+        assertEquals("4", catalina.getProperty(BoostProperties.DATASOURCE_POOL_MIN_POOL_SIZE));
+        assertEquals("10000", catalina.getProperty(BoostProperties.DATASOURCE_POOL_CONNECTION_TIMEOUT));
+        assertEquals("1800000", catalina.getProperty(BoostProperties.DATASOURCE_POOL_MAX_IDLE_TIME));
+        assertEquals("3600000", catalina.getProperty(BoostProperties.DATASOURCE_POOL_AGED_TIMEOUT));
+        // Neither the processors nor the purge policy configure the resource
+        assertNull(catalina.getProperty(BoostProperties.DATASOURCE_POOL_PROCESSORS));
+        assertNull(catalina.getProperty(BoostProperties.DATASOURCE_POOL_PURGE_POLICY));
+    }
+
+    /**
+     * Test that the pool is left to the TomEE defaults when neither the pool
+     * sizes nor the processors are configured
+     */
+    @Test
+    public void testConnectionPoolWithoutSizes() throws Exception {
+        addServerConfig(getJDBCDependency(), new Properties());
+
+        List<String> resource = getResources().get("DefaultDataSource");
+        for (String line : resource) {
+            assertFalse(line, line.startsWith("MaxActive") || line.startsWith("MinIdle"));
+        }
+        // An aged timeout of -1 keeps connections forever
+        assertEquals("0", getCatalinaProperties().getProperty(BoostProperties.DATASOURCE_POOL_AGED_TIMEOUT));
+    }
+
+    /**
+     * Test that the statement properties map to the prepared statement pool,
+     * isolation level, query timeout and validation of the resource
+     */
+    @Test
+    public void testStatementProperties() throws Exception {
+        Properties boostProperties = new Properties();
+        boostProperties.put(BoostProperties.DATASOURCE_STATEMENT_CACHE_SIZE, "25");
+        boostProperties.put(BoostProperties.DATASOURCE_ISOLATION_LEVEL, "TRANSACTION_READ_COMMITTED");
+        boostProperties.put(BoostProperties.DATASOURCE_QUERY_TIMEOUT, "30s");
+        boostProperties.put(BoostProperties.DATASOURCE_VALIDATION_TIMEOUT, "5s");
+
+        addServerConfig(getJDBCDependency(), boostProperties);
+
+        List<String> resource = getResources().get("DefaultDataSource");
+        assertTrue(resource.contains("PoolPreparedStatements = true"));
+        assertTrue(resource.contains("MaxOpenPreparedStatements = ${boost_db_statementCacheSize}"));
+        assertTrue(resource.contains("DefaultTransactionIsolation = ${boost_db_isolationLevel}"));
+        assertTrue(resource
+                .contains("JdbcInterceptors = QueryTimeoutInterceptor(queryTimeout=${boost_db_queryTimeout})"));
+        assertTrue(resource.contains("TestOnBorrow = true"));
+        assertTrue(resource.contains("ValidationQueryTimeout = ${boost_db_validationTimeout}"));
+
+        Properties catalina = getCatalinaProperties();
+        assertEquals("25", catalina.getProperty(BoostProperties.DATASOURCE_STATEMENT_CACHE_SIZE));
+        assertEquals("READ_COMMITTED", catalina.getProperty(BoostProperties.DATASOURCE_ISOLATION_LEVEL));
+        assertEquals("30", catalina.getProperty(BoostProperties.DATASOURCE_QUERY_TIMEOUT));
+        assertEquals("5", catalina.getProperty(BoostProperties.DATASOURCE_VALIDATION_TIMEOUT));
+    }
+
+    /**
+     * Test that named datasources are resources of their own, under the JNDI
+     * name of their role, with properties of their own
+     */
+    @Test
+    public void testNamedDataSources() throws Exception {
+        Map<String, String> dependencies = getJDBCDependency();
+        dependencies.put(JDBCBoosterConfig.POSTGRESQL_GROUP_ID + ":" + JDBCBoosterConfig.POSTGRESQL_ARTIFACT_ID,
+                "1.0");
+
+        String replicaUrl = "jdbc:postgresql://replica:5432/testdb";
+        Properties boostProperties = new Properties();
+        boostProperties.put("boost_db.orders.url", POSTGRESQL_URL);
+        boostProperties.put("boost_db.ordersReplica.url", replicaUrl);
+        boostProperties.put("boost_db.ordersReplica.role", JDBCBoosterConfig.ROLE_REPLICA);
+        boostProperties.put("boost_db.ordersReplica.pool_maxPoolSize", "20");
+
+        addServerConfig(dependencies, boostProperties);
+
+        Map<String, List<String>> resources = getResources();
+        assertEquals(Arrays.asList("jdbc/orders", "jdbc/replicas/ordersReplica"),
+                new ArrayList<String>(resources.keySet()));
+        assertTrue(resources.get("jdbc/orders").contains("JdbcUrl = ${boost_db.orders.url}"));
+        List<String> replica = resources.get("jdbc/replicas/ordersReplica");
+        assertTrue(replica.contains("JdbcUrl = ${boost_db.ordersReplica.url}"));
+        assertTrue(replica.contains("MaxActive = ${boost_db.ordersReplica.pool_maxPoolSize}"));
+        for (String line : replica) {
+            assertFalse("The role was added to the connection properties", line.contains("role"));
+        }
+
+        Properties catalina = getCatalinaProperties();
+        assertEquals(POSTGRESQL_URL, catalina.getProperty("boost_db.orders.url"));
+        assertEquals(replicaUrl, catalina.getProperty("boost_db.ordersReplica.url"));
+        assertEquals("20", catalina.getProperty("boost_db.ordersReplica.pool_maxPoolSize"));
+        assertNull(catalina.getProperty("boost_db.orders.pool_maxPoolSize"));
+    }
+
+    /**
+     * Test that a prewarmed pool opens its minimum size at startup, each
+     * connection within a share of the prewarm timeout
+     */
+    @Test
+    public void testPrewarm() throws Exception {
+        Map<String, String> dependencies = getJDBCDependency();
+        dependencies.put(JDBCBoosterConfig.POSTGRESQL_GROUP_ID + ":" + JDBCBoosterConfig.POSTGRESQL_ARTIFACT_ID,
+                "1.0");
+
+        Properties boostProperties = new Properties();
+        boostProperties.put(BoostProperties.DATASOURCE_URL, POSTGRESQL_URL);
+        boostProperties.put(BoostProperties.DATASOURCE_POOL_MIN_POOL_SIZE, "4");
+        boostProperties.put(BoostProperties.DATASOURCE_PREWARM, "true");
+        boostProperties.put(BoostProperties.DATASOURCE_PREWARM_TIMEOUT, "1m");
+
+        addServerConfig(dependencies, boostProperties);
+
+        List<String> resource = getResources().get("DefaultDataSource");
+        assertTrue(resource.contains("InitialSize = ${boost_db_pool_minPoolSize}"));
+        assertTrue(resource.contains("TestOnConnect = true"));
+        assertTrue(resource.contains("IgnoreExceptionOnPreLoad = true"));
+        assertTrue(resource.contains("connectionProperties = [loginTimeout=${boost_db_loginTimeout};]"));
+
+        Properties catalina = getCatalinaProperties();
+        assertEquals("4", catalina.getProperty(BoostProperties.DATASOURCE_POOL_MIN_POOL_SIZE));
+        assertEquals("15", catalina.getProperty("boost_db_loginTimeout"));
+    }
+
+    /**
+     * Test that a prewarmed pool requires a configured minimum pool size, even
+     * when the processors give the pool a default minimum
+     */
+    @Test(expected = BoostException.class)
+    public void testPrewarmRequiresConfiguredMinPoolSize() throws Exception {
+        Properties boostProperties = new Properties();
+        boostProperties.put(BoostProperties.DATASOURCE_POOL_PROCESSORS, "4");
+        boostProperties.put(BoostProperties.DATASOURCE_PREWARM, "true");
+
+        addServerConfig(getJDBCDependency(), boostProperties);
+    }
+
+    private void addServerConfig(Map<String, String> dependencies, Properties boostProperties) throws Exception {
+        BoosterConfigParams params = new BoosterConfigParams(dependencies, boostProperties);
+        TomeeServerConfigGenerator generator = new TomeeServerConfigGenerator(configDir.getRoot().getAbsolutePath(),
+                logger);
+        generator.addServerConfig(new JDBCBoosterConfig(params, logger));
+    }
+
+    private static Map<String, String> getJDBCDependency() throws Exception {
+        Map<String, String> dependencies = new HashMap<String, String>();
+        dependencies.put(AbstractBoosterConfig.getCoordinates(JDBCBoosterConfig.class), "0.2.2-SNAPSHOT");
+        return dependencies;
+    }
+
+    /**
+     * The lines of each Resource of tomee.xml, by id.
+     */
+    private Map<String, List<String>> getResources() throws Exception {
+        Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                .parse(new File(configDir.getRoot(), "tomee.xml"));
+        Map<String, List<String>> resources = new LinkedHashMap<String, List<String>>();
+        NodeList resourceList = doc.getElementsByTagName("Resource");
+        for (int i = 0; i < resourceList.getLength(); i++) {
+            Element resource = (Element) resourceList.item(i);
+            List<String> lines = new ArrayList<String>();
+            for (String line : resource.getTextContent().split("\\r?\\n")) {
+                if (!line.trim().isEmpty()) {
+                    lines.add(line.trim());
+                }
+            }
+            resources.put(resource.getAttribute("id"), lines);
+        }
+        return resources;
+    }
+
+    private Properties getCatalinaProperties() throws Exception {
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(new File(configDir.getRoot(), "catalina.properties").toPath())) {
+            properties.load(in);
+        }
+        return properties;
+    }
+}